@@ -0,0 +1,32 @@
+package eu.europa.ted.eforms.noticeeditor.controller;
+
+import java.util.Optional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import eu.europa.ted.eforms.noticeeditor.service.RequestExecutionService;
+
+/**
+ * The async requests of Spring MVC run on the executor of the configured execution mode, with its
+ * timeout, see {@link RequestExecutionService}.
+ */
+@Configuration
+public class AsyncRequestConfig implements WebMvcConfigurer {
+
+  private final RequestExecutionService requestExecutionService;
+
+  public AsyncRequestConfig(final RequestExecutionService requestExecutionService) {
+    this.requestExecutionService = requestExecutionService;
+  }
+
+  @Override
+  public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+    final Optional<AsyncTaskExecutor> taskExecutorOpt =
+        requestExecutionService.getTaskExecutorOpt();
+    if (taskExecutorOpt.isPresent()) {
+      configurer.setTaskExecutor(taskExecutorOpt.get());
+    }
+    configurer.setDefaultTimeout(requestExecutionService.getTimeoutMillis());
+  }
+}
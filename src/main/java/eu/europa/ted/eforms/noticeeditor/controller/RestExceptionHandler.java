@@ -0,0 +1,30 @@
+package eu.europa.ted.eforms.noticeeditor.controller;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import eu.europa.ted.eforms.noticeeditor.service.NoticeBuildRejectedException;
+
+/**
+ * Answers the exceptions of the REST controllers which are not server errors, in all the execution
+ * modes (the exceptions of the async requests are handled the same way).
+ */
+@RestControllerAdvice
+public class RestExceptionHandler {
+  private static final Logger logger = LoggerFactory.getLogger(RestExceptionHandler.class);
+
+  /**
+   * A saturated notice build executor is answered with 503 and Retry-After, see
+   * NoticeBuildService.
+   */
+  @ExceptionHandler(NoticeBuildRejectedException.class)
+  public void handleNoticeBuildRejected(final NoticeBuildRejectedException e,
+      final HttpServletResponse response) throws IOException {
+    logger.warn(e.getMessage());
+    response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+  }
+}
@@ -6,28 +6,28 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.ParserConfigurationException;
 import org.apache.commons.lang3.Validate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
-import org.xml.sax.SAXException;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import eu.europa.ted.eforms.noticeeditor.domain.Language;
+import eu.europa.ted.eforms.noticeeditor.service.RequestExecutionService;
 import eu.europa.ted.eforms.noticeeditor.service.SdkService;
 import eu.europa.ted.eforms.sdk.SdkConstants.SdkResource;
 import eu.europa.ted.eforms.sdk.SdkVersion;
 
 /**
- * REST API implementation for download of SDK related resources.
+ * REST API implementation for download of SDK related resources. The downloads of SDK files run in
+ * the configured execution mode, see {@link RequestExecutionService}.
  */
 @RestController
 @RequestMapping(value = "/sdk")
-public class SdkRestController implements AsyncConfigurer {
+public class SdkRestController {
   private Path eformsSdkDir;
 
   @Value("${eforms.sdk.versions}")
@@ -36,6 +36,9 @@ public class SdkRestController implements AsyncConfigurer {
   @Autowired
   private SdkService sdkService;
 
+  @Autowired
+  private RequestExecutionService requestExecutionService;
+
   public SdkRestController(@Value("${eforms.sdk.path}") final String eformsSdkDir,
       @Value("${eforms.sdk.versions}") final List<String> supportedSdks) {
     Validate.notEmpty(eformsSdkDir, "Undefined eForms SDK directory");
@@ -82,9 +85,10 @@ public class SdkRestController implements AsyncConfigurer {
    */
   @RequestMapping(value = "/{sdkVersion}/basic-meta-data", method = RequestMethod.GET,
       produces = SdkService.MIME_TYPE_JSON)
-  public void serveFieldsJson(final HttpServletResponse response,
-      final @PathVariable(value = "sdkVersion") String sdkVersion) {
-    sdkService.serveSdkBasicMetadata(response, new SdkVersion(sdkVersion));
+  public WebAsyncTask<Void> serveFieldsJson(final HttpServletResponse response,
+      final @PathVariable(value = "sdkVersion") String sdkVersion) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> sdkService.serveSdkBasicMetadata(res, new SdkVersion(sdkVersion)));
   }
 
   /**
@@ -92,12 +96,13 @@ public class SdkRestController implements AsyncConfigurer {
    */
   @RequestMapping(value = "/{sdkVersion}/notice-types/{noticeId}", method = RequestMethod.GET,
       produces = SdkService.MIME_TYPE_JSON)
-  public void serveNoticeTypeJson(final HttpServletResponse response,
+  public WebAsyncTask<Void> serveNoticeTypeJson(final HttpServletResponse response,
       @PathVariable(value = "sdkVersion") final String sdkVersion,
-      @PathVariable(value = "noticeId") final String noticeId) {
+      @PathVariable(value = "noticeId") final String noticeId) throws Exception {
     final String filenameForDownload = String.format("%s.json", noticeId);
-    sdkService.serveSdkJsonFile(response, new SdkVersion(sdkVersion), SdkResource.NOTICE_TYPES,
-        filenameForDownload);
+    return requestExecutionService.execute(response,
+        res -> sdkService.serveSdkJsonFile(res, new SdkVersion(sdkVersion),
+            SdkResource.NOTICE_TYPES, filenameForDownload));
   }
 
   /**
@@ -105,14 +110,14 @@ public class SdkRestController implements AsyncConfigurer {
    */
   @RequestMapping(value = "/{sdkVersion}/translations/{langCode}.json", method = RequestMethod.GET,
       produces = SdkService.MIME_TYPE_JSON)
-  public void serveTranslationsFields(final HttpServletResponse response,
+  public WebAsyncTask<Void> serveTranslationsFields(final HttpServletResponse response,
       @PathVariable(value = "sdkVersion") final String sdkVersion,
-      @PathVariable(value = "langCode") final String langCode)
-      throws ParserConfigurationException, SAXException, IOException {
+      @PathVariable(value = "langCode") final String langCode) throws Exception {
     final Language lang = Language.valueOfFromLocale(langCode);
     final String filenameForDownload = String.format("i18n_%s.xml", lang.getLocale().getLanguage());
-    SdkService.serveTranslations(response, new SdkVersion(sdkVersion), eformsSdkDir, langCode,
-        filenameForDownload);
+    return requestExecutionService.execute(response,
+        res -> SdkService.serveTranslations(res, new SdkVersion(sdkVersion), eformsSdkDir,
+            langCode, filenameForDownload));
   }
 
 }
@@ -3,35 +3,120 @@ package eu.europa.ted.eforms.noticeeditor.controller;
 import java.util.Optional;
 import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CsvValidationMode;
+import eu.europa.ted.eforms.noticeeditor.service.RequestExecutionService;
 import eu.europa.ted.eforms.noticeeditor.service.SdkService;
 import eu.europa.ted.eforms.noticeeditor.service.XmlWriteService;
 
 /**
- * REST API implementation for download of SDK related resources.
+ * REST API implementation for download of SDK related resources. The work runs in the configured
+ * execution mode, see {@link RequestExecutionService}.
  */
 @RestController
 @RequestMapping(value = "/xml")
-public class XmlRestController implements AsyncConfigurer {
+public class XmlRestController {
 
   @Autowired
   private XmlWriteService xmlService;
 
+  @Autowired
+  private RequestExecutionService requestExecutionService;
+
   /**
    * Save: Takes notice as JSON and builds notice XML. The SDK version is in the notice metadata.
    */
   @RequestMapping(value = "/notice/save/validation/none", method = RequestMethod.POST,
       produces = SdkService.MIME_TYPE_XML, consumes = SdkService.MIME_TYPE_JSON)
-  public void saveNotice(final HttpServletResponse response, final @RequestBody String noticeJson)
-      throws Exception {
+  public WebAsyncTask<Void> saveNotice(final HttpServletResponse response,
+      final @RequestBody String noticeJson) throws Exception {
     // Enriches the XML for human readability but it becomes invalid.
     // Also adds .dot files in target.
     final boolean debug = false;
-    xmlService.saveNoticeAsXml(Optional.of(response), noticeJson, debug);
+    return requestExecutionService.execute(response,
+        res -> xmlService.saveNoticeAsXml(Optional.of(res), noticeJson, debug));
+  }
+
+  /**
+   * Save: Takes a JSON patch of the notice visual model and builds notice XML, only the changed
+   * sections are rebuilt. The full notice must have been saved before (409 otherwise).
+   */
+  @RequestMapping(value = "/notice/{noticeUuid}/save/patch", method = RequestMethod.POST,
+      produces = SdkService.MIME_TYPE_XML, consumes = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> saveNoticePatch(final HttpServletResponse response,
+      @PathVariable(value = "noticeUuid") final String noticeUuid,
+      final @RequestBody String patchJson) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.saveNoticePatchAsXml(Optional.of(res), noticeUuid, patchJson));
+  }
+
+  /**
+   * Save: Like the save by patch but responds with the XSD validation report (JSON). Only the
+   * changed sections are validated again, an empty patch [] validates the saved notice.
+   */
+  @RequestMapping(value = "/notice/{noticeUuid}/save/patch/validation/xsd",
+      method = RequestMethod.POST, produces = SdkService.MIME_TYPE_JSON,
+      consumes = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> saveNoticePatchAndXsdValidate(final HttpServletResponse response,
+      @PathVariable(value = "noticeUuid") final String noticeUuid,
+      final @RequestBody String patchJson) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.validatePatchUsingXsd(Optional.of(res), noticeUuid, patchJson));
+  }
+
+  /**
+   * Load: responds with the revisions of a saved notice (JSON), see the notice store.
+   */
+  @RequestMapping(value = "/notice/{noticeUuid}/revisions", method = RequestMethod.GET,
+      produces = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> getNoticeRevisions(final HttpServletResponse response,
+      @PathVariable(value = "noticeUuid") final String noticeUuid) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.serveNoticeRevisions(res, noticeUuid));
+  }
+
+  /**
+   * Load: responds with the visual model (JSON) of a saved notice, for editing. The revision is a
+   * number or "latest".
+   */
+  @RequestMapping(value = "/notice/{noticeUuid}/revision/{revision}/visual",
+      method = RequestMethod.GET, produces = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> getNoticeRevisionVisualModel(final HttpServletResponse response,
+      @PathVariable(value = "noticeUuid") final String noticeUuid,
+      @PathVariable(value = "revision") final String revision) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.serveNoticeRevision(res, noticeUuid, revision, false));
+  }
+
+  /**
+   * Load: responds with the XML of a saved notice as it was built. The revision is a number or
+   * "latest".
+   */
+  @RequestMapping(value = "/notice/{noticeUuid}/revision/{revision}/xml",
+      method = RequestMethod.GET, produces = SdkService.MIME_TYPE_XML)
+  public WebAsyncTask<Void> getNoticeRevisionXml(final HttpServletResponse response,
+      @PathVariable(value = "noticeUuid") final String noticeUuid,
+      @PathVariable(value = "revision") final String revision) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.serveNoticeRevision(res, noticeUuid, revision, true));
+  }
+
+  /**
+   * Import: Takes a notice XML and responds with its visual model (JSON), for editing. The SDK
+   * version is read from the XML.
+   */
+  @RequestMapping(value = "/notice/import", method = RequestMethod.POST,
+      produces = SdkService.MIME_TYPE_JSON, consumes = SdkService.MIME_TYPE_XML)
+  public WebAsyncTask<Void> importNotice(final HttpServletResponse response,
+      final @RequestBody byte[] noticeXml) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.importNoticeXml(res, noticeXml));
   }
 
   /**
@@ -40,10 +125,11 @@ public class XmlRestController implements AsyncConfigurer {
    */
   @RequestMapping(value = "/notice/save/validation/xsd", method = RequestMethod.POST,
       produces = SdkService.MIME_TYPE_XML, consumes = SdkService.MIME_TYPE_JSON)
-  public void saveNoticeAndXsdValidate(final HttpServletResponse response,
+  public WebAsyncTask<Void> saveNoticeAndXsdValidate(final HttpServletResponse response,
       final @RequestBody String noticeJson) throws Exception {
     final boolean debug = false;
-    xmlService.validateUsingXsd(Optional.of(response), noticeJson, debug);
+    return requestExecutionService.execute(response,
+        res -> xmlService.validateUsingXsd(Optional.of(res), noticeJson, debug));
   }
 
   /**
@@ -53,9 +139,73 @@ public class XmlRestController implements AsyncConfigurer {
    */
   @RequestMapping(value = "/notice/save/validation/cvs", method = RequestMethod.POST,
       produces = SdkService.MIME_TYPE_XML, consumes = SdkService.MIME_TYPE_JSON)
-  public void saveNoticeAndCvsValidate(final HttpServletResponse response,
+  public WebAsyncTask<Void> saveNoticeAndCvsValidate(final HttpServletResponse response,
       final @RequestBody String noticeJson) throws Exception {
     final boolean debug = false;
-    xmlService.validateUsingCvs(Optional.of(response), noticeJson, debug);
+    return requestExecutionService.execute(response,
+        res -> xmlService.validateUsingCvs(Optional.of(res), noticeJson, debug));
+  }
+
+  /**
+   * Save: Takes notice as JSON and builds notice XML. The notice XML is validated using the remote
+   * CVS service, responds with a JSON report of the failed asserts instead of the SVRL.
+   */
+  @RequestMapping(value = "/notice/save/validation/cvs/report", method = RequestMethod.POST,
+      produces = SdkService.MIME_TYPE_JSON, consumes = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> saveNoticeAndCvsValidateAsJsonReport(final HttpServletResponse response,
+      final @RequestBody String noticeJson) throws Exception {
+    final boolean debug = false;
+    return requestExecutionService.execute(response,
+        res -> xmlService.validateUsingCvsAsJsonReport(Optional.of(res), noticeJson, debug));
+  }
+
+  /**
+   * Save: Takes notice as JSON and builds notice XML. The SDK version is in the notice metadata.
+   * The notice XML is validated locally using the schematron of the SDK (no network). The optional
+   * mode is "static" (default) or "dynamic".
+   */
+  @RequestMapping(value = "/notice/save/validation/schematron", method = RequestMethod.POST,
+      produces = SdkService.MIME_TYPE_XML, consumes = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> saveNoticeAndSchematronValidate(final HttpServletResponse response,
+      final @RequestBody String noticeJson,
+      @RequestParam(value = "mode", required = false) final String mode) throws Exception {
+    final boolean debug = false;
+    return requestExecutionService.execute(response,
+        res -> xmlService.validateUsingSchematron(Optional.of(res), noticeJson,
+            CsvValidationMode.fromTextOpt(mode), debug));
+  }
+
+  /**
+   * Save: Takes notice as JSON and builds notice XML, then submits it for validation by the remote
+   * CVS service without waiting for the result. Responds with the job (JSON), the job id is used to
+   * poll for the result.
+   */
+  @RequestMapping(value = "/notice/save/validation/cvs/async", method = RequestMethod.POST,
+      produces = SdkService.MIME_TYPE_JSON, consumes = SdkService.MIME_TYPE_JSON)
+  public WebAsyncTask<Void> saveNoticeAndCvsValidateAsync(final HttpServletResponse response,
+      final @RequestBody String noticeJson) throws Exception {
+    final boolean debug = false;
+    return requestExecutionService.execute(response,
+        res -> xmlService.submitCvsValidation(Optional.of(res), noticeJson, debug));
+  }
+
+  /**
+   * Polling: responds with the state of an asynchronous CVS validation job (JSON).
+   */
+  @RequestMapping(value = "/notice/validation/cvs/job/{jobId}", method = RequestMethod.GET,
+      produces = SdkService.MIME_TYPE_JSON)
+  public void getCvsValidationJob(final HttpServletResponse response,
+      @PathVariable(value = "jobId") final String jobId) throws Exception {
+    xmlService.serveCvsValidationJob(response, jobId);
+  }
+
+  /**
+   * Polling: responds with the SVRL of an asynchronous CVS validation job once it is done.
+   */
+  @RequestMapping(value = "/notice/validation/cvs/job/{jobId}/svrl", method = RequestMethod.GET)
+  public WebAsyncTask<Void> getCvsValidationJobSvrl(final HttpServletResponse response,
+      @PathVariable(value = "jobId") final String jobId) throws Exception {
+    return requestExecutionService.execute(response,
+        res -> xmlService.serveCvsValidationJobSvrl(res, jobId));
   }
 }
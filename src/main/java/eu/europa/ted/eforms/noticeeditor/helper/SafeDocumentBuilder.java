@@ -13,6 +13,15 @@ import org.slf4j.LoggerFactory;
 public class SafeDocumentBuilder {
   private static final Logger logger = LoggerFactory.getLogger(SafeDocumentBuilder.class);
 
+  /**
+   * One builder per thread and per combination of settings (doctype x namespace aware). Building a
+   * new factory goes through the service loader and sets up all the security features, this is
+   * surprisingly expensive under concurrency. The builders are reset before being handed out, the
+   * reset keeps the factory settings (security features included).
+   */
+  private static final ThreadLocal<DocumentBuilder[]> threadLocalBuilders =
+      ThreadLocal.withInitial(() -> new DocumentBuilder[4]);
+
   private SafeDocumentBuilder() {
     throw new AssertionError("Utility class.");
   }
@@ -27,6 +36,40 @@ public class SafeDocumentBuilder {
     return buildSafeDocumentBuilder(true, namespaceAware);
   }
 
+  /**
+   * Same as {@link #buildSafeDocumentBuilderAllowDoctype(boolean)} but the builder is reused for
+   * the current thread. Do not keep a reference to it or share it with other threads.
+   */
+  public static DocumentBuilder getThreadLocalSafeDocumentBuilderAllowDoctype(
+      final boolean namespaceAware) throws ParserConfigurationException {
+    return getThreadLocalSafeDocumentBuilder(false, namespaceAware);
+  }
+
+  /**
+   * Same as {@link #buildSafeDocumentBuilderStrict(boolean)} but the builder is reused for the
+   * current thread. Do not keep a reference to it or share it with other threads.
+   */
+  public static DocumentBuilder getThreadLocalSafeDocumentBuilderStrict(
+      final boolean namespaceAware) throws ParserConfigurationException {
+    return getThreadLocalSafeDocumentBuilder(true, namespaceAware);
+  }
+
+  private static DocumentBuilder getThreadLocalSafeDocumentBuilder(
+      final boolean disallowDoctypeDecl, final boolean namespaceAware)
+      throws ParserConfigurationException {
+    final DocumentBuilder[] builders = threadLocalBuilders.get();
+    final int index = (disallowDoctypeDecl ? 2 : 0) + (namespaceAware ? 1 : 0);
+    final DocumentBuilder existing = builders[index];
+    if (existing != null) {
+      // Reset to the state it had when it was created by the secure factory.
+      existing.reset();
+      return existing;
+    }
+    final DocumentBuilder db = buildSafeDocumentBuilder(disallowDoctypeDecl, namespaceAware);
+    builders[index] = db;
+    return db;
+  }
+
   private static DocumentBuilder buildSafeDocumentBuilder(final boolean disallowDoctypeDecl,
       final boolean namespaceAware) throws ParserConfigurationException {
     // https://cheatsheetseries.owasp.org/cheatsheets/XML_External_Entity_Prevention_Cheat_Sheet.html#java
@@ -0,0 +1,113 @@
+package eu.europa.ted.eforms.noticeeditor.helper;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Secure SAX parser, same security setup as {@link SafeDocumentBuilder}.
+ */
+public class SafeSaxParser {
+  private static final Logger logger = LoggerFactory.getLogger(SafeSaxParser.class);
+
+  /**
+   * One parser per thread and per combination of settings (doctype x namespace aware).
+   */
+  private static final ThreadLocal<SAXParser[]> threadLocalParsers =
+      ThreadLocal.withInitial(() -> new SAXParser[4]);
+
+  private SafeSaxParser() {
+    throw new AssertionError("Utility class.");
+  }
+
+  public static SAXParser buildSafeSaxParserAllowDoctype(final boolean namespaceAware)
+      throws ParserConfigurationException, SAXException {
+    return buildSafeSaxParser(false, namespaceAware);
+  }
+
+  public static SAXParser buildSafeSaxParserStrict(final boolean namespaceAware)
+      throws ParserConfigurationException, SAXException {
+    return buildSafeSaxParser(true, namespaceAware);
+  }
+
+  /**
+   * Same as {@link #buildSafeSaxParserAllowDoctype(boolean)} but the parser is reused for the
+   * current thread. Do not keep a reference to it or share it with other threads.
+   */
+  public static SAXParser getThreadLocalSafeSaxParserAllowDoctype(final boolean namespaceAware)
+      throws ParserConfigurationException, SAXException {
+    return getThreadLocalSafeSaxParser(false, namespaceAware);
+  }
+
+  /**
+   * Same as {@link #buildSafeSaxParserStrict(boolean)} but the parser is reused for the current
+   * thread. Do not keep a reference to it or share it with other threads.
+   */
+  public static SAXParser getThreadLocalSafeSaxParserStrict(final boolean namespaceAware)
+      throws ParserConfigurationException, SAXException {
+    return getThreadLocalSafeSaxParser(true, namespaceAware);
+  }
+
+  private static SAXParser getThreadLocalSafeSaxParser(final boolean disallowDoctypeDecl,
+      final boolean namespaceAware) throws ParserConfigurationException, SAXException {
+    final SAXParser[] parsers = threadLocalParsers.get();
+    final int index = (disallowDoctypeDecl ? 2 : 0) + (namespaceAware ? 1 : 0);
+    final SAXParser existing = parsers[index];
+    if (existing != null) {
+      // Reset to the state it had when it was created by the secure factory.
+      // The reset drops properties set on the parser itself, they are set again.
+      existing.reset();
+      setParserProperties(existing);
+      return existing;
+    }
+    final SAXParser parser = buildSafeSaxParser(disallowDoctypeDecl, namespaceAware);
+    parsers[index] = parser;
+    return parser;
+  }
+
+  private static void setParserProperties(final SAXParser parser) throws SAXException {
+    parser.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    parser.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+  }
+
+  private static SAXParser buildSafeSaxParser(final boolean disallowDoctypeDecl,
+      final boolean namespaceAware) throws ParserConfigurationException, SAXException {
+    // https://cheatsheetseries.owasp.org/cheatsheets/XML_External_Entity_Prevention_Cheat_Sheet.html#saxparserfactory
+    final SAXParserFactory spf = SAXParserFactory.newDefaultInstance();
+    String feature = null;
+    try {
+      spf.setNamespaceAware(namespaceAware);
+      spf.setValidating(false);
+      spf.setXIncludeAware(false);
+
+      feature = "http://apache.org/xml/features/disallow-doctype-decl";
+      spf.setFeature(feature, disallowDoctypeDecl);
+
+      feature = "http://xml.org/sax/features/external-general-entities";
+      spf.setFeature(feature, false);
+
+      feature = "http://xml.org/sax/features/external-parameter-entities";
+      spf.setFeature(feature, false);
+
+      feature = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+      spf.setFeature(feature, false);
+
+      feature = XMLConstants.FEATURE_SECURE_PROCESSING;
+      spf.setFeature(feature, true);
+
+      final SAXParser parser = spf.newSAXParser();
+      setParserProperties(parser);
+      return parser;
+    } catch (ParserConfigurationException | SAXException e) {
+      // This should catch a failed setFeature feature
+      logger.info(
+          "{} was thrown. The feature '{}' is probably not supported by your XML processor.",
+          e.getClass().getSimpleName(), feature);
+      throw e;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package eu.europa.ted.eforms.noticeeditor.helper.notice;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -52,11 +53,29 @@ public class FieldsAndNodes {
   private final Map<String, JsonNode> fieldById;
   private final Map<String, JsonNode> nodeById;
 
+  /**
+   * Node tables by node index, precomputed as they are used for each field of each notice.
+   */
+  private final Map<String, Integer> nodeIndexById;
+  private final String[] nodeIdByIndex;
+  private final Boolean[] nodeRepeatableByIndex;
+
+  /**
+   * The ancestors of each node by node index, the parent first, up to ND-Root (included). The
+   * chain stops early if a parent is unknown.
+   */
+  private final int[][] nodeAncestorsByIndex;
+
   /**
    * The SDK version this data is associated to.
    */
   private final SdkVersion sdkVersion;
 
+  /**
+   * Built on first use, only the XML import needs it.
+   */
+  private volatile NoticeXpathTrie xpathTrie;
+
   /**
    * This constructor is meant to be used to read from fields.json data.
    *
@@ -95,6 +114,12 @@ public class FieldsAndNodes {
 
     Validate.notEmpty(fieldById);
     Validate.notEmpty(nodeById);
+
+    this.nodeIndexById = new HashMap<>(nodeById.size() * 2);
+    this.nodeIdByIndex = new String[nodeById.size()];
+    this.nodeRepeatableByIndex = new Boolean[nodeById.size()];
+    this.nodeAncestorsByIndex = new int[nodeById.size()][];
+    buildNodeTables();
   }
 
   /**
@@ -108,6 +133,43 @@ public class FieldsAndNodes {
     this.fieldById = fieldById;
     this.nodeById = nodeById;
     this.sdkVersion = sdkVersion;
+
+    this.nodeIndexById = new HashMap<>(nodeById.size() * 2);
+    this.nodeIdByIndex = new String[nodeById.size()];
+    this.nodeRepeatableByIndex = new Boolean[nodeById.size()];
+    this.nodeAncestorsByIndex = new int[nodeById.size()][];
+    buildNodeTables();
+  }
+
+  private void buildNodeTables() {
+    int index = 0;
+    for (final Map.Entry<String, JsonNode> entry : nodeById.entrySet()) {
+      nodeIndexById.put(entry.getKey(), index);
+      nodeIdByIndex[index] = entry.getKey();
+      // Null if missing, the strict getter fails on access like before.
+      nodeRepeatableByIndex[index] = entry.getValue().has(NODE_REPEATABLE)
+          ? isNodeRepeatableStatic(entry.getValue()) : null;
+      index++;
+    }
+    final int[] chain = new int[nodeIdByIndex.length];
+    for (int i = 0; i < nodeIdByIndex.length; i++) {
+      int length = 0;
+      String nodeId = nodeIdByIndex[i];
+      while (!ND_ROOT.equals(nodeId)) {
+        final Optional<String> parentIdOpt =
+            JsonUtils.getTextOpt(nodeById.get(nodeId), NODE_PARENT_NODE_ID);
+        final Integer parentIndex =
+            parentIdOpt.isPresent() ? nodeIndexById.get(parentIdOpt.get()) : null;
+        if (parentIndex == null) {
+          break;
+        }
+        Validate.isTrue(length < chain.length, "Cycle in the parents of nodeId=%s",
+            nodeIdByIndex[i]);
+        chain[length++] = parentIndex;
+        nodeId = parentIdOpt.get();
+      }
+      nodeAncestorsByIndex[i] = Arrays.copyOf(chain, length);
+    }
   }
 
   public JsonNode getFieldById(final String fieldId) {
@@ -198,7 +260,57 @@ public class FieldsAndNodes {
   }
 
   public boolean isNodeRepeatable(final String nodeId) {
-    return isNodeRepeatableStatic(this.getNodeById(nodeId));
+    return isNodeRepeatableByIndex(getNodeIndex(nodeId));
+  }
+
+  /**
+   * @return The index of the node in the node tables, see {@link #getNodeAncestorIndexes(String)}
+   */
+  public int getNodeIndex(final String nodeId) {
+    final Integer index = nodeIndexById.get(nodeId);
+    Validate.notNull(index, "Node not found for id=%s", nodeId);
+    return index;
+  }
+
+  public int getNodeCount() {
+    return nodeIdByIndex.length;
+  }
+
+  public String getNodeIdByIndex(final int nodeIndex) {
+    return nodeIdByIndex[nodeIndex];
+  }
+
+  public boolean isNodeRepeatableByIndex(final int nodeIndex) {
+    final Boolean repeatable = nodeRepeatableByIndex[nodeIndex];
+    return repeatable != null ? repeatable
+        : isNodeRepeatableStatic(getNodeById(nodeIdByIndex[nodeIndex]));
+  }
+
+  /**
+   * @return The indexes of the ancestors of the node, the parent first, up to ND-Root. Do not
+   *         modify the returned array, it is shared
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "EI_EXPOSE_REP",
+      justification = "Read only table, not copied as this is called for each field.")
+  public int[] getNodeAncestorIndexes(final String nodeId) {
+    return nodeAncestorsByIndex[getNodeIndex(nodeId)];
+  }
+
+  /**
+   * @return The trie of the relative xpaths of the nodes and fields, built on first use
+   */
+  public NoticeXpathTrie getXpathTrie() {
+    NoticeXpathTrie trie = xpathTrie;
+    if (trie == null) {
+      synchronized (this) {
+        trie = xpathTrie;
+        if (trie == null) {
+          trie = new NoticeXpathTrie(this, fieldById.values());
+          xpathTrie = trie;
+        }
+      }
+    }
+    return trie;
   }
 
   public boolean isNodeRepeatable(final Optional<String> nodeIdOpt) {
@@ -0,0 +1,13 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+/**
+ * The patch of the visual model is invalid, it was rejected before the session changed. The client
+ * can fix the patch and send it again.
+ */
+@SuppressWarnings("serial")
+public class InvalidNoticePatchException extends IllegalArgumentException {
+
+  public InvalidNoticePatchException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,331 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.lang3.Validate;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+
+/**
+ * Maps the locations of validation errors (CVS or XSD) to the items of the visual model, so that
+ * the front-end can show an error next to the field without sending the notice again.
+ *
+ * <p>
+ * While the physical model is built, each XML element of a node or field (or the attribute of an
+ * attribute field) keeps the conceptual item it was built from (DOM user data, this is not
+ * serialized). An error location is resolved to an XML node of the document, without evaluating
+ * xpath, then the items of the closest element and of its ancestors give the content ids and the
+ * repetition counts of the visual model. The XML elements which are not a node or field, like the
+ * intermediary elements of an xpath, are mapped to the closest item above them.
+ * </p>
+ */
+public class NoticeErrorLocator {
+
+  /**
+   * Key of the DOM user data holding the conceptual item of an XML node.
+   */
+  static final String USER_DATA_KEY = "editorConceptItem";
+
+  static final String KEY_VISUAL_LOCATION = "visualLocation";
+  static final String KEY_LOCATION_ID = "locationId";
+  private static final String KEY_FIELD_ID = "fieldId";
+  private static final String KEY_CONTENT_PATH = "contentPath";
+
+  private final Document document;
+
+  /**
+   * @param document The document of the physical model, see {@link PhysicalModel#getDomDocument()}
+   */
+  public NoticeErrorLocator(final Document document) {
+    Validate.notNull(document);
+    this.document = document;
+  }
+
+  /**
+   * Called while the physical model is built.
+   *
+   * @param xmlNode The XML element of a node or field, or the attribute of an attribute field
+   */
+  static void recordConceptItem(final Node xmlNode, final ConceptTreeItem item) {
+    if (xmlNode.getUserData(USER_DATA_KEY) == null) {
+      // A reused element keeps the item it was built for.
+      xmlNode.setUserData(USER_DATA_KEY, item, null);
+    }
+  }
+
+  /**
+   * Adds the visual location to the failed asserts of a CVS JSON report, found by their location.
+   * The id of the field, else of the closest node, is also put as the location id of the failed
+   * assert, both come from the same visual location.
+   */
+  public void putCvsReportLocations(final ObjectNode report) {
+    for (final JsonNode item : report.path("failedAsserts")) {
+      final String location = item.path("location").asText("");
+      if (!location.isEmpty()) {
+        findNode(location).flatMap(this::locate).ifPresent(visualLocation -> {
+          final JsonNode locationId = visualLocation.has(KEY_FIELD_ID)
+              ? visualLocation.get(KEY_FIELD_ID) : visualLocation.get(VisualModel.VIS_NODE_ID);
+          if (locationId != null) {
+            ((ObjectNode) item).set(KEY_LOCATION_ID, locationId);
+          }
+          ((ObjectNode) item).set(KEY_VISUAL_LOCATION, visualLocation);
+        });
+      }
+    }
+  }
+
+  /**
+   * Adds the visual location to the errors of an XSD report. The errors of a DOM validation have
+   * a path, the errors of a text validation only have a line and column: the text is read once for
+   * all the errors, in parallel with the document.
+   *
+   * @param xsdReport The XSD report, see the notice validation service
+   * @param noticeXmlOpt The XML text which was validated, it must have been written from the
+   *        document, empty if the errors have paths
+   */
+  public void putXsdReportLocations(final ObjectNode xsdReport,
+      final Optional<String> noticeXmlOpt) throws XMLStreamException {
+    final List<ObjectNode> errorsAtPositions = new ArrayList<>();
+    for (final JsonNode error : xsdReport.path("xsdErrors")) {
+      final String path = error.path("path").asText("");
+      if (!path.isEmpty()) {
+        findNode(path).flatMap(this::locate).ifPresent(
+            visualLocation -> ((ObjectNode) error).set(KEY_VISUAL_LOCATION, visualLocation));
+      } else if (error.path("lineNumber").asInt(-1) > 0) {
+        errorsAtPositions.add((ObjectNode) error);
+      }
+    }
+    if (!errorsAtPositions.isEmpty() && noticeXmlOpt.isPresent()) {
+      putLocationsAtPositions(errorsAtPositions, noticeXmlOpt.get());
+    }
+  }
+
+  /**
+   * @param path An absolute path with positions, like an SVRL location
+   *        "/ContractNotice/cac:ProcurementProject[1]/cbc:ID[2]", the position is 1 if it is
+   *        missing, the last step can be an attribute
+   * @return The XML element or attribute, empty if it is not in the document
+   */
+  public Optional<Node> findNode(final String path) {
+    final List<String> steps = NoticeXpathTrie.splitPath(path);
+    Element elem = document.getDocumentElement();
+    if (steps.isEmpty() || elem == null) {
+      return Optional.empty();
+    }
+    for (int i = 1; i < steps.size(); i++) {
+      final String step = steps.get(i);
+      final String name = NoticeXpathTrie.getStepName(step);
+      if (name.startsWith("@")) {
+        if (i != steps.size() - 1) {
+          return Optional.empty();
+        }
+        return Optional.ofNullable(findAttribute(elem, name.substring(1)));
+      }
+      elem = findChild(elem, name, getPosition(step));
+      if (elem == null) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(elem);
+  }
+
+  /**
+   * @param xmlNode An XML element or attribute of the document
+   * @return The visual location of the closest conceptual item: its content id, the field id if
+   *         it is a field, the SDK node id of the closest node, and the content ids and counts
+   *         from the top to the item, empty if no item is found
+   */
+  public Optional<ObjectNode> locate(final Node xmlNode) {
+    final List<ConceptTreeItem> items = new ArrayList<>();
+    Node current = xmlNode;
+    if (xmlNode.getNodeType() == Node.ATTRIBUTE_NODE) {
+      addItem(items, xmlNode);
+      current = ((Attr) xmlNode).getOwnerElement();
+    }
+    for (; current != null && current.getNodeType() == Node.ELEMENT_NODE;
+        current = current.getParentNode()) {
+      addItem(items, current);
+    }
+    if (items.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final ObjectNode visualLocation = JsonUtils.createObjectNode();
+    final ConceptTreeItem closest = items.get(0);
+    visualLocation.put(VisualModel.VIS_CONTENT_ID, closest.getIdUnique());
+    if (closest instanceof ConceptTreeField) {
+      visualLocation.put(KEY_FIELD_ID, ((ConceptTreeField) closest).getFieldId());
+    }
+    for (final ConceptTreeItem item : items) {
+      if (item instanceof ConceptTreeNode) {
+        visualLocation.put(VisualModel.VIS_NODE_ID, ((ConceptTreeNode) item).getNodeId());
+        break;
+      }
+    }
+    final ArrayNode contentPath = visualLocation.putArray(KEY_CONTENT_PATH);
+    for (int i = items.size() - 1; i >= 0; i--) {
+      final ConceptTreeItem item = items.get(i);
+      final ObjectNode step = contentPath.addObject();
+      step.put(VisualModel.VIS_CONTENT_ID, item.getIdUnique());
+      step.put(VisualModel.VIS_CONTENT_COUNT, item.getCounter());
+    }
+    return Optional.of(visualLocation);
+  }
+
+  /**
+   * Adds the item of the XML node, the nodes generated for the conceptual model are not in the
+   * visual model and are skipped.
+   */
+  private static void addItem(final List<ConceptTreeItem> items, final Node xmlNode) {
+    final Object item = xmlNode.getUserData(USER_DATA_KEY);
+    if (item instanceof ConceptTreeItem
+        && !((ConceptTreeItem) item).getIdUnique().endsWith(VisualModel.SUFFIX_GENERATED)) {
+      items.add((ConceptTreeItem) item);
+    }
+  }
+
+  /**
+   * Reads the XML text once, the elements of the document are followed in document order. An
+   * error is located at the innermost element open at its position: the parsers report the
+   * errors of an element at the end of its start tag or of its end tag.
+   */
+  private void putLocationsAtPositions(final List<ObjectNode> errors, final String noticeXml)
+      throws XMLStreamException {
+    errors.sort(Comparator.comparingInt((ObjectNode error) -> error.get("lineNumber").asInt())
+        .thenComparingInt(error -> error.path("columnNumber").asInt()));
+
+    final List<Element> openElements = new ArrayList<>();
+    Node lastChild = null; // The last child element of the innermost open element.
+    int index = 0;
+    final XMLStreamReader reader =
+        NoticeXmlImporter.XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(noticeXml));
+    try {
+      while (reader.hasNext() && index < errors.size()) {
+        final int event = reader.next();
+        final Location location = reader.getLocation();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          index = putLocationsBefore(errors, index, location, false, openElements);
+          final Element elem = openElements.isEmpty() ? document.getDocumentElement()
+              : nextElement(lastChild == null ? openElements.get(openElements.size() - 1)
+                  .getFirstChild() : lastChild.getNextSibling());
+          if (elem == null || !elem.getTagName().equals(getQualifiedName(reader))) {
+            break; // The text was not written from the document.
+          }
+          openElements.add(elem);
+          lastChild = null;
+          index = putLocationsBefore(errors, index, location, true, openElements);
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          index = putLocationsBefore(errors, index, location, true, openElements);
+          lastChild = openElements.remove(openElements.size() - 1);
+        } else {
+          index = putLocationsBefore(errors, index, location, false, openElements);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @param inclusive True if the errors at the location are also put
+   * @return The index of the next error
+   */
+  private int putLocationsBefore(final List<ObjectNode> errors, final int startIndex,
+      final Location location, final boolean inclusive, final List<Element> openElements) {
+    int index = startIndex;
+    while (index < errors.size()) {
+      final ObjectNode error = errors.get(index);
+      final int line = error.get("lineNumber").asInt();
+      final int column = error.path("columnNumber").asInt();
+      final int compare = line != location.getLineNumber()
+          ? Integer.compare(line, location.getLineNumber())
+          : Integer.compare(column, location.getColumnNumber());
+      if (compare > 0 || compare == 0 && !inclusive) {
+        break;
+      }
+      if (!openElements.isEmpty()) {
+        locate(openElements.get(openElements.size() - 1)).ifPresent(
+            visualLocation -> error.set(KEY_VISUAL_LOCATION, visualLocation));
+      }
+      index++;
+    }
+    return index;
+  }
+
+  private static String getQualifiedName(final XMLStreamReader reader) {
+    final String prefix = reader.getPrefix();
+    return prefix == null || prefix.isEmpty() ? reader.getLocalName()
+        : prefix + ":" + reader.getLocalName();
+  }
+
+  /**
+   * @return The node if it is an element, else its next element sibling, null if there is none
+   */
+  private static Element nextElement(final Node node) {
+    Node current = node;
+    while (current != null && current.getNodeType() != Node.ELEMENT_NODE) {
+      current = current.getNextSibling();
+    }
+    return (Element) current;
+  }
+
+  /**
+   * @param name The tag, "*:" or a different prefix are matched by local name
+   * @param position The position among the children of the same name, starting at 1
+   */
+  private static Element findChild(final Element parent, final String name, final int position) {
+    final boolean anyPrefix = name.startsWith("*:") || name.indexOf(':') < 0;
+    final String localName = NoticeXpathTrie.getLocalName(name);
+    int count = 0;
+    for (Element child = nextElement(parent.getFirstChild()); child != null;
+        child = nextElement(child.getNextSibling())) {
+      final String tag = child.getTagName();
+      if (tag.equals(name)
+          || anyPrefix && NoticeXpathTrie.getLocalName(tag).equals(localName)) {
+        count++;
+        if (count == position) {
+          return child;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static Attr findAttribute(final Element elem, final String name) {
+    final Attr attr = elem.getAttributeNode(name);
+    return attr != null ? attr : elem.getAttributeNode(NoticeXpathTrie.getLocalName(name));
+  }
+
+  /**
+   * @param step A path step like "cbc:ID[2]", other predicates are ignored
+   * @return The position of the step, 1 if there is none
+   */
+  private static int getPosition(final String step) {
+    int indexOfBracket = step.indexOf('[');
+    while (indexOfBracket >= 0) {
+      final int indexOfEnd = step.indexOf(']', indexOfBracket);
+      if (indexOfEnd < 0) {
+        break;
+      }
+      final String predicate = step.substring(indexOfBracket + 1, indexOfEnd).strip();
+      if (!predicate.isEmpty() && predicate.chars().allMatch(Character::isDigit)) {
+        return Integer.parseInt(predicate);
+      }
+      indexOfBracket = step.indexOf('[', indexOfEnd);
+    }
+    return 1;
+  }
+}
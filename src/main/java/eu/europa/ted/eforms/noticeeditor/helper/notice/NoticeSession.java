@@ -0,0 +1,323 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.XsdIncrementalValidator;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.XsdValidator;
+import eu.europa.ted.eforms.noticeeditor.sorting.NoticeXmlTagSorter;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * Keeps the models of a notice between two saves, so that a patch of the visual model only rebuilds
+ * the sections of the XML which changed.
+ *
+ * <p>
+ * The conceptual model is always rebuilt from the patched visual model, this is a cheap walk of the
+ * JSON. The physical model is rebuilt section by section (top level conceptual items, see
+ * {@link PhysicalSection}): the unchanged sections keep their XML elements, the changed sections
+ * are rebuilt and only their elements are sorted again. If sections share XML elements or the
+ * notice sub type changed, the whole physical model is rebuilt.
+ * </p>
+ *
+ * <p>
+ * With the ordered-insert strategy the elements of the sections are inserted in order as they are
+ * built, only the children of the root element are sorted afterwards, see
+ * {@link PhysicalBuildStrategy}.
+ * </p>
+ *
+ * <p>
+ * This is not thread safe, synchronize on the session when it is shared.
+ * </p>
+ */
+public class NoticeSession {
+
+  private static final Logger logger = LoggerFactory.getLogger(NoticeSession.class);
+
+  private final FieldsAndNodes fieldsAndNodes;
+  private final Map<String, JsonNode> noticeInfoBySubtype;
+  private final Map<String, JsonNode> documentInfoByType;
+  private final boolean debug;
+  private final Path sdkRootFolder;
+  private final PhysicalBuildStrategy strategy;
+
+  private ObjectNode visRoot;
+  private ConceptualModel conceptModel;
+  private PhysicalModel physicalModel;
+  private List<PhysicalSection> sections;
+  private NoticeXmlTagSorter sorter;
+  private XsdIncrementalValidator xsdValidator;
+  private Path xsdValidatorPath;
+
+  private long revision;
+  private long fullBuildCount;
+  private long incrementalBuildCount;
+  private int lastRebuiltSectionCount;
+
+  /**
+   * Builds the whole notice from the visual model.
+   *
+   * @param visRoot The visual model as JSON, it is copied
+   * @param fieldsAndNodes Information about SDK fields and nodes
+   * @param noticeInfoBySubtype Map with info about notice metadata by notice sub type
+   * @param documentInfoByType Map with info about document metadata by document type
+   * @param debug Adds special debug info to the XML, useful for humans and unit tests. Not for
+   *        production
+   * @param sdkRootFolder The folder of the downloaded SDKs
+   */
+  public NoticeSession(final ObjectNode visRoot, final FieldsAndNodes fieldsAndNodes,
+      final Map<String, JsonNode> noticeInfoBySubtype,
+      final Map<String, JsonNode> documentInfoByType, final boolean debug,
+      final Path sdkRootFolder) throws ParserConfigurationException, SAXException, IOException {
+    this(visRoot, fieldsAndNodes, noticeInfoBySubtype, documentInfoByType, debug, sdkRootFolder,
+        PhysicalBuildStrategy.APPEND_THEN_SORT);
+  }
+
+  /**
+   * Builds the whole notice from the visual model, with the passed strategy.
+   *
+   * @param strategy How the elements are put in the XSD order, also used by the later builds
+   */
+  public NoticeSession(final ObjectNode visRoot, final FieldsAndNodes fieldsAndNodes,
+      final Map<String, JsonNode> noticeInfoBySubtype,
+      final Map<String, JsonNode> documentInfoByType, final boolean debug,
+      final Path sdkRootFolder, final PhysicalBuildStrategy strategy)
+      throws ParserConfigurationException, SAXException, IOException {
+    Validate.notNull(visRoot);
+    Validate.notNull(fieldsAndNodes);
+    Validate.notNull(sdkRootFolder);
+    Validate.notNull(strategy);
+    this.fieldsAndNodes = fieldsAndNodes;
+    this.noticeInfoBySubtype = noticeInfoBySubtype;
+    this.documentInfoByType = documentInfoByType;
+    this.debug = debug;
+    this.sdkRootFolder = sdkRootFolder;
+    this.strategy = strategy;
+
+    final ObjectNode copy = visRoot.deepCopy();
+    fullBuild(copy, new VisualModel(copy).toConceptualModel(fieldsAndNodes));
+  }
+
+  public UUID getNoticeUuid() {
+    return UUID.fromString(JsonUtils.getTextStrict(visRoot, VisualModel.VIS_NOTICE_UUID));
+  }
+
+  public PhysicalModel getPhysicalModel() {
+    return physicalModel;
+  }
+
+  /**
+   * @return The current visual model as JSON text, patches included
+   */
+  public String getVisualModelJson() {
+    return visRoot.toString();
+  }
+
+  /**
+   * @return The number of patches applied since the session was created
+   */
+  public long getRevision() {
+    return revision;
+  }
+
+  public long getFullBuildCount() {
+    return fullBuildCount;
+  }
+
+  public long getIncrementalBuildCount() {
+    return incrementalBuildCount;
+  }
+
+  /**
+   * @return The number of sections rebuilt by the last build
+   */
+  public int getLastRebuiltSectionCount() {
+    return lastRebuiltSectionCount;
+  }
+
+  /**
+   * Validates the notice XML against the XSD of the SDK. Only the sections rebuilt since the last
+   * validation are validated again, see {@link XsdIncrementalValidator}.
+   *
+   * @return The XSD errors, empty if the XSD validation is not supported for the SDK version
+   */
+  public Optional<List<SAXParseException>> validateUsingXsd() throws SAXException {
+    final Optional<Path> mainXsdPathOpt = physicalModel.getMainXsdPathOpt();
+    if (mainXsdPathOpt.isEmpty()) {
+      return Optional.empty();
+    }
+    // The main XSD depends on the notice sub type which can be changed by a patch.
+    final Path mainXsdPath = mainXsdPathOpt.get();
+    if (xsdValidator == null || !mainXsdPath.equals(xsdValidatorPath)) {
+      xsdValidator = new XsdIncrementalValidator(XsdValidator.getSchema(mainXsdPath));
+      xsdValidatorPath = mainXsdPath;
+    }
+    return Optional.of(xsdValidator.validate(physicalModel.getDomDocument()));
+  }
+
+  /**
+   * @return The number of top level elements validated by the last XSD validation
+   */
+  public int getLastXsdValidatedSubtreeCount() {
+    return xsdValidator == null ? 0 : xsdValidator.getLastValidatedSubtreeCount();
+  }
+
+  /**
+   * Applies the patch to the visual model and rebuilds what changed in the physical model.
+   *
+   * @param patch A JSON patch of the visual model, see {@link VisualModelPatch}
+   * @return The updated physical model
+   * @throws InvalidNoticePatchException If the patch is invalid, the session is unchanged
+   */
+  public PhysicalModel applyPatch(final JsonNode patch)
+      throws ParserConfigurationException, SAXException, IOException {
+    // Nothing of the session is changed until the patched visual model is known to be valid.
+    final ObjectNode patchedVisRoot = visRoot.deepCopy();
+    final VisualModel visualModel;
+    final ConceptualModel patchedConceptModel;
+    try {
+      VisualModelPatch.apply(patchedVisRoot, patch);
+      visualModel = new VisualModel(patchedVisRoot);
+      for (final String key : new String[] {VisualModel.VIS_NOTICE_UUID,
+          VisualModel.VIS_SDK_VERSION}) {
+        Validate.isTrue(
+            JsonUtils.getTextStrict(visRoot, key)
+                .equals(JsonUtils.getTextStrict(patchedVisRoot, key)),
+            "The patch cannot change the %s", key);
+      }
+      patchedConceptModel = visualModel.toConceptualModel(fieldsAndNodes);
+    } catch (final IllegalArgumentException | NullPointerException e) {
+      // The strict getters of the visual model throw NullPointerException for a missing key, for
+      // example an added item without contentId.
+      throw new InvalidNoticePatchException(e.getMessage(), e);
+    }
+    if (debug) {
+      visualModel.writeDotFile(fieldsAndNodes);
+    }
+
+    final boolean incremental = sections.stream().noneMatch(PhysicalSection::isShared)
+        && conceptModel.getNoticeSubType().equals(patchedConceptModel.getNoticeSubType());
+
+    if (!incremental || !incrementalBuild(patchedConceptModel)) {
+      fullBuild(patchedVisRoot, patchedConceptModel);
+    } else {
+      this.visRoot = patchedVisRoot;
+      this.conceptModel = patchedConceptModel;
+    }
+    revision++;
+    return physicalModel;
+  }
+
+  private void fullBuild(final ObjectNode newVisRoot, final ConceptualModel newConceptModel)
+      throws ParserConfigurationException, SAXException, IOException {
+    final List<PhysicalSection> newSections = PhysicalSection.listSections(newConceptModel);
+    final boolean buildFields = true;
+    final PhysicalModel newPhysicalModel = PhysicalModel.buildPhysicalModel(newConceptModel,
+        fieldsAndNodes, noticeInfoBySubtype, documentInfoByType, debug, buildFields,
+        sdkRootFolder, Optional.of(newSections), Optional.empty(), strategy);
+
+    final SdkVersion sdkVersion = fieldsAndNodes.getSdkVersion();
+    this.sorter = new NoticeXmlTagSorter(newPhysicalModel.getXpathInst(),
+        PhysicalModel.getDocumentTypeInfo(noticeInfoBySubtype, documentInfoByType,
+            newConceptModel),
+        sdkRootFolder.resolve(sdkVersion.toStringWithoutPatch()), fieldsAndNodes);
+    this.visRoot = newVisRoot;
+    this.conceptModel = newConceptModel;
+    this.physicalModel = newPhysicalModel;
+    this.sections = newSections;
+    this.lastRebuiltSectionCount = newSections.size();
+    fullBuildCount++;
+  }
+
+  /**
+   * Rebuilds the sections which changed, the unchanged sections are found by their fingerprint.
+   *
+   * @return False if a rebuilt section shares elements with another section, the DOM is then
+   *         inconsistent and a full build is required
+   */
+  private boolean incrementalBuild(final ConceptualModel newConceptModel) {
+    final Map<String, Deque<PhysicalSection>> unchangedByFingerprint = new HashMap<>();
+    for (final PhysicalSection section : sections) {
+      unchangedByFingerprint.computeIfAbsent(section.getFingerprint(), k -> new ArrayDeque<>())
+          .add(section);
+    }
+
+    // Keep the unchanged sections, the same content can appear more than once.
+    final List<PhysicalSection> newSections = new ArrayList<>();
+    final List<PhysicalSection> rebuiltSections = new ArrayList<>();
+    for (final PhysicalSection section : PhysicalSection.listSections(newConceptModel)) {
+      final Deque<PhysicalSection> unchanged =
+          unchangedByFingerprint.get(section.getFingerprint());
+      if (unchanged != null && !unchanged.isEmpty()) {
+        newSections.add(unchanged.poll());
+      } else {
+        newSections.add(section);
+        rebuiltSections.add(section);
+      }
+    }
+
+    // Remove the elements of the sections which are gone.
+    final Element xmlRoot = physicalModel.getDomDocument().getDocumentElement();
+    for (final Deque<PhysicalSection> removed : unchangedByFingerprint.values()) {
+      for (final PhysicalSection section : removed) {
+        for (final Element elem : section.getRootElements()) {
+          xmlRoot.removeChild(elem);
+        }
+      }
+    }
+
+    final boolean buildFields = true;
+    final Optional<OrderedElementInserter> inserterOpt =
+        strategy == PhysicalBuildStrategy.ORDERED_INSERT
+            ? OrderedElementInserter.create(PhysicalModel.getDocumentTypeInfo(noticeInfoBySubtype,
+                documentInfoByType, newConceptModel), physicalModel.getMainXsdPathOpt(), true)
+            : Optional.empty();
+    for (final PhysicalSection section : rebuiltSections) {
+      PhysicalModel.buildSection(physicalModel.getDomDocument(), fieldsAndNodes, section, xmlRoot,
+          debug, buildFields, physicalModel.getXpathInst(), inserterOpt);
+      if (section.isShared()) {
+        logger.info("Section {} shares elements, rebuilding the whole notice",
+            section.getConceptItem().getIdUnique());
+        return false;
+      }
+    }
+
+    // Put the root elements back in the order of the build, then sort like a full build would.
+    for (final PhysicalSection section : newSections) {
+      for (final Element elem : section.getRootElements()) {
+        xmlRoot.appendChild(elem);
+      }
+    }
+    sorter.sortRootChildren(xmlRoot);
+    if (inserterOpt.isEmpty() || !inserterOpt.get().isComplete()) {
+      for (final PhysicalSection section : rebuiltSections) {
+        section.sortSubtrees(sorter, physicalModel.getXpathInst(), fieldsAndNodes, xmlRoot);
+      }
+    }
+    physicalModel.setSdkVersionWithoutPatch(physicalModel.getSdkVersion());
+
+    logger.info("Rebuilt {} of {} sections of notice {}", rebuiltSections.size(),
+        newSections.size(), getNoticeUuid());
+    this.sections = newSections;
+    this.lastRebuiltSectionCount = rebuiltSections.size();
+    incrementalBuildCount++;
+    return true;
+  }
+}
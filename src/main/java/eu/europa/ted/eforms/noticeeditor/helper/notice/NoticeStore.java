@@ -0,0 +1,522 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the saved notices in a local folder: the visual model (JSON) and the XML of each
+ * revision of a notice, by notice UUID and revision number.
+ *
+ * <p>
+ * The data is written in append-only segment files, a write is an append at the end of the current
+ * segment, a new segment is started when it is full. There are two kinds of records: contents
+ * (gzip compressed text, identified by the SHA-256 of the text) and revisions (notice UUID,
+ * revision number, SDK version and the hashes of the visual model and XML contents). A content is
+ * only written once, identical revisions of a notice or identical contents of different notices
+ * share it, and saving a notice which did not change does not create a new revision.
+ * </p>
+ *
+ * <p>
+ * The index (contents by hash and revisions by notice) is kept in memory and rebuilt by reading
+ * the segments when the store is opened. Each record has a CRC, a partially written record at the
+ * end of the last segment (crash) is truncated. A failed write is truncated right away. This is
+ * thread safe.
+ * </p>
+ */
+public class NoticeStore {
+  private static final Logger logger = LoggerFactory.getLogger(NoticeStore.class);
+
+  private static final int SEGMENT_MAGIC = 0x4E534547; // "NSEG"
+  private static final int SEGMENT_VERSION = 1;
+  private static final int SEGMENT_HEADER_SIZE = 8;
+  private static final Pattern SEGMENT_FILENAME = Pattern.compile("segment-(\\d{6})\\.dat");
+
+  private static final byte RECORD_CONTENT = 'C';
+  private static final byte RECORD_REVISION = 'R';
+
+  /**
+   * Type, payload length and CRC.
+   */
+  private static final int RECORD_OVERHEAD = 1 + 4 + 4;
+  private static final int HASH_SIZE = 32;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * A revision of a saved notice.
+   */
+  public static final class NoticeRevision {
+    private final UUID noticeUuid;
+    private final int revision;
+    private final long savedAtMillis;
+    private final String sdkVersion;
+    private final String visualHash;
+    private final String xmlHash;
+
+    NoticeRevision(final UUID noticeUuid, final int revision, final long savedAtMillis,
+        final String sdkVersion, final String visualHash, final String xmlHash) {
+      this.noticeUuid = noticeUuid;
+      this.revision = revision;
+      this.savedAtMillis = savedAtMillis;
+      this.sdkVersion = sdkVersion;
+      this.visualHash = visualHash;
+      this.xmlHash = xmlHash;
+    }
+
+    public UUID getNoticeUuid() {
+      return noticeUuid;
+    }
+
+    /**
+     * @return The revision number, starts at 1
+     */
+    public int getRevision() {
+      return revision;
+    }
+
+    public long getSavedAtMillis() {
+      return savedAtMillis;
+    }
+
+    public String getSdkVersion() {
+      return sdkVersion;
+    }
+
+    /**
+     * @return The hexadecimal SHA-256 of the visual model JSON
+     */
+    public String getVisualHash() {
+      return visualHash;
+    }
+
+    /**
+     * @return The hexadecimal SHA-256 of the notice XML
+     */
+    public String getXmlHash() {
+      return xmlHash;
+    }
+
+    @Override
+    public String toString() {
+      return "NoticeRevision [noticeUuid=" + noticeUuid + ", revision=" + revision
+          + ", sdkVersion=" + sdkVersion + "]";
+    }
+  }
+
+  /**
+   * Where the compressed bytes of a content are.
+   */
+  private static final class ContentLocation {
+    private final Path segment;
+    private final long offset;
+    private final int length;
+
+    private ContentLocation(final Path segment, final long offset, final int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private final Path folder;
+  private final long maxSegmentBytes;
+
+  private final Map<String, ContentLocation> contentByHash = new HashMap<>();
+  private final Map<UUID, List<NoticeRevision>> revisionsByNotice = new HashMap<>();
+
+  private int lastSegmentNumber;
+  private FileChannel writeChannel;
+  private Path writeSegment;
+
+  /**
+   * Opens the store, the existing segments are read to build the index.
+   *
+   * @param folder The folder of the segment files, created on the first write
+   * @param maxSegmentBytes The size after which a new segment file is started
+   */
+  public NoticeStore(final Path folder, final long maxSegmentBytes) {
+    Validate.notNull(folder);
+    Validate.isTrue(maxSegmentBytes > SEGMENT_HEADER_SIZE, "maxSegmentBytes is too small: %s",
+        maxSegmentBytes);
+    this.folder = folder;
+    this.maxSegmentBytes = maxSegmentBytes;
+    if (Files.isDirectory(folder)) {
+      final List<Path> segments = listSegments(folder);
+      for (int i = 0; i < segments.size(); i++) {
+        readSegment(segments.get(i), i == segments.size() - 1);
+      }
+      logger.info("Notice store {}: {} segments, {} notices, {} contents", folder,
+          segments.size(), revisionsByNotice.size(), contentByHash.size());
+    }
+  }
+
+  /**
+   * Saves a revision of the notice. Nothing is written if the visual model and the XML are the
+   * same as in the last revision of the notice, the last revision is returned.
+   *
+   * @param noticeUuid The notice UUID
+   * @param sdkVersion The SDK version of the notice
+   * @param visualJson The visual model as JSON text
+   * @param noticeXml The notice XML text
+   * @return The saved revision
+   */
+  public synchronized NoticeRevision save(final UUID noticeUuid, final String sdkVersion,
+      final String visualJson, final String noticeXml) throws IOException {
+    Validate.notNull(noticeUuid);
+    Validate.notBlank(sdkVersion);
+    Validate.notNull(visualJson);
+    Validate.notNull(noticeXml);
+
+    final byte[] visualBytes = visualJson.getBytes(StandardCharsets.UTF_8);
+    final byte[] xmlBytes = noticeXml.getBytes(StandardCharsets.UTF_8);
+    final byte[] visualHash = sha256(visualBytes);
+    final byte[] xmlHash = sha256(xmlBytes);
+    final String visualHashHex = toHex(visualHash);
+    final String xmlHashHex = toHex(xmlHash);
+
+    final List<NoticeRevision> revisions =
+        revisionsByNotice.getOrDefault(noticeUuid, Collections.emptyList());
+    if (!revisions.isEmpty()) {
+      final NoticeRevision last = revisions.get(revisions.size() - 1);
+      if (last.getVisualHash().equals(visualHashHex) && last.getXmlHash().equals(xmlHashHex)
+          && last.getSdkVersion().equals(sdkVersion)) {
+        return last;
+      }
+    }
+
+    // The contents first: a revision record never points to missing contents.
+    appendContentIfMissing(visualHash, visualHashHex, visualBytes);
+    appendContentIfMissing(xmlHash, xmlHashHex, xmlBytes);
+
+    final NoticeRevision revision = new NoticeRevision(noticeUuid, revisions.size() + 1,
+        System.currentTimeMillis(), sdkVersion, visualHashHex, xmlHashHex);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
+    try (DataOutputStream out = new DataOutputStream(baos)) {
+      out.writeLong(noticeUuid.getMostSignificantBits());
+      out.writeLong(noticeUuid.getLeastSignificantBits());
+      out.writeInt(revision.getRevision());
+      out.writeLong(revision.getSavedAtMillis());
+      out.writeUTF(sdkVersion);
+      out.write(visualHash);
+      out.write(xmlHash);
+    }
+    appendRecord(RECORD_REVISION, baos.toByteArray());
+    addRevision(revision);
+    return revision;
+  }
+
+  /**
+   * @return The revisions of the notice, oldest first, empty if the notice is unknown
+   */
+  public synchronized List<NoticeRevision> listRevisions(final UUID noticeUuid) {
+    return Collections.unmodifiableList(
+        new ArrayList<>(revisionsByNotice.getOrDefault(noticeUuid, Collections.emptyList())));
+  }
+
+  /**
+   * @param revision The revision number, the last revision if empty
+   */
+  public synchronized Optional<NoticeRevision> getRevision(final UUID noticeUuid,
+      final Optional<Integer> revision) {
+    final List<NoticeRevision> revisions = revisionsByNotice.get(noticeUuid);
+    if (revisions == null || revisions.isEmpty()) {
+      return Optional.empty();
+    }
+    if (revision.isEmpty()) {
+      return Optional.of(revisions.get(revisions.size() - 1));
+    }
+    final int index = revision.get() - 1;
+    return index >= 0 && index < revisions.size() ? Optional.of(revisions.get(index))
+        : Optional.empty();
+  }
+
+  public String readVisualJson(final NoticeRevision revision) throws IOException {
+    return readContent(revision.getVisualHash());
+  }
+
+  public String readXml(final NoticeRevision revision) throws IOException {
+    return readContent(revision.getXmlHash());
+  }
+
+  /**
+   * @return The number of distinct contents stored
+   */
+  public synchronized int getContentCount() {
+    return contentByHash.size();
+  }
+
+  /**
+   * Closes the segment being written, the store can still be read.
+   */
+  public synchronized void close() throws IOException {
+    if (writeChannel != null) {
+      writeChannel.close();
+      writeChannel = null;
+      writeSegment = null;
+    }
+  }
+
+  private String readContent(final String hashHex) throws IOException {
+    final ContentLocation location;
+    synchronized (this) {
+      location = contentByHash.get(hashHex);
+    }
+    if (location == null) {
+      throw new IllegalStateException("Content not found in the notice store: " + hashHex);
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(location.length);
+    try (FileChannel channel = FileChannel.open(location.segment, StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, location.offset + buffer.position()) < 0) {
+          throw new EOFException("Truncated content in " + location.segment);
+        }
+      }
+    }
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(buffer.array()))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private void appendContentIfMissing(final byte[] hash, final String hashHex,
+      final byte[] content) throws IOException {
+    if (contentByHash.containsKey(hashHex)) {
+      return;
+    }
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 4 + 64);
+    baos.write(hash);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+      gzip.write(content);
+    }
+    final byte[] payload = baos.toByteArray();
+    final long payloadOffset = appendRecord(RECORD_CONTENT, payload);
+    contentByHash.put(hashHex, new ContentLocation(writeSegment, payloadOffset + HASH_SIZE,
+        payload.length - HASH_SIZE));
+  }
+
+  /**
+   * @return The offset of the payload in the current segment
+   */
+  private long appendRecord(final byte type, final byte[] payload) throws IOException {
+    final int recordSize = RECORD_OVERHEAD + payload.length;
+    if (writeChannel == null
+        || writeChannel.size() > SEGMENT_HEADER_SIZE
+            && writeChannel.size() + recordSize > maxSegmentBytes) {
+      startNewSegment();
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload);
+    final ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+    buffer.put(type).putInt(payload.length).put(payload).putInt((int) crc.getValue());
+    buffer.flip();
+    final long recordOffset = writeChannel.size();
+    try {
+      writeFully(writeChannel, buffer);
+    } catch (final IOException e) {
+      // A partial record would hide the records written after it when the store is opened again.
+      discardPartialRecord(recordOffset);
+      throw e;
+    }
+    return recordOffset + 5;
+  }
+
+  void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Truncates the segment back to the start of the record which failed, if this also fails the
+   * next record is written in a new segment (the partial record is then at the end of a segment).
+   */
+  private void discardPartialRecord(final long recordOffset) {
+    try {
+      writeChannel.truncate(recordOffset);
+    } catch (final IOException e) {
+      logger.warn("Cannot truncate notice store segment {}, starting a new one: {}",
+          writeSegment, e.toString());
+      try {
+        close();
+      } catch (final IOException closeEx) {
+        logger.warn("Cannot close notice store segment: {}", closeEx.toString());
+        writeChannel = null;
+        writeSegment = null;
+      }
+    }
+  }
+
+  private void startNewSegment() throws IOException {
+    close();
+    Files.createDirectories(folder);
+    lastSegmentNumber++;
+    final Path segment = folder.resolve(String.format("segment-%06d.dat", lastSegmentNumber));
+    final FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+    header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+    this.writeChannel = channel;
+    this.writeSegment = segment;
+    logger.info("Started notice store segment {}", segment);
+  }
+
+  private List<Path> listSegments(final Path dir) {
+    final List<Path> segments;
+    try (Stream<Path> stream = Files.list(dir)) {
+      segments = stream.filter(p -> SEGMENT_FILENAME.matcher(p.getFileName().toString()).matches())
+          .sorted().collect(Collectors.toList());
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Cannot list the notice store folder " + dir, e);
+    }
+    if (!segments.isEmpty()) {
+      final Matcher matcher =
+          SEGMENT_FILENAME.matcher(segments.get(segments.size() - 1).getFileName().toString());
+      Validate.isTrue(matcher.matches());
+      lastSegmentNumber = Integer.parseInt(matcher.group(1));
+    }
+    return segments;
+  }
+
+  /**
+   * Reads the records of a segment into the index. A bad record stops the reading, if this is the
+   * last segment it is truncated after the last good record.
+   */
+  private void readSegment(final Path segment, final boolean isLast) {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      final long size = channel.size();
+      final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+      if (!readFully(channel, header, 0) || header.getInt(0) != SEGMENT_MAGIC
+          || header.getInt(4) != SEGMENT_VERSION) {
+        logger.warn("Ignoring notice store segment {}, bad header", segment);
+        return;
+      }
+      long offset = SEGMENT_HEADER_SIZE;
+      final ByteBuffer recordHeader = ByteBuffer.allocate(5);
+      while (offset < size) {
+        recordHeader.clear();
+        if (!readFully(channel, recordHeader, offset)) {
+          break;
+        }
+        final byte type = recordHeader.get(0);
+        final int length = recordHeader.getInt(1);
+        if (length < 0 || offset + RECORD_OVERHEAD + length > size) {
+          break;
+        }
+        final ByteBuffer payload = ByteBuffer.allocate(length + 4);
+        if (!readFully(channel, payload, offset + 5)) {
+          break;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload.array(), 0, length);
+        if ((int) crc.getValue() != payload.getInt(length)) {
+          break;
+        }
+        indexRecord(segment, type, payload.array(), length, offset + 5);
+        offset += RECORD_OVERHEAD + length;
+      }
+      if (offset < size) {
+        logger.warn("Bad record in notice store segment {} at offset {}", segment, offset);
+        if (isLast) {
+          channel.truncate(offset);
+        }
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Cannot read notice store segment " + segment, e);
+    }
+  }
+
+  private void indexRecord(final Path segment, final byte type, final byte[] payload,
+      final int length, final long payloadOffset) throws IOException {
+    if (type == RECORD_CONTENT) {
+      final byte[] hash = new byte[HASH_SIZE];
+      System.arraycopy(payload, 0, hash, 0, HASH_SIZE);
+      contentByHash.putIfAbsent(toHex(hash),
+          new ContentLocation(segment, payloadOffset + HASH_SIZE, length - HASH_SIZE));
+    } else if (type == RECORD_REVISION) {
+      try (DataInputStream in =
+          new DataInputStream(new ByteArrayInputStream(payload, 0, length))) {
+        final UUID noticeUuid = new UUID(in.readLong(), in.readLong());
+        final int revision = in.readInt();
+        final long savedAtMillis = in.readLong();
+        final String sdkVersion = in.readUTF();
+        final byte[] visualHash = in.readNBytes(HASH_SIZE);
+        final byte[] xmlHash = in.readNBytes(HASH_SIZE);
+        addRevision(new NoticeRevision(noticeUuid, revision, savedAtMillis, sdkVersion,
+            toHex(visualHash), toHex(xmlHash)));
+      }
+    } else {
+      logger.warn("Unknown record type {} in notice store segment {}", type, segment);
+    }
+  }
+
+  private void addRevision(final NoticeRevision revision) {
+    revisionsByNotice.computeIfAbsent(revision.getNoticeUuid(), k -> new ArrayList<>())
+        .add(revision);
+  }
+
+  private static boolean readFully(final FileChannel channel, final ByteBuffer buffer,
+      final long offset) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  private static byte[] sha256(final byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform must support SHA-256.
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String toHex(final byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+}
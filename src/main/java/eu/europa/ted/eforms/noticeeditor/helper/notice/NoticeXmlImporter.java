@@ -0,0 +1,518 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.helper.VersionHelper;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeXpathTrie.Step;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeXpathTrie.StepPredicate;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeXpathTrie.Target;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * Imports a notice XML: builds the visual model (JSON) from the XML, the reverse of the save. The
+ * XML is read once by a streaming (StAX) reader, each element is mapped to an SDK node or field by
+ * following the xpath trie of the current node, see {@link NoticeXpathTrie}. No DOM is built and
+ * no xpath is evaluated, so notices can be imported in bulk.
+ *
+ * <p>
+ * The groups of the visual model are the SDK nodes found in the XML (visNodeId and contentId are
+ * the node id), the fields are put in the group of their parent node (contentId is the field id).
+ * The display groups of the form which have no node are not known from the XML, this is fine as
+ * they are flattened in the conceptual model. The counters are the position among the siblings
+ * with the same id. The elements which are not known in the SDK are skipped.
+ * </p>
+ *
+ * <p>
+ * When the element can only be told apart by its children, for example
+ * {@code cac:PartyLegalEntity[cbc:CompanyID/@schemeName = 'EU']}, the events of this element are
+ * kept until its end, then they are replayed once the SDK node is known. Only these elements are
+ * kept in memory.
+ * </p>
+ */
+public class NoticeXmlImporter {
+  private static final Logger logger = LoggerFactory.getLogger(NoticeXmlImporter.class);
+
+  private static final String VIS_ROOT_CONTENT_ID = "notice-root";
+  private static final String TEXT_SELECTOR = "";
+
+  private static final Set<String> PRIMARY_FIELD_IDS =
+      Set.of(ConceptualModel.FIELD_ID_SDK_VERSION, ConceptualModel.FIELD_ID_NOTICE_SUB_TYPE,
+          ConceptualModel.FIELD_NOTICE_ID);
+
+  /**
+   * Configured once, creating readers from it is thread-safe.
+   */
+  static final XMLInputFactory XML_INPUT_FACTORY = buildSafeXmlInputFactory();
+
+  /**
+   * The frame of an element which is not mapped, its content is skipped.
+   */
+  private static final Frame SKIPPED = new Frame(null, null, null);
+
+  /**
+   * The element being read. The frames are on a stack, one per open element.
+   */
+  private static final class Frame {
+    /**
+     * The trie step of the element, null if it is not mapped.
+     */
+    private final Step step;
+
+    /**
+     * The visual group of the closest node, the fields and child nodes are added to it.
+     */
+    private final Group group;
+
+    /**
+     * The visual field if the element is a field, its text is the value.
+     */
+    private final ObjectNode field;
+    private StringBuilder text;
+
+    private Frame(final Step step, final Group group, final ObjectNode field) {
+      this.step = step;
+      this.group = group;
+      this.field = field;
+    }
+  }
+
+  /**
+   * The children of a visual group and the counter of each content id.
+   */
+  private static final class Group {
+    private final ArrayNode children;
+    private final Map<String, Integer> countById = new HashMap<>();
+
+    private Group(final ArrayNode children) {
+      this.children = children;
+    }
+
+    private int nextCount(final String id) {
+      return countById.merge(id, 1, Integer::sum);
+    }
+  }
+
+  /**
+   * A kept event of an element which can only be mapped at its end.
+   */
+  private static final class KeptEvent {
+    private final int type;
+    private final String tagOrText;
+    private final String[] attributes;
+
+    private KeptEvent(final int type, final String tagOrText, final String[] attributes) {
+      this.type = type;
+      this.tagOrText = tagOrText;
+      this.attributes = attributes;
+    }
+  }
+
+  private final FieldsAndNodes fieldsAndNodes;
+  private final NoticeXpathTrie trie;
+  private final ObjectNode visRoot;
+  private final Deque<Frame> frames = new ArrayDeque<>();
+
+  /**
+   * The values of the fields which are also put at the top level of the visual model.
+   */
+  private final Map<String, String> primaryValueById = new HashMap<>();
+
+  /**
+   * The kept events, null if nothing is being kept.
+   */
+  private List<KeptEvent> kept;
+  private int keptDepth;
+  private Step keptStep;
+
+  private int skippedCount;
+
+  private NoticeXmlImporter(final FieldsAndNodes fieldsAndNodes) {
+    this.fieldsAndNodes = fieldsAndNodes;
+    this.trie = fieldsAndNodes.getXpathTrie();
+    this.visRoot = JsonUtils.createObjectNode();
+  }
+
+  /**
+   * Reads the SDK version of the notice, it is needed to know the SDK fields and nodes before
+   * importing. Only the start of the XML is read.
+   *
+   * @param noticeXml The notice XML, the stream is not closed
+   * @return The SDK version, from cbc:CustomizationID
+   */
+  public static SdkVersion readSdkVersion(final InputStream noticeXml) throws XMLStreamException {
+    Validate.notNull(noticeXml, "noticeXml is null");
+    final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(noticeXml);
+    try {
+      int depth = 0;
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (depth == 2 && PhysicalModel.CBC_CUSTOMIZATION_ID.equals(getTag(reader))) {
+            return VersionHelper.parsePrefixedSdkVersion(reader.getElementText().strip());
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    throw new IllegalArgumentException(
+        String.format("The notice XML has no %s", PhysicalModel.CBC_CUSTOMIZATION_ID));
+  }
+
+  /**
+   * Builds the visual model of the notice XML.
+   *
+   * @param fieldsAndNodes The SDK fields and nodes of the notice SDK version
+   * @param noticeXml The notice XML, the stream is not closed
+   * @return The root of the visual model
+   */
+  public static ObjectNode importNotice(final FieldsAndNodes fieldsAndNodes,
+      final InputStream noticeXml) throws XMLStreamException {
+    Validate.notNull(fieldsAndNodes, "fieldsAndNodes is null");
+    Validate.notNull(noticeXml, "noticeXml is null");
+    final NoticeXmlImporter importer = new NoticeXmlImporter(fieldsAndNodes);
+    final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(noticeXml);
+    try {
+      importer.read(reader);
+    } finally {
+      reader.close();
+    }
+    return importer.finish();
+  }
+
+  private void read(final XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          onStart(getTag(reader), getAttributes(reader));
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (kept != null || isCollectingText()) {
+            onText(reader.getText());
+          }
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          onEnd();
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private ObjectNode finish() {
+    Validate.isTrue(frames.isEmpty() && kept == null, "The notice XML is incomplete");
+    Validate.isTrue(visRoot.has(VisualModel.VIS_CHILDREN), "The notice XML is empty");
+
+    // Put some primary info at the top level, like the front-end does.
+    visRoot.put(VisualModel.VIS_SDK_VERSION,
+        getPrimaryValue(ConceptualModel.FIELD_ID_SDK_VERSION));
+    visRoot.put(VisualModel.VIS_NOTICE_SUB_TYPE,
+        getPrimaryValue(ConceptualModel.FIELD_ID_NOTICE_SUB_TYPE));
+    visRoot.put(VisualModel.VIS_NOTICE_UUID, getPrimaryValue(ConceptualModel.FIELD_NOTICE_ID));
+    if (skippedCount > 0) {
+      logger.info("Notice XML import: {} elements not found in the SDK were skipped",
+          skippedCount);
+    }
+    return visRoot;
+  }
+
+  private boolean isCollectingText() {
+    final Frame frame = frames.peek();
+    return frame != null && frame.field != null;
+  }
+
+  private void onStart(final String tag, final String[] attributes) {
+    if (kept != null) {
+      kept.add(new KeptEvent(XMLStreamConstants.START_ELEMENT, tag, attributes));
+      keptDepth++;
+      return;
+    }
+    if (frames.isEmpty()) {
+      // The root element is the ND-Root node.
+      final int rootIndex = fieldsAndNodes.getNodeIndex(FieldsAndNodes.ND_ROOT);
+      VisualModel.putGroupDef(visRoot);
+      visRoot.put(VisualModel.VIS_CONTENT_ID, VIS_ROOT_CONTENT_ID);
+      visRoot.put(VisualModel.VIS_NODE_ID, FieldsAndNodes.ND_ROOT);
+      final Group group = new Group(visRoot.putArray(VisualModel.VIS_CHILDREN));
+      final Step rootStep = trie.getNodeStep(rootIndex);
+      addAttributeFields(rootStep, attributes, group);
+      frames.push(new Frame(rootStep, group, null));
+      return;
+    }
+
+    final Frame parent = frames.peek();
+    final Optional<Step> stepOpt =
+        parent.step != null ? parent.step.getChild(tag) : Optional.empty();
+    if (stepOpt.isEmpty()) {
+      if (parent.step != null) {
+        skippedCount++;
+      }
+      frames.push(SKIPPED);
+      return;
+    }
+
+    final Step step = stepOpt.get();
+    if (needsChildren(step)) {
+      // Keep the events until the end of this element.
+      kept = new ArrayList<>();
+      kept.add(new KeptEvent(XMLStreamConstants.START_ELEMENT, tag, attributes));
+      keptDepth = 1;
+      keptStep = step;
+      return;
+    }
+    enter(parent, step, attributes, choose(step, attributes, Collections.emptyList()));
+  }
+
+  private void onText(final String text) {
+    if (kept != null) {
+      kept.add(new KeptEvent(XMLStreamConstants.CHARACTERS, text, null));
+      return;
+    }
+    final Frame frame = frames.peek();
+    if (frame.field != null) {
+      if (frame.text == null) {
+        frame.text = new StringBuilder(text.length());
+      }
+      frame.text.append(text);
+    }
+  }
+
+  private void onEnd() {
+    if (kept != null) {
+      kept.add(new KeptEvent(XMLStreamConstants.END_ELEMENT, null, null));
+      keptDepth--;
+      if (keptDepth == 0) {
+        replay();
+      }
+      return;
+    }
+    final Frame frame = frames.pop();
+    if (frame.field != null) {
+      final String value = frame.text == null ? "" : frame.text.toString().strip();
+      frame.field.put(VisualModel.VIS_VALUE, value);
+      final String fieldId = frame.field.get(VisualModel.VIS_CONTENT_ID).asText();
+      if (PRIMARY_FIELD_IDS.contains(fieldId)) {
+        primaryValueById.putIfAbsent(fieldId, value);
+      }
+    }
+  }
+
+  /**
+   * The kept element is complete, its children are known: map it and replay its events.
+   */
+  private void replay() {
+    final List<KeptEvent> events = kept;
+    final Step step = keptStep;
+    kept = null;
+    keptStep = null;
+
+    final KeptEvent start = events.get(0);
+    enter(frames.peek(), step, start.attributes,
+        choose(step, start.attributes, events));
+    for (int i = 1; i < events.size(); i++) {
+      final KeptEvent event = events.get(i);
+      if (event.type == XMLStreamConstants.START_ELEMENT) {
+        onStart(event.tagOrText, event.attributes);
+      } else if (event.type == XMLStreamConstants.END_ELEMENT) {
+        onEnd();
+      } else if (kept != null || isCollectingText()) {
+        onText(event.tagOrText);
+      }
+    }
+  }
+
+  /**
+   * @return True if a predicate of a target of the step is about the child elements
+   */
+  private static boolean needsChildren(final Step step) {
+    for (final Target target : step.getTargets()) {
+      if (target.getPredicateOpt().isPresent()
+          && target.getPredicateOpt().get().getChildTagOpt().isPresent()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Chooses the node or field of the element: the first with a matching predicate, else the first
+   * without supported predicate.
+   *
+   * @param events The kept events of the element if the children are needed
+   * @return The target, null if the element is only an intermediary step
+   */
+  private static Target choose(final Step step, final String[] attributes,
+      final List<KeptEvent> events) {
+    Target fallback = null;
+    for (final Target target : step.getTargets()) {
+      if (target.getPredicateOpt().isPresent()) {
+        final StepPredicate predicate = target.getPredicateOpt().get();
+        final List<String> values = predicate.getChildTagOpt().isPresent()
+            ? findChildValues(events, predicate.getChildTagOpt().get(),
+                predicate.getAttributeOpt().orElse(TEXT_SELECTOR))
+            : findAttributeValues(attributes, predicate.getAttributeOpt().get());
+        if (predicate.test(values)) {
+          return target;
+        }
+      } else if (fallback == null) {
+        fallback = target;
+      }
+    }
+    return fallback;
+  }
+
+  private void enter(final Frame parent, final Step step, final String[] attributes,
+      final Target target) {
+    // Fields which are attributes of this element, in the current group.
+    addAttributeFields(step, attributes, parent.group);
+
+    if (target == null) {
+      // Intermediary element, the following steps are in the same trie.
+      frames.push(new Frame(step, parent.group, null));
+    } else if (target.isNode()) {
+      final String nodeId = target.getId();
+      final ObjectNode visGroup = parent.group.children.addObject();
+      VisualModel.putGroupDef(visGroup);
+      visGroup.put(VisualModel.VIS_CONTENT_ID, nodeId);
+      visGroup.put(VisualModel.VIS_NODE_ID, nodeId);
+      visGroup.put(VisualModel.VIS_CONTENT_COUNT, parent.group.nextCount(nodeId));
+      final Group group = new Group(visGroup.putArray(VisualModel.VIS_CHILDREN));
+
+      // The relative xpaths of the children of the node start at this element.
+      final Step nodeStep = trie.getNodeStep(target.getNodeIndex());
+      addAttributeFields(nodeStep, attributes, group);
+      frames.push(new Frame(nodeStep, group, null));
+    } else {
+      final ObjectNode visField = addField(parent.group, target.getId());
+      frames.push(new Frame(null, parent.group, visField));
+    }
+  }
+
+  private static void addAttributeFields(final Step step, final String[] attributes,
+      final Group group) {
+    for (final Target target : step.getAttributeTargets()) {
+      final List<String> values = findAttributeValues(attributes, target.getAttributeOpt().get());
+      if (!values.isEmpty()) {
+        addField(group, target.getId()).put(VisualModel.VIS_VALUE, values.get(0));
+      }
+    }
+  }
+
+  private static ObjectNode addField(final Group group, final String fieldId) {
+    final ObjectNode visField = group.children.addObject();
+    VisualModel.putFieldDef(visField, fieldId, group.nextCount(fieldId));
+    return visField;
+  }
+
+  private String getPrimaryValue(final String fieldId) {
+    final String value = primaryValueById.get(fieldId);
+    Validate.notNull(value, "Field %s not found in the notice XML", fieldId);
+    return value;
+  }
+
+  /**
+   * @param attributes Attribute names and values, alternating
+   * @return The attribute value as a list, empty if absent
+   */
+  private static List<String> findAttributeValues(final String[] attributes,
+      final String attributeName) {
+    for (int i = 0; i < attributes.length; i += 2) {
+      if (attributes[i].equals(attributeName)) {
+        return Collections.singletonList(attributes[i + 1]);
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @param selector The attribute name or {@link #TEXT_SELECTOR} for the text
+   * @return The values of the direct child elements of the kept element which have the tag
+   */
+  private static List<String> findChildValues(final List<KeptEvent> events, final String childTag,
+      final String selector) {
+    final List<String> values = new ArrayList<>(1);
+    int depth = 0;
+    StringBuilder text = null;
+    for (final KeptEvent event : events) {
+      if (event.type == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (depth == 2 && childTag.equals(event.tagOrText)) {
+          if (TEXT_SELECTOR.equals(selector)) {
+            text = new StringBuilder();
+          } else {
+            values.addAll(findAttributeValues(event.attributes, selector));
+          }
+        }
+      } else if (event.type == XMLStreamConstants.END_ELEMENT) {
+        if (depth == 2 && text != null) {
+          values.add(text.toString().strip());
+          text = null;
+        }
+        depth--;
+      } else if (depth == 2 && text != null) {
+        text.append(event.tagOrText);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return The tag as written in the SDK xpaths, with the prefix, like "cbc:ID"
+   */
+  private static String getTag(final XMLStreamReader reader) {
+    final String prefix = reader.getPrefix();
+    return StringUtils.isEmpty(prefix) ? reader.getLocalName()
+        : prefix + ":" + reader.getLocalName();
+  }
+
+  private static String[] getAttributes(final XMLStreamReader reader) {
+    final int count = reader.getAttributeCount();
+    if (count == 0) {
+      return ArrayUtils.EMPTY_STRING_ARRAY;
+    }
+    final String[] attributes = new String[count * 2];
+    for (int i = 0; i < count; i++) {
+      final String prefix = reader.getAttributePrefix(i);
+      final String localName = reader.getAttributeLocalName(i);
+      attributes[i * 2] = StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+      attributes[i * 2 + 1] = reader.getAttributeValue(i);
+    }
+    return attributes;
+  }
+
+  private static XMLInputFactory buildSafeXmlInputFactory() {
+    final XMLInputFactory factory = XMLInputFactory.newFactory();
+    // Secure: no DTD and no external entities.
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+}
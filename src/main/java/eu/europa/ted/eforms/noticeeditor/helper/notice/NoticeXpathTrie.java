@@ -0,0 +1,539 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import com.fasterxml.jackson.databind.JsonNode;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+import eu.europa.ted.eforms.noticeeditor.util.XpathUtils;
+
+/**
+ * Trie of the SDK relative xpaths, used to find the SDK node or field of an XML element without
+ * evaluating xpath expressions. There is one trie per SDK node: its keys are the XML tags of the
+ * relative xpaths of the child nodes and fields of the node. While walking down the XML the
+ * current node is known, so the element tag leads to the next step, see
+ * {@link NoticeXmlImporter}.
+ *
+ * <p>
+ * Several nodes or fields can end at the same step, like the EU and national variants of an
+ * element. They are told apart by the predicate of the last step of their xpath, only simple
+ * predicates are supported: an attribute of the element, an attribute or the text of a child
+ * element, compared to a literal or just present, optionally negated. Other predicates and the
+ * predicates of the intermediary steps are ignored, like when the XML is built.
+ * </p>
+ *
+ * <p>
+ * The tries are chained from the root node, so that an absolute path can also be resolved in
+ * O(depth) from the root element: see {@link #resolve(Element)} for an element of a notice and
+ * {@link #resolve(String)} for a path like an SVRL location or
+ * {@link eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils#getNodePath}.
+ * </p>
+ *
+ * <p>
+ * Built once per SDK version, see {@link FieldsAndNodes#getXpathTrie()}. This is immutable after
+ * construction and thread safe.
+ * </p>
+ */
+public class NoticeXpathTrie {
+  private static final Logger logger = LoggerFactory.getLogger(NoticeXpathTrie.class);
+
+  private static final Pattern XML_NAME =
+      Pattern.compile("[A-Za-z_][\\w.-]*(:[A-Za-z_][\\w.-]*)?");
+
+  /**
+   * A step of the relative xpaths of a node: the element reached by following the tags from the
+   * node element.
+   */
+  public static final class Step {
+    private final Map<String, Step> childByTag = new HashMap<>(4);
+    private final Map<String, Step> childByLocalName = new HashMap<>(4);
+    private final List<Target> targets = new ArrayList<>(1);
+    private final List<Target> attributeTargets = new ArrayList<>(1);
+
+    /**
+     * @param tag The XML tag of the child element, with the usual prefix, like "cbc:ID"
+     */
+    public Optional<Step> getChild(final String tag) {
+      return Optional.ofNullable(childByTag.get(tag));
+    }
+
+    /**
+     * @return The nodes and element fields ending at this step, in SDK order
+     */
+    public List<Target> getTargets() {
+      return Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * @return The fields which are an attribute of the element of this step
+     */
+    public List<Target> getAttributeTargets() {
+      return Collections.unmodifiableList(attributeTargets);
+    }
+
+    /**
+     * @param tag The XML tag of the child element, the prefix is only used if it is known, so
+     *        that a tag like "*:ID" or a different prefix also works
+     */
+    private Step findChild(final String tag) {
+      final Step child = childByTag.get(tag);
+      return child != null ? child : childByLocalName.get(getLocalName(tag));
+    }
+
+    private Step getOrAddChild(final String tag) {
+      return childByTag.computeIfAbsent(tag, k -> {
+        final Step child = new Step();
+        childByLocalName.putIfAbsent(getLocalName(tag), child);
+        return child;
+      });
+    }
+  }
+
+  /**
+   * An SDK node or field ending at a step.
+   */
+  public static final class Target {
+    private final String id;
+    private final int nodeIndex;
+    private final Optional<String> attributeOpt;
+    private final Optional<StepPredicate> predicateOpt;
+
+    private Target(final String id, final int nodeIndex, final Optional<String> attributeOpt,
+        final Optional<StepPredicate> predicateOpt) {
+      this.id = id;
+      this.nodeIndex = nodeIndex;
+      this.attributeOpt = attributeOpt;
+      this.predicateOpt = predicateOpt;
+    }
+
+    /**
+     * @return The SDK node or field id
+     */
+    public String getId() {
+      return id;
+    }
+
+    public boolean isNode() {
+      return nodeIndex >= 0;
+    }
+
+    /**
+     * @return The node index, see {@link FieldsAndNodes#getNodeIndex(String)}, -1 for a field
+     */
+    public int getNodeIndex() {
+      return nodeIndex;
+    }
+
+    /**
+     * @return The attribute name (without @) if the field is an attribute
+     */
+    public Optional<String> getAttributeOpt() {
+      return attributeOpt;
+    }
+
+    /**
+     * @return The supported predicate of the last step, empty if there is none or if it is not
+     *         supported
+     */
+    public Optional<StepPredicate> getPredicateOpt() {
+      return predicateOpt;
+    }
+
+    @Override
+    public String toString() {
+      return id;
+    }
+  }
+
+  /**
+   * A supported predicate of the last step of an xpath, for example
+   * {@code [not(cbc:CompanyID/@schemeName = 'EU')]}.
+   */
+  public static final class StepPredicate {
+    private final boolean negated;
+    private final Optional<String> childTagOpt;
+    private final Optional<String> attributeOpt;
+    private final Optional<String> valueOpt;
+
+    private StepPredicate(final boolean negated, final Optional<String> childTagOpt,
+        final Optional<String> attributeOpt, final Optional<String> valueOpt) {
+      this.negated = negated;
+      this.childTagOpt = childTagOpt;
+      this.attributeOpt = attributeOpt;
+      this.valueOpt = valueOpt;
+    }
+
+    /**
+     * @return The child element tag, empty if the predicate is about the element itself
+     */
+    public Optional<String> getChildTagOpt() {
+      return childTagOpt;
+    }
+
+    /**
+     * @return The attribute name (without @), empty for the text of the child element
+     */
+    public Optional<String> getAttributeOpt() {
+      return attributeOpt;
+    }
+
+    /**
+     * @param values The values found in the XML for this predicate: the attribute of the element
+     *        or the attributes or texts of its child elements of the given tag
+     * @return True if the predicate matches
+     */
+    public boolean test(final List<String> values) {
+      final boolean found =
+          valueOpt.isPresent() ? values.contains(valueOpt.get()) : !values.isEmpty();
+      return negated ? !found : found;
+    }
+
+    /**
+     * @param element The element of the step
+     * @return True if the predicate matches the element
+     */
+    public boolean test(final Element element) {
+      final List<String> values = new ArrayList<>(1);
+      if (childTagOpt.isEmpty()) {
+        if (element.hasAttribute(attributeOpt.get())) {
+          values.add(element.getAttribute(attributeOpt.get()));
+        }
+        return test(values);
+      }
+      final String childTag = childTagOpt.get();
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() != Node.ELEMENT_NODE || !childTag.equals(child.getNodeName())) {
+          continue;
+        }
+        final Element childElem = (Element) child;
+        if (attributeOpt.isEmpty()) {
+          values.add(childElem.getTextContent().strip());
+        } else if (childElem.hasAttribute(attributeOpt.get())) {
+          values.add(childElem.getAttribute(attributeOpt.get()));
+        }
+      }
+      return test(values);
+    }
+
+    /**
+     * @param predicate The text between the brackets
+     * @return The predicate, empty if it is not supported
+     */
+    static Optional<StepPredicate> parse(final String predicate) {
+      String expr = predicate.strip();
+      boolean negated = false;
+      if (expr.startsWith("not(") && expr.endsWith(")")) {
+        negated = true;
+        expr = expr.substring("not(".length(), expr.length() - 1).strip();
+      }
+
+      // Left side = 'value' or just the left side (presence).
+      Optional<String> valueOpt = Optional.empty();
+      final int indexOfEquals = expr.indexOf('=');
+      if (indexOfEquals >= 0) {
+        final String right = expr.substring(indexOfEquals + 1).strip();
+        expr = expr.substring(0, indexOfEquals).strip();
+        if (right.length() < 2 || expr.endsWith("!")) {
+          return Optional.empty();
+        }
+        final char quote = right.charAt(0);
+        final String value = right.substring(1, right.length() - 1);
+        if (quote != '\'' && quote != '"' || right.charAt(right.length() - 1) != quote
+            || value.indexOf(quote) >= 0) {
+          return Optional.empty();
+        }
+        valueOpt = Optional.of(value);
+      }
+
+      final Optional<String> childTagOpt;
+      final String selector;
+      final int indexOfSlash = expr.lastIndexOf('/');
+      if (indexOfSlash >= 0) {
+        childTagOpt = Optional.of(expr.substring(0, indexOfSlash));
+        selector = expr.substring(indexOfSlash + 1);
+      } else if (expr.startsWith("@")) {
+        childTagOpt = Optional.empty();
+        selector = expr;
+      } else {
+        childTagOpt = Optional.of(expr);
+        selector = "text()";
+      }
+      if (childTagOpt.isPresent() && !XML_NAME.matcher(childTagOpt.get()).matches()) {
+        return Optional.empty();
+      }
+
+      final Optional<String> attributeOpt;
+      if ("text()".equals(selector) && childTagOpt.isPresent()) {
+        attributeOpt = Optional.empty();
+      } else if (selector.startsWith("@")
+          && XML_NAME.matcher(selector.substring(1)).matches()) {
+        attributeOpt = Optional.of(selector.substring(1));
+      } else {
+        return Optional.empty();
+      }
+      return Optional.of(new StepPredicate(negated, childTagOpt, attributeOpt, valueOpt));
+    }
+  }
+
+  /**
+   * The root step of the relative xpaths of each node, by node index.
+   */
+  private final Step[] stepByNodeIndex;
+
+  private final Target rootTarget;
+
+  private int unsupportedPredicateCount;
+
+  NoticeXpathTrie(final FieldsAndNodes fieldsAndNodes, final Collection<JsonNode> fields) {
+    final int nodeCount = fieldsAndNodes.getNodeCount();
+    this.stepByNodeIndex = new Step[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      stepByNodeIndex[i] = new Step();
+    }
+    this.rootTarget = new Target(ConceptualModel.ND_ROOT,
+        fieldsAndNodes.getNodeIndex(ConceptualModel.ND_ROOT), Optional.empty(), Optional.empty());
+
+    // Nodes, under their parent node.
+    for (int i = 0; i < nodeCount; i++) {
+      final String nodeId = fieldsAndNodes.getNodeIdByIndex(i);
+      final int[] ancestors = fieldsAndNodes.getNodeAncestorIndexes(nodeId);
+      if (ancestors.length == 0) {
+        continue; // The root node, or a node with a missing parent.
+      }
+      final String xpathRel = JsonUtils.getTextStrict(fieldsAndNodes.getNodeById(nodeId),
+          FieldsAndNodes.XPATH_RELATIVE);
+      add(stepByNodeIndex[ancestors[0]], xpathRel, nodeId, i);
+    }
+
+    // Fields, under their parent node.
+    for (final JsonNode field : fields) {
+      final String fieldId = JsonUtils.getTextStrict(field, FieldsAndNodes.FIELD_OR_NODE_ID_KEY);
+      final Optional<String> parentNodeIdOpt =
+          JsonUtils.getTextOpt(field, FieldsAndNodes.FIELD_PARENT_NODE_ID);
+      if (parentNodeIdOpt.isEmpty()) {
+        continue;
+      }
+      final String xpathRel = JsonUtils.getTextStrict(field, FieldsAndNodes.XPATH_RELATIVE);
+      add(stepByNodeIndex[fieldsAndNodes.getNodeIndex(parentNodeIdOpt.get())], xpathRel, fieldId,
+          -1);
+    }
+    logger.info("Built xpath trie for SDK {}, unsupported predicates: {}",
+        fieldsAndNodes.getSdkVersion(), unsupportedPredicateCount);
+  }
+
+  /**
+   * @return The root step of the relative xpaths of the node: its element
+   */
+  public Step getNodeStep(final int nodeIndex) {
+    return stepByNodeIndex[nodeIndex];
+  }
+
+  /**
+   * Finds the SDK node or field of an element of a notice, the predicates are evaluated on the
+   * element and its children. The root element is the root node, whatever its name.
+   *
+   * @param element An element of a notice document
+   * @return The node or element field of the element, empty if the element is unknown or is an
+   *         intermediary element of an xpath
+   */
+  public Optional<Target> resolve(final Element element) {
+    final List<Element> elements = new ArrayList<>();
+    for (Node node = element; node != null && node.getNodeType() == Node.ELEMENT_NODE;
+        node = node.getParentNode()) {
+      elements.add((Element) node);
+    }
+    Collections.reverse(elements);
+
+    Step step = stepByNodeIndex[rootTarget.getNodeIndex()];
+    Optional<Target> targetOpt = Optional.of(rootTarget);
+    for (int i = 1; i < elements.size(); i++) {
+      final Element elem = elements.get(i);
+      step = step.findChild(elem.getNodeName());
+      if (step == null) {
+        return Optional.empty();
+      }
+      targetOpt = choose(step.targets, elem);
+      if (targetOpt.isPresent() && targetOpt.get().isNode()) {
+        step = stepByNodeIndex[targetOpt.get().getNodeIndex()];
+      }
+    }
+    return targetOpt;
+  }
+
+  /**
+   * Finds the SDK node or field of an absolute path without the document, for example an SVRL
+   * location like "/ContractNotice/cac:ProcurementProject[1]/cbc:ID". Positional and other
+   * predicates of the path are ignored, "*:" and "Q{uri}" namespace forms are supported. The last
+   * step can be an attribute.
+   *
+   * <p>
+   * Without the element the predicates of the SDK cannot be evaluated: when several nodes share
+   * an element, the first one in SDK order having the rest of the path is used, and when several
+   * fields end at the last element the first one in SDK order is returned.
+   * </p>
+   *
+   * @param path An absolute path starting with the root element
+   * @return The node or field, empty if the path is unknown or ends on an intermediary element
+   */
+  public Optional<Target> resolve(final String path) {
+    final List<String> tags = splitPath(path);
+    tags.replaceAll(NoticeXpathTrie::getStepName);
+    if (tags.isEmpty()) {
+      return Optional.empty();
+    }
+    if (tags.size() == 1) {
+      return Optional.of(rootTarget);
+    }
+    return resolve(stepByNodeIndex[rootTarget.getNodeIndex()], tags, 1);
+  }
+
+  private Optional<Target> resolve(final Step step, final List<String> tags, final int index) {
+    final String tag = tags.get(index);
+    final boolean isLast = index == tags.size() - 1;
+    if (tag.startsWith("@")) {
+      if (!isLast) {
+        return Optional.empty();
+      }
+      final String attribute = getLocalName(tag.substring(1));
+      return step.attributeTargets.stream()
+          .filter(target -> getLocalName(target.getAttributeOpt().get()).equals(attribute))
+          .findFirst();
+    }
+    final Step child = step.findChild(tag);
+    if (child == null) {
+      return Optional.empty();
+    }
+    if (isLast) {
+      return child.targets.stream().findFirst();
+    }
+    // Backtrack over the nodes sharing this element, then try it as an intermediary element.
+    for (final Target target : child.targets) {
+      if (target.isNode()) {
+        final Optional<Target> found =
+            resolve(stepByNodeIndex[target.getNodeIndex()], tags, index + 1);
+        if (found.isPresent()) {
+          return found;
+        }
+      }
+    }
+    return resolve(child, tags, index + 1);
+  }
+
+  /**
+   * @return The first target with a matching predicate, else the first target without predicate
+   */
+  private static Optional<Target> choose(final List<Target> targets, final Element element) {
+    Target fallback = null;
+    for (final Target target : targets) {
+      if (target.predicateOpt.isEmpty()) {
+        if (fallback == null) {
+          fallback = target;
+        }
+      } else if (target.predicateOpt.get().test(element)) {
+        return Optional.of(target);
+      }
+    }
+    return Optional.ofNullable(fallback);
+  }
+
+  /**
+   * @param path An absolute path like "/ContractNotice/cac:ProcurementProject[1]/cbc:ID"
+   * @return The steps of the path, predicates included, the "Q{uri}" of a step is removed so that
+   *         only its local name remains
+   */
+  static List<String> splitPath(final String path) {
+    final List<String> steps = new ArrayList<>();
+    final StringBuilder sb = new StringBuilder(32);
+    int depth = 0;
+    boolean inUri = false;
+    for (int i = 0; i < path.length(); i++) {
+      final char ch = path.charAt(i);
+      if (inUri) {
+        inUri = ch != '}';
+      } else if (ch == '{' && depth == 0 && "Q".contentEquals(sb)) {
+        sb.setLength(0); // Q{uri}name
+        inUri = true;
+      } else if (ch == '/' && depth == 0) {
+        if (sb.length() > 0) {
+          steps.add(sb.toString());
+          sb.setLength(0);
+        }
+      } else {
+        if (ch == '[') {
+          depth++;
+        } else if (ch == ']') {
+          depth--;
+        }
+        sb.append(ch);
+      }
+    }
+    if (sb.length() > 0) {
+      steps.add(sb.toString());
+    }
+    return steps;
+  }
+
+  /**
+   * @return The name of the step without predicates
+   */
+  static String getStepName(final String step) {
+    final int indexOfBracket = step.indexOf('[');
+    return indexOfBracket < 0 ? step : step.substring(0, indexOfBracket);
+  }
+
+  static String getLocalName(final String tag) {
+    return tag.substring(tag.indexOf(':') + 1);
+  }
+
+  private void add(final Step nodeStep, final String xpathRel, final String id,
+      final int nodeIndex) {
+    final List<String> parts = XpathUtils.getXpathParts(xpathRel);
+    Step step = nodeStep;
+    for (int i = 0; i < parts.size(); i++) {
+      final String part = parts.get(i);
+      final boolean isLast = i == parts.size() - 1;
+      if (".".equals(part) || "/*".equals(part)) {
+        continue;
+      }
+      if (part.startsWith("@")) {
+        if (!isLast || nodeIndex >= 0) {
+          logger.debug("Unexpected attribute in {} of {}", xpathRel, id);
+          return;
+        }
+        step.attributeTargets
+            .add(new Target(id, nodeIndex, Optional.of(part.substring(1)), Optional.empty()));
+        return;
+      }
+      final int indexOfBracket = part.indexOf('[');
+      final String tag = indexOfBracket < 0 ? part : part.substring(0, indexOfBracket);
+      step = step.getOrAddChild(tag);
+      if (isLast) {
+        step.targets.add(new Target(id, nodeIndex, Optional.empty(),
+            indexOfBracket < 0 ? Optional.empty() : parsePredicate(part, indexOfBracket)));
+      }
+    }
+  }
+
+  private Optional<StepPredicate> parsePredicate(final String part, final int indexOfBracket) {
+    final String inner = part.substring(indexOfBracket + 1, part.length() - 1);
+    // A single predicate: [a][b] is not supported.
+    final Optional<StepPredicate> predicateOpt =
+        part.endsWith("]") && !inner.contains("[") && !inner.contains("]")
+            ? StepPredicate.parse(inner)
+            : Optional.empty();
+    if (predicateOpt.isEmpty()) {
+      unsupportedPredicateCount++;
+      logger.debug("Unsupported predicate in xpath part {}", part);
+    }
+    return predicateOpt;
+  }
+}
@@ -0,0 +1,135 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import eu.europa.ted.eforms.noticeeditor.sorting.XsdElementOrder;
+
+/**
+ * Inserts the elements built by the physical model at their position in the order of the XSDs, so
+ * that the notice does not have to be sorted afterwards, see
+ * {@link PhysicalBuildStrategy#ORDERED_INSERT}.
+ *
+ * <p>
+ * An element is inserted after the siblings of lower or equal rank, the siblings are compared from
+ * the last one as the conceptual model is mostly in order. If the rank of an element is unknown it
+ * is appended and the notice must still be sorted, see {@link #isComplete()}. One instance per
+ * build, it is not thread-safe.
+ * </p>
+ *
+ * <p>
+ * The builds by section (see {@link NoticeSession}) collect the elements of each section at the end
+ * of the root element: the children of the root element are then appended and only sorted at the
+ * end, the elements under them are inserted.
+ * </p>
+ */
+final class OrderedElementInserter {
+
+  private static final Logger logger = LoggerFactory.getLogger(OrderedElementInserter.class);
+
+  private final XsdElementOrder xsdOrder;
+  private final String defaultNamespaceUri;
+  private final Map<String, String> namespaceUriByPrefix;
+  private final Map<String, String> expandedNameByTag = new HashMap<>();
+  private final boolean appendRootChildren;
+  private boolean complete = true;
+
+  private OrderedElementInserter(final XsdElementOrder xsdOrder,
+      final DocumentTypeInfo docTypeInfo, final boolean appendRootChildren) {
+    this.xsdOrder = xsdOrder;
+    this.appendRootChildren = appendRootChildren;
+    this.defaultNamespaceUri = docTypeInfo.getNamespaceUri();
+    this.namespaceUriByPrefix = docTypeInfo.buildAdditionalNamespaceUriByPrefix();
+  }
+
+  /**
+   * @param docTypeInfo The document type of the notice
+   * @param mainXsdPathOpt The path of the main XSD of the notice
+   * @return An inserter, empty if the order of the XSDs is not available
+   */
+  static Optional<OrderedElementInserter> create(final DocumentTypeInfo docTypeInfo,
+      final Optional<Path> mainXsdPathOpt) {
+    return create(docTypeInfo, mainXsdPathOpt, false);
+  }
+
+  /**
+   * @param docTypeInfo The document type of the notice
+   * @param mainXsdPathOpt The path of the main XSD of the notice
+   * @param appendRootChildren True to append the children of the root element, for the builds by
+   *        section
+   * @return An inserter, empty if the order of the XSDs is not available
+   */
+  static Optional<OrderedElementInserter> create(final DocumentTypeInfo docTypeInfo,
+      final Optional<Path> mainXsdPathOpt, final boolean appendRootChildren) {
+    if (mainXsdPathOpt.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          new OrderedElementInserter(XsdElementOrder.load(mainXsdPathOpt.get()), docTypeInfo,
+              appendRootChildren));
+    } catch (final IOException | SAXException e) {
+      logger.warn("Cannot read the element order of {}: {}", mainXsdPathOpt.get(), e.toString());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Inserts the child element at its position. An element which is already a child of the parent
+   * element (reused by the build) is moved to its position.
+   *
+   * @param parentElem The parent element, modified as a SIDE-EFFECT!
+   * @param childElem The element to insert
+   */
+  void insert(final Element parentElem, final Element childElem) {
+    if (appendRootChildren && parentElem.getParentNode() == parentElem.getOwnerDocument()) {
+      parentElem.appendChild(childElem);
+      return;
+    }
+    final String parentName = getExpandedName(parentElem);
+    final OptionalInt rankOpt = xsdOrder.getRank(parentName, getExpandedName(childElem));
+    if (rankOpt.isEmpty()) {
+      complete = false;
+      parentElem.appendChild(childElem);
+      return;
+    }
+    final int rank = rankOpt.getAsInt();
+    Node refChild = null;
+    for (Node sibling = parentElem.getLastChild(); sibling != null; sibling =
+        sibling.getPreviousSibling()) {
+      if (sibling == childElem) {
+        continue;
+      }
+      if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+        final OptionalInt siblingRankOpt =
+            xsdOrder.getRank(parentName, getExpandedName((Element) sibling));
+        if (siblingRankOpt.isEmpty() || siblingRankOpt.getAsInt() <= rank) {
+          break;
+        }
+      }
+      refChild = sibling;
+    }
+    parentElem.insertBefore(childElem, refChild); // Appends if null.
+  }
+
+  /**
+   * @return True if all the elements were inserted at a known position, false if the notice must
+   *         still be sorted
+   */
+  boolean isComplete() {
+    return complete;
+  }
+
+  private String getExpandedName(final Element elem) {
+    return expandedNameByTag.computeIfAbsent(elem.getTagName(),
+        tag -> XsdElementOrder.toExpandedName(tag, defaultNamespaceUri, namespaceUriByPrefix));
+  }
+}
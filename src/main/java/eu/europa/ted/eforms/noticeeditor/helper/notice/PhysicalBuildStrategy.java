@@ -0,0 +1,42 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+/**
+ * How the elements of the physical model are put in the XSD order.
+ */
+public enum PhysicalBuildStrategy {
+  /**
+   * The elements are appended in the order of the conceptual model, then the whole notice is
+   * sorted, see {@link eu.europa.ted.eforms.noticeeditor.sorting.NoticeXmlTagSorter}.
+   */
+  APPEND_THEN_SORT("append-then-sort"),
+
+  /**
+   * Each element is inserted at its position as it is built, see {@link OrderedElementInserter}.
+   * The notice is only sorted afterwards if some element had no known position.
+   */
+  ORDERED_INSERT("ordered-insert");
+
+  private final String text;
+
+  PhysicalBuildStrategy(String text) {
+    this.text = text;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * @param text The text of the strategy, for example "ordered-insert"
+   * @return The strategy
+   * @throws IllegalArgumentException If the text is unknown
+   */
+  public static PhysicalBuildStrategy fromText(final String text) {
+    for (final PhysicalBuildStrategy strategy : values()) {
+      if (strategy.text.equals(text)) {
+        return strategy;
+      }
+    }
+    throw new IllegalArgumentException(String.format("Unknown build strategy: %s", text));
+  }
+}
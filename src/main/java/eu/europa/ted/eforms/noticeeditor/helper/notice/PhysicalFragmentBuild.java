@@ -0,0 +1,159 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.xml.xpath.XPath;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import eu.europa.ted.eforms.noticeeditor.sorting.NoticeXmlTagSorter;
+import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
+
+/**
+ * Parallel build of the physical model. Each top level repeatable node (lot, organisation, ...) is
+ * built and sorted in its own XML document (a fragment) in a fork-join pool. The fragments are then
+ * moved under the root element of the notice in the order of the sequential build, the other
+ * sections are built sequentially in between.
+ *
+ * <p>
+ * The XML is the same as for the sequential build. A section which would reuse an element already
+ * built by a previous section (or which modifies the root element) cannot be built apart, it is
+ * built again sequentially and the whole notice is then sorted.
+ * </p>
+ */
+final class PhysicalFragmentBuild {
+
+  private static final Logger logger = LoggerFactory.getLogger(PhysicalFragmentBuild.class);
+
+  /**
+   * Keys of the DOM user data set by the build, see {@link PhysicalSection} and
+   * {@link NoticeErrorLocator}.
+   */
+  static final List<String> USER_DATA_KEYS =
+      List.of(PhysicalSection.USER_DATA_KEY, NoticeErrorLocator.USER_DATA_KEY);
+
+  private PhysicalFragmentBuild() {
+    throw new AssertionError("Utility class.");
+  }
+
+  /**
+   * Builds the sections under the root element of the document, the top level repeatable nodes are
+   * built in parallel.
+   *
+   * @param doc The XML document, modified as a SIDE-EFFECT!
+   * @param sections The sections of the conceptual model, in the order of the build
+   * @param sorter The sorter of the document, only used to sort the sections one by one
+   * @param pool The pool in which the fragments are built
+   * @return True if the sections have been sorted one by one, including the children of the root
+   *         element, false if the whole notice must still be sorted
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "ITC_INHERITANCE_TYPE_CHECKING",
+      justification = "There are only two kinds of concept items.")
+  static boolean buildSections(final Document doc, final FieldsAndNodes fieldsAndNodes,
+      final List<PhysicalSection> sections, final DocumentTypeInfo docTypeInfo,
+      final boolean debug, final boolean buildFields, final XPath xpathInst,
+      final NoticeXmlTagSorter sorter, final ForkJoinPool pool) {
+    Validate.notNull(pool);
+    final Element xmlDocRoot = doc.getDocumentElement();
+
+    // The document is modified by this thread while the fragments are built, they must not read
+    // it: what they need of it is read before forking.
+    final DOMImplementation domImpl = doc.getImplementation();
+    final String rootTagName = xmlDocRoot.getTagName();
+
+    // Fork: one fragment per top level repeatable node.
+    final Map<PhysicalSection, ForkJoinTask<?>> fragmentTasks = new IdentityHashMap<>();
+    for (final PhysicalSection section : sections) {
+      final ConceptTreeItem item = section.getConceptItem();
+      if (item instanceof ConceptTreeNode && ((ConceptTreeNode) item).isRepeatable()) {
+        fragmentTasks.put(section, pool.submit(() -> buildFragment(domImpl, rootTagName,
+            fieldsAndNodes, section, docTypeInfo, debug, buildFields, sorter)));
+      }
+    }
+
+    final List<PhysicalSection> sequentialSections = new ArrayList<>();
+    int movedCount = 0;
+    try {
+      // Join in the order of the sequential build.
+      for (final PhysicalSection section : sections) {
+        final ForkJoinTask<?> fragmentTask = fragmentTasks.get(section);
+        if (fragmentTask != null) {
+          fragmentTask.join();
+          if (!section.isShared() && !PhysicalModel.isReusingRootChild(fieldsAndNodes,
+              (ConceptTreeNode) section.getConceptItem(), xmlDocRoot, xpathInst)) {
+            moveFragment(section, xmlDocRoot);
+            movedCount++;
+            continue;
+          }
+        }
+        PhysicalModel.buildSection(doc, fieldsAndNodes, section, xmlDocRoot, debug, buildFields,
+            xpathInst, Optional.empty());
+        sequentialSections.add(section);
+      }
+    } finally {
+      for (final ForkJoinTask<?> fragmentTask : fragmentTasks.values()) {
+        fragmentTask.cancel(false);
+      }
+    }
+    logger.info("Built {} of {} sections as parallel fragments", movedCount, sections.size());
+
+    for (final PhysicalSection section : sections) {
+      if (section.isShared()) {
+        return false;
+      }
+    }
+    for (final PhysicalSection section : sequentialSections) {
+      section.sortSubtrees(sorter, xpathInst, fieldsAndNodes, xmlDocRoot);
+    }
+    sorter.sortRootChildren(xmlDocRoot);
+    return true;
+  }
+
+  /**
+   * Builds the section under the root element of a new document and sorts it. Runs in the pool.
+   *
+   * @param domImpl The DOM implementation of the notice document
+   * @param rootTagName The tag name of the root element of the notice document
+   */
+  private static void buildFragment(final DOMImplementation domImpl, final String rootTagName,
+      final FieldsAndNodes fieldsAndNodes, final PhysicalSection section,
+      final DocumentTypeInfo docTypeInfo, final boolean debug, final boolean buildFields,
+      final NoticeXmlTagSorter sorter) {
+    final Document fragmentDoc = domImpl.createDocument(null, null, null);
+    final Element fragmentRoot = fragmentDoc.createElementNS("", rootTagName);
+    fragmentDoc.appendChild(fragmentRoot);
+
+    // XPath instances are not thread-safe, each fragment has its own.
+    final XPath fragmentXpathInst = PhysicalModel.setXmlNamespaces(docTypeInfo, fragmentRoot);
+    PhysicalModel.buildSection(fragmentDoc, fieldsAndNodes, section, fragmentRoot, debug,
+        buildFields, fragmentXpathInst, Optional.empty());
+    if (!section.isShared()) {
+      section.sortSubtrees(sorter.withXpathInst(fragmentXpathInst), fragmentXpathInst,
+          fieldsAndNodes, fragmentRoot);
+    }
+  }
+
+  /**
+   * Moves the elements of the fragment at the end of the root element of the notice.
+   */
+  private static void moveFragment(final PhysicalSection section, final Element xmlDocRoot) {
+    final Document doc = xmlDocRoot.getOwnerDocument();
+    final List<Element> fragmentElements = new ArrayList<>(section.getRootElements());
+    section.beginBuild(xmlDocRoot);
+    try {
+      for (final Element elem : fragmentElements) {
+        xmlDocRoot.appendChild(EditorXmlUtils.adoptNode(doc, elem, USER_DATA_KEYS));
+      }
+    } finally {
+      section.endBuild(xmlDocRoot);
+    }
+  }
+}
@@ -10,6 +10,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
@@ -18,6 +20,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -113,6 +116,10 @@ public class PhysicalModel {
     return mainXsdPathOpt;
   }
 
+  XPath getXpathInst() {
+    return xpathInst;
+  }
+
   public UUID getNoticeId() {
     final String tagName = CBC_ID;
     // Get the direct child as we know it is directly under the root.
@@ -123,6 +130,23 @@ public class PhysicalModel {
     return UUID.fromString(text);
   }
 
+  /**
+   * @return The notice sub type, read from the XML using the xpath of the SDK field
+   */
+  public String getNoticeSubType() {
+    final String fieldId = ConceptualModel.FIELD_ID_NOTICE_SUB_TYPE;
+    final JsonNode field = fieldsAndNodes.getFieldById(fieldId);
+    final String xpathAbsolute = getTextStrict(field, FieldsAndNodes.XPATH_ABSOLUTE);
+    final NodeList nodeList =
+        XmlUtils.evaluateXpathAsNodeList(xpathInst, domDocument, xpathAbsolute, fieldId);
+    Validate.isTrue(nodeList.getLength() == 1,
+        "Expecting one notice sub type in the physical model but found %s via %s",
+        nodeList.getLength(), xpathAbsolute);
+    final String text = nodeList.item(0).getTextContent();
+    Validate.notBlank(text, "The physical model notice sub type is blank via %s", xpathAbsolute);
+    return text.strip();
+  }
+
   public final void setSdkVersionWithoutPatch(final SdkVersion sdkVersion) {
     final Node xmlElem = getSdkVersionElement();
     xmlElem.setTextContent(VersionHelper.prefixSdkVersionWithoutPatch(sdkVersion));
@@ -194,11 +218,70 @@ public class PhysicalModel {
       final boolean buildFields,
       final Path sdkRootFolder)
       throws ParserConfigurationException, SAXException, IOException {
+    return buildPhysicalModel(conceptModel, fieldsAndNodes, noticeInfoBySubtype,
+        documentInfoByType, debug, buildFields, sdkRootFolder, Optional.empty());
+  }
 
-    logger.info("Attempting to build physical model.");
+  /**
+   * Builds the physical model, optionally in parallel. The XML is the same.
+   *
+   * @param parallelPoolOpt If present, each top level repeatable node (lot, organisation, ...) is
+   *        built and sorted in its own XML document in this pool, the fragments are then moved in
+   *        the notice in order, see {@link PhysicalFragmentBuild}
+   */
+  public static PhysicalModel buildPhysicalModel(final ConceptualModel conceptModel,
+      final FieldsAndNodes fieldsAndNodes, final Map<String, JsonNode> noticeInfoBySubtype,
+      final Map<String, JsonNode> documentInfoByType, final boolean debug,
+      final boolean buildFields, final Path sdkRootFolder,
+      final Optional<ForkJoinPool> parallelPoolOpt)
+      throws ParserConfigurationException, SAXException, IOException {
+    return buildPhysicalModel(conceptModel, fieldsAndNodes, noticeInfoBySubtype,
+        documentInfoByType, debug, buildFields, sdkRootFolder, parallelPoolOpt,
+        PhysicalBuildStrategy.APPEND_THEN_SORT);
+  }
+
+  /**
+   * Builds the physical model, optionally in parallel, with the passed strategy.
+   *
+   * @param parallelPoolOpt If present, the top level repeatable nodes are built in parallel
+   * @param strategy How the elements are put in order, the elements of the top level repeatable
+   *        nodes built in parallel are always appended then sorted
+   */
+  public static PhysicalModel buildPhysicalModel(final ConceptualModel conceptModel,
+      final FieldsAndNodes fieldsAndNodes, final Map<String, JsonNode> noticeInfoBySubtype,
+      final Map<String, JsonNode> documentInfoByType, final boolean debug,
+      final boolean buildFields, final Path sdkRootFolder,
+      final Optional<ForkJoinPool> parallelPoolOpt, final PhysicalBuildStrategy strategy)
+      throws ParserConfigurationException, SAXException, IOException {
+    return buildPhysicalModel(conceptModel, fieldsAndNodes, noticeInfoBySubtype,
+        documentInfoByType, debug, buildFields, sdkRootFolder, Optional.empty(), parallelPoolOpt,
+        strategy);
+  }
+
+  /**
+   * Builds the physical model, optionally section by section so that the sections can later be
+   * rebuilt independently, see {@link NoticeSession}. The XML is the same.
+   *
+   * @param sectionsOpt The sections of the conceptual model, if present their root elements are
+   *        collected
+   * @param parallelPoolOpt If present, the top level repeatable nodes are built in parallel
+   * @param strategy How the elements are put in order, not used with parallelism. With sections
+   *        only the elements under the children of the root element are inserted in order, as the
+   *        sections are collected at the end of the root element
+   */
+  static PhysicalModel buildPhysicalModel(final ConceptualModel conceptModel,
+      final FieldsAndNodes fieldsAndNodes, final Map<String, JsonNode> noticeInfoBySubtype,
+      final Map<String, JsonNode> documentInfoByType, final boolean debug,
+      final boolean buildFields, final Path sdkRootFolder,
+      final Optional<List<PhysicalSection>> sectionsOpt,
+      final Optional<ForkJoinPool> parallelPoolOpt, final PhysicalBuildStrategy strategy)
+      throws ParserConfigurationException, SAXException, IOException {
+
+    logger.info("Attempting to build physical model, strategy={}", strategy.getText());
+    final long startNanos = System.nanoTime();
 
     final DocumentBuilder safeDocBuilder =
-        SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(true);
+        SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(true);
 
     logger.info("XML DOM namespaceAware={}", safeDocBuilder.isNamespaceAware());
     logger.info("XML DOM validating={}", safeDocBuilder.isValidating());
@@ -227,23 +310,66 @@ public class PhysicalModel {
       conceptModel.writeDotFile(fieldsAndNodes);
     }
 
-    // Recursion: start with the concept root.
-    final ConceptTreeNode conceptualModelTreeRootNode = conceptModel.getTreeRootNode();
-    final boolean onlyIfPriority = false;
-    final int depth = 0;
-    buildPhysicalModelRec(xmlDoc, fieldsAndNodes, conceptualModelTreeRootNode, xmlDocRoot, debug,
-        buildFields, depth, onlyIfPriority, xpathInst);
-
-    // Reorder the physical model.
     // The location of the XSDs is given in the SDK and could vary by SDK version.
     final SdkVersion sdkVersion = fieldsAndNodes.getSdkVersion();
     final Path pathToSpecificSdk = sdkRootFolder.resolve(sdkVersion.toStringWithoutPatch());
     final NoticeXmlTagSorter sorter =
         new NoticeXmlTagSorter(xpathInst, docTypeInfo, pathToSpecificSdk,
             fieldsAndNodes);
-    sorter.sortXml(xmlDocRoot);
-
     final Optional<Path> mainXsdPathOpt = sorter.getMainXsdPathOpt();
+
+    boolean sorted = false;
+    if (parallelPoolOpt.isPresent()) {
+      // The fragments are sorted as they are built.
+      final List<PhysicalSection> sections =
+          sectionsOpt.orElseGet(() -> PhysicalSection.listSections(conceptModel));
+      sorted = PhysicalFragmentBuild.buildSections(xmlDoc, fieldsAndNodes, sections, docTypeInfo,
+          debug, buildFields, xpathInst, sorter, parallelPoolOpt.get());
+      PhysicalSection.collectRootElements(xmlDocRoot, sections);
+    } else if (sectionsOpt.isPresent()) {
+      // Same order as the recursion on the root, one section at a time.
+      final List<PhysicalSection> sections = sectionsOpt.get();
+      final Optional<OrderedElementInserter> inserterOpt =
+          strategy == PhysicalBuildStrategy.ORDERED_INSERT
+              ? OrderedElementInserter.create(docTypeInfo, mainXsdPathOpt, true)
+              : Optional.empty();
+      for (final PhysicalSection section : sections) {
+        buildSection(xmlDoc, fieldsAndNodes, section, xmlDocRoot, debug, buildFields, xpathInst,
+            inserterOpt);
+      }
+      PhysicalSection.collectRootElements(xmlDocRoot, sections);
+      if (inserterOpt.isPresent() && inserterOpt.get().isComplete()) {
+        // Only the children of the root element are not in place.
+        sorter.sortRootChildren(xmlDocRoot);
+        sorted = true;
+      }
+    } else {
+      // Recursion: start with the concept root.
+      final ConceptTreeNode conceptualModelTreeRootNode = conceptModel.getTreeRootNode();
+      final boolean onlyIfPriority = false;
+      final int depth = 0;
+      final Optional<OrderedElementInserter> inserterOpt =
+          strategy == PhysicalBuildStrategy.ORDERED_INSERT
+              ? OrderedElementInserter.create(docTypeInfo, mainXsdPathOpt)
+              : Optional.empty();
+      buildPhysicalModelRec(xmlDoc, fieldsAndNodes, conceptualModelTreeRootNode, xmlDocRoot,
+          debug, buildFields, depth, onlyIfPriority, xpathInst, inserterOpt);
+      // All the elements are in place if they all had a known position.
+      sorted = inserterOpt.isPresent() && inserterOpt.get().isComplete();
+    }
+
+    // Reorder the physical model.
+    if (!sorted) {
+      if (parallelPoolOpt.isPresent()) {
+        sorter.sortXml(xmlDocRoot, parallelPoolOpt.get(), PhysicalFragmentBuild.USER_DATA_KEYS);
+      } else {
+        sorter.sortXml(xmlDocRoot);
+      }
+    }
+    logger.info("Built physical model in {} ms, strategy={}, sorted after build={}",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), strategy.getText(),
+        !sorted);
+
     if (mainXsdPathOpt.isPresent()) {
       Validate.isTrue(mainXsdPathOpt.get().toFile().exists(), "File does not exist: mainXsdPath=%s",
           mainXsdPathOpt);
@@ -251,6 +377,64 @@ public class PhysicalModel {
     return new PhysicalModel(xmlDoc, xpathInst, fieldsAndNodes, mainXsdPathOpt);
   }
 
+  /**
+   * Builds one section (top level conceptual item) under the XML root element. The elements of the
+   * section are appended at the end of the root element.
+   *
+   * @param doc The XML document, modified as a SIDE-EFFECT!
+   * @param section The section to build, its root elements are collected
+   * @param xmlDocRoot The XML root element
+   * @param inserterOpt If present the elements are inserted in order, it must append the children
+   *        of the root element
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "ITC_INHERITANCE_TYPE_CHECKING",
+      justification = "There are only two kinds of concept items.")
+  static void buildSection(final Document doc, final FieldsAndNodes fieldsAndNodes,
+      final PhysicalSection section, final Element xmlDocRoot, final boolean debug,
+      final boolean buildFields, final XPath xpathInst,
+      final Optional<OrderedElementInserter> inserterOpt) {
+    final boolean onlyIfPriority = false;
+    final int depth = 0;
+    section.beginBuild(xmlDocRoot);
+    try {
+      final ConceptTreeItem item = section.getConceptItem();
+      if (item instanceof ConceptTreeNode) {
+        buildNodesAndFields(doc, fieldsAndNodes, (ConceptTreeNode) item, xpathInst, xmlDocRoot,
+            debug, depth, onlyIfPriority, buildFields, inserterOpt);
+      } else {
+        buildFields(doc, fieldsAndNodes, (ConceptTreeField) item, xmlDocRoot, debug, depth,
+            onlyIfPriority, buildFields, inserterOpt);
+      }
+    } finally {
+      section.endBuild(xmlDocRoot);
+    }
+  }
+
+  /**
+   * Tells if the build of the passed top level node would reuse an element already present under
+   * the root element, like the build does for the first element of its xpath.
+   *
+   * @param conceptNode A top level node of the conceptual model
+   * @param xmlDocRoot The XML root element
+   * @return True if an existing element would be reused, false if the node creates its own
+   */
+  static boolean isReusingRootChild(final FieldsAndNodes fieldsAndNodes,
+      final ConceptTreeNode conceptNode, final Element xmlDocRoot, final XPath xpathInst) {
+    final String nodeId = conceptNode.getNodeId();
+    final String xpathRel = getTextStrict(fieldsAndNodes.getNodeById(nodeId), NODE_XPATH_RELATIVE);
+    for (final String xpathPart : getXpathPartsArr(xpathRel)) {
+      final PhysicalXpathPart px = handleXpathPart(xpathPart);
+      final String xpathExpr = px.getXpathExpr();
+      final String tag = px.getTagOrAttribute();
+      if (xmlDocRoot.getTagName().equals(tag) && xpathExpr.equals(tag)) {
+        continue; // Skipped by the build.
+      }
+      return XmlUtils.evaluateXpathAsNodeList(xpathInst, xmlDocRoot, xpathExpr, nodeId)
+          .getLength() > 0;
+    }
+    return false;
+  }
+
   /**
    * Recursive function used to build the physical model.
    *
@@ -261,11 +445,12 @@ public class PhysicalModel {
    * @param debug Adds extra debugging info in the XML if true
    * @param buildFields True if fields have to be built, false otherwise
    * @param depth Passed for debugging and logging purposes
+   * @param inserterOpt If present the elements are inserted in order, else they are appended
    */
   private static void buildPhysicalModelRec(final Document doc, final FieldsAndNodes fieldsAndNodes,
       final ConceptTreeNode conceptElem, final Element xmlNodeElem, final boolean debug,
       final boolean buildFields, final int depth, final boolean onlyIfPriority,
-      final XPath xpathInst) {
+      final XPath xpathInst, final Optional<OrderedElementInserter> inserterOpt) {
     Validate.notNull(conceptElem, "conceptElem is null");
     Validate.notNull(xmlNodeElem, "xmlElem is null, conceptElem=%s", conceptElem.getIdUnique());
 
@@ -279,13 +464,13 @@ public class PhysicalModel {
     // NODES.
     for (final ConceptTreeNode conceptNode : conceptElem.getConceptNodes()) {
       buildNodesAndFields(doc, fieldsAndNodes, conceptNode, xpathInst, xmlNodeElem, debug, depth,
-          onlyIfPriority, buildFields);
+          onlyIfPriority, buildFields, inserterOpt);
     }
 
     // FIELDS.
     for (final ConceptTreeField conceptField : conceptElem.getConceptFields()) {
       buildFields(doc, fieldsAndNodes, conceptField, xmlNodeElem, debug, depth,
-          onlyIfPriority, buildFields);
+          onlyIfPriority, buildFields, inserterOpt);
     }
 
     // if (debug) {
@@ -311,11 +496,12 @@ public class PhysicalModel {
    * @param onlyIfPriority Only build priority items (for xpath of other items which refer to them
    *        later)
    * @param buildFields True if fields have to be built, false otherwise
+   * @param inserterOpt If present the elements are inserted in order, else they are appended
    */
   private static boolean buildNodesAndFields(final Document doc,
       final FieldsAndNodes fieldsAndNodes, final ConceptTreeNode conceptNode, final XPath xpathInst,
       final Element xmlNodeElem, final boolean debug, final int depth, boolean onlyIfPriority,
-      final boolean buildFields) {
+      final boolean buildFields, final Optional<OrderedElementInserter> inserterOpt) {
 
     final String depthStr = StringUtils.leftPad(" ", depth * 4);
 
@@ -388,6 +574,7 @@ public class PhysicalModel {
         if (Node.ELEMENT_NODE == xmlNode.getNodeType()) {
           // An existing element was found, reuse it.
           partElem = (Element) xmlNode;
+          PhysicalSection.onReuse(previousElem, partElem);
         } else {
           throw new RuntimeException(String.format("NodeType=%s not an Element", xmlNode));
         }
@@ -401,7 +588,8 @@ public class PhysicalModel {
         partElem = createElemXml(doc, tag);
       }
 
-      previousElem.appendChild(partElem); // SIDE-EFFECT! Adding item to the tree.
+      appendElem(previousElem, partElem, inserterOpt); // SIDE-EFFECT! Adding item to the tree.
+      PhysicalSection.onAppend(previousElem, partElem);
 
       if (schemeNameOpt.isPresent()) {
         final String schemeName = schemeNameOpt.get();
@@ -421,6 +609,7 @@ public class PhysicalModel {
     // The element nodeElem is cac:JurisdictionRegionAddress, so it is the node.
     final Element nodeElem = partElem;
     Validate.notNull(nodeElem, "partElem is null, conceptElem=%s", conceptNode.getIdUnique());
+    NoticeErrorLocator.recordConceptItem(nodeElem, conceptNode);
 
     // This could make the XML invalid, this is meant to be read by humans.
     if (debug) {
@@ -432,7 +621,7 @@ public class PhysicalModel {
 
     // Build child nodes recursively.
     buildPhysicalModelRec(doc, fieldsAndNodes, conceptNode, nodeElem, debug, buildFields, depth + 1,
-        onlyIfPriority, xpathInst);
+        onlyIfPriority, xpathInst, inserterOpt);
 
     return nodeMetaRepeatable;
   }
@@ -447,11 +636,12 @@ public class PhysicalModel {
    * @param depth The current depth level passed for debugging and logging purposes
    * @param onlyIfPriority add only elements that have priority
    * @param buildFields If false it will abort (only exists to simplify the code elsewhere)
+   * @param inserterOpt If present the elements are inserted in order, else they are appended
    */
   private static void buildFields(final Document doc, final FieldsAndNodes fieldsAndNodes,
       final ConceptTreeField conceptField, final Element xmlNodeElem,
       final boolean debug, final int depth, final boolean onlyIfPriority,
-      final boolean buildFields) {
+      final boolean buildFields, final Optional<OrderedElementInserter> inserterOpt) {
 
     if (!buildFields) {
       return;
@@ -493,6 +683,7 @@ public class PhysicalModel {
     }
 
     final String attrTemp = "temp";
+    Attr fieldAttr = null;
     for (final String partXpath : parts) {
 
       final PhysicalXpathPart px = handleXpathPart(partXpath);
@@ -515,6 +706,10 @@ public class PhysicalModel {
         // We have to add this attribute to the previous element.
         logger.debug(depthStr + " Creating attribute=" + tagOrAttr);
         previousElem.setAttribute(tagOrAttr.substring(1), value); // SIDE-EFFECT!
+        fieldAttr = previousElem.getAttributeNode(tagOrAttr.substring(1));
+        if (previousElem == doc.getDocumentElement()) {
+          PhysicalSection.onRootModified(previousElem);
+        }
         // partElem = ... NO we do not want to reassign the partElem. This ensures that after we
         // exit the loop the partElem still points to the last XML element.
         // We also cannot set an attribute on an attribute!
@@ -527,7 +722,8 @@ public class PhysicalModel {
 
       // This check is to avoid a problem with attributes.
       if (!isAttribute && partElem != null) {
-        previousElem.appendChild(partElem); // SIDE-EFFECT! Adding item to the tree.
+        appendElem(previousElem, partElem, inserterOpt); // SIDE-EFFECT! Adding item to the tree.
+        PhysicalSection.onAppend(previousElem, partElem);
 
         if (schemeNameOpt.isPresent()) {
           partElem.setAttribute(XML_ATTR_SCHEME_NAME, schemeNameOpt.get());
@@ -591,6 +787,7 @@ public class PhysicalModel {
     // Set value of the field.
     Validate.notNull(value, "value is null for fieldId=%s", fieldId, "fieldId=" + fieldId);
     fieldElem.setTextContent(value);
+    NoticeErrorLocator.recordConceptItem(fieldAttr != null ? fieldAttr : fieldElem, conceptField);
 
     final String fieldType = JsonUtils.getTextStrict(fieldMeta, FIELD_TYPE);
     if (FIELD_TYPE_CODE.equals(fieldType)) {
@@ -598,7 +795,8 @@ public class PhysicalModel {
       // Find the SDK codelist identifier.
       final JsonNode codelistValue =
           FieldsAndNodes.getFieldPropertyValue(fieldMeta, FIELD_CODE_LIST);
-      String codelistName = JsonUtils.getTextStrict(codelistValue, "id", "fieldId=" + fieldId);
+      String codelistName =
+          JsonUtils.getTextStrict(codelistValue, "id", () -> "fieldId=" + fieldId);
       if (ConceptualModel.FIELD_SECTOR_OF_ACTIVITY.equals(fieldId)) {
         // TODO sector, temporary hardcoded fix here, this information should be provided in the
         // SDK. Maybe via a special key/value.
@@ -653,13 +851,14 @@ public class PhysicalModel {
     // Since SDK 1.6.0 the SDK provides this information (TEDEFO-1744).
     // If these namespaces evolve they could start to differ by SDK version.
     // This is why they have been moved to the SDK metadata.
-    final Map<String, String> map = docTypeInfo.buildAdditionalNamespaceUriByPrefix();
+    // The map is built once by SDK version and document type.
+    final Map<String, String> map = XpathUtils.getNamespaceUriByPrefix(docTypeInfo);
 
     final String xmlnsUri = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
     for (final Entry<String, String> entry : map.entrySet()) {
       rootElement.setAttributeNS(xmlnsUri, XMLNS + ":" + entry.getKey(), entry.getValue());
     }
-    return XpathUtils.setupXpathInst(docTypeInfo, Optional.of(map));
+    return XpathUtils.setupXpathInst(docTypeInfo, Optional.empty());
   }
 
   /**
@@ -747,6 +946,18 @@ public class PhysicalModel {
     return new PhysicalXpathPart(xpathExpr, tagOrAttr, schemeNameOpt);
   }
 
+  /**
+   * Appends the child element, or inserts it in order if an inserter is present.
+   */
+  private static void appendElem(final Element parentElem, final Element childElem,
+      final Optional<OrderedElementInserter> inserterOpt) {
+    if (inserterOpt.isPresent()) {
+      inserterOpt.get().insert(parentElem, childElem);
+    } else {
+      parentElem.appendChild(childElem);
+    }
+  }
+
   /**
    * Builds a W3C DOM element.
    *
@@ -0,0 +1,249 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.xpath.XPath;
+import org.apache.commons.lang3.Validate;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import eu.europa.ted.eforms.noticeeditor.sorting.NoticeXmlTagSorter;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+import eu.europa.ted.eforms.noticeeditor.util.XmlUtils;
+
+/**
+ * A section of the notice: a top level item of the conceptual model (a direct child of the root)
+ * and the XML elements it built directly under the XML root. A section which did not change keeps
+ * its XML elements when the notice is rebuilt, see {@link NoticeSession}.
+ *
+ * <p>
+ * While a section is built the XML elements it creates are tagged with it (DOM user data, this is
+ * not serialized). If a section reuses an element of another section, both are marked as shared as
+ * they cannot be rebuilt independently.
+ * </p>
+ */
+final class PhysicalSection {
+
+  /**
+   * Key of the DOM user data holding the section of an element.
+   */
+  static final String USER_DATA_KEY = "editorSection";
+
+  private final ConceptTreeItem conceptItem;
+
+  /**
+   * Hash of the content of the conceptual item, including the children.
+   */
+  private final String fingerprint;
+
+  /**
+   * The elements built directly under the XML root, in document order.
+   */
+  private final List<Element> rootElements = new ArrayList<>();
+
+  private boolean shared;
+
+  private PhysicalSection(final ConceptTreeItem conceptItem) {
+    Validate.notNull(conceptItem);
+    this.conceptItem = conceptItem;
+    this.fingerprint = buildFingerprint(conceptItem);
+  }
+
+  /**
+   * @return The sections of the conceptual model, in the order in which they are built (nodes then
+   *         fields, like the root of the conceptual model)
+   */
+  static List<PhysicalSection> listSections(final ConceptualModel conceptModel) {
+    final ConceptTreeNode rootNode = conceptModel.getTreeRootNode();
+    final List<PhysicalSection> sections =
+        new ArrayList<>(rootNode.getConceptNodes().size() + rootNode.getConceptFields().size());
+    for (final ConceptTreeNode conceptNode : rootNode.getConceptNodes()) {
+      sections.add(new PhysicalSection(conceptNode));
+    }
+    for (final ConceptTreeField conceptField : rootNode.getConceptFields()) {
+      sections.add(new PhysicalSection(conceptField));
+    }
+    return sections;
+  }
+
+  ConceptTreeItem getConceptItem() {
+    return conceptItem;
+  }
+
+  String getFingerprint() {
+    return fingerprint;
+  }
+
+  List<Element> getRootElements() {
+    return Collections.unmodifiableList(rootElements);
+  }
+
+  boolean isShared() {
+    return shared;
+  }
+
+  /**
+   * @return True if the passed XML node was built by this section
+   */
+  boolean isOwnerOf(final Node node) {
+    return getSection(node) == this;
+  }
+
+  /**
+   * The elements of this section are about to be built under the passed root element.
+   */
+  void beginBuild(final Element xmlRoot) {
+    rootElements.clear();
+    shared = false;
+    xmlRoot.setUserData(USER_DATA_KEY, this, null);
+  }
+
+  /**
+   * The build of this section is done, its elements are at the end of the root element.
+   */
+  void endBuild(final Element xmlRoot) {
+    xmlRoot.setUserData(USER_DATA_KEY, null, null);
+    Node child = xmlRoot.getLastChild();
+    while (child != null && child.getUserData(USER_DATA_KEY) == this) {
+      rootElements.add((Element) child);
+      child = child.getPreviousSibling();
+    }
+    Collections.reverse(rootElements);
+  }
+
+  /**
+   * Sorts the elements built by this section if it is a node, like a full sort of the notice would.
+   * The elements of other sections are not visited.
+   *
+   * @param sorter The sorter, its xpath instance must be the passed one
+   * @param xmlRoot The XML root element under which this section was built
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "ITC_INHERITANCE_TYPE_CHECKING",
+      justification = "There are only two kinds of concept items.")
+  void sortSubtrees(final NoticeXmlTagSorter sorter, final XPath xpathInst,
+      final FieldsAndNodes fieldsAndNodes, final Element xmlRoot) {
+    if (!(conceptItem instanceof ConceptTreeNode)) {
+      return; // The fields directly under the root are sorted with the root children.
+    }
+    final String nodeId = ((ConceptTreeNode) conceptItem).getNodeId();
+    final String xpathRel =
+        JsonUtils.getTextStrict(fieldsAndNodes.getNodeById(nodeId), FieldsAndNodes.XPATH_RELATIVE);
+    for (final Element nodeElem : XmlUtils.evaluateXpathAsElemList(xpathInst, xmlRoot, xpathRel,
+        nodeId)) {
+      if (isOwnerOf(nodeElem)) {
+        sorter.sortNodeSubtree(nodeElem, nodeId);
+      }
+    }
+  }
+
+  /**
+   * Collects the root elements of the sections after the whole notice has been built.
+   */
+  static void collectRootElements(final Element xmlRoot, final List<PhysicalSection> sections) {
+    for (final PhysicalSection section : sections) {
+      section.rootElements.clear();
+    }
+    for (Node child = xmlRoot.getFirstChild(); child != null; child = child.getNextSibling()) {
+      final PhysicalSection section = getSection(child);
+      if (section != null) {
+        section.rootElements.add((Element) child);
+      }
+    }
+  }
+
+  /**
+   * To call when an element is appended by the build. A new element belongs to the section of its
+   * parent.
+   */
+  static void onAppend(final Element parentElem, final Element childElem) {
+    if (childElem.getUserData(USER_DATA_KEY) == null) {
+      final Object section = parentElem.getUserData(USER_DATA_KEY);
+      if (section != null) {
+        childElem.setUserData(USER_DATA_KEY, section, null);
+      }
+    }
+  }
+
+  /**
+   * To call when the build reuses an existing element instead of creating one.
+   */
+  static void onReuse(final Element parentElem, final Element reusedElem) {
+    final PhysicalSection current = getSection(parentElem);
+    final PhysicalSection owner = getSection(reusedElem);
+    if (current != owner) {
+      markShared(current);
+      markShared(owner);
+    }
+  }
+
+  /**
+   * To call when the build modifies the root element itself (attribute), the root is common to all
+   * sections.
+   */
+  static void onRootModified(final Element xmlRoot) {
+    markShared(getSection(xmlRoot));
+  }
+
+  private static void markShared(final PhysicalSection section) {
+    if (section != null) {
+      section.shared = true;
+    }
+  }
+
+  private static PhysicalSection getSection(final Node node) {
+    final Object data = node.getUserData(USER_DATA_KEY);
+    return data instanceof PhysicalSection ? (PhysicalSection) data : null;
+  }
+
+  private static String buildFingerprint(final ConceptTreeItem item) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    updateFingerprintRec(digest, item);
+    final StringBuilder sb = new StringBuilder(64);
+    for (final byte b : digest.digest()) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Everything which has an impact on the XML, in the order of the build.
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value = "ITC_INHERITANCE_TYPE_CHECKING",
+      justification = "There are only two kinds of concept items.")
+  private static void updateFingerprintRec(final MessageDigest digest,
+      final ConceptTreeItem item) {
+    if (item instanceof ConceptTreeNode) {
+      final ConceptTreeNode node = (ConceptTreeNode) item;
+      update(digest, "N", node.getIdUnique(), node.getNodeId(),
+          Integer.toString(node.getCounter()), Boolean.toString(node.isRepeatable()));
+      for (final ConceptTreeNode child : node.getConceptNodes()) {
+        updateFingerprintRec(digest, child);
+      }
+      for (final ConceptTreeField child : node.getConceptFields()) {
+        updateFingerprintRec(digest, child);
+      }
+      update(digest, "/N");
+    } else {
+      final ConceptTreeField field = (ConceptTreeField) item;
+      update(digest, "F", field.getIdUnique(), field.getFieldId(),
+          Integer.toString(field.getCounter()),
+          field.getValue() == null ? "\u0001" : field.getValue());
+    }
+  }
+
+  private static void update(final MessageDigest digest, final String... parts) {
+    for (final String part : parts) {
+      // Separate the parts with a character which cannot be in them.
+      digest.update(part.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+  }
+}
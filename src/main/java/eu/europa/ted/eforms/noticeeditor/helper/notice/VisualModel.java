@@ -39,7 +39,7 @@ public class VisualModel {
 
   public static final String VIS_SDK_VERSION = "sdkVersion";
   public static final String VIS_NOTICE_UUID = "noticeUuid";
-  private static final String VIS_NOTICE_SUB_TYPE = "noticeSubType";
+  static final String VIS_NOTICE_SUB_TYPE = "noticeSubType";
 
   static final String VIS_CHILDREN = "children";
   static final String VIS_CONTENT_COUNT = "contentCount";
@@ -52,7 +52,7 @@ public class VisualModel {
   private static final String VIS_TYPE_FIELD = "field";
   private static final String VIS_TYPE_NON_FIELD = "non-field";
 
-  private static final String SUFFIX_GENERATED = "-generated";
+  static final String SUFFIX_GENERATED = "-generated";
 
   /**
    * As we use a web UI the data is received as JSON. We work directly on this JSON tree model.
@@ -62,7 +62,7 @@ public class VisualModel {
   @Override
   public String toString() {
     try {
-      return JsonUtils.getStandardJacksonObjectMapper().writeValueAsString(visRoot);
+      return JsonUtils.getJsonWriter().writeValueAsString(visRoot);
     } catch (JsonProcessingException ex) {
       throw new RuntimeException(ex);
     }
@@ -199,16 +199,18 @@ public class VisualModel {
 
   /**
    * Fills in the gaps by adding non-repeatable nodes to the concept model. Filling. See unit test
-   * about filling to fully understand this.
+   * about filling to fully understand this. The SDK ancestors of the node are precomputed, see
+   * {@link FieldsAndNodes#getNodeAncestorIndexes(String)}.
    *
    * @param fieldsAndNodes SDK meta info
    * @param closestParentNode This is the closest parent node we have in the model
    * @param cn The current conceptual node
    */
-  private static void addIntermediaryNonRepeatingNodesRec(final FieldsAndNodes fieldsAndNodes,
+  private static void addIntermediaryNonRepeatingNodes(final FieldsAndNodes fieldsAndNodes,
       final ConceptTreeNode closestParentNode, final ConceptTreeNode cn) {
 
-    if (closestParentNode.getNodeId().equals(cn.getNodeId())) {
+    final String closestParentNodeId = closestParentNode.getNodeId();
+    if (closestParentNodeId.equals(cn.getNodeId())) {
       // cn is the closest parent, stop.
       return;
     }
@@ -217,36 +219,44 @@ public class VisualModel {
       return;
     }
 
-    final JsonNode nodeMeta = fieldsAndNodes.getNodeById(cn.getNodeId());
-    final String nodeParentId =
-        JsonUtils.getTextStrict(nodeMeta, FieldsAndNodes.NODE_PARENT_NODE_ID);
-    if (nodeParentId.equals(closestParentNode.getNodeId())) {
-      // The closestParent is the parent, just attach it and stop.
-      // -> closestParent -> cn
-      closestParentNode.addConceptNode(cn, false);
-      return;
-    }
+    // Walk up the SDK ancestors: closestParent -> cnNew -> ... -> cnNew -> cn
+    ConceptTreeNode child = cn;
+    for (final int nodeParentIndex : fieldsAndNodes.getNodeAncestorIndexes(cn.getNodeId())) {
+      final String nodeParentId = fieldsAndNodes.getNodeIdByIndex(nodeParentIndex);
+      if (nodeParentId.equals(closestParentNodeId)) {
+        // The closestParent is the parent, just attach it and stop.
+        // -> closestParent -> child
+        closestParentNode.addConceptNode(child, false);
+        return;
+      }
 
-    final boolean isRepeatable = fieldsAndNodes.isNodeRepeatable(nodeParentId);
-    if (isRepeatable) {
-      // The SDK says the desired parentNodeId is repeatable and is missing in the
-      // visual model, thus we have a serious problem!
-      final String msg =
-          String.format("Problem in visual node hierarchy, unexpected missing repeatable nodeId=%s",
-              nodeParentId);
-      System.err.println(msg);
-      // throw new RuntimeException(msg);
-    }
+      final boolean isRepeatable = fieldsAndNodes.isNodeRepeatableByIndex(nodeParentIndex);
+      if (isRepeatable) {
+        // The SDK says the desired parentNodeId is repeatable and is missing in the
+        // visual model, thus we have a serious problem!
+        final String msg = String.format(
+            "Problem in visual node hierarchy, unexpected missing repeatable nodeId=%s",
+            nodeParentId);
+        System.err.println(msg);
+        // throw new RuntimeException(msg);
+      }
 
-    // The parent is not the closest parent we know about and it is not repeatable.
-    // Try to create an intermediary node in the conceptual model.
-    // -> closestParent -> cnNew -> cn
-    final ConceptTreeNode cnNew =
-        new ConceptTreeNode(nodeParentId + SUFFIX_GENERATED, nodeParentId, 1, isRepeatable);
-    cnNew.addConceptNode(cn, false);
+      // The parent is not the closest parent we know about and it is not repeatable.
+      // Create an intermediary node in the conceptual model.
+      // -> closestParent -> cnNew -> child
+      final ConceptTreeNode cnNew =
+          new ConceptTreeNode(nodeParentId + SUFFIX_GENERATED, nodeParentId, 1, isRepeatable);
+      cnNew.addConceptNode(child, false);
 
-    // There may be more to add, recursion:
-    addIntermediaryNonRepeatingNodesRec(fieldsAndNodes, closestParentNode, cnNew);
+      if (ConceptualModel.ND_ROOT.equals(nodeParentId)) {
+        return;
+      }
+      // There may be more to add.
+      child = cnNew;
+    }
+    // The chain stops before the root only if a parent is missing in the SDK data.
+    throw new RuntimeException(
+        String.format("Parent node not found in the SDK for nodeId=%s", child.getNodeId()));
   }
 
   /**
@@ -449,7 +459,7 @@ public class VisualModel {
 
         // See unit test about filling to fully understand this.
         // closestParentNode.addConceptNode(cn); // NO: there may be more items to fill in.
-        addIntermediaryNonRepeatingNodesRec(fieldsAndNodes, closestParentNode, cn);
+        addIntermediaryNonRepeatingNodes(fieldsAndNodes, closestParentNode, cn);
       }
 
       // Always add the current field.
@@ -0,0 +1,122 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import org.apache.commons.lang3.Validate;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies a JSON patch (RFC 6902) to the visual model, this allows the user interface to only send
+ * what changed in the form. The operations add, remove and replace are supported, the paths are
+ * JSON pointers (RFC 6901) relative to the visual root.
+ *
+ * <p>
+ * Example: [{ "op": "replace", "path": "/children/3/children/0/value", "value": "abc" }]
+ * </p>
+ */
+public class VisualModelPatch {
+
+  private static final String OP = "op";
+  private static final String PATH = "path";
+  private static final String VALUE = "value";
+
+  private static final String OP_ADD = "add";
+  private static final String OP_REMOVE = "remove";
+  private static final String OP_REPLACE = "replace";
+
+  /**
+   * JSON pointer index meaning after the last item of an array.
+   */
+  private static final String END_OF_ARRAY = "-";
+
+  private VisualModelPatch() {
+    throw new AssertionError("Utility class.");
+  }
+
+  /**
+   * @param visRoot The visual root, modified as a SIDE-EFFECT!
+   * @param patch The JSON patch, an array of operations applied in order
+   * @throws IllegalArgumentException If the patch is invalid or does not match the visual model,
+   *         the visual root may then be partially modified
+   */
+  public static void apply(final ObjectNode visRoot, final JsonNode patch) {
+    Validate.notNull(visRoot, "visRoot is null");
+    Validate.isTrue(patch != null && patch.isArray(), "The patch must be an array of operations");
+    for (final JsonNode operation : patch) {
+      Validate.isTrue(operation.isObject(), "The patch operation must be an object, found %s",
+          operation);
+      final String op = getText(operation, OP);
+      final String path = getText(operation, PATH);
+      final JsonPointer pointer = JsonPointer.compile(path);
+      Validate.isTrue(!pointer.matches(), "The patch cannot replace the visual root, op=%s", op);
+
+      final JsonNode parent = visRoot.at(pointer.head());
+      Validate.isTrue(parent.isContainerNode(), "Nothing to patch at path=%s", path);
+      final JsonPointer last = pointer.last();
+
+      switch (op) {
+        case OP_ADD:
+          add(parent, last, getValue(operation, path), path);
+          break;
+        case OP_REMOVE:
+          remove(parent, last, path);
+          break;
+        case OP_REPLACE:
+          remove(parent, last, path);
+          add(parent, last, getValue(operation, path), path);
+          break;
+        default:
+          throw new IllegalArgumentException(
+              String.format("Unsupported patch op=%s for path=%s", op, path));
+      }
+    }
+  }
+
+  private static String getText(final JsonNode operation, final String key) {
+    final JsonNode text = operation.get(key);
+    Validate.isTrue(text != null && text.isTextual(), "The patch %s is missing, operation=%s", key,
+        operation);
+    return text.textValue();
+  }
+
+  private static JsonNode getValue(final JsonNode operation, final String path) {
+    final JsonNode value = operation.get(VALUE);
+    Validate.isTrue(value != null, "The patch value is missing for path=%s", path);
+    return value;
+  }
+
+  private static void add(final JsonNode parent, final JsonPointer last, final JsonNode value,
+      final String path) {
+    if (parent.isObject()) {
+      ((ObjectNode) parent).set(last.getMatchingProperty(), value);
+      return;
+    }
+    final ArrayNode array = (ArrayNode) parent;
+    if (END_OF_ARRAY.equals(last.getMatchingProperty())) {
+      array.add(value);
+      return;
+    }
+    final int index = getArrayIndex(last, path);
+    Validate.isTrue(index <= array.size(), "Index out of bounds for path=%s", path);
+    array.insert(index, value);
+  }
+
+  private static void remove(final JsonNode parent, final JsonPointer last, final String path) {
+    if (parent.isObject()) {
+      final JsonNode removed = ((ObjectNode) parent).remove(last.getMatchingProperty());
+      Validate.isTrue(removed != null, "Nothing to remove at path=%s", path);
+      return;
+    }
+    final ArrayNode array = (ArrayNode) parent;
+    final int index = getArrayIndex(last, path);
+    Validate.isTrue(index < array.size(), "Index out of bounds for path=%s", path);
+    array.remove(index);
+  }
+
+  private static int getArrayIndex(final JsonPointer last, final String path) {
+    final int index = last.getMatchingIndex();
+    Validate.isTrue(index >= 0, "Expecting an array index for path=%s", path);
+    return index;
+  }
+}
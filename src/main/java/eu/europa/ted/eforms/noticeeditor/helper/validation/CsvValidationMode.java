@@ -1,5 +1,8 @@
 package eu.europa.ted.eforms.noticeeditor.helper.validation;
 
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+
 public enum CsvValidationMode {
   STATIC("static"), DYNAMIC("dynamic");
 
@@ -12,4 +15,21 @@ public enum CsvValidationMode {
   public String getText() {
     return text;
   }
+
+  /**
+   * @param text The text of the mode, for example "static", may be blank
+   * @return The mode, empty if the text is blank
+   * @throws IllegalArgumentException If the text is not blank and unknown
+   */
+  public static Optional<CsvValidationMode> fromTextOpt(final String text) {
+    if (StringUtils.isBlank(text)) {
+      return Optional.empty();
+    }
+    for (final CsvValidationMode mode : values()) {
+      if (mode.text.equals(text)) {
+        return Optional.of(mode);
+      }
+    }
+    throw new IllegalArgumentException(String.format("Unknown validation mode: %s", text));
+  }
 }
@@ -1,6 +1,9 @@
 package eu.europa.ted.eforms.noticeeditor.helper.validation;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
@@ -8,22 +11,28 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.stream.StreamResult;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -34,7 +43,7 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -53,6 +62,7 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.PhysicalModel;
+import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
 import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
 import eu.europa.ted.eforms.noticeeditor.util.XmlUtils;
 
@@ -84,6 +94,8 @@ public class CvsApiClient {
   private final String userAgent;
   private final String cvsApiRootUrl;
   private final ObjectMapper objectMapper;
+  private final CvsRetryPolicy retryPolicy;
+  private final Optional<CvsCircuitBreaker> circuitBreakerOpt;
 
   /**
    * @param closeableHttpClient A closeable HTTP client, see provided static method to build one
@@ -96,11 +108,31 @@ public class CvsApiClient {
   public CvsApiClient(final CloseableHttpClient closeableHttpClient,
       final ObjectMapper objectMapper, final String cvsApiRootUrl, final String tedDevApiKey,
       final Optional<String> userAgent) {
+    this(closeableHttpClient, objectMapper, cvsApiRootUrl, tedDevApiKey, userAgent,
+        CvsRetryPolicy.noRetry(), Optional.empty());
+  }
+
+  /**
+   * @param closeableHttpClient A closeable HTTP client, see provided static method to build one
+   * @param objectMapper The object mapper to be used for the JSON payload
+   * @param cvsApiRootUrl The url to the desired CVS service
+   * @param tedDevApiKey Your TED DEVELOPER API key
+   * @param userAgent An optional user agent of your choice, it could help find back logs on the
+   *        side of CVS or inside your network.
+   * @param retryPolicy How to retry when the CVS is overloaded, it can be shared by many clients
+   * @param circuitBreakerOpt Optional circuit breaker, it should be shared by all clients
+   */
+  public CvsApiClient(final CloseableHttpClient closeableHttpClient,
+      final ObjectMapper objectMapper, final String cvsApiRootUrl, final String tedDevApiKey,
+      final Optional<String> userAgent, final CvsRetryPolicy retryPolicy,
+      final Optional<CvsCircuitBreaker> circuitBreakerOpt) {
     this.closeableHttpClient = closeableHttpClient;
     this.tedDevApiKey = tedDevApiKey;
     this.userAgent = userAgent.orElse(DEFAULT_USER_AGENT);
     this.cvsApiRootUrl = cvsApiRootUrl;
     this.objectMapper = objectMapper;
+    this.retryPolicy = retryPolicy;
+    this.circuitBreakerOpt = circuitBreakerOpt;
   }
 
   /**
@@ -117,50 +149,95 @@ public class CvsApiClient {
   public String validateNoticeXml(final String noticeXml, final Optional<String> svrlLangA2,
       final Optional<String> eformsSdkVersion, final Optional<CsvValidationMode> sdkValidationMode)
       throws IOException {
-    if (noticeXml == null || noticeXml.isEmpty()) {
-      throw new RuntimeException("Expecting notice xml but it is blank.");
-    }
-    final String noticeInBase64 = toBase64(noticeXml);
+    final HttpEntity payload =
+        buildValidationPayload(noticeXml, svrlLangA2, eformsSdkVersion, sdkValidationMode);
+    return httpPostToCvs(buildValidationUrl(), payload,
+        entity -> entity != null ? EntityUtils.toString(entity, CHARSET) : null);
+  }
+
+  /**
+   * Uses the CVS API to validate the notice, the SVRL is not kept: the failed asserts are read
+   * while the response body is being received and directly put in a JSON report.
+   *
+   * @param noticeXml The notice XML text
+   * @param svrlLangA2 Language to generate the SVRL report, for example "en" for English
+   * @param eformsSdkVersion Specify the eForms SDK version to use for validating the XML document
+   *        encoded in base64, if not specified the version contained in the XML will be used
+   * @param sdkValidationMode Specify the validation mode that will be applied, selecting the
+   *        corresponding sub-group of the eForms SDK version ("static" or "dynamic")
+   * @return The JSON report, see {@link #createJsonReport(InputStream, Optional)}
+   */
+  public ObjectNode validateNoticeXmlAsJsonReport(final String noticeXml,
+      final Optional<String> svrlLangA2, final Optional<String> eformsSdkVersion,
+      final Optional<CsvValidationMode> sdkValidationMode) throws IOException {
+    final HttpEntity payload =
+        buildValidationPayload(noticeXml, svrlLangA2, eformsSdkVersion, sdkValidationMode);
+    return httpPostToCvs(buildValidationUrl(), payload, entity -> {
+      Validate.notNull(entity, "CVS response without body");
+      try (InputStream is = entity.getContent()) {
+        return createJsonReport(is, svrlLangA2);
+      }
+    });
+  }
 
+  private String buildValidationUrl() {
     // How to build the API url and the JSON is internal knowledge.
     // It will be done here.
 
     // See: https://cvs.ted.europa.eu/swagger-ui/index.html#/notice-rest-controller/validate
-    final String postUrl = this.cvsApiRootUrl + "/" + CVS_API_V1_VALIDATION;
+    return this.cvsApiRootUrl + "/" + CVS_API_V1_VALIDATION;
+  }
 
-    final String requestContentType = MIME_TYPE_APPLICATION_JSON; // Known to be JSON.
-    final String responseContentType = "*/*"; // "application/xml"; (if valid it is xml, otherwise?)
+  /**
+   * The payload is JSON, the notice is in base64. It is written while being sent, the notice XML
+   * is encoded on the fly.
+   */
+  private HttpEntity buildValidationPayload(final String noticeXml,
+      final Optional<String> svrlLangA2, final Optional<String> eformsSdkVersion,
+      final Optional<CsvValidationMode> sdkValidationMode) {
+    if (noticeXml == null || noticeXml.isEmpty()) {
+      throw new RuntimeException("Expecting notice xml but it is blank.");
+    }
+    final Map<String, String> otherFields = new LinkedHashMap<>();
+    putIfPresent(otherFields, "language", svrlLangA2);
 
-    final ObjectNode jsonPayload = this.objectMapper.createObjectNode();
-    {
-      jsonPayload.put("notice", noticeInBase64);
-      putIfPresent(jsonPayload, "language", svrlLangA2);
+    final Optional<String> validationModeOpt =
+        sdkValidationMode.isPresent() ? Optional.of(sdkValidationMode.get().getText())
+            : Optional.empty();
+    putIfPresent(otherFields, "validationMode", validationModeOpt);
 
-      final Optional<String> validationModeOpt =
-          sdkValidationMode.isPresent() ? Optional.of(sdkValidationMode.get().getText())
-              : Optional.empty();
-      putIfPresent(jsonPayload, "validationMode", validationModeOpt);
+    putIfPresent(otherFields, "eFormsSdkVersion", eformsSdkVersion);
+    return new CvsValidationRequestEntity(this.objectMapper.getFactory(), noticeXml,
+        otherFields);
+  }
 
-      putIfPresent(jsonPayload, "eFormsSdkVersion", eformsSdkVersion);
+  private static void putIfPresent(final Map<String, String> fields, final String key,
+      final Optional<String> valueOpt) {
+    if (valueOpt.isPresent()) {
+      fields.put(key, valueOpt.get());
     }
-
-    return httpPostToCvs(postUrl, requestContentType, responseContentType, jsonPayload, svrlLangA2);
   }
 
-  private static void putIfPresent(final ObjectNode jsonPayload, final String key,
-      final Optional<String> eformsSdkVersion) {
-    if (eformsSdkVersion.isPresent()) {
-      jsonPayload.put(key, eformsSdkVersion.get());
-    }
+  /**
+   * Reads the body of a successful CVS response.
+   */
+  @FunctionalInterface
+  private interface CvsResponseBodyReader<T> {
+    /**
+     * @param entity The response entity, it could be null
+     */
+    T read(HttpEntity entity) throws IOException;
   }
 
   /**
-   * @param responseHandler Configures how to handle the response
-   * @return The response body
+   * @param bodyReader Configures how to read the body of a successful response
+   * @return The response body, as read by the body reader
    */
-  private String httpPostToCvs(final String postUrl, final String requestContentType,
-      final String responseContentType, final ObjectNode jsonPayload,
-      final Optional<String> svrlLangA2) throws IOException {
+  private <T> T httpPostToCvs(final String postUrl, final HttpEntity payload,
+      final CvsResponseBodyReader<T> bodyReader) throws IOException {
+    final String requestContentType = MIME_TYPE_APPLICATION_JSON; // Known to be JSON.
+    final String responseContentType = "*/*"; // "application/xml"; (if valid it is xml, otherwise?)
+
     //
     // SETUP HTTP POST.
     //
@@ -174,40 +251,26 @@ public class CvsApiClient {
     //
     // HTTP POST ENTITY (payload).
     //
-    post.setEntity(new StringEntity(jsonPayload.toString(), CHARSET));
+    post.setEntity(payload);
 
     //
     // DEFINE HOW THE RESPONSE SHOULD BE HANDLED.
     //
     // https://docs.ted.europa.eu/api/endpoints/cvs-ted-europa-eu.html#_responses
-    final ResponseHandler<String> responseHandler = new ResponseHandler<>() {
+    final ResponseHandler<T> responseHandler = new ResponseHandler<>() {
       @Override
-      public String handleResponse(final HttpResponse response)
-          throws IOException {
+      public T handleResponse(final HttpResponse response) throws IOException {
         final StatusLine statusLine = response.getStatusLine();
         final int status = statusLine.getStatusCode();
         logger.info("CVS responded with status={}", status);
         final HttpEntity entity = response.getEntity(); // It could be null.
 
         if (status >= HttpStatus.SC_OK && status < HttpStatus.SC_MULTIPLE_CHOICES) {
-          final String svrlText = entity != null ? EntityUtils.toString(entity) : null;
-          EntityUtils.consumeQuietly(entity);
-
           try {
-            // Create a JSON report from parts of the SVRL.
-            final DocumentBuilder db =
-                SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(false);
-            final Document doc = db.parse(IOUtils.toInputStream(svrlText, CHARSET));
-            doc.normalize();
-            // final ObjectNode jsonReport = createJsonReport(doc, svrlLangA2);
-            // return jsonReport;
-          } catch (ParserConfigurationException e) {
-            logger.error(e.toString(), e);
-          } catch (SAXException e) {
-            logger.error(e.toString(), e);
+            return bodyReader.read(entity);
+          } finally {
+            EntityUtils.consumeQuietly(entity);
           }
-
-          return svrlText;
         }
 
         // There was a problem.
@@ -216,7 +279,8 @@ public class CvsApiClient {
         }
         final String msg = String.format("CVS POST response error: reason=%s, status=%s",
             statusLine.getReasonPhrase(), status);
-        throw new CvsApiException(msg, status);
+        throw new CvsApiException(msg, status,
+            parseRetryAfterSeconds(response.getFirstHeader(HttpHeaders.RETRY_AFTER)));
       }
     };
 
@@ -226,7 +290,97 @@ public class CvsApiClient {
     // Execute returns the response object as generated by the response handler.
     logger.info("POST url={}", post.getURI());
     logger.info("Posting to CVS: wait ... (could stall if there are network issues, proxy, ...)");
-    return this.closeableHttpClient.execute(post, responseHandler);
+    return executeThroughCircuitBreaker(post, responseHandler);
+  }
+
+  /**
+   * Retries while the CVS is overloaded (429, 503), see {@link CvsRetryPolicy}.
+   */
+  private <T> T executeWithRetries(final HttpPost post, final ResponseHandler<T> responseHandler)
+      throws IOException {
+    for (int attempt = 1;; attempt++) {
+      try {
+        return this.closeableHttpClient.execute(post, responseHandler);
+      } catch (CvsApiException e) {
+        if (!retryPolicy.isRetryableStatus(e.getStatusCode())) {
+          throw e;
+        }
+        final Optional<Duration> delayOpt =
+            retryPolicy.computeDelay(attempt, e.getRetryAfterSeconds());
+        if (delayOpt.isEmpty()) {
+          throw e;
+        }
+        logger.warn("CVS is overloaded (status={}), attempt={}, retrying in {} ms",
+            e.getStatusCode(), attempt, delayOpt.get().toMillis());
+        retryPolicy.recordRetry();
+        sleep(delayOpt.get());
+      }
+    }
+  }
+
+  /**
+   * The circuit breaker is around the whole call, retries included: an open circuit breaker fails
+   * fast without retry and a call counts once. Network errors and server errors count as failures,
+   * the circuit breaker opens after too many. Client errors and throttling (429) mean that the CVS
+   * is up.
+   */
+  private <T> T executeThroughCircuitBreaker(final HttpPost post,
+      final ResponseHandler<T> responseHandler) throws IOException {
+    if (circuitBreakerOpt.isEmpty()) {
+      return executeWithRetries(post, responseHandler);
+    }
+    final CvsCircuitBreaker circuitBreaker = circuitBreakerOpt.get();
+    if (!circuitBreaker.tryAcquire()) {
+      throw new CvsCircuitOpenException();
+    }
+    boolean failure = true;
+    try {
+      final T result = executeWithRetries(post, responseHandler);
+      failure = false;
+      return result;
+    } catch (CvsApiException e) {
+      failure = e.getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+      throw e;
+    } catch (RuntimeException e) {
+      // The CVS responded but the body could not be read.
+      failure = false;
+      throw e;
+    } finally {
+      if (failure) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+    }
+  }
+
+  private static void sleep(final Duration delay) throws InterruptedIOException {
+    try {
+      Thread.sleep(delay.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry the CVS call");
+    }
+  }
+
+  /**
+   * @param retryAfterHeader The Retry-After header, delay in seconds or HTTP date, it can be null
+   * @return The delay in seconds, empty if absent or not understood
+   */
+  static Optional<Long> parseRetryAfterSeconds(final Header retryAfterHeader) {
+    if (retryAfterHeader == null || StringUtils.isBlank(retryAfterHeader.getValue())) {
+      return Optional.empty();
+    }
+    final String value = retryAfterHeader.getValue().strip();
+    if (StringUtils.isNumeric(value)) {
+      return Optional.of(Long.parseLong(value));
+    }
+    final Date date = DateUtils.parseDate(value);
+    if (date == null) {
+      return Optional.empty();
+    }
+    return Optional.of(Math.max(0L,
+        Duration.between(Instant.now(), date.toInstant()).getSeconds()));
   }
 
   private void setupHeaders(final String requestContentType, final String responseContentType,
@@ -251,14 +405,41 @@ public class CvsApiClient {
   /**
    * Provided for convenience.
    */
+  public static CloseableHttpClient createDefaultCloseableHttpClient(final int timeoutSeconds,
+      final boolean redirectsEnabled, final String proxyUrl) {
+    // Reuse connections from a pool.
+    // Adapt the settings to your needs.
+    final PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
+    connManager.setDefaultMaxPerRoute(5);
+    connManager.setMaxTotal(10);
+    return createDefaultCloseableHttpClient(timeoutSeconds, redirectsEnabled, proxyUrl,
+        connManager);
+  }
+
+  /**
+   * Provided for convenience.
+   *
+   * @param connManager The pool of connections, sized for the expected number of concurrent CVS
+   *        calls, see {@link CvsPoolingConnectionManager}
+   */
   @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
       value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS", justification = "It is OK here.")
   public static CloseableHttpClient createDefaultCloseableHttpClient(final int timeoutSeconds,
-      final boolean redirectsEnabled, final String proxyUrl) {
+      final boolean redirectsEnabled, final String proxyUrl,
+      final PoolingHttpClientConnectionManager connManager) {
 
     final HttpClientBuilder builder =
         HttpClients.custom().setRedirectStrategy(new LaxRedirectStrategy());
 
+    // The timeouts apply with or without proxy. The connection request timeout is how long a
+    // caller can wait for a connection of the pool.
+    final int timeoutMillis = timeoutSeconds * 1000;
+    final RequestConfig.Builder requestConfigBuilder = RequestConfig.custom()//
+        .setRedirectsEnabled(redirectsEnabled)//
+        .setSocketTimeout(timeoutMillis)//
+        .setConnectTimeout(timeoutMillis)//
+        .setConnectionRequestTimeout(timeoutMillis);
+
     if (!StringUtils.isBlank(proxyUrl)) {
       try {
         final URL proxy = new URL(proxyUrl);
@@ -291,28 +472,16 @@ public class CvsApiClient {
 
         // Setup proxy connection.
         final HttpHost proxyHttpHost = new HttpHost(proxyHost, proxyPort);
-        final int timeoutMillis = timeoutSeconds * 1000;
-        final RequestConfig defaultRequestConfig = RequestConfig.custom()//
-            .setProxy(proxyHttpHost)//
-            .setRedirectsEnabled(redirectsEnabled)//
-            .setSocketTimeout(timeoutMillis)//
-            .setConnectTimeout(timeoutMillis)//
-            .setConnectionRequestTimeout(timeoutMillis)//
-            .build();
-
-        // By default use this config for all requests going through the client.
-        builder.setDefaultRequestConfig(defaultRequestConfig);
+        requestConfigBuilder.setProxy(proxyHttpHost);
       } catch (@SuppressWarnings("unused") MalformedURLException e) {
         throw new RuntimeException(
             "Malformed proxy url (not logging it as it could contain passwords).", e);
       }
     }
 
-    // Reuse connections from a pool.
-    // Adapt the settings to your needs.
-    final PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
-    connManager.setDefaultMaxPerRoute(5);
-    connManager.setMaxTotal(10);
+    // By default use this config for all requests going through the client.
+    builder.setDefaultRequestConfig(requestConfigBuilder.build());
+
     connManager.setValidateAfterInactivity(60 * 1000);
     builder.setConnectionManager(connManager);
 
@@ -322,7 +491,7 @@ public class CvsApiClient {
   private static String getDocAsText(final Document doc)
       throws TransformerFactoryConfigurationError, TransformerConfigurationException,
       TransformerException, IOException {
-    final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+    final Transformer transformer = EditorXmlUtils.getThreadLocalTransformer();
     try (StringWriter writer = new StringWriter(1024)) {
       transformer.transform(new DOMSource(doc), new StreamResult(writer));
       return writer.toString();
@@ -331,7 +500,8 @@ public class CvsApiClient {
 
   private static Document getXmlAsDoc(final Path xmlPath)
       throws ParserConfigurationException, SAXException, IOException {
-    final DocumentBuilder db = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(false);
+    final DocumentBuilder db =
+        SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(false);
     return db.parse(xmlPath.toFile());
   }
 
@@ -356,80 +526,141 @@ public class CvsApiClient {
     }
   }
 
+  /**
+   * Creates the JSON report from an SVRL document which is already in memory.
+   */
   static ObjectNode createJsonReport(final Document svrlDoc, final Optional<String> svrlLangA2) {
-
-    final ObjectNode jsonReport = JsonUtils.createObjectNode();
-    jsonReport.put("description", "Data extracted from the svrl report");
-    jsonReport.put("timestamp", Instant.now().toString());
-
-    // Find failed assertions.
+    final ObjectNode jsonReport = createJsonReportRoot();
     final ArrayNode jsonArr = jsonReport.putArray("failedAsserts");
     final NodeList failedAsserts = svrlDoc.getElementsByTagName("svrl:failed-assert");
     for (int i = 0; i < failedAsserts.getLength(); i++) {
-
       final Element failedAssert = (Element) failedAsserts.item(i);
+      final String locationXpath = failedAssert.getAttribute("location");
+      final Element textElem = XmlUtils.getDirectChild(failedAssert, "svrl:text");
+      final String labelId = XmlUtils.getTextNodeContentOneLine(textElem);
 
-      final String role = failedAssert.getAttribute("role"); // ERROR, WARN
+      // There may be no diagnostic in case the element is missing from the notice.
+      final Element diagnosticRef =
+          XmlUtils.getDirectChild(failedAssert, "svrl:diagnostic-reference");
+      final Optional<String> diagnosticOpt = diagnosticRef != null
+          ? Optional.of(diagnosticRef.getAttribute("diagnostic")) : Optional.empty();
+      final Optional<String> diagXpathOpt = diagnosticRef != null
+          ? Optional.of(XmlUtils.getTextNodeContentOneLine(diagnosticRef)) : Optional.empty();
 
-      // TODO Skip WARN level??
-      // if ("WARN".equals(role)) {
-      // continue;
-      // }
+      jsonArr.add(createJsonReportItem(failedAssert.getAttribute("id"), labelId,
+          failedAssert.getAttribute("role"), locationXpath, diagnosticOpt, diagXpathOpt));
+    }
+    return jsonReport;
+  }
 
-      final String flag = failedAssert.getAttribute("flag"); // Example: LAWFULNESS
-      final String id = failedAssert.getAttribute("id");
-      final String test = failedAssert.getAttribute("test");
-      final String locationXpath = failedAssert.getAttribute("location");
+  /**
+   * Creates the JSON report while reading the SVRL, the SVRL document is never fully in memory.
+   *
+   * @param svrlStream The SVRL, the stream is not closed
+   * @param svrlLangA2 The language of the SVRL
+   * @return The JSON report, with one item per failed assert
+   */
+  public static ObjectNode createJsonReport(final InputStream svrlStream,
+      final Optional<String> svrlLangA2) {
+    return createJsonReportStreaming(
+        consumer -> SvrlReader.readFailedAsserts(svrlStream, consumer));
+  }
 
-      final Element textElem = XmlUtils.getDirectChild(failedAssert, "svrl:text");
-      final String labelId = XmlUtils.getTextNodeContentOneLine(textElem);
+  /**
+   * Creates the JSON report while reading the SVRL.
+   *
+   * @param svrlReader The SVRL, the reader is not closed
+   * @param svrlLangA2 The language of the SVRL
+   * @return The JSON report, with one item per failed assert
+   */
+  public static ObjectNode createJsonReport(final Reader svrlReader,
+      final Optional<String> svrlLangA2) {
+    return createJsonReportStreaming(
+        consumer -> SvrlReader.readFailedAsserts(svrlReader, consumer));
+  }
 
-      final ObjectNode jsonItem = JsonUtils.createObjectNode();
-      jsonItem.put("id", id);
-      jsonItem.put("labelId", labelId);
-      jsonItem.put("role", role);
-      // jsonItem.put("flag", flag);
-      // jsonItem.put("test", test);
+  /**
+   * Reads the SVRL from some source, passing the failed asserts to the consumer.
+   */
+  @FunctionalInterface
+  private interface SvrlStreaming {
+    void readFailedAsserts(Consumer<SvrlReader.FailedAssert> consumer) throws XMLStreamException;
+  }
 
-      if (locationXpath != null) {
-        // TODO extract instance id from location xpath .../abcd[2]/...
-        jsonItem.put("location", locationXpath);
-      }
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  private static ObjectNode createJsonReportStreaming(final SvrlStreaming svrlStreaming) {
+    final ObjectNode jsonReport = createJsonReportRoot();
+    final ArrayNode jsonArr = jsonReport.putArray("failedAsserts");
+    try {
+      svrlStreaming.readFailedAsserts(
+          failedAssert -> jsonArr.add(createJsonReportItem(failedAssert.getId(),
+              failedAssert.getText(), failedAssert.getRole(), failedAssert.getLocation(),
+              failedAssert.getDiagnostic(), failedAssert.getDiagnosticXpath())));
+    } catch (XMLStreamException e) {
+      throw new RuntimeException("Cannot read SVRL: " + e.getMessage(), e);
+    }
+    return jsonReport;
+  }
 
-      // Diagnostic ref.
-      // Example of diagnostic: ND-Company_BT-514-Organization-Company
-      final Element diagnosticRef =
-          XmlUtils.getDirectChild(failedAssert, "svrl:diagnostic-reference");
+  private static ObjectNode createJsonReportRoot() {
+    final ObjectNode jsonReport = JsonUtils.createObjectNode();
+    jsonReport.put("description", "Data extracted from the svrl report");
+    jsonReport.put("timestamp", Instant.now().toString());
+    return jsonReport;
+  }
 
-      // There may be no diagnostic in case the element is missing from the notice.
-      if (diagnosticRef != null) {
-        final String diagXpath = XmlUtils.getTextNodeContentOneLine(diagnosticRef);
-        jsonItem.put("diagnosticXpath", diagXpath);
-
-        // Complete XPath location of the element.
-        final String diagnostic = diagnosticRef.getAttribute("diagnostic");
-
-        final String nodeId;
-        final String fieldId;
-        final int indexOfUnderscore = diagnostic.indexOf('_');
-        if (indexOfUnderscore > 0) {
-          nodeId = diagnostic.substring(0, indexOfUnderscore);
-          // In case of something like (c) inside of an id ... those are replaced by underscore.
-          // BT-01_c_-Procedure
-          // fieldId = diagnostic.substring(indexOfUnderscore, diagnostic.length());
-        } else {
-          nodeId = null;
-          // fieldId = diagnostic;
-        }
-        jsonItem.put("nodeId", nodeId);
-        // jsonItem.put("fieldId", fieldId); // TODO wait for TEDEFO-1758
+  /**
+   * @param role ERROR, WARN
+   * @param diagnosticOpt Example of diagnostic: ND-Company_BT-514-Organization-Company
+   */
+  private static ObjectNode createJsonReportItem(final String id, final String labelId,
+      final String role, final String locationXpath, final Optional<String> diagnosticOpt,
+      final Optional<String> diagXpathOpt) {
+    // TODO Skip WARN level??
+    // if ("WARN".equals(role)) {
+    // continue;
+    // }
+
+    final ObjectNode jsonItem = JsonUtils.createObjectNode();
+    jsonItem.put("id", id);
+    jsonItem.put("labelId", labelId);
+    jsonItem.put("role", role);
+    // jsonItem.put("flag", flag);
+    // jsonItem.put("test", test);
+
+    if (locationXpath != null) {
+      // The item of the visual model at the location is found by the NoticeErrorLocator.
+      jsonItem.put("location", locationXpath);
+    }
 
-        // TODO accumulate labelIds and get them all in one call ...or get labels from the UI later?
-        // jsonItem.put("label", labelId + svrlLangA2 = label);
+    // Diagnostic ref.
+    // There may be no diagnostic in case the element is missing from the notice.
+    if (diagnosticOpt.isPresent()) {
+      jsonItem.put("diagnosticXpath", diagXpathOpt.orElse(""));
+
+      // Complete XPath location of the element.
+      final String diagnostic = diagnosticOpt.get();
+
+      final String nodeId;
+      final int indexOfUnderscore = diagnostic.indexOf('_');
+      if (indexOfUnderscore > 0) {
+        nodeId = diagnostic.substring(0, indexOfUnderscore);
+        // In case of something like (c) inside of an id ... those are replaced by underscore.
+        // BT-01_c_-Procedure
+        // fieldId = diagnostic.substring(indexOfUnderscore, diagnostic.length());
+      } else {
+        nodeId = null;
+        // fieldId = diagnostic;
       }
-      jsonArr.add(jsonItem);
+      jsonItem.put("nodeId", nodeId);
+      // jsonItem.put("fieldId", fieldId); // TODO wait for TEDEFO-1758
+
+      // TODO accumulate labelIds and get them all in one call ...or get labels from the UI later?
+      // jsonItem.put("label", labelId + svrlLangA2 = label);
     }
-    return jsonReport;
+    return jsonItem;
   }
 
   /**
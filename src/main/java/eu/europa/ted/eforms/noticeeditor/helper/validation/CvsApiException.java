@@ -1,5 +1,6 @@
 package eu.europa.ted.eforms.noticeeditor.helper.validation;
 
+import java.util.Optional;
 import org.apache.http.client.ClientProtocolException;
 
 /**
@@ -10,9 +11,20 @@ public class CvsApiException extends ClientProtocolException {
   private final String message;
   private final int statusCode;
 
+  /**
+   * Retry-After of the response in seconds, negative if absent.
+   */
+  private final long retryAfterSeconds;
+
   public CvsApiException(final String message, final int statusCode) {
+    this(message, statusCode, Optional.empty());
+  }
+
+  public CvsApiException(final String message, final int statusCode,
+      final Optional<Long> retryAfterSecondsOpt) {
     this.message = message;
     this.statusCode = statusCode;
+    this.retryAfterSeconds = retryAfterSecondsOpt.orElse(-1L);
   }
 
   @Override
@@ -23,4 +35,11 @@ public class CvsApiException extends ClientProtocolException {
   public int getStatusCode() {
     return statusCode;
   }
+
+  /**
+   * @return The Retry-After of the CVS response in seconds, if present
+   */
+  public Optional<Long> getRetryAfterSeconds() {
+    return retryAfterSeconds >= 0 ? Optional.of(retryAfterSeconds) : Optional.empty();
+  }
 }
@@ -0,0 +1,115 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker in front of the CVS. After a number of consecutive failures (network errors,
+ * server errors) the calls fail fast for some time instead of waiting for timeouts. Then a single
+ * trial call is let through: if it succeeds the calls are allowed again, otherwise it stays open.
+ */
+public class CvsCircuitBreaker {
+  private static final Logger logger = LoggerFactory.getLogger(CvsCircuitBreaker.class);
+
+  public enum State {
+    /**
+     * Calls are allowed.
+     */
+    CLOSED,
+    /**
+     * Calls fail fast.
+     */
+    OPEN,
+    /**
+     * One trial call is allowed.
+     */
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final Clock clock;
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  // Guarded by this.
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private Instant openedAt = Instant.EPOCH;
+  private boolean trialInProgress;
+
+  /**
+   * @param failureThreshold Number of consecutive failures which opens the circuit
+   * @param openDuration How long the calls fail fast before a trial call is allowed
+   */
+  public CvsCircuitBreaker(final int failureThreshold, final Duration openDuration) {
+    this(failureThreshold, openDuration, Clock.systemUTC());
+  }
+
+  CvsCircuitBreaker(final int failureThreshold, final Duration openDuration, final Clock clock) {
+    Validate.isTrue(failureThreshold > 0, "failureThreshold must be > 0");
+    Validate.isTrue(!openDuration.isNegative(), "openDuration is negative");
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.clock = clock;
+  }
+
+  /**
+   * @return True if the call can be done, false if it must fail fast. If true the outcome must be
+   *         reported using {@link #onSuccess()} or {@link #onFailure()}
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN
+        && !clock.instant().isBefore(openedAt.plus(openDuration))) {
+      state = State.HALF_OPEN;
+      trialInProgress = false;
+    }
+    if (state == State.CLOSED) {
+      return true;
+    }
+    if (state == State.HALF_OPEN && !trialInProgress) {
+      trialInProgress = true;
+      return true;
+    }
+    rejectedCount.increment();
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      logger.info("CVS circuit breaker closed");
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialInProgress = false;
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      if (state != State.OPEN) {
+        logger.warn("CVS circuit breaker opened after {} consecutive failures, failing fast for {}",
+            consecutiveFailures, openDuration);
+      }
+      state = State.OPEN;
+      openedAt = clock.instant();
+      trialInProgress = false;
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return The number of calls which failed fast
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+}
@@ -0,0 +1,15 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * The CVS is not called as the circuit breaker is open. Like a 503 for the callers, but it is
+ * never retried.
+ */
+@SuppressWarnings("serial")
+public class CvsCircuitOpenException extends CvsApiException {
+
+  public CvsCircuitOpenException() {
+    super("CVS circuit breaker is open, failing fast", HttpStatus.SC_SERVICE_UNAVAILABLE);
+  }
+}
@@ -2,6 +2,7 @@ package eu.europa.ted.eforms.noticeeditor.helper.validation;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 @ConstructorBinding
 @ConfigurationProperties(prefix = "client.cvs")
@@ -10,9 +11,131 @@ public class CvsConfig {
   private final String apiKey;
   private final String url;
 
-  public CvsConfig(final String apiKey, final String url) {
+  /**
+   * Timeout of the CVS API calls in seconds (connect, socket and connection request).
+   */
+  private final int timeoutSeconds;
+
+  /**
+   * Number of threads of the executor running the asynchronous CVS validation jobs.
+   */
+  private final int asyncThreads;
+
+  /**
+   * Maximum number of asynchronous CVS validation jobs waiting for a thread.
+   */
+  private final int asyncQueueSize;
+
+  /**
+   * Maximum number of asynchronous CVS validation jobs (and results) kept in memory.
+   */
+  private final int asyncMaxJobs;
+
+  /**
+   * How long the asynchronous CVS validation jobs (and results) are kept in memory.
+   */
+  private final int asyncJobTtlSeconds;
+
+  /**
+   * Maximum number of CVS results (SVRL) kept in memory, 0 disables the result cache.
+   */
+  private final int cacheMaxEntries;
+
+  /**
+   * Maximum size of the CVS results kept in memory, in mega characters.
+   */
+  private final int cacheMaxMegaChars;
+
+  /**
+   * Optional folder where the CVS results are persisted, blank means not persisted.
+   */
+  private final String cacheFolder;
+
+  /**
+   * Maximum number of CVS result files in the cache folder.
+   */
+  private final int cacheMaxFiles;
+
+  /**
+   * Maximum number of pooled connections to the CVS, more concurrent calls wait for a connection.
+   */
+  private final int poolMaxTotal;
+
+  /**
+   * Maximum number of pooled connections per route (host).
+   */
+  private final int poolMaxPerRoute;
+
+  /**
+   * Maximum number of attempts of a CVS call when the CVS is overloaded (429, 503), 1 means no
+   * retry.
+   */
+  private final int retryMaxAttempts;
+
+  /**
+   * Delay before the first retry in milliseconds, doubled for each next retry.
+   */
+  private final int retryBaseDelayMillis;
+
+  /**
+   * Maximum delay before a retry in milliseconds.
+   */
+  private final int retryMaxDelayMillis;
+
+  /**
+   * Number of consecutive CVS failures which opens the circuit breaker, 0 disables it.
+   */
+  private final int breakerFailureThreshold;
+
+  /**
+   * How long the CVS calls fail fast once the circuit breaker is open.
+   */
+  private final int breakerOpenSeconds;
+
+  /**
+   * Maximum number of concurrent CVS calls, the other callers wait in order.
+   */
+  private final int maxConcurrentCalls;
+
+  /**
+   * How long a caller can wait for its turn to call the CVS.
+   */
+  private final int queueTimeoutSeconds;
+
+  public CvsConfig(final String apiKey, final String url,
+      @DefaultValue("8") final int timeoutSeconds, @DefaultValue("4") final int asyncThreads,
+      @DefaultValue("100") final int asyncQueueSize, @DefaultValue("1000") final int asyncMaxJobs,
+      @DefaultValue("600") final int asyncJobTtlSeconds,
+      @DefaultValue("200") final int cacheMaxEntries,
+      @DefaultValue("64") final int cacheMaxMegaChars, @DefaultValue("") final String cacheFolder,
+      @DefaultValue("2000") final int cacheMaxFiles, @DefaultValue("10") final int poolMaxTotal,
+      @DefaultValue("5") final int poolMaxPerRoute, @DefaultValue("3") final int retryMaxAttempts,
+      @DefaultValue("500") final int retryBaseDelayMillis,
+      @DefaultValue("8000") final int retryMaxDelayMillis,
+      @DefaultValue("5") final int breakerFailureThreshold,
+      @DefaultValue("30") final int breakerOpenSeconds,
+      @DefaultValue("5") final int maxConcurrentCalls,
+      @DefaultValue("30") final int queueTimeoutSeconds) {
     this.apiKey = apiKey;
     this.url = url;
+    this.timeoutSeconds = timeoutSeconds;
+    this.asyncThreads = asyncThreads;
+    this.asyncQueueSize = asyncQueueSize;
+    this.asyncMaxJobs = asyncMaxJobs;
+    this.asyncJobTtlSeconds = asyncJobTtlSeconds;
+    this.cacheMaxEntries = cacheMaxEntries;
+    this.cacheMaxMegaChars = cacheMaxMegaChars;
+    this.cacheFolder = cacheFolder;
+    this.cacheMaxFiles = cacheMaxFiles;
+    this.poolMaxTotal = poolMaxTotal;
+    this.poolMaxPerRoute = poolMaxPerRoute;
+    this.retryMaxAttempts = retryMaxAttempts;
+    this.retryBaseDelayMillis = retryBaseDelayMillis;
+    this.retryMaxDelayMillis = retryMaxDelayMillis;
+    this.breakerFailureThreshold = breakerFailureThreshold;
+    this.breakerOpenSeconds = breakerOpenSeconds;
+    this.maxConcurrentCalls = maxConcurrentCalls;
+    this.queueTimeoutSeconds = queueTimeoutSeconds;
   }
 
   public String getApiKey() {
@@ -23,4 +146,76 @@ public class CvsConfig {
     return url;
   }
 
+  public int getTimeoutSeconds() {
+    return timeoutSeconds;
+  }
+
+  public int getAsyncThreads() {
+    return asyncThreads;
+  }
+
+  public int getAsyncQueueSize() {
+    return asyncQueueSize;
+  }
+
+  public int getAsyncMaxJobs() {
+    return asyncMaxJobs;
+  }
+
+  public int getAsyncJobTtlSeconds() {
+    return asyncJobTtlSeconds;
+  }
+
+  public int getCacheMaxEntries() {
+    return cacheMaxEntries;
+  }
+
+  public int getCacheMaxMegaChars() {
+    return cacheMaxMegaChars;
+  }
+
+  public String getCacheFolder() {
+    return cacheFolder;
+  }
+
+  public int getCacheMaxFiles() {
+    return cacheMaxFiles;
+  }
+
+  public int getPoolMaxTotal() {
+    return poolMaxTotal;
+  }
+
+  public int getPoolMaxPerRoute() {
+    return poolMaxPerRoute;
+  }
+
+  public int getRetryMaxAttempts() {
+    return retryMaxAttempts;
+  }
+
+  public int getRetryBaseDelayMillis() {
+    return retryBaseDelayMillis;
+  }
+
+  public int getRetryMaxDelayMillis() {
+    return retryMaxDelayMillis;
+  }
+
+  public int getBreakerFailureThreshold() {
+    return breakerFailureThreshold;
+  }
+
+  public int getBreakerOpenSeconds() {
+    return breakerOpenSeconds;
+  }
+
+  public int getMaxConcurrentCalls() {
+    return maxConcurrentCalls;
+  }
+
+  public int getQueueTimeoutSeconds() {
+    return queueTimeoutSeconds;
+  }
+
 }
@@ -0,0 +1,69 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Pool of connections to the CVS which measures how long the callers wait for a connection. When
+ * all connections are leased the requests queue, this makes it visible.
+ */
+public class CvsPoolingConnectionManager extends PoolingHttpClientConnectionManager {
+
+  private final LongAdder waitCount = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+
+  /**
+   * @param maxTotal Maximum number of connections
+   * @param maxPerRoute Maximum number of connections per route (host), there is usually one
+   */
+  public CvsPoolingConnectionManager(final int maxTotal, final int maxPerRoute) {
+    Validate.isTrue(maxTotal > 0, "maxTotal must be > 0");
+    Validate.isTrue(maxPerRoute > 0, "maxPerRoute must be > 0");
+    setMaxTotal(maxTotal);
+    setDefaultMaxPerRoute(maxPerRoute);
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+    final ConnectionRequest request = super.requestConnection(route, state);
+    return new ConnectionRequest() {
+      @Override
+      public boolean cancel() {
+        return request.cancel();
+      }
+
+      @Override
+      public HttpClientConnection get(final long timeout, final TimeUnit timeUnit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+        final long start = System.nanoTime();
+        try {
+          return request.get(timeout, timeUnit);
+        } finally {
+          waitNanos.add(System.nanoTime() - start);
+          waitCount.increment();
+        }
+      }
+    };
+  }
+
+  /**
+   * @return The number of connection requests (leases)
+   */
+  public long getWaitCount() {
+    return waitCount.sum();
+  }
+
+  /**
+   * @return The total time spent waiting for a connection, in nanoseconds
+   */
+  public long getWaitNanos() {
+    return waitNanos.sum();
+  }
+}
@@ -0,0 +1,203 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import eu.europa.ted.eforms.noticeeditor.util.BoundedCache;
+
+/**
+ * Content addressed cache of CVS results (SVRL). The key is a hash of the notice XML and of the
+ * validation parameters, an unchanged notice validated again with the same parameters gets the
+ * same SVRL without calling the CVS.
+ *
+ * <p>
+ * The SVRL texts are kept in memory, bounded by number and by total size (least recently used
+ * first). Optionally they are also persisted in a local folder, one file per key, bounded by number
+ * of files. The folder survives restarts.
+ * </p>
+ */
+public class CvsResultCache {
+  private static final Logger logger = LoggerFactory.getLogger(CvsResultCache.class);
+
+  private static final String SVRL_EXTENSION = ".svrl";
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final BoundedCache<String, String> svrlByKey;
+  private final Optional<Path> folderOpt;
+
+  /**
+   * Only used if there is a folder, keeps track of the files, the least recently used are deleted.
+   */
+  private final Optional<BoundedCache<String, Path>> fileByKeyOpt;
+
+  /**
+   * @param maxEntries Maximum number of SVRL kept in memory
+   * @param maxChars Maximum number of SVRL characters kept in memory (all entries)
+   * @param folderOpt Optional folder where the SVRL are persisted
+   * @param maxFiles Maximum number of SVRL files in the folder
+   */
+  public CvsResultCache(final int maxEntries, final long maxChars, final Optional<Path> folderOpt,
+      final int maxFiles) {
+    this.svrlByKey = new BoundedCache<>(maxEntries, maxChars, String::length, Optional.empty(),
+        Optional.empty());
+    this.folderOpt = folderOpt;
+    if (folderOpt.isPresent()) {
+      final Path folder = folderOpt.get();
+      try {
+        Files.createDirectories(folder);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot create CVS cache folder " + folder, e);
+      }
+      final BoundedCache<String, Path> fileByKey = new BoundedCache<>(maxFiles, Long.MAX_VALUE,
+          p -> 0L, Optional.empty(), Optional.of((key, path) -> deleteQuietly(path)));
+      registerExistingFiles(folder, fileByKey);
+      this.fileByKeyOpt = Optional.of(fileByKey);
+    } else {
+      this.fileByKeyOpt = Optional.empty();
+    }
+  }
+
+  /**
+   * Builds the cache key. The notice XML is canonicalised by ignoring surrounding whitespace and
+   * normalising line endings, the XML is produced by the editor so this is stable. The absent
+   * parameters are part of the key as they lead to different defaults on the CVS side.
+   *
+   * @return The hexadecimal SHA-256 of the notice XML and of the validation parameters
+   */
+  public static String buildKey(final String noticeXml, final Optional<String> eformsSdkVersion,
+      final Optional<String> svrlLangA2, final Optional<CsvValidationMode> sdkValidationMode) {
+    Validate.notNull(noticeXml, "noticeXml is null");
+    final MessageDigest digest = newSha256();
+    final String canonicalXml = noticeXml.strip().replace("\r\n", "\n");
+    digest.update(canonicalXml.getBytes(StandardCharsets.UTF_8));
+
+    // Separate the parameters with a character which cannot be in them.
+    final String params = String.format("\u0000%s\u0000%s\u0000%s", eformsSdkVersion.orElse(""),
+        svrlLangA2.orElse(""),
+        sdkValidationMode.isPresent() ? sdkValidationMode.get().getText() : "");
+    digest.update(params.getBytes(StandardCharsets.UTF_8));
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return The SVRL if it is in memory or in the folder
+   */
+  public Optional<String> get(final String key) {
+    final Optional<String> svrlOpt = svrlByKey.get(key);
+    if (svrlOpt.isPresent() || fileByKeyOpt.isEmpty()) {
+      return svrlOpt;
+    }
+    final Optional<Path> pathOpt = fileByKeyOpt.get().get(key);
+    if (pathOpt.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      final Path path = pathOpt.get();
+      final String svrl = Files.readString(path, StandardCharsets.UTF_8);
+      // So that the least recently used files can be found after a restart.
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+      svrlByKey.put(key, svrl);
+      return Optional.of(svrl);
+    } catch (IOException e) {
+      // The cache is an optimisation, this must not break the validation.
+      logger.warn("Cannot read cached SVRL for key={}: {}", key, e.toString());
+      fileByKeyOpt.get().remove(key);
+      return Optional.empty();
+    }
+  }
+
+  public void put(final String key, final String svrl) {
+    Validate.notBlank(key);
+    Validate.notNull(svrl);
+    svrlByKey.put(key, svrl);
+    if (folderOpt.isPresent()) {
+      final Path path = folderOpt.get().resolve(key + SVRL_EXTENSION);
+      try {
+        // Write to a temporary file first, a concurrent reader never sees a partial file.
+        final Path tmp = Files.createTempFile(folderOpt.get(), key, ".tmp");
+        Files.writeString(tmp, svrl, StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        fileByKeyOpt.get().put(key, path);
+      } catch (IOException e) {
+        logger.warn("Cannot persist SVRL for key={}: {}", key, e.toString());
+      }
+    }
+  }
+
+  /**
+   * @return The number of SVRL in memory
+   */
+  public int size() {
+    return svrlByKey.size();
+  }
+
+  private static void registerExistingFiles(final Path folder,
+      final BoundedCache<String, Path> fileByKey) {
+    final List<Path> files;
+    try (Stream<Path> stream = Files.list(folder)) {
+      files = stream.filter(p -> p.getFileName().toString().endsWith(SVRL_EXTENSION))
+          .sorted(Comparator.comparing(CvsResultCache::getLastModifiedMillis))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot list CVS cache folder " + folder, e);
+    }
+    // Oldest first, if there are too many files the oldest are deleted.
+    for (final Path file : files) {
+      final String filename = file.getFileName().toString();
+      fileByKey.put(filename.substring(0, filename.length() - SVRL_EXTENSION.length()), file);
+    }
+    logger.info("CVS cache folder {} has {} SVRL files", folder, fileByKey.size());
+  }
+
+  private static long getLastModifiedMillis(final Path path) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    } catch (@SuppressWarnings("unused") IOException e) {
+      return 0L;
+    }
+  }
+
+  private static void deleteQuietly(final Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      logger.warn("Cannot delete cached SVRL {}: {}", path, e.toString());
+    }
+  }
+
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform must support SHA-256.
+      throw new RuntimeException(e);
+    }
+  }
+
+  static String toHex(final byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+}
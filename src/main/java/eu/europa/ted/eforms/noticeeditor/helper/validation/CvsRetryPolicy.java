@@ -0,0 +1,88 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.HttpStatus;
+
+/**
+ * Retry of the CVS calls when the CVS is overloaded (429 Too Many Requests, 503 Service
+ * Unavailable), with exponential backoff. The Retry-After of the CVS is used if present.
+ */
+public class CvsRetryPolicy {
+
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+
+  private final int maxAttempts;
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+
+  private final LongAdder retryCount = new LongAdder();
+
+  /**
+   * @param maxAttempts Maximum number of attempts, including the first call, 1 means no retry
+   * @param baseDelay Delay before the first retry, doubled for each next retry
+   * @param maxDelay Maximum delay before a retry
+   */
+  public CvsRetryPolicy(final int maxAttempts, final Duration baseDelay,
+      final Duration maxDelay) {
+    Validate.isTrue(maxAttempts >= 1, "maxAttempts must be >= 1");
+    Validate.isTrue(!baseDelay.isNegative(), "baseDelay is negative");
+    Validate.isTrue(maxDelay.compareTo(baseDelay) >= 0, "maxDelay must be >= baseDelay");
+    this.maxAttempts = maxAttempts;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+  }
+
+  public static CvsRetryPolicy noRetry() {
+    return new CvsRetryPolicy(1, Duration.ZERO, Duration.ZERO);
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @return True if the CVS is overloaded, it may succeed later
+   */
+  @SuppressWarnings("static-method")
+  public boolean isRetryableStatus(final int statusCode) {
+    return statusCode == SC_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE;
+  }
+
+  /**
+   * @param attempt The attempt which failed, starting at 1
+   * @param retryAfterSecondsOpt The Retry-After of the CVS response, if any
+   * @return The delay before the next attempt, empty if it should not be retried (no attempt left
+   *         or the CVS asks to wait longer than the maximum delay)
+   */
+  public Optional<Duration> computeDelay(final int attempt,
+      final Optional<Long> retryAfterSecondsOpt) {
+    if (attempt >= maxAttempts) {
+      return Optional.empty();
+    }
+    if (retryAfterSecondsOpt.isPresent()) {
+      final Duration retryAfter = Duration.ofSeconds(Math.max(0L, retryAfterSecondsOpt.get()));
+      return retryAfter.compareTo(maxDelay) <= 0 ? Optional.of(retryAfter) : Optional.empty();
+    }
+    // Exponential backoff with some jitter, so that concurrent callers do not retry together.
+    final long exponentialMillis = baseDelay.toMillis() << Math.min(attempt - 1, 20);
+    final long cappedMillis = Math.min(exponentialMillis, maxDelay.toMillis());
+    final long jitterMillis = ThreadLocalRandom.current().nextLong(cappedMillis / 5 + 1);
+    return Optional.of(Duration.ofMillis(Math.min(cappedMillis + jitterMillis,
+        maxDelay.toMillis())));
+  }
+
+  void recordRetry() {
+    retryCount.increment();
+  }
+
+  /**
+   * @return The number of retries done using this policy
+   */
+  public long getRetryCount() {
+    return retryCount.sum();
+  }
+}
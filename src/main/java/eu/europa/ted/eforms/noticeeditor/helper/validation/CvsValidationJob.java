@@ -0,0 +1,126 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An asynchronous CVS validation job. It is created when the validation is submitted and completed
+ * by the thread calling the CVS API. The state can be read from any thread.
+ */
+public class CvsValidationJob {
+
+  public enum Status {
+    /**
+     * Waiting for a thread.
+     */
+    PENDING,
+
+    /**
+     * The CVS API is being called.
+     */
+    RUNNING,
+
+    /**
+     * The SVRL is available.
+     */
+    DONE,
+
+    /**
+     * The validation could not be done, see the error message.
+     */
+    FAILED
+  }
+
+  private final UUID jobId;
+  private final UUID noticeUuid;
+  private final String sdkVersion;
+  private final Instant createdAt;
+
+  private volatile Status status = Status.PENDING;
+  private volatile String svrl;
+  private volatile String errorMessage;
+  private volatile Instant completedAt;
+
+  /**
+   * @param jobId The id of the job, it is given to the client for polling
+   * @param noticeUuid The UUID of the validated notice
+   * @param sdkVersion The SDK version of the validated notice
+   */
+  public CvsValidationJob(final UUID jobId, final UUID noticeUuid, final String sdkVersion) {
+    Validate.notNull(jobId);
+    Validate.notNull(noticeUuid);
+    Validate.notBlank(sdkVersion);
+    this.jobId = jobId;
+    this.noticeUuid = noticeUuid;
+    this.sdkVersion = sdkVersion;
+    this.createdAt = Instant.now();
+  }
+
+  public UUID getJobId() {
+    return jobId;
+  }
+
+  public UUID getNoticeUuid() {
+    return noticeUuid;
+  }
+
+  public String getSdkVersion() {
+    return sdkVersion;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public boolean isCompleted() {
+    final Status current = status;
+    return current == Status.DONE || current == Status.FAILED;
+  }
+
+  /**
+   * @return The SVRL as text, only present if the status is DONE
+   */
+  public Optional<String> getSvrl() {
+    return Optional.ofNullable(svrl);
+  }
+
+  /**
+   * @return The error message, only present if the status is FAILED
+   */
+  public Optional<String> getErrorMessage() {
+    return Optional.ofNullable(errorMessage);
+  }
+
+  public Optional<Instant> getCompletedAt() {
+    return Optional.ofNullable(completedAt);
+  }
+
+  public void markRunning() {
+    this.status = Status.RUNNING;
+  }
+
+  public void complete(final String svrlText) {
+    Validate.notNull(svrlText, "svrlText is null");
+    this.svrl = svrlText;
+    this.completedAt = Instant.now();
+    this.status = Status.DONE; // Set last, it publishes the other fields.
+  }
+
+  public void fail(final String message) {
+    this.errorMessage = message;
+    this.completedAt = Instant.now();
+    this.status = Status.FAILED; // Set last, it publishes the other fields.
+  }
+
+  @Override
+  public String toString() {
+    return "CvsValidationJob [jobId=" + jobId + ", noticeUuid=" + noticeUuid + ", sdkVersion="
+        + sdkVersion + ", status=" + status + "]";
+  }
+}
@@ -0,0 +1,129 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.commons.io.input.CharSequenceInputStream;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * HTTP entity of a CVS validation request. The JSON payload is written directly to the connection,
+ * the notice XML is base64 encoded on the fly: there is no copy of the notice as bytes, as base64
+ * text or as JSON text in memory.
+ *
+ * <p>
+ * The entity is repeatable (in case of retry), it is written again from the notice XML.
+ * </p>
+ */
+class CvsValidationRequestEntity extends AbstractHttpEntity {
+
+  private static final String JSON_NOTICE = "notice";
+
+  private final JsonFactory jsonFactory;
+  private final CharSequence noticeXml;
+  private final Map<String, String> otherFields;
+
+  /**
+   * Computed on demand, the HTTP client needs it before writing the content.
+   */
+  private long contentLength = -1;
+
+  /**
+   * @param jsonFactory Used to create the JSON generator
+   * @param noticeXml The notice XML text, it will be base64 encoded
+   * @param otherFields The other fields of the payload (language, validation mode, ...), in order
+   */
+  CvsValidationRequestEntity(final JsonFactory jsonFactory, final CharSequence noticeXml,
+      final Map<String, String> otherFields) {
+    Validate.notNull(jsonFactory);
+    Validate.notEmpty(noticeXml, "Expecting notice xml but it is blank.");
+    this.jsonFactory = jsonFactory;
+    this.noticeXml = noticeXml;
+    this.otherFields = otherFields;
+    setContentType(ContentType.APPLICATION_JSON.toString());
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public boolean isStreaming() {
+    // Repeatable entities are not streaming, see HttpEntity.
+    return false;
+  }
+
+  /**
+   * The exact length is known by writing the payload once without keeping it, this avoids a chunked
+   * request and costs one extra base64 encoding pass, not memory.
+   */
+  @Override
+  public long getContentLength() {
+    if (contentLength < 0) {
+      final CountingOutputStream counter = new CountingOutputStream();
+      try {
+        writeTo(counter);
+      } catch (IOException e) {
+        // Should not happen, nothing is written anywhere. Unknown length means chunked.
+        return -1;
+      }
+      contentLength = counter.count;
+    }
+    return contentLength;
+  }
+
+  /**
+   * Not used by the HTTP client to send the request (see writeTo), this copies the payload.
+   */
+  @Override
+  public InputStream getContent() throws IOException {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    writeTo(baos);
+    return new ByteArrayInputStream(baos.toByteArray());
+  }
+
+  @Override
+  public void writeTo(final OutputStream out) throws IOException {
+    Validate.notNull(out);
+    try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+      // The output stream belongs to the HTTP client.
+      gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      gen.writeStartObject();
+      try (InputStream noticeStream =
+          new CharSequenceInputStream(noticeXml, StandardCharsets.UTF_8)) {
+        gen.writeFieldName(JSON_NOTICE);
+        // Standard base64 (same as java.util.Base64.getEncoder()), encoded while reading.
+        gen.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, noticeStream, -1);
+      }
+      for (final Entry<String, String> entry : otherFields.entrySet()) {
+        gen.writeStringField(entry.getKey(), entry.getValue());
+      }
+      gen.writeEndObject();
+    }
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(final int b) {
+      count++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      count += len;
+    }
+  }
+}
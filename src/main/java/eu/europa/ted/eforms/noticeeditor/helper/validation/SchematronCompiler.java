@@ -0,0 +1,658 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
+
+/**
+ * Compiles an ISO Schematron schema (with its includes) into an XSLT stylesheet producing SVRL.
+ *
+ * <p>
+ * This covers the subset of ISO Schematron used by the eForms SDK: ns, let (schema, phase, pattern
+ * and rule level), phase and active, include, pattern, rule (with abstract rules and extends),
+ * assert, report, diagnostics, value-of and name. The SVRL has the same shape as the one of the
+ * reference skeleton: active-pattern, fired-rule, failed-assert and successful-report with text and
+ * diagnostic-reference.
+ * </p>
+ *
+ * <p>
+ * The phase is a parameter of the stylesheet, this way a single compiled stylesheet serves all the
+ * phases (in the SDK there is one phase per notice sub type).
+ * </p>
+ */
+public class SchematronCompiler {
+
+  public static final String NS_SCH = "http://purl.oclc.org/dsdl/schematron";
+  public static final String NS_SVRL = "http://purl.oclc.org/dsdl/svrl";
+  private static final String NS_XSL = "http://www.w3.org/1999/XSL/Transform";
+
+  /**
+   * Namespace of the functions and parameters used internally by the generated stylesheet.
+   */
+  static final String NS_EDITOR_URI = "urn:eforms-notice-editor:schematron";
+  private static final String PREFIX_EDITOR = "edsch";
+
+  /**
+   * Name of the stylesheet parameter holding the phase, "#ALL" or "#DEFAULT" are allowed. It is in
+   * the editor namespace.
+   */
+  static final String PARAM_PHASE_LOCAL_NAME = "phase";
+  private static final String PARAM_PHASE = PREFIX_EDITOR + ":" + PARAM_PHASE_LOCAL_NAME;
+  public static final String PHASE_ALL = "#ALL";
+  public static final String PHASE_DEFAULT = "#DEFAULT";
+
+  private static final String SCH_ABSTRACT = "abstract";
+  private static final String SCH_ASSERT = "assert";
+  private static final String SCH_CONTEXT = "context";
+  private static final String SCH_DIAGNOSTIC = "diagnostic";
+  private static final String SCH_DIAGNOSTICS = "diagnostics";
+  private static final String SCH_EXTENDS = "extends";
+  private static final String SCH_INCLUDE = "include";
+  private static final String SCH_LET = "let";
+  private static final String SCH_NS = "ns";
+  private static final String SCH_PATTERN = "pattern";
+  private static final String SCH_PHASE = "phase";
+  private static final String SCH_REPORT = "report";
+  private static final String SCH_RULE = "rule";
+  private static final String SCH_TITLE = "title";
+
+  private final Map<String, String> namespaceUriByPrefix = new LinkedHashMap<>();
+  private final List<Element> schemaLets = new ArrayList<>();
+  private final List<Element> patterns = new ArrayList<>();
+  private final List<Element> phases = new ArrayList<>();
+  private final Map<String, Element> abstractRuleById = new LinkedHashMap<>();
+  private final Map<String, Element> diagnosticById = new LinkedHashMap<>();
+  private final Set<Path> includedPaths = new HashSet<>();
+  private String title = "";
+  private String schemaVersion = "";
+  private String defaultPhase = PHASE_ALL;
+
+  /**
+   * The result of the compilation.
+   */
+  public static class CompiledSchematron {
+    private final String xslt;
+    private final Set<String> phaseIds;
+    private final String defaultPhase;
+
+    CompiledSchematron(final String xslt, final Set<String> phaseIds,
+        final String defaultPhase) {
+      this.xslt = xslt;
+      this.phaseIds = Set.copyOf(phaseIds);
+      this.defaultPhase = defaultPhase;
+    }
+
+    /**
+     * @return The XSLT stylesheet as text
+     */
+    public String getXslt() {
+      return xslt;
+    }
+
+    public Set<String> getPhaseIds() {
+      return phaseIds;
+    }
+
+    public String getDefaultPhase() {
+      return defaultPhase;
+    }
+  }
+
+  private SchematronCompiler() {
+    // Use the static method.
+  }
+
+  /**
+   * @param schPath Path to the main schematron file, the includes are relative to it
+   * @return The compiled schematron, an XSLT producing SVRL
+   */
+  public static CompiledSchematron compile(final Path schPath)
+      throws IOException, SAXException, ParserConfigurationException {
+    final SchematronCompiler compiler = new SchematronCompiler();
+    compiler.readSchema(schPath);
+    try {
+      return new CompiledSchematron(compiler.writeXslt(), compiler.getPhaseIds(),
+          compiler.defaultPhase);
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot write XSLT for " + schPath, e);
+    }
+  }
+
+  //
+  // READING THE SCHEMATRON.
+  //
+
+  private void readSchema(final Path schPath)
+      throws IOException, SAXException, ParserConfigurationException {
+    final Element schema = parse(schPath);
+    Validate.isTrue(isSch(schema, "schema"), "Expecting a schematron schema in %s", schPath);
+    final String queryBinding = schema.getAttribute("queryBinding");
+    Validate.isTrue(StringUtils.isBlank(queryBinding) || queryBinding.startsWith("xslt"),
+        "Unsupported schematron queryBinding=%s", queryBinding);
+    schemaVersion = schema.getAttribute("schemaVersion");
+    if (StringUtils.isNotBlank(schema.getAttribute("defaultPhase"))) {
+      defaultPhase = schema.getAttribute("defaultPhase");
+    }
+    readChildren(schema, schPath);
+  }
+
+  private void readChildren(final Element parent, final Path currentPath)
+      throws IOException, SAXException, ParserConfigurationException {
+    for (final Element child : getSchChildren(parent)) {
+      readSchemaChild(child, currentPath);
+    }
+  }
+
+  private void readSchemaChild(final Element elem, final Path currentPath)
+      throws IOException, SAXException, ParserConfigurationException {
+    switch (elem.getLocalName()) {
+      case SCH_INCLUDE:
+        readInclude(elem, currentPath);
+        break;
+      case SCH_TITLE:
+        title = elem.getTextContent().strip();
+        break;
+      case SCH_NS:
+        final String prefix = elem.getAttribute("prefix");
+        final String uri = elem.getAttribute("uri");
+        final String existing = namespaceUriByPrefix.putIfAbsent(prefix, uri);
+        Validate.isTrue(existing == null || existing.equals(uri),
+            "Conflicting schematron ns for prefix=%s: %s and %s", prefix, existing, uri);
+        break;
+      case SCH_LET:
+        schemaLets.add(elem);
+        break;
+      case SCH_PHASE:
+        phases.add(elem);
+        break;
+      case SCH_PATTERN:
+        Validate.isTrue(StringUtils.isBlank(elem.getAttribute("is-a")),
+            "Abstract patterns (is-a) are not supported, pattern id=%s", elem.getAttribute("id"));
+        if (!"true".equals(elem.getAttribute(SCH_ABSTRACT))) {
+          patterns.add(elem);
+        }
+        // Abstract rules can be used by rules of other patterns.
+        for (final Element child : getSchChildren(elem)) {
+          if (SCH_INCLUDE.equals(child.getLocalName())) {
+            readInclude(child, currentPath);
+          } else if (SCH_RULE.equals(child.getLocalName())
+              && "true".equals(child.getAttribute(SCH_ABSTRACT))) {
+            abstractRuleById.put(child.getAttribute("id"), child);
+          }
+        }
+        break;
+      case SCH_DIAGNOSTICS:
+        for (final Element child : getSchChildren(elem)) {
+          if (SCH_INCLUDE.equals(child.getLocalName())) {
+            readInclude(child, currentPath);
+          } else if (SCH_DIAGNOSTIC.equals(child.getLocalName())) {
+            diagnosticById.put(child.getAttribute("id"), child);
+          }
+        }
+        break;
+      case SCH_DIAGNOSTIC:
+        // Included diagnostic.
+        diagnosticById.put(elem.getAttribute("id"), elem);
+        break;
+      case SCH_RULE:
+        // Included abstract rule.
+        if ("true".equals(elem.getAttribute(SCH_ABSTRACT))) {
+          abstractRuleById.put(elem.getAttribute("id"), elem);
+        }
+        break;
+      default:
+        // Ignored: p, properties, ...
+        break;
+    }
+  }
+
+  private void readInclude(final Element include, final Path currentPath)
+      throws IOException, SAXException, ParserConfigurationException {
+    final String href = include.getAttribute("href");
+    Validate.notBlank(href, "Schematron include without href in %s", currentPath);
+    Validate.isTrue(!href.contains("#"), "Unsupported include fragment href=%s", href);
+    final Path parentFolder = currentPath.toAbsolutePath().getParent();
+    final Path includedPath = parentFolder.resolve(href).normalize();
+    Validate.isTrue(includedPaths.add(includedPath), "Cyclic or repeated include: %s",
+        includedPath);
+
+    final Element includedRoot = parse(includedPath);
+    Validate.isTrue(NS_SCH.equals(includedRoot.getNamespaceURI()),
+        "Expecting a schematron element in %s", includedPath);
+    if ("schema".equals(includedRoot.getLocalName())) {
+      readChildren(includedRoot, includedPath);
+    } else {
+      // Included elements are as if they were at the place of the include.
+      readSchemaChild(includedRoot, includedPath);
+    }
+  }
+
+  private static Element parse(final Path path)
+      throws IOException, SAXException, ParserConfigurationException {
+    Validate.isTrue(Files.isRegularFile(path), "Schematron file not found: %s", path);
+    final DocumentBuilder db =
+        SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(true);
+    final Document doc = db.parse(path.toFile());
+    return doc.getDocumentElement();
+  }
+
+  private Set<String> getPhaseIds() {
+    final Set<String> ids = new LinkedHashSet<>();
+    for (final Element phase : phases) {
+      ids.add(phase.getAttribute("id"));
+    }
+    return ids;
+  }
+
+  //
+  // WRITING THE XSLT.
+  //
+
+  private String writeXslt() throws XMLStreamException {
+    final StringWriter sw = new StringWriter(64 * 1024);
+    final XMLStreamWriter w = XMLOutputFactory.newDefaultFactory().createXMLStreamWriter(sw);
+    w.writeStartDocument("UTF-8", "1.0");
+    w.writeStartElement("xsl", "stylesheet", NS_XSL);
+    w.writeNamespace("xsl", NS_XSL);
+    w.writeNamespace("xs", XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    w.writeNamespace("svrl", NS_SVRL);
+    w.writeNamespace(PREFIX_EDITOR, NS_EDITOR_URI);
+    for (final Entry<String, String> entry : namespaceUriByPrefix.entrySet()) {
+      if (!Set.of("xsl", "xs", "svrl", PREFIX_EDITOR).contains(entry.getKey())) {
+        w.writeNamespace(entry.getKey(), entry.getValue());
+      }
+    }
+    w.writeAttribute("version", "2.0");
+    w.writeAttribute("exclude-result-prefixes", "#all");
+
+    w.writeEmptyElement("xsl", "output", NS_XSL);
+    w.writeAttribute("method", "xml");
+    w.writeAttribute("indent", "yes");
+    w.writeAttribute("encoding", "UTF-8");
+
+    w.writeEmptyElement("xsl", "param", NS_XSL);
+    w.writeAttribute("name", PARAM_PHASE);
+    w.writeAttribute("as", "xs:string");
+    w.writeAttribute("select", quote(PHASE_DEFAULT));
+
+    w.writeEmptyElement("xsl", "variable", NS_XSL);
+    w.writeAttribute("name", PREFIX_EDITOR + ":activePhase");
+    w.writeAttribute("as", "xs:string");
+    w.writeAttribute("select", String.format("if ($%s = '%s') then %s else $%s", PARAM_PHASE,
+        PHASE_DEFAULT, quote(defaultPhase), PARAM_PHASE));
+
+    writeLocationFunction(w);
+
+    // Global variables: schema, then phase (depending on the active phase), then pattern lets.
+    for (final Element let : schemaLets) {
+      writeLet(w, let);
+    }
+    writePhaseLets(w);
+    for (final Element pattern : patterns) {
+      for (final Element let : getSchChildren(pattern, SCH_LET)) {
+        writeLet(w, let);
+      }
+    }
+
+    writeRootTemplate(w);
+
+    int patternIndex = 0;
+    for (final Element pattern : patterns) {
+      writePatternTemplates(w, pattern, "M" + patternIndex);
+      patternIndex++;
+    }
+
+    w.writeEndElement(); // stylesheet
+    w.writeEndDocument();
+    w.close();
+    return sw.toString();
+  }
+
+  /**
+   * Location of a node as an xpath using the prefixes of the document, an index is only added for
+   * repeated siblings. Example: /ContractNotice/cac:ProcurementProjectLot[2]/cbc:ID
+   */
+  private static void writeLocationFunction(final XMLStreamWriter w) throws XMLStreamException {
+    w.writeStartElement("xsl", "function", NS_XSL);
+    w.writeAttribute("name", PREFIX_EDITOR + ":location");
+    w.writeAttribute("as", "xs:string");
+    w.writeEmptyElement("xsl", "param", NS_XSL);
+    w.writeAttribute("name", "node");
+    w.writeAttribute("as", "node()");
+    w.writeEmptyElement("xsl", "sequence", NS_XSL);
+    w.writeAttribute("select", "if ($node instance of document-node()) then '/' else "
+        + "string-join(for $n in $node/ancestor-or-self::node()[not(. instance of document-node())]"
+        + " return " + PREFIX_EDITOR + ":step($n), '')");
+    w.writeEndElement();
+
+    w.writeStartElement("xsl", "function", NS_XSL);
+    w.writeAttribute("name", PREFIX_EDITOR + ":step");
+    w.writeAttribute("as", "xs:string");
+    w.writeEmptyElement("xsl", "param", NS_XSL);
+    w.writeAttribute("name", "n");
+    w.writeAttribute("as", "node()");
+    w.writeEmptyElement("xsl", "sequence", NS_XSL);
+    w.writeAttribute("select", "if ($n instance of attribute()) then concat('/@', name($n))"
+        + " else if ($n instance of element()) then"
+        + " (if (count($n/../*[node-name(.) eq node-name($n)]) gt 1)"
+        + " then concat('/', name($n), '[',"
+        + " count($n/preceding-sibling::*[node-name(.) eq node-name($n)]) + 1, ']')"
+        + " else concat('/', name($n)))"
+        + " else if ($n instance of text()) then '/text()'"
+        + " else concat('/', name($n))");
+    w.writeEndElement();
+  }
+
+  private static void writeLet(final XMLStreamWriter w, final Element let)
+      throws XMLStreamException {
+    final String value = let.getAttribute("value");
+    Validate.notBlank(value, "Only schematron let with a value attribute is supported, name=%s",
+        let.getAttribute("name"));
+    w.writeEmptyElement("xsl", "variable", NS_XSL);
+    w.writeAttribute("name", let.getAttribute("name"));
+    w.writeAttribute("select", value);
+  }
+
+  /**
+   * The same variable can be defined in many phases (for example the notice sub type), the value
+   * depends on the active phase.
+   */
+  private void writePhaseLets(final XMLStreamWriter w) throws XMLStreamException {
+    final Map<String, StringBuilder> selectByName = new LinkedHashMap<>();
+    for (final Element phase : phases) {
+      final String phaseId = phase.getAttribute("id");
+      for (final Element let : getSchChildren(phase, SCH_LET)) {
+        final String value = let.getAttribute("value");
+        Validate.notBlank(value, "Only schematron let with a value attribute is supported");
+        selectByName.computeIfAbsent(let.getAttribute("name"), k -> new StringBuilder())
+            .append(String.format("if ($%s:activePhase = %s) then (%s) else ", PREFIX_EDITOR,
+                quote(phaseId), value));
+      }
+    }
+    for (final Entry<String, StringBuilder> entry : selectByName.entrySet()) {
+      w.writeEmptyElement("xsl", "variable", NS_XSL);
+      w.writeAttribute("name", entry.getKey());
+      w.writeAttribute("select", entry.getValue().append("()").toString());
+    }
+  }
+
+  private void writeRootTemplate(final XMLStreamWriter w) throws XMLStreamException {
+    // Patterns by phase, to only run the patterns which are active in the phase.
+    final Map<String, List<String>> phaseIdsByPatternId = new LinkedHashMap<>();
+    for (final Element phase : phases) {
+      for (final Element active : getSchChildren(phase, "active")) {
+        phaseIdsByPatternId.computeIfAbsent(active.getAttribute(SCH_PATTERN),
+            k -> new ArrayList<>()).add(phase.getAttribute("id"));
+      }
+    }
+
+    w.writeStartElement("xsl", "template", NS_XSL);
+    w.writeAttribute("match", "/");
+    w.writeStartElement("svrl", "schematron-output", NS_SVRL);
+    w.writeAttribute("title", escapeAvt(title));
+    w.writeAttribute("schemaVersion", escapeAvt(schemaVersion));
+    w.writeAttribute("phase", "{$" + PREFIX_EDITOR + ":activePhase}");
+    for (final Entry<String, String> entry : namespaceUriByPrefix.entrySet()) {
+      w.writeEmptyElement("svrl", "ns-prefix-in-attribute-values", NS_SVRL);
+      w.writeAttribute("prefix", escapeAvt(entry.getKey()));
+      w.writeAttribute("uri", escapeAvt(entry.getValue()));
+    }
+
+    int patternIndex = 0;
+    for (final Element pattern : patterns) {
+      final String patternId = pattern.getAttribute("id");
+      final List<String> phaseIds = phaseIdsByPatternId.getOrDefault(patternId, List.of());
+      final StringBuilder test = new StringBuilder();
+      test.append(String.format("$%s:activePhase = %s", PREFIX_EDITOR, quote(PHASE_ALL)));
+      for (final String phaseId : phaseIds) {
+        test.append(String.format(" or $%s:activePhase = %s", PREFIX_EDITOR, quote(phaseId)));
+      }
+      w.writeStartElement("xsl", "if", NS_XSL);
+      w.writeAttribute("test", test.toString());
+
+      w.writeEmptyElement("svrl", "active-pattern", NS_SVRL);
+      if (StringUtils.isNotBlank(patternId)) {
+        w.writeAttribute("id", escapeAvt(patternId));
+      }
+      final String name = StringUtils.defaultIfBlank(pattern.getAttribute("name"), patternId);
+      if (StringUtils.isNotBlank(name)) {
+        w.writeAttribute("name", escapeAvt(name));
+      }
+
+      w.writeEmptyElement("xsl", "apply-templates", NS_XSL);
+      w.writeAttribute("select", "/");
+      w.writeAttribute("mode", "M" + patternIndex);
+
+      w.writeEndElement(); // if
+      patternIndex++;
+    }
+    w.writeEndElement(); // schematron-output
+    w.writeEndElement(); // template
+  }
+
+  private void writePatternTemplates(final XMLStreamWriter w, final Element pattern,
+      final String mode) throws XMLStreamException {
+    final List<Element> rules = new ArrayList<>();
+    for (final Element rule : getSchChildren(pattern, SCH_RULE)) {
+      if (!"true".equals(rule.getAttribute(SCH_ABSTRACT))) {
+        rules.add(rule);
+      }
+    }
+
+    // In a pattern a node is handled by the first matching rule only, hence the priorities. The
+    // last rule has priority 1, above the templates of the nodes without a matching rule.
+    int priority = rules.size();
+    for (final Element rule : rules) {
+      final String context = rule.getAttribute(SCH_CONTEXT);
+      Validate.notBlank(context, "Schematron rule without context in pattern id=%s",
+          pattern.getAttribute("id"));
+
+      w.writeStartElement("xsl", "template", NS_XSL);
+      w.writeAttribute("match", context);
+      w.writeAttribute("priority", String.valueOf(priority));
+      w.writeAttribute("mode", mode);
+
+      final List<Element> ruleItems = new ArrayList<>();
+      collectRuleItems(rule, ruleItems, new HashSet<>());
+      for (final Element item : ruleItems) {
+        if (SCH_LET.equals(item.getLocalName())) {
+          writeLet(w, item);
+        }
+      }
+
+      w.writeEmptyElement("svrl", "fired-rule", NS_SVRL);
+      w.writeAttribute(SCH_CONTEXT, escapeAvt(context));
+      if (StringUtils.isNotBlank(rule.getAttribute("id"))) {
+        w.writeAttribute("id", escapeAvt(rule.getAttribute("id")));
+      }
+
+      for (final Element item : ruleItems) {
+        if (SCH_ASSERT.equals(item.getLocalName())) {
+          writeAssertOrReport(w, item, true);
+        } else if (SCH_REPORT.equals(item.getLocalName())) {
+          writeAssertOrReport(w, item, false);
+        }
+      }
+
+      writeApplyTemplatesToChildren(w, mode);
+      w.writeEndElement(); // template
+      priority--;
+    }
+
+    // Nodes without a matching rule: continue with the children.
+    w.writeEmptyElement("xsl", "template", NS_XSL);
+    w.writeAttribute("match", "text()");
+    w.writeAttribute("priority", "-1");
+    w.writeAttribute("mode", mode);
+
+    w.writeStartElement("xsl", "template", NS_XSL);
+    w.writeAttribute("match", "@*|node()");
+    w.writeAttribute("priority", "-2");
+    w.writeAttribute("mode", mode);
+    writeApplyTemplatesToChildren(w, mode);
+    w.writeEndElement();
+  }
+
+  private static void writeApplyTemplatesToChildren(final XMLStreamWriter w, final String mode)
+      throws XMLStreamException {
+    w.writeEmptyElement("xsl", "apply-templates", NS_XSL);
+    w.writeAttribute("select", "@*|*");
+    w.writeAttribute("mode", mode);
+  }
+
+  /**
+   * Collects the let, assert and report of the rule, the extended abstract rules are expanded in
+   * place.
+   */
+  private void collectRuleItems(final Element rule, final List<Element> items,
+      final Set<String> visitedAbstractIds) {
+    for (final Element child : getSchChildren(rule)) {
+      if (SCH_EXTENDS.equals(child.getLocalName())) {
+        final String abstractId = child.getAttribute(SCH_RULE);
+        Validate.notBlank(abstractId, "Only schematron extends with a rule attribute is supported");
+        final Element abstractRule = abstractRuleById.get(abstractId);
+        Validate.notNull(abstractRule, "Unknown abstract rule id=%s", abstractId);
+        Validate.isTrue(visitedAbstractIds.add(abstractId), "Cyclic extends of rule id=%s",
+            abstractId);
+        collectRuleItems(abstractRule, items, visitedAbstractIds);
+      } else {
+        items.add(child);
+      }
+    }
+  }
+
+  private void writeAssertOrReport(final XMLStreamWriter w, final Element item,
+      final boolean isAssert) throws XMLStreamException {
+    final String test = item.getAttribute("test");
+    if (isAssert) {
+      // The assert fails if the test is false.
+      w.writeStartElement("xsl", "choose", NS_XSL);
+      w.writeEmptyElement("xsl", "when", NS_XSL);
+      w.writeAttribute("test", test);
+      w.writeStartElement("xsl", "otherwise", NS_XSL);
+      w.writeStartElement("svrl", "failed-assert", NS_SVRL);
+    } else {
+      w.writeStartElement("xsl", "if", NS_XSL);
+      w.writeAttribute("test", test);
+      w.writeStartElement("svrl", "successful-report", NS_SVRL);
+    }
+    w.writeAttribute("test", escapeAvt(test));
+    for (final String attr : List.of("id", "role", "flag")) {
+      if (StringUtils.isNotBlank(item.getAttribute(attr))) {
+        w.writeAttribute(attr, escapeAvt(item.getAttribute(attr)));
+      }
+    }
+    w.writeEmptyElement("xsl", "attribute", NS_XSL);
+    w.writeAttribute("name", "location");
+    w.writeAttribute("select", PREFIX_EDITOR + ":location(.)");
+
+    w.writeStartElement("svrl", "text", NS_SVRL);
+    writeMessageContent(w, item);
+    w.writeEndElement(); // text
+
+    final String diagnostics = item.getAttribute(SCH_DIAGNOSTICS);
+    for (final String diagnosticId : StringUtils.split(diagnostics)) {
+      final Element diagnostic = diagnosticById.get(diagnosticId);
+      Validate.notNull(diagnostic, "Unknown schematron diagnostic id=%s", diagnosticId);
+      w.writeStartElement("svrl", "diagnostic-reference", NS_SVRL);
+      w.writeAttribute(SCH_DIAGNOSTIC, escapeAvt(diagnosticId));
+      writeMessageContent(w, diagnostic);
+      w.writeEndElement();
+    }
+
+    w.writeEndElement(); // failed-assert or successful-report
+    w.writeEndElement(); // otherwise or if
+    if (isAssert) {
+      w.writeEndElement(); // choose
+    }
+  }
+
+  private static void writeMessageContent(final XMLStreamWriter w, final Element parent)
+      throws XMLStreamException {
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.TEXT_NODE
+          || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+        w.writeStartElement("xsl", "text", NS_XSL);
+        w.writeCharacters(child.getNodeValue());
+        w.writeEndElement();
+      } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+        final Element elem = (Element) child;
+        if (isSch(elem, "value-of")) {
+          w.writeEmptyElement("xsl", "value-of", NS_XSL);
+          w.writeAttribute("select", elem.getAttribute("select"));
+        } else if (isSch(elem, "name")) {
+          final String path = StringUtils.defaultIfBlank(elem.getAttribute("path"), ".");
+          w.writeEmptyElement("xsl", "value-of", NS_XSL);
+          w.writeAttribute("select", "name(" + path + ")");
+        } else {
+          // emph, dir, span or foreign elements: keep the text.
+          writeMessageContent(w, elem);
+        }
+      }
+    }
+  }
+
+  //
+  // HELPERS.
+  //
+
+  private static boolean isSch(final Element elem, final String localName) {
+    return NS_SCH.equals(elem.getNamespaceURI()) && localName.equals(elem.getLocalName());
+  }
+
+  private static List<Element> getSchChildren(final Element parent) {
+    final List<Element> children = new ArrayList<>();
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE && NS_SCH.equals(child.getNamespaceURI())) {
+        children.add((Element) child);
+      }
+    }
+    return children;
+  }
+
+  private static List<Element> getSchChildren(final Element parent, final String localName) {
+    final List<Element> children = new ArrayList<>();
+    for (final Element child : getSchChildren(parent)) {
+      if (localName.equals(child.getLocalName())) {
+        children.add(child);
+      }
+    }
+    return children;
+  }
+
+  /**
+   * @return The text as an XPath string literal
+   */
+  private static String quote(final String text) {
+    return "'" + text.replace("'", "''") + "'";
+  }
+
+  /**
+   * Attributes of literal result elements are attribute value templates, braces must be doubled.
+   */
+  private static String escapeAvt(final String text) {
+    return text.replace("{", "{{").replace("}", "}}");
+  }
+}
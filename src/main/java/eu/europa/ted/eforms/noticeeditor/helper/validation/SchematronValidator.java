@@ -0,0 +1,179 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import eu.europa.ted.eforms.noticeeditor.helper.SafeSaxParser;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.Serializer;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import net.sf.saxon.s9api.XsltTransformer;
+
+/**
+ * Local (offline) schematron validation of notices, an alternative to the CVS. It produces the same
+ * kind of SVRL as the CVS.
+ *
+ * <p>
+ * The schematron of the SDK is compiled to XSLT once per SDK version and validation mode, the
+ * compiled stylesheet is cached and reused by all threads (it is immutable). Only the transformer
+ * is created per validation.
+ * </p>
+ */
+public class SchematronValidator {
+  private static final Logger logger = LoggerFactory.getLogger(SchematronValidator.class);
+
+  /**
+   * Name of the main schematron file, inside of the folder of the validation mode.
+   */
+  private static final String SDK_SCHEMATRON_FILENAME = "complete-validation.sch";
+  private static final String SDK_SCHEMATRONS_FOLDER = "schematrons";
+
+  /**
+   * In the SDK there is one phase per notice sub type, for example "eforms-16".
+   */
+  private static final String SDK_PHASE_PREFIX = "eforms-";
+
+  private final Processor processor = new Processor(false);
+  private final ConcurrentMap<Path, Compiled> compiledBySchPath = new ConcurrentHashMap<>();
+
+  private static final class Compiled {
+    private final XsltExecutable executable;
+    private final SchematronCompiler.CompiledSchematron schematron;
+
+    private Compiled(final XsltExecutable executable,
+        final SchematronCompiler.CompiledSchematron schematron) {
+      this.executable = executable;
+      this.schematron = schematron;
+    }
+  }
+
+  /**
+   * @param sdkFolder The folder of the SDK version, for example eforms-sdk/1.8
+   * @param validationModeOpt The validation mode, static if not specified (like the CVS)
+   * @return The path to the main schematron file of the SDK for the validation mode
+   */
+  public static Path getSdkSchematronPath(final Path sdkFolder,
+      final Optional<CsvValidationMode> validationModeOpt) {
+    final CsvValidationMode mode = validationModeOpt.orElse(CsvValidationMode.STATIC);
+    return sdkFolder.resolve(SDK_SCHEMATRONS_FOLDER).resolve(mode.getText())
+        .resolve(SDK_SCHEMATRON_FILENAME);
+  }
+
+  /**
+   * @param noticeSubType The notice sub type, for example "16"
+   * @return The phase of the SDK schematron for this notice sub type
+   */
+  public static String getSdkPhase(final String noticeSubType) {
+    Validate.notBlank(noticeSubType, "noticeSubType is blank");
+    return SDK_PHASE_PREFIX + noticeSubType;
+  }
+
+  /**
+   * Validates the notice using the schematron of the SDK.
+   *
+   * @param noticeXml The notice XML text
+   * @param sdkFolder The folder of the SDK version, for example eforms-sdk/1.8
+   * @param validationModeOpt The validation mode, static if not specified (like the CVS)
+   * @param noticeSubTypeOpt The notice sub type, it selects the phase, if not present the default
+   *        phase is used
+   * @return The SVRL as text
+   */
+  public String validateUsingSdk(final String noticeXml, final Path sdkFolder,
+      final Optional<CsvValidationMode> validationModeOpt,
+      final Optional<String> noticeSubTypeOpt) {
+    final Path schPath = getSdkSchematronPath(sdkFolder, validationModeOpt);
+    final Optional<String> phaseOpt =
+        noticeSubTypeOpt.isPresent() ? Optional.of(getSdkPhase(noticeSubTypeOpt.get()))
+            : Optional.empty();
+    return validate(noticeXml, schPath, phaseOpt);
+  }
+
+  /**
+   * @param noticeXml The notice XML text
+   * @param schPath The path to the main schematron file
+   * @param phaseOpt The phase, if not present the default phase of the schematron is used
+   * @return The SVRL as text
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  public String validate(final String noticeXml, final Path schPath,
+      final Optional<String> phaseOpt) {
+    Validate.notBlank(noticeXml, "noticeXml is blank");
+    final Compiled compiled = getCompiled(schPath);
+
+    final String phase;
+    if (phaseOpt.isPresent() && !compiled.schematron.getPhaseIds().isEmpty()) {
+      phase = phaseOpt.get();
+      Validate.isTrue(compiled.schematron.getPhaseIds().contains(phase),
+          "Unknown schematron phase=%s in %s", phase, schPath);
+    } else {
+      phase = SchematronCompiler.PHASE_DEFAULT;
+    }
+
+    try {
+      // Parse the notice with a secure parser.
+      final SAXSource source =
+          new SAXSource(SafeSaxParser.getThreadLocalSafeSaxParserStrict(true).getXMLReader(),
+              new InputSource(new StringReader(noticeXml)));
+
+      final StringWriter sw = new StringWriter(16 * 1024);
+      final Serializer serializer = processor.newSerializer(sw);
+      serializer.setOutputProperty(Serializer.Property.INDENT, "yes");
+
+      final XsltTransformer transformer = compiled.executable.load();
+      transformer.setParameter(new QName(SchematronCompiler.NS_EDITOR_URI,
+          SchematronCompiler.PARAM_PHASE_LOCAL_NAME), new XdmAtomicValue(phase));
+      transformer.setSource(source);
+      transformer.setDestination(serializer);
+      transformer.transform();
+      return sw.toString();
+    } catch (SaxonApiException | SAXException | ParserConfigurationException e) {
+      throw new RuntimeException(
+          String.format("Schematron validation failed for %s, phase=%s", schPath, phase), e);
+    }
+  }
+
+  /**
+   * Compiles the schematron once, the result is cached.
+   */
+  private Compiled getCompiled(final Path schPath) {
+    final Path key = schPath.toAbsolutePath().normalize();
+    return compiledBySchPath.computeIfAbsent(key, this::compile);
+  }
+
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  private Compiled compile(final Path schPath) {
+    logger.info("Compiling schematron: {}", schPath);
+    final long start = System.currentTimeMillis();
+    try {
+      final SchematronCompiler.CompiledSchematron schematron = SchematronCompiler.compile(schPath);
+      final XsltCompiler xsltCompiler = processor.newXsltCompiler();
+      final XsltExecutable executable = xsltCompiler.compile(new StreamSource(
+          new StringReader(schematron.getXslt()), schPath.toUri().toString()));
+      logger.info("Compiled schematron in {} ms, phases={}", System.currentTimeMillis() - start,
+          schematron.getPhaseIds().size());
+      return new Compiled(executable, schematron);
+    } catch (IOException | SAXException | ParserConfigurationException | SaxonApiException e) {
+      throw new RuntimeException(String.format("Cannot compile schematron %s", schPath), e);
+    }
+  }
+}
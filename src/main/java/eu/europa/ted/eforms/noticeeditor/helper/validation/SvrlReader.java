@@ -0,0 +1,203 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Streaming (StAX) reader of SVRL reports. The failed asserts are passed one by one to a consumer,
+ * the SVRL document is never fully in memory. The SVRL of a badly broken notice can be several
+ * megabytes.
+ */
+public class SvrlReader {
+
+  private static final String SVRL_FAILED_ASSERT = "failed-assert";
+  private static final String SVRL_TEXT = "text";
+  private static final String SVRL_DIAGNOSTIC_REFERENCE = "diagnostic-reference";
+
+  /**
+   * Configured once, creating readers from it is thread-safe.
+   */
+  private static final XMLInputFactory XML_INPUT_FACTORY = buildSafeXmlInputFactory();
+
+  private SvrlReader() {
+    throw new AssertionError("Utility class.");
+  }
+
+  /**
+   * One failed assert of the SVRL.
+   */
+  public static class FailedAssert {
+    private final String id;
+    private final String role;
+    private final String flag;
+    private final String test;
+    private final String location;
+    private String text = "";
+    private Optional<String> diagnosticOpt = Optional.empty();
+    private Optional<String> diagnosticXpathOpt = Optional.empty();
+
+    FailedAssert(final String id, final String role, final String flag, final String test,
+        final String location) {
+      this.id = id;
+      this.role = role;
+      this.flag = flag;
+      this.test = test;
+      this.location = location;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    /**
+     * @return The role, for example ERROR or WARN
+     */
+    public String getRole() {
+      return role;
+    }
+
+    /**
+     * @return The flag, for example LAWFULNESS
+     */
+    public String getFlag() {
+      return flag;
+    }
+
+    public String getTest() {
+      return test;
+    }
+
+    public String getLocation() {
+      return location;
+    }
+
+    /**
+     * @return The text of the assert, usually a label id
+     */
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * @return The diagnostic id of the first diagnostic reference, for example
+     *         ND-Company_BT-514-Organization-Company
+     */
+    public Optional<String> getDiagnostic() {
+      return diagnosticOpt;
+    }
+
+    /**
+     * @return The text of the first diagnostic reference, usually an xpath
+     */
+    public Optional<String> getDiagnosticXpath() {
+      return diagnosticXpathOpt;
+    }
+  }
+
+  /**
+   * Reads the SVRL and passes the failed asserts to the consumer in document order. The stream is
+   * not closed.
+   */
+  public static void readFailedAsserts(final InputStream svrlStream,
+      final Consumer<FailedAssert> consumer) throws XMLStreamException {
+    Validate.notNull(svrlStream, "svrlStream is null");
+    final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(svrlStream);
+    try {
+      readFailedAsserts(reader, consumer);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the SVRL and passes the failed asserts to the consumer in document order. The reader is
+   * not closed.
+   */
+  public static void readFailedAsserts(final Reader svrlReader,
+      final Consumer<FailedAssert> consumer) throws XMLStreamException {
+    Validate.notNull(svrlReader, "svrlReader is null");
+    final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(svrlReader);
+    try {
+      readFailedAsserts(reader, consumer);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void readFailedAsserts(final XMLStreamReader reader,
+      final Consumer<FailedAssert> consumer) throws XMLStreamException {
+    FailedAssert current = null;
+    while (reader.hasNext()) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT && isSvrl(reader)) {
+        final String localName = reader.getLocalName();
+        if (SVRL_FAILED_ASSERT.equals(localName)) {
+          current = new FailedAssert(getAttribute(reader, "id"), getAttribute(reader, "role"),
+              getAttribute(reader, "flag"), getAttribute(reader, "test"),
+              getAttribute(reader, "location"));
+        } else if (current != null && SVRL_TEXT.equals(localName)) {
+          current.text = readDirectText(reader);
+        } else if (current != null && SVRL_DIAGNOSTIC_REFERENCE.equals(localName)
+            && current.diagnosticOpt.isEmpty()) {
+          current.diagnosticOpt = Optional.of(getAttribute(reader, "diagnostic"));
+          current.diagnosticXpathOpt = Optional.of(readDirectText(reader));
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT && current != null && isSvrl(reader)
+          && SVRL_FAILED_ASSERT.equals(reader.getLocalName())) {
+        consumer.accept(current);
+        current = null;
+      }
+    }
+  }
+
+  /**
+   * Reads the text directly inside of the current element (not in child elements) and moves to its
+   * end element. The text is on one line.
+   */
+  private static String readDirectText(final XMLStreamReader reader) throws XMLStreamException {
+    final StringBuilder sb = new StringBuilder(64);
+    int depth = 1;
+    while (depth > 0) {
+      final int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      } else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS
+          || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+        sb.append(reader.getText());
+      }
+    }
+    // Like XmlUtils.getTextNodeContentOneLine.
+    return sb.toString().strip().replaceAll("\r\n\t", "");
+  }
+
+  private static boolean isSvrl(final XMLStreamReader reader) {
+    return SchematronCompiler.NS_SVRL.equals(reader.getNamespaceURI());
+  }
+
+  /**
+   * @return The attribute value, empty if absent (like DOM)
+   */
+  private static String getAttribute(final XMLStreamReader reader, final String localName) {
+    return StringUtils.defaultString(reader.getAttributeValue(null, localName));
+  }
+
+  private static XMLInputFactory buildSafeXmlInputFactory() {
+    final XMLInputFactory factory = XMLInputFactory.newFactory();
+    // Secure: no DTD and no external entities.
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+}
@@ -0,0 +1,438 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import org.apache.commons.lang3.Validate;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Validates a notice DOM against the XSD and on the next calls only revalidates the top level
+ * subtrees (children of the root element) which changed, the errors of the other subtrees are
+ * reused. A changed subtree is validated alone, in the namespace context of the root: this works
+ * as the elements of the notice schemas are global elements (UBL).
+ *
+ * <p>
+ * A subtree is considered unchanged if it is the same DOM element object as during the last
+ * validation: the caller must replace the top level elements which change (like the notice session
+ * does) or call {@link #invalidate()}. The whole notice is validated again if the document, the
+ * root element attributes or the sequence of top level element names changed, as the content model
+ * of the root depends on them.
+ * </p>
+ *
+ * <p>
+ * The errors have no line numbers (DOM), the system id of an error is the path of the element, for
+ * example /ContractNotice/cac:ProcurementProject[1]/cbc:ID[1]. This is not thread safe.
+ * </p>
+ */
+public class XsdIncrementalValidator {
+
+  /**
+   * Error code of Xerces about an unexpected element in the content of the parent.
+   */
+  private static final String CODE_CONTENT_MODEL = "cvc-complex-type.2.4";
+
+  /**
+   * Error code of Xerces when no global declaration is found for the validation root.
+   */
+  private static final String CODE_NO_DECLARATION = "cvc-elt.1";
+
+  private static final String XMLNS = "xmlns";
+  private static final String CDATA = "CDATA";
+
+  private final Schema schema;
+
+  private Document lastDocument;
+  private List<String> lastRootSignature = Collections.emptyList();
+
+  /**
+   * Errors of the root element, the root content errors at index i are reported before the top
+   * level element i, the last index is for the end of the root.
+   */
+  private List<List<SAXParseException>> rootErrorsBySlot = Collections.emptyList();
+
+  /**
+   * Errors of the top level subtrees, by element identity.
+   */
+  private Map<Element, List<SAXParseException>> errorsByTopElement = new IdentityHashMap<>();
+
+  private int lastValidatedSubtreeCount;
+
+  /**
+   * @param schema The compiled schema, see {@link XsdValidator#getSchema}
+   */
+  public XsdIncrementalValidator(final Schema schema) {
+    Validate.notNull(schema);
+    this.schema = schema;
+  }
+
+  /**
+   * @return The number of top level subtrees validated by the last call, all of them if the whole
+   *         document was validated
+   */
+  public int getLastValidatedSubtreeCount() {
+    return lastValidatedSubtreeCount;
+  }
+
+  /**
+   * Forgets the errors, the next validation is a full validation.
+   */
+  public void invalidate() {
+    lastDocument = null;
+  }
+
+  /**
+   * @param doc The notice XML document
+   * @return The XSD errors of the whole document, in document order
+   */
+  public List<SAXParseException> validate(final Document doc) throws SAXException {
+    final Element root = doc.getDocumentElement();
+    final List<Element> topElements = listChildElements(root);
+    final List<String> rootSignature = buildRootSignature(root, topElements);
+
+    if (doc != lastDocument || !rootSignature.equals(lastRootSignature)) {
+      validateFully(root, topElements);
+    } else {
+      final Map<Element, List<SAXParseException>> errorsByElem = new IdentityHashMap<>();
+      int validatedCount = 0;
+      for (final Element topElem : topElements) {
+        final List<SAXParseException> cachedErrors = errorsByTopElement.get(topElem);
+        if (cachedErrors != null) {
+          errorsByElem.put(topElem, cachedErrors);
+          continue;
+        }
+        final Optional<List<SAXParseException>> errorsOpt = validateSubtree(root, topElem);
+        if (errorsOpt.isEmpty()) {
+          // Cannot be validated alone, fallback to the whole document.
+          validatedCount = -1;
+          break;
+        }
+        errorsByElem.put(topElem, errorsOpt.get());
+        validatedCount++;
+      }
+      if (validatedCount < 0) {
+        validateFully(root, topElements);
+      } else {
+        this.errorsByTopElement = errorsByElem;
+        this.lastValidatedSubtreeCount = validatedCount;
+      }
+    }
+    this.lastDocument = doc;
+    this.lastRootSignature = rootSignature;
+
+    final List<SAXParseException> errors = new ArrayList<>();
+    for (int i = 0; i < topElements.size(); i++) {
+      errors.addAll(rootErrorsBySlot.get(i));
+      errors.addAll(errorsByTopElement.get(topElements.get(i)));
+    }
+    errors.addAll(rootErrorsBySlot.get(topElements.size()));
+    return errors;
+  }
+
+  private void validateFully(final Element root, final List<Element> topElements)
+      throws SAXException {
+    final List<List<SAXParseException>> rootErrors = new ArrayList<>(topElements.size() + 1);
+    for (int i = 0; i <= topElements.size(); i++) {
+      rootErrors.add(new ArrayList<>());
+    }
+    final Map<Element, List<SAXParseException>> errorsByElem = new IdentityHashMap<>();
+
+    final SaxEmitter emitter = new SaxEmitter(schema.newValidatorHandler());
+    emitter.errors = rootErrors.get(0);
+    emitter.startDocument();
+    final Map<String, String> rootScope = emitter.startElement(root, Collections.emptyMap());
+    int slot = 0;
+    for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        final Element topElem = (Element) child;
+        final List<SAXParseException> elemErrors = new ArrayList<>();
+        errorsByElem.put(topElem, elemErrors);
+        // The errors about the position of the element belong to the root.
+        emitter.contentModelErrors = rootErrors.get(slot);
+        emitter.errors = elemErrors;
+        emitter.emitSubtree(topElem, rootScope);
+        slot++;
+        emitter.errors = rootErrors.get(slot);
+      } else {
+        emitter.emitNonElement(child);
+      }
+    }
+    emitter.endElement(root, rootScope);
+    emitter.endDocument();
+
+    this.rootErrorsBySlot = rootErrors;
+    this.errorsByTopElement = errorsByElem;
+    this.lastValidatedSubtreeCount = topElements.size();
+  }
+
+  /**
+   * @return The errors of the subtree, empty if it cannot be validated alone
+   */
+  private Optional<List<SAXParseException>> validateSubtree(final Element root,
+      final Element topElem) throws SAXException {
+    final List<SAXParseException> errors = new ArrayList<>();
+    final SaxEmitter emitter = new SaxEmitter(schema.newValidatorHandler());
+    emitter.errors = errors;
+    emitter.startDocument();
+    // Declare the namespaces of the root, they are in scope of the subtree.
+    final Map<String, String> rootScope = SaxEmitter.buildScope(root, Collections.emptyMap());
+    for (final Map.Entry<String, String> entry : rootScope.entrySet()) {
+      emitter.handler.startPrefixMapping(entry.getKey(), entry.getValue());
+    }
+    emitter.emitSubtree(topElem, rootScope);
+    for (final String prefix : rootScope.keySet()) {
+      emitter.handler.endPrefixMapping(prefix);
+    }
+    emitter.endDocument();
+
+    for (final SAXParseException error : errors) {
+      if (error.getMessage() != null && error.getMessage().startsWith(CODE_NO_DECLARATION)) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(errors);
+  }
+
+  private static List<Element> listChildElements(final Element parent) {
+    final List<Element> elements = new ArrayList<>();
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        elements.add((Element) child);
+      }
+    }
+    return elements;
+  }
+
+  /**
+   * The root element name and attributes and the top level element names, what the validation of
+   * the root element depends on.
+   */
+  private static List<String> buildRootSignature(final Element root,
+      final List<Element> topElements) {
+    final List<String> signature = new ArrayList<>(topElements.size() + 8);
+    signature.add(root.getTagName());
+    final NamedNodeMap attributes = root.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      final Node attr = attributes.item(i);
+      signature.add("@" + attr.getNodeName() + "=" + attr.getNodeValue());
+    }
+    for (final Element topElem : topElements) {
+      signature.add(topElem.getTagName());
+    }
+    return signature;
+  }
+
+  /**
+   * Feeds the validator handler with SAX events for DOM elements. The namespaces are resolved from
+   * the xmlns attributes as the notice DOM is built without namespace information.
+   */
+  private static final class SaxEmitter implements ErrorHandler, Locator {
+    private final ValidatorHandler handler;
+    private List<SAXParseException> errors;
+
+    /**
+     * If set, errors about the content model of the parent go there, only for the next start tag.
+     */
+    private List<SAXParseException> contentModelErrors;
+
+    private Node current;
+
+    private SaxEmitter(final ValidatorHandler handler) {
+      this.handler = handler;
+      handler.setErrorHandler(this);
+      handler.setDocumentLocator(this);
+    }
+
+    private void startDocument() throws SAXException {
+      handler.startDocument();
+    }
+
+    private void endDocument() throws SAXException {
+      handler.endDocument();
+    }
+
+    private void emitSubtree(final Element elem, final Map<String, String> parentScope)
+        throws SAXException {
+      final Map<String, String> scope = startElement(elem, parentScope);
+      for (Node child = elem.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE) {
+          emitSubtree((Element) child, scope);
+        } else {
+          emitNonElement(child);
+        }
+      }
+      endElement(elem, scope);
+    }
+
+    private void emitNonElement(final Node node) throws SAXException {
+      final short type = node.getNodeType();
+      if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+        final char[] chars = node.getNodeValue().toCharArray();
+        handler.characters(chars, 0, chars.length);
+      }
+    }
+
+    private Map<String, String> startElement(final Element elem,
+        final Map<String, String> parentScope) throws SAXException {
+      final Map<String, String> scope = buildScope(elem, parentScope);
+      final AttributesImpl attrs = new AttributesImpl();
+      final NamedNodeMap attributes = elem.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        final Node attr = attributes.item(i);
+        final String name = attr.getNodeName();
+        if (isNamespaceDeclaration(name)) {
+          handler.startPrefixMapping(getLocalPrefix(name), attr.getNodeValue());
+        } else {
+          final String prefix = getPrefix(name);
+          final String uri = prefix.isEmpty() ? "" : resolve(scope, prefix);
+          attrs.addAttribute(uri, getLocalName(name), name, CDATA, attr.getNodeValue());
+        }
+      }
+      final String qname = elem.getTagName();
+      current = elem;
+      handler.startElement(resolve(scope, getPrefix(qname)), getLocalName(qname), qname, attrs);
+      contentModelErrors = null;
+      return scope;
+    }
+
+    private void endElement(final Element elem, final Map<String, String> scope)
+        throws SAXException {
+      final String qname = elem.getTagName();
+      current = elem;
+      handler.endElement(resolve(scope, getPrefix(qname)), getLocalName(qname), qname);
+      final NamedNodeMap attributes = elem.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        final String name = attributes.item(i).getNodeName();
+        if (isNamespaceDeclaration(name)) {
+          handler.endPrefixMapping(getLocalPrefix(name));
+        }
+      }
+      current = elem.getParentNode();
+    }
+
+    /**
+     * @return The namespace URI by prefix in scope of the element, the default namespace has an
+     *         empty prefix
+     */
+    private static Map<String, String> buildScope(final Element elem,
+        final Map<String, String> parentScope) {
+      Map<String, String> scope = parentScope;
+      final NamedNodeMap attributes = elem.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        final Node attr = attributes.item(i);
+        final String name = attr.getNodeName();
+        if (isNamespaceDeclaration(name)) {
+          if (scope == parentScope) {
+            scope = new HashMap<>(parentScope); // Copy on write.
+          }
+          scope.put(getLocalPrefix(name), attr.getNodeValue());
+        }
+      }
+      return scope;
+    }
+
+    private static String resolve(final Map<String, String> scope, final String prefix) {
+      if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+        return XMLConstants.XML_NS_URI;
+      }
+      return scope.getOrDefault(prefix, "");
+    }
+
+    private static boolean isNamespaceDeclaration(final String attrName) {
+      return XMLNS.equals(attrName) || attrName.startsWith(XMLNS + ":");
+    }
+
+    /**
+     * @return The prefix declared by a namespace declaration attribute
+     */
+    private static String getLocalPrefix(final String xmlnsAttrName) {
+      return XMLNS.equals(xmlnsAttrName) ? "" : xmlnsAttrName.substring(XMLNS.length() + 1);
+    }
+
+    private static String getPrefix(final String qname) {
+      final int index = qname.indexOf(':');
+      return index < 0 ? "" : qname.substring(0, index);
+    }
+
+    private static String getLocalName(final String qname) {
+      return qname.substring(qname.indexOf(':') + 1);
+    }
+
+    private void addError(final SAXParseException exception) {
+      final String message = exception.getMessage();
+      if (contentModelErrors != null && message != null
+          && message.startsWith(CODE_CONTENT_MODEL)) {
+        contentModelErrors.add(exception);
+      } else {
+        errors.add(exception);
+      }
+    }
+
+    @Override
+    public void warning(final SAXParseException exception) {
+      addError(exception);
+    }
+
+    @Override
+    public void error(final SAXParseException exception) {
+      addError(exception);
+    }
+
+    @Override
+    public void fatalError(final SAXParseException exception) {
+      addError(exception);
+    }
+
+    @Override
+    public String getPublicId() {
+      return null;
+    }
+
+    /**
+     * @return The path of the current element, only computed for the errors
+     */
+    @Override
+    public String getSystemId() {
+      final StringBuilder sb = new StringBuilder();
+      for (Node node = current; node != null
+          && node.getNodeType() == Node.ELEMENT_NODE; node = node.getParentNode()) {
+        final String name = node.getNodeName();
+        int position = 1;
+        for (Node sibling = node.getPreviousSibling(); sibling != null;
+            sibling = sibling.getPreviousSibling()) {
+          if (sibling.getNodeType() == Node.ELEMENT_NODE && name.equals(sibling.getNodeName())) {
+            position++;
+          }
+        }
+        sb.insert(0, "/" + name + (node.getParentNode() instanceof Element
+            ? "[" + position + "]" : ""));
+      }
+      return sb.length() == 0 ? null : sb.toString();
+    }
+
+    @Override
+    public int getLineNumber() {
+      return -1;
+    }
+
+    @Override
+    public int getColumnNumber() {
+      return -1;
+    }
+  }
+}
@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.xml.XMLConstants;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
@@ -11,6 +13,7 @@ import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -18,6 +21,12 @@ public class XsdValidator {
 
   private static final Logger logger = LoggerFactory.getLogger(XsdValidator.class);
 
+  /**
+   * The compiled schemas by main XSD path, a schema is immutable and thread safe. There is one main
+   * XSD per SDK version and document type, so this stays small.
+   */
+  private static final ConcurrentMap<Path, Schema> schemaByXsdPath = new ConcurrentHashMap<>();
+
   public static List<SAXParseException> validateXml(final String xmlAsText, final Path mainXsdPath)
       throws SAXException, IOException {
     logger.info(String.format("Attempting to validate using schema: {}", mainXsdPath));
@@ -37,19 +46,53 @@ public class XsdValidator {
   private static void validateUsingSchema(final String xmlAsText, final Path mainXsdPath,
       final org.xml.sax.ErrorHandler xsdErrorHandler)
       throws SAXException, IOException {
+    final Validator validator = getSchema(mainXsdPath).newValidator();
+    validator.setErrorHandler(xsdErrorHandler);
+    validator.validate(new StreamSource(new StringReader(xmlAsText)));
+  }
+
+  /**
+   * @param mainXsdPath The path of the main XSD file
+   * @return The compiled schema, it is compiled on the first call only
+   */
+  public static Schema getSchema(final Path mainXsdPath) throws SAXException {
+    final Path key = mainXsdPath.toAbsolutePath().normalize();
+    final Schema cached = schemaByXsdPath.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final Schema schema = compileSchema(key);
+    final Schema previous = schemaByXsdPath.putIfAbsent(key, schema);
+    return previous != null ? previous : schema;
+  }
 
+  private static Schema compileSchema(final Path mainXsdPath) throws SAXException {
+    logger.info("Compiling schema: {}", mainXsdPath);
     final SchemaFactory schemaFactory =
         SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
 
     // schemaFactory.setResourceResolver(new ResourceResolver);
-    schemaFactory.setErrorHandler(xsdErrorHandler);
+    schemaFactory.setErrorHandler(new ErrorHandler() {
+      @Override
+      public void warning(final SAXParseException exception) {
+        logger.warn("Schema warning: {}", exception.getMessage());
+      }
+
+      @Override
+      public void error(final SAXParseException exception) {
+        // Like the validation errors, this does not stop the compilation.
+        logger.error("Schema error: {}", exception.getMessage());
+      }
+
+      @Override
+      public void fatalError(final SAXParseException exception) throws SAXException {
+        throw exception;
+      }
+    });
     schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
     schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "file");
     schemaFactory.setFeature("http://apache.org/xml/features/honour-all-schemaLocations", true);
-
-    final Schema schema = schemaFactory.newSchema(mainXsdPath.toFile());
-    final Validator validator = schema.newValidator();
-    validator.validate(new StreamSource(new StringReader(xmlAsText)));
+    return schemaFactory.newSchema(mainXsdPath.toFile());
   }
 
 }
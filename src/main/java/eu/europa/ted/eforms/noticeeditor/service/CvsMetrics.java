@@ -0,0 +1,71 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsCircuitBreaker;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsPoolingConnectionManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the state of the CVS client as metrics (actuator): connection pool utilisation, time
+ * spent waiting for a connection, retries, circuit breaker state and request coalescing.
+ */
+@Component
+public class CvsMetrics implements MeterBinder {
+
+  private final NoticeValidationService noticeValidationService;
+
+  @Autowired
+  public CvsMetrics(final NoticeValidationService noticeValidationService) {
+    this.noticeValidationService = noticeValidationService;
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    final CvsPoolingConnectionManager pool = noticeValidationService.getCvsConnectionManager();
+    Gauge.builder("cvs.pool.leased", pool, p -> p.getTotalStats().getLeased())
+        .description("CVS connections in use").register(registry);
+    Gauge.builder("cvs.pool.available", pool, p -> p.getTotalStats().getAvailable())
+        .description("Idle CVS connections").register(registry);
+    Gauge.builder("cvs.pool.pending", pool, p -> p.getTotalStats().getPending())
+        .description("CVS calls waiting for a connection").register(registry);
+    Gauge.builder("cvs.pool.max", pool, p -> p.getTotalStats().getMax())
+        .description("Maximum number of CVS connections").register(registry);
+    FunctionTimer
+        .builder("cvs.pool.wait", pool, CvsPoolingConnectionManager::getWaitCount,
+            CvsPoolingConnectionManager::getWaitNanos, TimeUnit.NANOSECONDS)
+        .description("Time spent waiting for a CVS connection").register(registry);
+
+    FunctionCounter
+        .builder("cvs.retries", noticeValidationService.getCvsRetryPolicy(),
+            policy -> policy.getRetryCount())
+        .description("CVS calls retried because the CVS was overloaded").register(registry);
+
+    Gauge.builder("cvs.inflight", noticeValidationService,
+        NoticeValidationService::getInFlightCvsValidationCount)
+        .description("Distinct CVS validations in progress").register(registry);
+    Gauge.builder("cvs.queue.waiting", noticeValidationService,
+        NoticeValidationService::getCvsQueueLength)
+        .description("CVS validations waiting for their turn").register(registry);
+    FunctionCounter
+        .builder("cvs.coalesced", noticeValidationService,
+            NoticeValidationService::getCoalescedCvsValidationCount)
+        .description("CVS validations which shared the result of an identical one")
+        .register(registry);
+
+    if (noticeValidationService.getCvsCircuitBreaker().isPresent()) {
+      final CvsCircuitBreaker breaker = noticeValidationService.getCvsCircuitBreaker().get();
+      Gauge.builder("cvs.breaker.state", breaker, b -> b.getState().ordinal())
+          .description("CVS circuit breaker state: 0 closed, 1 open, 2 half open")
+          .register(registry);
+      FunctionCounter.builder("cvs.breaker.rejected", breaker, b -> b.getRejectedCount())
+          .description("CVS calls which failed fast as the circuit breaker was open")
+          .register(registry);
+    }
+  }
+}
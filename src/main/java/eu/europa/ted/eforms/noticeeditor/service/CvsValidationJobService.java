@@ -0,0 +1,107 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CsvValidationMode;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsConfig;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsValidationJob;
+import eu.europa.ted.eforms.noticeeditor.util.BoundedCache;
+import eu.europa.ted.eforms.noticeeditor.util.NamedDaemonThreadFactory;
+
+/**
+ * Runs the CVS validations asynchronously, on a dedicated and bounded executor. This way slow CVS
+ * responses do not hold the request threads. The client gets a job id and polls for the result.
+ * The jobs are kept in memory, bounded by number and by time to live.
+ */
+@Service
+public class CvsValidationJobService implements DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(CvsValidationJobService.class);
+
+  private final NoticeValidationService noticeValidationService;
+  private final ExecutorService executor;
+  private final BoundedCache<UUID, CvsValidationJob> jobById;
+
+  @Autowired
+  public CvsValidationJobService(final CvsConfig cvsConfig,
+      final NoticeValidationService noticeValidationService) {
+    this.noticeValidationService = noticeValidationService;
+
+    final int threads = cvsConfig.getAsyncThreads();
+    Validate.isTrue(threads > 0, "client.cvs.asyncThreads must be positive, found %s", threads);
+
+    // Bounded queue: when full the submit is rejected instead of piling up work.
+    this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(cvsConfig.getAsyncQueueSize()),
+        new NamedDaemonThreadFactory("cvs-validation-"), new ThreadPoolExecutor.AbortPolicy());
+
+    this.jobById = new BoundedCache<>(cvsConfig.getAsyncMaxJobs(),
+        Optional.of(Duration.ofSeconds(cvsConfig.getAsyncJobTtlSeconds())));
+  }
+
+  /**
+   * Submits the notice XML for validation by the CVS, this returns immediately.
+   *
+   * @param noticeUuid The notice UUID, used to identify the result
+   * @param sdkVersion The notice SDK version, used to identify the result
+   * @param noticeXml The notice XML text
+   * @return The job, it can be found later by id
+   * @throws RejectedExecutionException If too many validations are already waiting
+   */
+  public CvsValidationJob submit(final UUID noticeUuid, final String sdkVersion,
+      final String noticeXml, final Optional<String> eformsSdkVersion,
+      final Optional<String> svrlLangA2, final Optional<CsvValidationMode> sdkValidationMode) {
+    Validate.notBlank(noticeXml, "noticeXml is blank");
+
+    final CvsValidationJob job = new CvsValidationJob(UUID.randomUUID(), noticeUuid, sdkVersion);
+    executor.execute(() -> runJob(job, noticeXml, eformsSdkVersion, svrlLangA2,
+        sdkValidationMode));
+
+    // Only keep track of accepted jobs.
+    jobById.put(job.getJobId(), job);
+    logger.info("Submitted {}", job);
+    return job;
+  }
+
+  /**
+   * @return The job if it is known and has not expired
+   */
+  public Optional<CvsValidationJob> getJob(final UUID jobId) {
+    return jobById.get(jobId);
+  }
+
+  private void runJob(final CvsValidationJob job, final String noticeXml,
+      final Optional<String> eformsSdkVersion, final Optional<String> svrlLangA2,
+      final Optional<CsvValidationMode> sdkValidationMode) {
+    job.markRunning();
+    try {
+      final String svrl = noticeValidationService.validateNoticeXmlUsingCvs(noticeXml,
+          eformsSdkVersion, svrlLangA2, sdkValidationMode);
+      job.complete(svrl);
+      logger.info("Completed {}", job);
+    } catch (Exception e) {
+      // Any exception must end up in the job, otherwise the client would poll forever.
+      logger.error(String.format("Failed %s", job), e);
+      job.fail(e.toString());
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    executor.shutdownNow();
+    if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+      logger.warn("CVS validation executor did not terminate in time.");
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Exposes the state of the notice build executor as metrics (actuator): running and waiting builds,
+ * time spent waiting for a build thread and rejected builds.
+ */
+@Component
+public class NoticeBuildMetrics implements MeterBinder {
+
+  private final NoticeBuildService noticeBuildService;
+
+  @Autowired
+  public NoticeBuildMetrics(final NoticeBuildService noticeBuildService) {
+    this.noticeBuildService = noticeBuildService;
+  }
+
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    Gauge.builder("notice.build.active", noticeBuildService, NoticeBuildService::getActiveCount)
+        .description("Notice builds running").register(registry);
+    Gauge.builder("notice.build.queued", noticeBuildService, NoticeBuildService::getQueueLength)
+        .description("Notice builds waiting for a thread").register(registry);
+    Gauge.builder("notice.build.threads", noticeBuildService, NoticeBuildService::getPoolSize)
+        .description("Notice build threads").register(registry);
+    FunctionTimer
+        .builder("notice.build.wait", noticeBuildService, NoticeBuildService::getStartedCount,
+            NoticeBuildService::getWaitNanos, TimeUnit.NANOSECONDS)
+        .description("Time spent by the notice builds waiting for a thread").register(registry);
+    FunctionCounter
+        .builder("notice.build.rejected", noticeBuildService,
+            NoticeBuildService::getRejectedCount)
+        .description("Notice builds rejected as the build executor was saturated")
+        .register(registry);
+  }
+}
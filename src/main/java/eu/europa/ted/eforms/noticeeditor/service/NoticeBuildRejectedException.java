@@ -0,0 +1,22 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+/**
+ * Thrown when the notice build executor is saturated, the client should retry later.
+ */
+public class NoticeBuildRejectedException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  private final int retryAfterSeconds;
+
+  public NoticeBuildRejectedException(final int retryAfterSeconds, final Throwable cause) {
+    super("Too many notices are being built, retry later.", cause);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * @return The delay suggested to the client before retrying
+   */
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
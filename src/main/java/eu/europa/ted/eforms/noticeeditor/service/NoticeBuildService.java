@@ -0,0 +1,178 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.PhysicalBuildStrategy;
+import eu.europa.ted.eforms.noticeeditor.util.NamedDaemonThreadFactory;
+
+/**
+ * Runs the CPU heavy work of building notices (DOM building, XPath evaluation, sorting, XSD
+ * validation) on a dedicated executor sized to the available cores, with a bounded queue. This way
+ * a spike of large notices cannot make every request thread compete for the CPU: the extra builds
+ * wait in the queue and when the queue is full they are rejected, the client is told to retry
+ * later (503 with Retry-After, see {@link RequestExecutionService}).
+ */
+@Service
+public class NoticeBuildService implements DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(NoticeBuildService.class);
+
+  private final ThreadPoolExecutor executor;
+  private final Optional<ForkJoinPool> parallelPoolOpt;
+  private final PhysicalBuildStrategy buildStrategy;
+  private final int retryAfterSeconds;
+
+  private final AtomicLong startedCount = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  /**
+   * @param threads The number of build threads, 0 for the number of available processors
+   * @param queueSize The number of builds waiting for a thread, 0 for no waiting
+   * @param retryAfterSeconds The delay suggested to the client when the builds are rejected
+   * @param parallelism The number of threads building the top level repeatable nodes of a notice
+   *        in parallel, shared by all builds, 0 to build each notice on a single thread
+   * @param buildStrategy How the elements are put in the XSD order, "append-then-sort" or
+   *        "ordered-insert", see {@link PhysicalBuildStrategy}
+   */
+  public NoticeBuildService(@Value("${notice.build.threads:0}") final int threads,
+      @Value("${notice.build.queue-size:50}") final int queueSize,
+      @Value("${notice.build.retry-after-seconds:2}") final int retryAfterSeconds,
+      @Value("${notice.build.parallelism:0}") final int parallelism,
+      @Value("${notice.build.strategy:append-then-sort}") final String buildStrategy) {
+    Validate.isTrue(threads >= 0, "notice.build.threads cannot be negative, found %s", threads);
+    Validate.isTrue(queueSize >= 0, "notice.build.queue-size cannot be negative, found %s",
+        queueSize);
+    Validate.isTrue(parallelism >= 0, "notice.build.parallelism cannot be negative, found %s",
+        parallelism);
+    Validate.isTrue(retryAfterSeconds > 0,
+        "notice.build.retry-after-seconds must be positive, found %s", retryAfterSeconds);
+    this.buildStrategy = PhysicalBuildStrategy.fromText(buildStrategy);
+    final int poolSize = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+
+    // Bounded queue: when full the build is rejected instead of piling up work.
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+        queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueSize),
+        new NamedDaemonThreadFactory("notice-build-"), new ThreadPoolExecutor.AbortPolicy());
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.parallelPoolOpt =
+        parallelism == 0 ? Optional.empty() : Optional.of(new ForkJoinPool(parallelism));
+    logger.info("Notice build executor: threads={}, queueSize={}, parallelism={}, strategy={}",
+        poolSize, queueSize, parallelism, buildStrategy);
+  }
+
+  /**
+   * Runs the build on the build executor and waits for its result.
+   *
+   * @param build The CPU heavy work
+   * @return The result of the build
+   * @throws NoticeBuildRejectedException If the build executor is saturated
+   */
+  public <T> T build(final Callable<T> build) throws Exception {
+    final long submitNanos = System.nanoTime();
+    final Future<T> future;
+    try {
+      future = executor.submit(() -> {
+        waitNanos.addAndGet(System.nanoTime() - submitNanos);
+        startedCount.incrementAndGet();
+        return build.call();
+      });
+    } catch (final RejectedExecutionException e) {
+      rejectedCount.incrementAndGet();
+      logger.warn("Notice build rejected, {} builds are waiting", getQueueLength());
+      throw new NoticeBuildRejectedException(retryAfterSeconds, e);
+    }
+
+    try {
+      return future.get();
+    } catch (final InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return The pool in which the parts of a notice are built in parallel, empty if disabled
+   */
+  public Optional<ForkJoinPool> getParallelPoolOpt() {
+    return parallelPoolOpt;
+  }
+
+  /**
+   * @return How the elements of the notices are put in the XSD order
+   */
+  public PhysicalBuildStrategy getBuildStrategy() {
+    return buildStrategy;
+  }
+
+  /**
+   * @return The number of builds running
+   */
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /**
+   * @return The number of builds waiting for a thread
+   */
+  public int getQueueLength() {
+    return executor.getQueue().size();
+  }
+
+  public int getPoolSize() {
+    return executor.getCorePoolSize();
+  }
+
+  /**
+   * @return The number of builds which got a thread
+   */
+  public long getStartedCount() {
+    return startedCount.get();
+  }
+
+  /**
+   * @return The total time the builds waited for a thread, in nanoseconds
+   */
+  public long getWaitNanos() {
+    return waitNanos.get();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    executor.shutdownNow();
+    if (parallelPoolOpt.isPresent()) {
+      parallelPoolOpt.get().shutdownNow();
+    }
+    if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+      logger.warn("Notice build executor did not terminate in time.");
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeSession;
+import eu.europa.ted.eforms.noticeeditor.util.BoundedCache;
+
+/**
+ * Keeps the notice sessions in memory by notice UUID, so that the next save of a notice can be done
+ * by sending a patch of the visual model. The sessions are bounded by number and by time to live,
+ * a missing session means the full notice has to be sent again.
+ */
+@Service
+public class NoticeSessionService {
+
+  private final Optional<BoundedCache<UUID, NoticeSession>> sessionByNoticeUuidOpt;
+
+  /**
+   * @param maxEntries The maximum number of sessions kept in memory, 0 disables the sessions
+   * @param ttlMinutes How long a session is kept after its last save
+   */
+  public NoticeSessionService(@Value("${notice.session.max-entries:50}") final int maxEntries,
+      @Value("${notice.session.ttl-minutes:60}") final int ttlMinutes) {
+    Validate.isTrue(maxEntries >= 0, "notice.session.max-entries cannot be negative, found %s",
+        maxEntries);
+    Validate.isTrue(ttlMinutes > 0, "notice.session.ttl-minutes must be positive, found %s",
+        ttlMinutes);
+    this.sessionByNoticeUuidOpt = maxEntries == 0 ? Optional.empty()
+        : Optional.of(new BoundedCache<>(maxEntries, Optional.of(Duration.ofMinutes(ttlMinutes))));
+  }
+
+  public boolean isEnabled() {
+    return sessionByNoticeUuidOpt.isPresent();
+  }
+
+  /**
+   * @return The session if it is known and has not expired
+   */
+  public Optional<NoticeSession> get(final UUID noticeUuid) {
+    return sessionByNoticeUuidOpt.flatMap(cache -> cache.get(noticeUuid));
+  }
+
+  /**
+   * Keeps the session, replaces the previous session of the same notice. Putting the session again
+   * after a save restarts its time to live.
+   */
+  public void put(final NoticeSession session) {
+    if (sessionByNoticeUuidOpt.isPresent()) {
+      sessionByNoticeUuidOpt.get().put(session.getNoticeUuid(), session);
+    }
+  }
+
+  public void remove(final UUID noticeUuid) {
+    if (sessionByNoticeUuidOpt.isPresent()) {
+      sessionByNoticeUuidOpt.get().remove(noticeUuid);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeStore;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeStore.NoticeRevision;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+
+/**
+ * Keeps the saved notices (visual model and XML) in a local folder, see {@link NoticeStore}. A
+ * saved notice can be reloaded for editing without building it again.
+ */
+@Service
+public class NoticeStoreService implements DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(NoticeStoreService.class);
+
+  private final Optional<NoticeStore> storeOpt;
+
+  /**
+   * @param folder The folder of the store, blank disables the store
+   * @param maxSegmentMegaBytes The size of the segment files
+   */
+  public NoticeStoreService(@Value("${notice.store.folder:}") final String folder,
+      @Value("${notice.store.max-segment-mega-bytes:64}") final int maxSegmentMegaBytes) {
+    Validate.isTrue(maxSegmentMegaBytes > 0,
+        "notice.store.max-segment-mega-bytes must be positive, found %s", maxSegmentMegaBytes);
+    this.storeOpt = StringUtils.isBlank(folder) ? Optional.empty()
+        : Optional.of(new NoticeStore(Path.of(folder), maxSegmentMegaBytes * 1024L * 1024L));
+  }
+
+  public boolean isEnabled() {
+    return storeOpt.isPresent();
+  }
+
+  /**
+   * Saves a revision of the notice. An error is logged but not thrown, the notice XML has been
+   * built and can still be sent to the client.
+   *
+   * <p>
+   * The visual model is stored as compact JSON: the same model saved in full (as sent by the
+   * client) or by patch (as kept by the session) has the same hash and is stored once.
+   * </p>
+   *
+   * @return The revision, empty if the store is disabled or if it failed
+   */
+  public Optional<NoticeRevision> save(final UUID noticeUuid, final String sdkVersion,
+      final String visualJson, final String noticeXml) {
+    if (storeOpt.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      final String compactVisualJson = JsonUtils.getJsonReader().readTree(visualJson).toString();
+      final NoticeRevision revision =
+          storeOpt.get().save(noticeUuid, sdkVersion, compactVisualJson, noticeXml);
+      logger.info("Stored {}", revision);
+      return Optional.of(revision);
+    } catch (final IOException e) {
+      logger.error("Cannot store notice uuid=" + noticeUuid, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return The revisions of the notice, oldest first
+   */
+  public List<NoticeRevision> listRevisions(final UUID noticeUuid) {
+    return storeOpt.isPresent() ? storeOpt.get().listRevisions(noticeUuid)
+        : Collections.emptyList();
+  }
+
+  /**
+   * @param revision The revision number, the last revision if empty
+   */
+  public Optional<NoticeRevision> getRevision(final UUID noticeUuid,
+      final Optional<Integer> revision) {
+    return storeOpt.flatMap(store -> store.getRevision(noticeUuid, revision));
+  }
+
+  public String readVisualJson(final NoticeRevision revision) throws IOException {
+    return getStore().readVisualJson(revision);
+  }
+
+  public String readXml(final NoticeRevision revision) throws IOException {
+    return getStore().readXml(revision);
+  }
+
+  private NoticeStore getStore() {
+    return storeOpt.orElseThrow(() -> new IllegalStateException("The notice store is disabled"));
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    if (storeOpt.isPresent()) {
+      storeOpt.get().close();
+    }
+  }
+}
@@ -1,11 +1,24 @@
 package eu.europa.ted.eforms.noticeeditor.service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
@@ -20,7 +33,12 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import eu.europa.ted.eforms.noticeeditor.helper.validation.CsvValidationMode;
 import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsApiClient;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsCircuitBreaker;
 import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsConfig;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsPoolingConnectionManager;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsResultCache;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsRetryPolicy;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.SchematronValidator;
 import eu.europa.ted.eforms.noticeeditor.helper.validation.XsdValidator;
 import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
 import eu.europa.ted.eforms.sdk.SdkVersion;
@@ -35,6 +53,42 @@ public class NoticeValidationService {
   private final CvsConfig cvsConfig;
   private final ObjectMapper objectMapper;
   private final CloseableHttpClient httpClient;
+  private final CvsPoolingConnectionManager cvsConnectionManager;
+  private final CvsRetryPolicy cvsRetryPolicy;
+
+  /**
+   * Shared by all CVS calls, absent if disabled.
+   */
+  private final Optional<CvsCircuitBreaker> cvsCircuitBreakerOpt;
+
+  /**
+   * CVS validations in progress by key (see CvsResultCache.buildKey), identical validations share
+   * the result.
+   */
+  private final ConcurrentMap<String, CompletableFuture<String>> inFlightCvsValidations =
+      new ConcurrentHashMap<>();
+  private final LongAdder coalescedCvsValidationCount = new LongAdder();
+
+  /**
+   * How long a caller waits for an identical CVS validation in progress, see
+   * {@link #computeInFlightWaitMillis}.
+   */
+  private final long inFlightWaitMillis;
+
+  /**
+   * Caps the number of concurrent CVS calls, fair.
+   */
+  private final Semaphore cvsPermits;
+
+  /**
+   * Avoids calling the CVS again for an unchanged notice, absent if disabled.
+   */
+  private final Optional<CvsResultCache> cvsResultCacheOpt;
+
+  /**
+   * Local schematron validation, caches the compiled schematron of each SDK version.
+   */
+  private final SchematronValidator schematronValidator = new SchematronValidator();
 
   @Autowired
   public NoticeValidationService(final CvsConfig cvsConfig,
@@ -44,8 +98,32 @@ public class NoticeValidationService {
     // It can be reused.
     this.objectMapper = JsonUtils.getStandardJacksonObjectMapper();
 
-    final int timeoutSeconds = 8;
-    this.httpClient = CvsApiClient.createDefaultCloseableHttpClient(timeoutSeconds, true, proxyUrl);
+    final int timeoutSeconds = cvsConfig.getTimeoutSeconds();
+    this.cvsConnectionManager = new CvsPoolingConnectionManager(cvsConfig.getPoolMaxTotal(),
+        cvsConfig.getPoolMaxPerRoute());
+    this.httpClient = CvsApiClient.createDefaultCloseableHttpClient(timeoutSeconds, true, proxyUrl,
+        cvsConnectionManager);
+    Validate.isTrue(cvsConfig.getMaxConcurrentCalls() > 0, "maxConcurrentCalls must be > 0");
+    this.cvsPermits = new Semaphore(cvsConfig.getMaxConcurrentCalls(), true);
+    this.cvsRetryPolicy = new CvsRetryPolicy(cvsConfig.getRetryMaxAttempts(),
+        Duration.ofMillis(cvsConfig.getRetryBaseDelayMillis()),
+        Duration.ofMillis(cvsConfig.getRetryMaxDelayMillis()));
+    this.cvsCircuitBreakerOpt = cvsConfig.getBreakerFailureThreshold() > 0
+        ? Optional.of(new CvsCircuitBreaker(cvsConfig.getBreakerFailureThreshold(),
+            Duration.ofSeconds(cvsConfig.getBreakerOpenSeconds())))
+        : Optional.empty();
+    this.inFlightWaitMillis = computeInFlightWaitMillis(cvsConfig);
+
+    if (cvsConfig.getCacheMaxEntries() > 0) {
+      final String cacheFolder = cvsConfig.getCacheFolder();
+      final Optional<Path> cacheFolderOpt =
+          StringUtils.isBlank(cacheFolder) ? Optional.empty() : Optional.of(Path.of(cacheFolder));
+      this.cvsResultCacheOpt = Optional.of(new CvsResultCache(cvsConfig.getCacheMaxEntries(),
+          cvsConfig.getCacheMaxMegaChars() * 1024L * 1024L, cacheFolderOpt,
+          cvsConfig.getCacheMaxFiles()));
+    } else {
+      this.cvsResultCacheOpt = Optional.empty();
+    }
   }
 
   public ObjectNode validateNoticeUsingXsd(final UUID noticeUuid, final SdkVersion sdkVersion,
@@ -54,15 +132,28 @@ public class NoticeValidationService {
 
     // Create a JSON report about the errors.
     logger.info("Attempting to validate notice using XSD.");
+    if (mainXsdPathOpt.isPresent()) {
+      final Path mainXsdPath = mainXsdPathOpt.get();
+      final List<SAXParseException> validationExceptions =
+          XsdValidator.validateXml(noticeXmlText, mainXsdPath);
+      return buildXsdReport(noticeUuid, sdkVersion, Optional.of(validationExceptions));
+    }
+    return buildXsdReport(noticeUuid, sdkVersion, Optional.empty());
+  }
+
+  /**
+   * @param validationExceptionsOpt The XSD errors, empty if the XSD validation is not supported
+   * @return A JSON report about the XSD errors
+   */
+  public ObjectNode buildXsdReport(final UUID noticeUuid, final SdkVersion sdkVersion,
+      final Optional<List<SAXParseException>> validationExceptionsOpt) {
     final ObjectNode xsdReport = objectMapper.createObjectNode();
     xsdReport.put("noticeUuid", noticeUuid.toString());
     xsdReport.put("sdkVersion", sdkVersion.toString());
     xsdReport.put("timestamp", Instant.now().toString());
 
-    if (mainXsdPathOpt.isPresent()) {
-      final Path mainXsdPath = mainXsdPathOpt.get();
-      final List<SAXParseException> validationExceptions =
-          XsdValidator.validateXml(noticeXmlText, mainXsdPath);
+    if (validationExceptionsOpt.isPresent()) {
+      final List<SAXParseException> validationExceptions = validationExceptionsOpt.get();
       xsdReport.put("errorCount", validationExceptions.size());
 
       if (!validationExceptions.isEmpty()) {
@@ -72,6 +163,10 @@ public class NoticeValidationService {
           final ObjectNode xsdError = objectMapper.createObjectNode();
           xsdError.put("lineNumber", ex.getLineNumber());
           xsdError.put("columnNumber", ex.getColumnNumber());
+          if (ex.getSystemId() != null) {
+            // The path of the element when the DOM is validated (no line numbers).
+            xsdError.put("path", ex.getSystemId());
+          }
           xsdError.put("message", ex.getMessage());
           xsdErrors.add(xsdError);
         }
@@ -107,16 +202,204 @@ public class NoticeValidationService {
     final String cvsApiRootUrl = cvsConfig.getUrl();
     Validate.notBlank(cvsApiRootUrl, "The CVS URL is not configured, see application.yaml");
 
-    final CvsApiClient cvsClient =
-        new CvsApiClient(httpClient, objectMapper, cvsApiRootUrl, tedDevApiKey, Optional.empty());
+    // An unchanged notice validated with the same parameters gives the same result.
+    final String key =
+        CvsResultCache.buildKey(noticeXml, eformsSdkVersion, svrlLangA2, sdkValidationMode);
+    if (cvsResultCacheOpt.isPresent()) {
+      final Optional<String> cachedSvrlOpt = cvsResultCacheOpt.get().get(key);
+      if (cachedSvrlOpt.isPresent()) {
+        logger.info("Found CVS result in cache, key={}", key);
+        return cachedSvrlOpt.get();
+      }
+    }
+
+    // The same validation may already be in progress (double click, many users, batch), wait for
+    // its result instead of calling the CVS again.
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    final CompletableFuture<String> inFlight = inFlightCvsValidations.putIfAbsent(key, future);
+    if (inFlight != null) {
+      logger.info("Same CVS validation in progress, waiting for it, key={}", key);
+      coalescedCvsValidationCount.increment();
+      return waitForInFlight(inFlight);
+    }
 
-    //
-    // Call the CVS API.
-    //
-    final String responseBody =
-        cvsClient.validateNoticeXml(noticeXml, svrlLangA2, eformsSdkVersion, sdkValidationMode);
+    try {
+      final CvsApiClient cvsClient = createCvsApiClient(cvsApiRootUrl, tedDevApiKey);
 
-    return responseBody;
+      //
+      // Call the CVS API.
+      //
+      final String responseBody = callCvsWithPermit(() -> cvsClient.validateNoticeXml(noticeXml,
+          svrlLangA2, eformsSdkVersion, sdkValidationMode));
+
+      // Only successful responses are cached, errors throw.
+      if (cvsResultCacheOpt.isPresent()) {
+        cvsResultCacheOpt.get().put(key, responseBody);
+      }
+      future.complete(responseBody);
+      return responseBody;
+    } catch (IOException | RuntimeException | Error e) {
+      // The waiting callers must not wait forever.
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      // The result is in the cache (if enabled) before the next identical call can start.
+      inFlightCvsValidations.remove(key, future);
+    }
+  }
+
+  /**
+   * A CVS call, see {@link #callCvsWithPermit}.
+   */
+  @FunctionalInterface
+  private interface CvsCall<T> {
+    T call() throws IOException;
+  }
+
+  /**
+   * Limits the number of concurrent CVS calls. The waiting callers are served in order (fair), a
+   * burst is processed at a steady rate instead of all callers competing for the connections.
+   *
+   * @throws RejectedExecutionException If the caller waited too long
+   */
+  private <T> T callCvsWithPermit(final CvsCall<T> cvsCall) throws IOException {
+    final boolean acquired;
+    try {
+      acquired = cvsPermits.tryAcquire(cvsConfig.getQueueTimeoutSeconds(), TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a CVS call permit");
+    }
+    if (!acquired) {
+      throw new RejectedExecutionException(
+          String.format("Too many CVS validations in progress, waited %s seconds",
+              cvsConfig.getQueueTimeoutSeconds()));
+    }
+    try {
+      return cvsCall.call();
+    } finally {
+      cvsPermits.release();
+    }
+  }
+
+  /**
+   * The longest a CVS validation can take: the wait for a permit, then each attempt (connection
+   * request, connect and read timeouts) and the delay before each retry.
+   */
+  static long computeInFlightWaitMillis(final CvsConfig cvsConfig) {
+    final long attemptMillis = TimeUnit.SECONDS.toMillis(3L * cvsConfig.getTimeoutSeconds())
+        + cvsConfig.getRetryMaxDelayMillis();
+    return TimeUnit.SECONDS.toMillis(cvsConfig.getQueueTimeoutSeconds())
+        + Math.max(1, cvsConfig.getRetryMaxAttempts()) * attemptMillis;
+  }
+
+  /**
+   * Waits for the result of an identical CVS validation in progress, not longer than the CVS call
+   * itself can take, a hung call must not block all the callers waiting for it.
+   *
+   * @throws RejectedExecutionException If the caller waited too long
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  String waitForInFlight(final CompletableFuture<String> inFlight) throws IOException {
+    try {
+      return inFlight.get(inFlightWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a CVS validation");
+    } catch (TimeoutException e) {
+      throw new RejectedExecutionException(
+          String.format("Identical CVS validation still in progress, waited %s ms",
+              inFlightWaitMillis));
+    } catch (ExecutionException e) {
+      // Same failure as the caller which did the CVS call.
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Like {@link #validateNoticeXmlUsingCvs} but responds with a JSON report of the failed asserts.
+   * The SVRL goes through the same cache and coalescing of identical validations, the report is
+   * then read from the SVRL text by a streaming reader.
+   *
+   * @param noticeXml The notice XML text
+   * @param eformsSdkVersion An optional SDK version in case it does not work with the desired
+   *        version, if not provided the version found in the notice XML will be used
+   * @param svrlLangA2 The language the svrl messages should be in
+   * @return The JSON report
+   */
+  public ObjectNode validateNoticeXmlUsingCvsAsJsonReport(final String noticeXml,
+      final Optional<String> eformsSdkVersion, final Optional<String> svrlLangA2,
+      final Optional<CsvValidationMode> sdkValidationMode) throws IOException {
+    final String svrl =
+        validateNoticeXmlUsingCvs(noticeXml, eformsSdkVersion, svrlLangA2, sdkValidationMode);
+    try (StringReader reader = new StringReader(svrl)) {
+      return CvsApiClient.createJsonReport(reader, svrlLangA2);
+    }
   }
-}
 
+  private CvsApiClient createCvsApiClient(final String cvsApiRootUrl, final String tedDevApiKey) {
+    return new CvsApiClient(httpClient, objectMapper, cvsApiRootUrl, tedDevApiKey,
+        Optional.empty(), cvsRetryPolicy, cvsCircuitBreakerOpt);
+  }
+
+  CvsPoolingConnectionManager getCvsConnectionManager() {
+    return cvsConnectionManager;
+  }
+
+  CvsRetryPolicy getCvsRetryPolicy() {
+    return cvsRetryPolicy;
+  }
+
+  Optional<CvsCircuitBreaker> getCvsCircuitBreaker() {
+    return cvsCircuitBreakerOpt;
+  }
+
+  /**
+   * @return The number of distinct CVS validations in progress
+   */
+  int getInFlightCvsValidationCount() {
+    return inFlightCvsValidations.size();
+  }
+
+  /**
+   * @return The number of CVS validations which waited for an identical one instead of calling the
+   *         CVS
+   */
+  long getCoalescedCvsValidationCount() {
+    return coalescedCvsValidationCount.sum();
+  }
+
+  /**
+   * @return The number of callers waiting for a CVS call permit
+   */
+  int getCvsQueueLength() {
+    return cvsPermits.getQueueLength();
+  }
+
+  /**
+   * Validates the notice locally (offline) using the schematron of the SDK, an alternative to the
+   * CVS. The SVRL is similar to the one of the CVS.
+   *
+   * @param noticeXml The notice XML text
+   * @param sdkFolder The folder of the SDK version of the notice
+   * @param noticeSubTypeOpt The notice sub type, selects the schematron phase
+   * @param sdkValidationMode The validation mode, static if not specified (like the CVS)
+   * @return The SVRL as text
+   */
+  public String validateNoticeXmlUsingSchematron(final String noticeXml, final Path sdkFolder,
+      final Optional<String> noticeSubTypeOpt,
+      final Optional<CsvValidationMode> sdkValidationMode) {
+    logger.info("Attempting to validate notice using the SDK schematron");
+    return schematronValidator.validateUsingSdk(noticeXml, sdkFolder, sdkValidationMode,
+        noticeSubTypeOpt);
+  }
+}
@@ -0,0 +1,230 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import eu.europa.ted.eforms.noticeeditor.util.NamedDaemonThreadFactory;
+
+/**
+ * Runs the work of the REST requests according to the configured execution mode:
+ * <ul>
+ * <li>servlet: on the request (Jetty) thread, this is the default</li>
+ * <li>async: the work runs on a dedicated and bounded executor, the Jetty thread is released while
+ * the notice is built or while waiting on the CVS or the disk</li>
+ * <li>virtual: like async but the work runs on a virtual thread per request, this requires a Java
+ * 21 runtime. A virtual thread is not reused: the XML objects kept per thread (document builders,
+ * SAX parsers, transformers, XPath factories, see SafeDocumentBuilder and EditorXmlUtils) are
+ * built again for each request, for the work done on the request thread like writing the XML text
+ * or reading an SVRL. The notice build runs on the platform threads of the notice build executor
+ * and keeps them, see NoticeBuildService.</li>
+ * </ul>
+ * In the async modes the controllers return a {@link WebAsyncTask}, Spring MVC runs it on the
+ * executor of this service with the configured timeout (see AsyncRequestConfig) and the exceptions
+ * are handled as for any request.
+ */
+@Service
+public class RequestExecutionService implements DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(RequestExecutionService.class);
+
+  /**
+   * Suggested delay before retrying when the executor is saturated.
+   */
+  private static final int RETRY_AFTER_SECONDS = 2;
+
+  /**
+   * The work of a request, it writes the response.
+   */
+  @FunctionalInterface
+  public interface RequestTask {
+    /**
+     * @param response The response to write, in the async modes it cannot be changed anymore once
+     *        the request timed out
+     */
+    void run(HttpServletResponse response) throws Exception;
+  }
+
+  public enum ExecutionMode {
+    SERVLET, ASYNC, VIRTUAL;
+
+    public static ExecutionMode fromText(final String text) {
+      Validate.notBlank(text, "The execution mode is blank");
+      try {
+        return valueOf(text.trim().toUpperCase(Locale.ROOT));
+      } catch (final IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            String.format("Unknown execution mode %s, expecting servlet, async or virtual", text),
+            e);
+      }
+    }
+  }
+
+  private final ExecutionMode mode;
+  private final long timeoutMillis;
+
+  /**
+   * Runs the async requests, null in servlet mode.
+   */
+  private final ExecutorService executor;
+  private final Optional<AsyncTaskExecutor> taskExecutorOpt;
+
+  /**
+   * The requests running or waiting for a thread of the async executor, absent if not bounded.
+   */
+  private final Optional<Semaphore> permitsOpt;
+
+  /**
+   * @param mode The execution mode: servlet, async or virtual
+   * @param threads The number of threads of the async executor
+   * @param queueSize The number of requests waiting for a thread of the async executor
+   * @param timeoutSeconds The async request timeout
+   */
+  public RequestExecutionService(@Value("${execution.mode:servlet}") final String mode,
+      @Value("${execution.threads:32}") final int threads,
+      @Value("${execution.queue-size:200}") final int queueSize,
+      @Value("${execution.timeout-seconds:120}") final int timeoutSeconds) {
+    this.mode = ExecutionMode.fromText(mode);
+    Validate.isTrue(timeoutSeconds > 0, "execution.timeout-seconds must be positive, found %s",
+        timeoutSeconds);
+    this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+
+    switch (this.mode) {
+      case SERVLET:
+        this.executor = null;
+        this.permitsOpt = Optional.empty();
+        break;
+      case ASYNC:
+        Validate.isTrue(threads > 0, "execution.threads must be positive, found %s", threads);
+        Validate.isTrue(queueSize >= 0, "execution.queue-size cannot be negative, found %s",
+            queueSize);
+        // The permits bound the queue: when none is left the request is rejected instead of piling
+        // up work.
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new NamedDaemonThreadFactory("request-"));
+        this.permitsOpt = Optional.of(new Semaphore(threads + queueSize));
+        break;
+      case VIRTUAL:
+        this.executor = buildVirtualThreadExecutor();
+        this.permitsOpt = Optional.empty();
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported execution mode " + this.mode);
+    }
+    this.taskExecutorOpt = executor == null ? Optional.empty()
+        : Optional.of(new TaskExecutorAdapter(executor));
+    logger.info("Request execution mode: {}", this.mode);
+  }
+
+  /**
+   * The project targets Java 11, the virtual threads are only available when running on Java 21+.
+   */
+  private static ExecutorService buildVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      throw new IllegalStateException(String.format(
+          "The virtual execution mode requires Java 21 or later, running on Java %s",
+          System.getProperty("java.version")), e);
+    }
+  }
+
+  public ExecutionMode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return The executor of the async requests, empty in servlet mode
+   */
+  public Optional<AsyncTaskExecutor> getTaskExecutorOpt() {
+    return taskExecutorOpt;
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  /**
+   * Runs the task in the configured execution mode. In servlet mode the task runs now, otherwise
+   * it is returned to Spring MVC to run on the async executor. A saturated async executor is
+   * answered with 503 and Retry-After.
+   *
+   * @param response The HTTP response, the task writes it
+   * @param task The work of the request
+   * @return The task to run asynchronously, null if the response is already written
+   */
+  public WebAsyncTask<Void> execute(final HttpServletResponse response, final RequestTask task)
+      throws Exception {
+    if (executor == null) {
+      task.run(response);
+      return null;
+    }
+    if (permitsOpt.isPresent() && !permitsOpt.get().tryAcquire()) {
+      logger.warn("Request rejected, the executor is saturated");
+      response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Too many requests are waiting, retry later.");
+      return null;
+    }
+
+    // After a timeout the response is answered by Spring MVC, the task must not change it anymore.
+    final TimeoutGuardedResponse guardedResponse = new TimeoutGuardedResponse(response);
+    // Whoever claims the task releases the permit: the task when it runs, else the completion.
+    final AtomicBoolean claimed = new AtomicBoolean();
+    final WebAsyncTask<Void> asyncTask = new WebAsyncTask<>(() -> {
+      if (!claimed.compareAndSet(false, true)) {
+        return null; // Timed out before it started.
+      }
+      try {
+        task.run(guardedResponse);
+        return null;
+      } finally {
+        releasePermit();
+      }
+    });
+    asyncTask.onTimeout(() -> {
+      guardedResponse.close();
+      logger.warn("Request timed out after {} ms", timeoutMillis);
+      // Answered with 503.
+      throw new AsyncRequestTimeoutException();
+    });
+    asyncTask.onCompletion(() -> {
+      if (claimed.compareAndSet(false, true)) {
+        releasePermit();
+      }
+    });
+    return asyncTask;
+  }
+
+  private void releasePermit() {
+    if (permitsOpt.isPresent()) {
+      permitsOpt.get().release();
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+      if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+        logger.warn("Request executor did not terminate in time.");
+      }
+    }
+  }
+}
@@ -10,6 +10,7 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.helger.genericode.v10.CodeListDocument;
@@ -47,6 +49,7 @@ import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
 import eu.europa.ted.eforms.noticeeditor.helper.VersionHelper;
 import eu.europa.ted.eforms.noticeeditor.util.IntuitiveStringComparator;
 import eu.europa.ted.eforms.noticeeditor.util.JavaTools;
+import eu.europa.ted.eforms.noticeeditor.util.JsonSnapshot;
 import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
 import eu.europa.ted.eforms.sdk.SdkConstants.SdkResource;
 import eu.europa.ted.eforms.sdk.SdkVersion;
@@ -92,6 +95,12 @@ public class SdkService {
    */
   public static final int CACHE_MAX_AGE_SECONDS = SECONDS_IN_ONE_HOUR * 2;
 
+  /**
+   * The translations are written by a plain object mapper: the standard one leaves out the empty
+   * labels.
+   */
+  private static final ObjectWriter LABELS_WRITER = new ObjectMapper().writer();
+
   /**
    * SECURITY: this regex is security related, so be careful if you decide to change it. This is
    * security related as the sdkVersion is used in file system folder related operations.
@@ -111,8 +120,7 @@ public class SdkService {
       final String shortName = gcDoc.getIdentification().getShortNameValue();
       final String longName = gcDoc.getIdentification().getLongNameAtIndex(0).getValue();
 
-      final ObjectMapper jsonMapper = JsonUtils.getStandardJacksonObjectMapper();
-      final ObjectNode jsonCodelist = jsonMapper.createObjectNode();
+      final ObjectNode jsonCodelist = JsonUtils.createObjectNode();
 
       // By convention of the SDK the longname is the codelist identifier.
       jsonCodelist.put("id", longName);
@@ -141,18 +149,16 @@ public class SdkService {
           // Get desired language first, fallback to eng.
           final Optional<Value> desiredLabelOpt = gcFindFirstColumnRef(gcRowValues, genericodeLang);
           if (desiredLabelOpt.isPresent()) {
-            putCodeValueAndLangCode(langCode, jsonMapper, jsonRows, technicalCode, desiredLabelOpt);
+            putCodeValueAndLangCode(langCode, jsonRows, technicalCode, desiredLabelOpt);
           } else {
             final Optional<Value> englishLabelOpt = gcFindFirstColumnRef(gcRowValues, "eng_label");
             if (englishLabelOpt.isPresent()) {
-              putCodeValueAndLangCode(langCode, jsonMapper, jsonRows, technicalCode,
-                  englishLabelOpt);
+              putCodeValueAndLangCode(langCode, jsonRows, technicalCode, englishLabelOpt);
             } else {
               // Just take the Name and assume it is in english.
               final Optional<Value> nameLabelOpt = gcFindFirstColumnRef(gcRowValues, "Name");
               if (nameLabelOpt.isPresent()) {
-                putCodeValueAndLangCode(langCode, jsonMapper, jsonRows, technicalCode,
-                    nameLabelOpt);
+                putCodeValueAndLangCode(langCode, jsonRows, technicalCode, nameLabelOpt);
               }
             }
           }
@@ -171,10 +177,10 @@ public class SdkService {
         .findFirst();
   }
 
-  private static void putCodeValueAndLangCode(final String langCode, final ObjectMapper jsonMapper,
-      final ArrayNode jsonRows, final String technicalCode, final Optional<Value> englishLabelOpt) {
+  private static void putCodeValueAndLangCode(final String langCode, final ArrayNode jsonRows,
+      final String technicalCode, final Optional<Value> englishLabelOpt) {
     final String englishText = englishLabelOpt.get().getSimpleValueValue();
-    final ObjectNode jsonRow = jsonMapper.createObjectNode();
+    final ObjectNode jsonRow = JsonUtils.createObjectNode();
     jsonRows.add(jsonRow);
     jsonRow.put("codeValue", technicalCode.strip());
     jsonRow.put(langCode, englishText.strip());
@@ -390,8 +396,7 @@ public class SdkService {
     Validate.notNull(sdkVersion, "Undefined SDK version");
     try {
       final Path path = readSdkPath(sdkVersion, resourceType, filenameForDownload);
-      final ObjectMapper mapper = new ObjectMapper();
-      return mapper.readTree(path.toFile());
+      return JsonSnapshot.loadJson(path);
     } catch (IOException ex) {
       logger.error(ex.toString(), ex);
       throw new RuntimeException(
@@ -431,13 +436,13 @@ public class SdkService {
 
   /**
    * Reads an SDK translation file for given SDK and language. The files are in XML format but they
-   * will be converted to JSON.
+   * will be converted to JSON, kept in a snapshot next to the file, see {@link JsonSnapshot}.
    *
    * @return Map of the labels by id
    */
   public static Map<String, String> getTranslations(final SdkVersion sdkVersion,
       final Path eformsSdkDir, final String labelAssetType, final String langCode)
-      throws ParserConfigurationException, SAXException, IOException {
+      throws IOException {
 
     // SECURITY: Do not inject the passed language directly into a string that goes to the file
     // system. We use our internal enum as a whitelist.
@@ -455,8 +460,6 @@ public class SdkService {
     // <entry key="field|name|BT-01(c)-Procedure">Procedure Legal Basis (ELI - celex)</entry>
     // ...
 
-    // Parse the XML, build a map of text by id.
-    final DocumentBuilder db = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(true);
     final File file = path.toFile();
 
     // NOTE: the file may not exist if there are no translations yet.
@@ -473,12 +476,34 @@ public class SdkService {
       return fallbackMap;
     }
 
-    final Document doc = db.parse(file);
+    // Parse the XML once, the labels are then read from the snapshot next to the file.
+    final JsonNode labelsJson = JsonSnapshot.load(path, SdkService::parseTranslations);
+    final Map<String, String> labelById = new LinkedHashMap<>(labelsJson.size() * 2);
+    for (final Iterator<Entry<String, JsonNode>> it = labelsJson.fields(); it.hasNext();) {
+      final Entry<String, JsonNode> entry = it.next();
+      labelById.put(entry.getKey(), entry.getValue().textValue());
+    }
+    return labelById;
+  }
+
+  /**
+   * @return The labels of the translation file as JSON, text by id
+   */
+  private static JsonNode parseTranslations(final Path path) throws IOException {
+    // Parse the XML, build a map of text by id.
+    final Document doc;
+    try {
+      final DocumentBuilder db =
+          SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(true);
+      doc = db.parse(path.toFile());
+    } catch (final ParserConfigurationException | SAXException e) {
+      throw new IOException(String.format("Cannot parse %s", path), e);
+    }
     doc.getDocumentElement().normalize();
 
     // Get all entries and populate a map with the key and values.
     final NodeList entries = doc.getElementsByTagName("entry");
-    final Map<String, String> labelById = new LinkedHashMap<>();
+    final ObjectNode labelById = JsonUtils.createObjectNode();
     for (int i = 0; i < entries.getLength(); i++) {
       final Node entry = entries.item(i);
       if (entry.getNodeType() == Node.ELEMENT_NODE) {
@@ -493,8 +518,7 @@ public class SdkService {
 
   public static void serveTranslations(final HttpServletResponse response,
       final SdkVersion sdkVersion, final Path eformsSdkDir, final String langCode,
-      final String filenameForDownload)
-      throws ParserConfigurationException, SAXException, IOException {
+      final String filenameForDownload) throws IOException {
 
     final Map<String, String> labelById = new LinkedHashMap<>(1024);
 
@@ -509,7 +533,7 @@ public class SdkService {
         SdkService.getTranslations(sdkVersion, eformsSdkDir, labelAssetTypeGroup, langCode));
 
     // Convert to JSON string and respond.
-    final String jsonStr = new ObjectMapper().writeValueAsString(labelById);
+    final String jsonStr = LABELS_WRITER.writeValueAsString(labelById);
     serveSdkJsonString(response, jsonStr, filenameForDownload);
   }
 
@@ -0,0 +1,256 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * The response given to a request task running asynchronously, see
+ * {@link RequestExecutionService}. Once the request timed out Spring MVC answers it and the task
+ * must not touch the response anymore: every change of the response is done under a lock and fails
+ * after {@link #close()}.
+ */
+final class TimeoutGuardedResponse extends HttpServletResponseWrapper {
+
+  private final Object lock = new Object();
+  private boolean closed;
+  private ServletOutputStream outputStream;
+  private PrintWriter writer;
+
+  TimeoutGuardedResponse(final HttpServletResponse response) {
+    super(response);
+  }
+
+  /**
+   * Waits for a change of the response in progress, the next ones fail.
+   */
+  void close() {
+    synchronized (lock) {
+      closed = true;
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("The request timed out, the response is closed");
+    }
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      if (outputStream == null) {
+        outputStream = new GuardedOutputStream(super.getOutputStream());
+      }
+      return outputStream;
+    }
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      if (writer == null) {
+        writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+      }
+      return writer;
+    }
+  }
+
+  @Override
+  public void sendError(final int sc, final String msg) throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      super.sendError(sc, msg);
+    }
+  }
+
+  @Override
+  public void sendError(final int sc) throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      super.sendError(sc);
+    }
+  }
+
+  @Override
+  public void sendRedirect(final String location) throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      super.sendRedirect(location);
+    }
+  }
+
+  @Override
+  public void setStatus(final int sc) {
+    synchronized (lock) {
+      checkOpen();
+      super.setStatus(sc);
+    }
+  }
+
+  @Override
+  public void setHeader(final String name, final String value) {
+    synchronized (lock) {
+      checkOpen();
+      super.setHeader(name, value);
+    }
+  }
+
+  @Override
+  public void addHeader(final String name, final String value) {
+    synchronized (lock) {
+      checkOpen();
+      super.addHeader(name, value);
+    }
+  }
+
+  @Override
+  public void setIntHeader(final String name, final int value) {
+    synchronized (lock) {
+      checkOpen();
+      super.setIntHeader(name, value);
+    }
+  }
+
+  @Override
+  public void addIntHeader(final String name, final int value) {
+    synchronized (lock) {
+      checkOpen();
+      super.addIntHeader(name, value);
+    }
+  }
+
+  @Override
+  public void setDateHeader(final String name, final long date) {
+    synchronized (lock) {
+      checkOpen();
+      super.setDateHeader(name, date);
+    }
+  }
+
+  @Override
+  public void addDateHeader(final String name, final long date) {
+    synchronized (lock) {
+      checkOpen();
+      super.addDateHeader(name, date);
+    }
+  }
+
+  @Override
+  public void setContentType(final String type) {
+    synchronized (lock) {
+      checkOpen();
+      super.setContentType(type);
+    }
+  }
+
+  @Override
+  public void setCharacterEncoding(final String charset) {
+    synchronized (lock) {
+      checkOpen();
+      super.setCharacterEncoding(charset);
+    }
+  }
+
+  @Override
+  public void setContentLength(final int len) {
+    synchronized (lock) {
+      checkOpen();
+      super.setContentLength(len);
+    }
+  }
+
+  @Override
+  public void setContentLengthLong(final long len) {
+    synchronized (lock) {
+      checkOpen();
+      super.setContentLengthLong(len);
+    }
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      if (writer != null) {
+        writer.flush();
+      }
+      super.flushBuffer();
+    }
+  }
+
+  @Override
+  public void resetBuffer() {
+    synchronized (lock) {
+      checkOpen();
+      super.resetBuffer();
+    }
+  }
+
+  @Override
+  public void reset() {
+    synchronized (lock) {
+      checkOpen();
+      super.reset();
+    }
+  }
+
+  /**
+   * Each write is done under the lock of the response.
+   */
+  private final class GuardedOutputStream extends ServletOutputStream {
+    private final ServletOutputStream delegate;
+
+    private GuardedOutputStream(final ServletOutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      synchronized (lock) {
+        checkOpen();
+        delegate.write(b);
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      synchronized (lock) {
+        checkOpen();
+        delegate.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      synchronized (lock) {
+        checkOpen();
+        delegate.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      synchronized (lock) {
+        checkOpen();
+        delegate.close();
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+}
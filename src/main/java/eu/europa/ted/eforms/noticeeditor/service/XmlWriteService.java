@@ -5,27 +5,38 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.xml.sax.SAXException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import eu.europa.ted.eforms.noticeeditor.helper.VersionHelper;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.ConceptualModel;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.FieldsAndNodes;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.InvalidNoticePatchException;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeErrorLocator;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeSession;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeStore.NoticeRevision;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeXmlImporter;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.PhysicalModel;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.VisualModel;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.VisualModelPatch;
 import eu.europa.ted.eforms.noticeeditor.helper.validation.CsvValidationMode;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsValidationJob;
 import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
 import eu.europa.ted.eforms.sdk.SdkConstants;
 import eu.europa.ted.eforms.sdk.SdkVersion;
@@ -51,6 +62,35 @@ public class XmlWriteService {
   @Autowired
   private NoticeValidationService noticeValidationService;
 
+  @Autowired
+  private CvsValidationJobService cvsValidationJobService;
+
+  @Autowired
+  private NoticeSessionService noticeSessionService;
+
+  @Autowired
+  private NoticeBuildService noticeBuildService;
+
+  @Autowired
+  private NoticeStoreService noticeStoreService;
+
+  /**
+   * Response header holding the revision of the notice in the notice store.
+   */
+  private static final String HEADER_NOTICE_REVISION = "X-Notice-Revision";
+
+  /**
+   * Suggested delay before retrying when the asynchronous CVS validation is saturated.
+   */
+  private static final int CVS_ASYNC_RETRY_AFTER_SECONDS = 5;
+
+  /**
+   * The fields and nodes by SDK version without patch, this SDK metadata (and the node tables
+   * computed from it) never changes for a given SDK.
+   */
+  private final ConcurrentMap<String, FieldsAndNodes> fieldsAndNodesBySdkVersion =
+      new ConcurrentHashMap<>();
+
   /**
    * @param responseOpt used to respond with the XML
    * @param noticeJson The notice as JSON as built by the front-end form.
@@ -59,16 +99,31 @@ public class XmlWriteService {
    */
   public void saveNoticeAsXml(final Optional<HttpServletResponse> responseOpt,
       final String noticeJson, final boolean debug) throws Exception {
-    final PhysicalModel physicalModel = buildPhysicalModel(noticeJson, debug);
+    final Optional<NoticeSession> sessionOpt =
+        noticeSessionService.isEnabled() ? Optional.of(buildNoticeSession(noticeJson, debug))
+            : Optional.empty();
+    final PhysicalModel physicalModel = sessionOpt.isPresent()
+        ? sessionOpt.get().getPhysicalModel() : buildPhysicalModel(noticeJson, debug);
     final UUID noticeUuid = physicalModel.getNoticeId();
     final SdkVersion sdkVersion = physicalModel.getSdkVersion();
     try {
       // Transform physical model to XML.
       final String noticeXmlText = physicalModel.toXmlText(true);
 
+      // Keep the session so that the next save can be a patch.
+      if (sessionOpt.isPresent()) {
+        noticeSessionService.put(sessionOpt.get());
+      }
+      final Optional<NoticeRevision> revisionOpt =
+          noticeStoreService.save(noticeUuid, sdkVersion.toString(), noticeJson, noticeXmlText);
+
       // We perform no validation on the XML.
       // Respond with the XML.
       if (responseOpt.isPresent()) {
+        if (revisionOpt.isPresent()) {
+          responseOpt.get().setHeader(HEADER_NOTICE_REVISION,
+              String.valueOf(revisionOpt.get().getRevision()));
+        }
         final String filenameForDownload = generateNoticeFilename(noticeUuid, sdkVersion);
         serveSdkXmlStringAsDownload(responseOpt.get(), noticeXmlText, filenameForDownload);
       }
@@ -80,6 +135,259 @@ public class XmlWriteService {
     }
   }
 
+  /**
+   * Applies a patch of the visual model to the notice saved before and responds with the XML. Only
+   * the sections of the notice which changed are rebuilt, see {@link NoticeSession}.
+   *
+   * @param responseOpt used to respond with the XML
+   * @param noticeUuidStr The notice UUID, the full notice must have been saved before
+   * @param patchJson The JSON patch of the visual model, see {@link VisualModelPatch}
+   */
+  public void saveNoticePatchAsXml(final Optional<HttpServletResponse> responseOpt,
+      final String noticeUuidStr, final String patchJson) throws Exception {
+    Validate.notBlank(patchJson, "patchJson is blank");
+    final Optional<NoticeSession> sessionOpt = findNoticeSession(responseOpt, noticeUuidStr);
+    if (sessionOpt.isEmpty()) {
+      return;
+    }
+    final NoticeSession session = sessionOpt.get();
+    final UUID noticeUuid = session.getNoticeUuid();
+    final JsonNode patch = JsonUtils.getJsonReader().readTree(patchJson);
+
+    final String noticeXmlText;
+    final SdkVersion sdkVersion;
+    final String visualJson;
+    synchronized (session) {
+      try {
+        final PhysicalModel physicalModel =
+            noticeBuildService.build(() -> session.applyPatch(patch));
+        noticeXmlText = physicalModel.toXmlText(true);
+        sdkVersion = physicalModel.getSdkVersion();
+        visualJson = session.getVisualModelJson();
+      } catch (final NoticeBuildRejectedException e) {
+        throw e; // Nothing was done, the session is unchanged.
+      } catch (final InvalidNoticePatchException e) {
+        // Rejected before any change, the session is kept and the client can fix the patch.
+        sendInvalidPatchError(responseOpt, e);
+        return;
+      } catch (final Exception e) {
+        // The session may be half updated, the full notice has to be sent again.
+        noticeSessionService.remove(noticeUuid);
+        logger.error("Error patching notice uuid={}", noticeUuid);
+        throw e;
+      }
+    }
+    noticeSessionService.put(session);
+    final Optional<NoticeRevision> revisionOpt =
+        noticeStoreService.save(noticeUuid, sdkVersion.toString(), visualJson, noticeXmlText);
+
+    if (responseOpt.isPresent()) {
+      if (revisionOpt.isPresent()) {
+        responseOpt.get().setHeader(HEADER_NOTICE_REVISION,
+            String.valueOf(revisionOpt.get().getRevision()));
+      }
+      final String filenameForDownload = generateNoticeFilename(noticeUuid, sdkVersion);
+      serveSdkXmlStringAsDownload(responseOpt.get(), noticeXmlText, filenameForDownload);
+    }
+  }
+
+  /**
+   * Responds with the revisions of a stored notice (JSON), oldest first.
+   */
+  public void serveNoticeRevisions(final HttpServletResponse response, final String noticeUuidStr)
+      throws IOException {
+    final Optional<UUID> noticeUuidOpt = parseNoticeUuidOrSendError(response, noticeUuidStr);
+    if (noticeUuidOpt.isEmpty()) {
+      return;
+    }
+    final List<NoticeRevision> revisions = noticeStoreService.listRevisions(noticeUuidOpt.get());
+    if (revisions.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown notice");
+      return;
+    }
+    final ArrayNode json = JsonUtils.createArrayNode();
+    for (final NoticeRevision revision : revisions) {
+      final ObjectNode item = json.addObject();
+      item.put("revision", revision.getRevision());
+      item.put("savedAt", Instant.ofEpochMilli(revision.getSavedAtMillis()).toString());
+      item.put("sdkVersion", revision.getSdkVersion());
+      item.put("visualHash", revision.getVisualHash());
+      item.put("xmlHash", revision.getXmlHash());
+    }
+    serveJson(response, String.format("notice-%s-revisions.json", noticeUuidOpt.get()), false,
+        json.toPrettyString());
+  }
+
+  /**
+   * Responds with the visual model (JSON) or the XML of a stored notice revision, as it was saved.
+   *
+   * @param revisionStr The revision number or "latest"
+   * @param isXml True for the XML, false for the visual model
+   */
+  public void serveNoticeRevision(final HttpServletResponse response, final String noticeUuidStr,
+      final String revisionStr, final boolean isXml) throws IOException {
+    final Optional<UUID> noticeUuidOpt = parseNoticeUuidOrSendError(response, noticeUuidStr);
+    if (noticeUuidOpt.isEmpty()) {
+      return;
+    }
+    final Optional<Integer> revisionNumberOpt;
+    if ("latest".equals(revisionStr)) {
+      revisionNumberOpt = Optional.empty();
+    } else {
+      try {
+        revisionNumberOpt = Optional.of(Integer.valueOf(revisionStr));
+      } catch (@SuppressWarnings("unused") final NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid revision");
+        return;
+      }
+    }
+    final Optional<NoticeRevision> revisionOpt =
+        noticeStoreService.getRevision(noticeUuidOpt.get(), revisionNumberOpt);
+    if (revisionOpt.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown notice or revision");
+      return;
+    }
+    final NoticeRevision revision = revisionOpt.get();
+    response.setHeader(HEADER_NOTICE_REVISION, String.valueOf(revision.getRevision()));
+    if (isXml) {
+      serveSdkXmlStringAsDownload(response, noticeStoreService.readXml(revision),
+          String.format("notice-%s-%s-r%d.xml", revision.getSdkVersion(),
+              revision.getNoticeUuid(), revision.getRevision()));
+    } else {
+      serveJson(response, String.format("notice-%s-r%d.json", revision.getNoticeUuid(),
+          revision.getRevision()), false, noticeStoreService.readVisualJson(revision));
+    }
+  }
+
+  /**
+   * Imports a notice XML: responds with its visual model (JSON), see {@link NoticeXmlImporter}.
+   * The SDK version is read from the XML.
+   */
+  public void importNoticeXml(final HttpServletResponse response, final byte[] noticeXml)
+      throws Exception {
+    final SdkVersion sdkVersion;
+    try {
+      sdkVersion = NoticeXmlImporter.readSdkVersion(new ByteArrayInputStream(noticeXml));
+    } catch (final XMLStreamException | IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Invalid notice XML: " + e.getMessage());
+      return;
+    }
+    final FieldsAndNodes fieldsAndNodes = readFieldsAndNodes(sdkVersion);
+    final ObjectNode visRoot;
+    try {
+      visRoot = noticeBuildService.build(() -> NoticeXmlImporter.importNotice(fieldsAndNodes,
+          new ByteArrayInputStream(noticeXml)));
+    } catch (final XMLStreamException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "Invalid notice XML: " + e.getMessage());
+      return;
+    }
+    serveJson(response,
+        String.format("notice-%s.json", visRoot.get(VisualModel.VIS_NOTICE_UUID).asText()),
+        false, visRoot.toString());
+  }
+
+  private static Optional<UUID> parseNoticeUuidOrSendError(final HttpServletResponse response,
+      final String noticeUuidStr) throws IOException {
+    try {
+      return Optional.of(UUID.fromString(noticeUuidStr));
+    } catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid notice UUID");
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Like {@link #saveNoticePatchAsXml} but responds with the XSD report. Only the sections of the
+   * notice which changed since the last XSD validation of the session are validated again, the
+   * errors of the other sections are reused.
+   *
+   * @param responseOpt used to respond with a report
+   * @param noticeUuidStr The notice UUID, the full notice must have been saved before
+   * @param patchJson The JSON patch of the visual model, may be an empty array
+   */
+  public void validatePatchUsingXsd(final Optional<HttpServletResponse> responseOpt,
+      final String noticeUuidStr, final String patchJson) throws Exception {
+    Validate.notBlank(patchJson, "patchJson is blank");
+    final Optional<NoticeSession> sessionOpt = findNoticeSession(responseOpt, noticeUuidStr);
+    if (sessionOpt.isEmpty()) {
+      return;
+    }
+    final NoticeSession session = sessionOpt.get();
+    final UUID noticeUuid = session.getNoticeUuid();
+    final JsonNode patch = JsonUtils.getJsonReader().readTree(patchJson);
+
+    final ObjectNode xsdReport;
+    synchronized (session) {
+      try {
+        xsdReport = noticeBuildService.build(() -> {
+          final PhysicalModel physicalModel = session.applyPatch(patch);
+          final ObjectNode report = noticeValidationService.buildXsdReport(noticeUuid,
+              physicalModel.getSdkVersion(), session.validateUsingXsd());
+          // The DOM errors have paths.
+          new NoticeErrorLocator(physicalModel.getDomDocument()).putXsdReportLocations(report,
+              Optional.empty());
+          return report;
+        });
+      } catch (final NoticeBuildRejectedException e) {
+        throw e; // Nothing was done, the session is unchanged.
+      } catch (final InvalidNoticePatchException e) {
+        // Rejected before any change, the session is kept and the client can fix the patch.
+        sendInvalidPatchError(responseOpt, e);
+        return;
+      } catch (final Exception e) {
+        // The session may be half updated, the full notice has to be sent again.
+        noticeSessionService.remove(noticeUuid);
+        logger.error("Error patching notice uuid={}", noticeUuid);
+        throw e;
+      }
+    }
+    noticeSessionService.put(session);
+
+    if (responseOpt.isPresent()) {
+      final String filenameForDownload = String.format("notice-%s-%s-xsd-report.json",
+          xsdReport.get("sdkVersion").asText(), noticeUuid);
+      serveJson(responseOpt.get(), filenameForDownload, true, xsdReport.toPrettyString());
+    }
+  }
+
+  /**
+   * Responds with 400, the client error is not logged as an error.
+   */
+  private static void sendInvalidPatchError(final Optional<HttpServletResponse> responseOpt,
+      final InvalidNoticePatchException e) throws IOException {
+    if (responseOpt.isEmpty()) {
+      throw e;
+    }
+    logger.info("Invalid notice patch: {}", e.getMessage());
+    responseOpt.get().sendError(HttpServletResponse.SC_BAD_REQUEST,
+        "Invalid patch: " + e.getMessage());
+  }
+
+  /**
+   * Responds with an error if the notice UUID is invalid or if there is no session for it.
+   */
+  private Optional<NoticeSession> findNoticeSession(
+      final Optional<HttpServletResponse> responseOpt, final String noticeUuidStr)
+      throws IOException {
+    final UUID noticeUuid;
+    try {
+      noticeUuid = UUID.fromString(noticeUuidStr);
+    } catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+      if (responseOpt.isPresent()) {
+        responseOpt.get().sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid notice UUID");
+      }
+      return Optional.empty();
+    }
+    final Optional<NoticeSession> sessionOpt = noticeSessionService.get(noticeUuid);
+    if (sessionOpt.isEmpty() && responseOpt.isPresent()) {
+      responseOpt.get().sendError(HttpServletResponse.SC_CONFLICT,
+          "Unknown or expired notice session, save the full notice first");
+    }
+    return sessionOpt;
+  }
+
   /**
    * Validate the notice using the appropriate SDK XSDs.
    *
@@ -102,6 +410,8 @@ public class XmlWriteService {
 
       final ObjectNode xsdReport = noticeValidationService.validateNoticeUsingXsd(noticeUuid,
           sdkVersion, noticeXmlText, mainXsdPathOpt);
+      new NoticeErrorLocator(physicalModel.getDomDocument()).putXsdReportLocations(xsdReport,
+          Optional.of(noticeXmlText));
 
       final String jsonText = xsdReport.toPrettyString();
       if (responseOpt.isPresent()) {
@@ -120,8 +430,7 @@ public class XmlWriteService {
 
   public PhysicalModel buildPhysicalModel(final String noticeJson, final boolean debug)
       throws Exception {
-    final ObjectMapper mapper = JsonUtils.getStandardJacksonObjectMapper();
-    final JsonNode visualRoot = mapper.readTree(noticeJson);
+    final JsonNode visualRoot = JsonUtils.getJsonReader().readTree(noticeJson);
     final SdkVersion sdkVersion = parseSdkVersion(visualRoot);
     final UUID noticeUuid = parseNoticeUuid(visualRoot);
     try {
@@ -172,14 +481,204 @@ public class XmlWriteService {
     }
   }
 
+  /**
+   * Like {@link #validateUsingCvs} but responds with a JSON report of the failed asserts instead of
+   * the SVRL. The location of each failed assert is mapped to the visual model, see
+   * {@link NoticeErrorLocator#putCvsReportLocations}.
+   *
+   * @param responseOpt used to respond with a report
+   * @param noticeJson The notice as JSON as built by the front-end form.
+   * @param debug Adds special debug info to the XML, useful for humans and unit tests. Not for
+   *        production
+   */
+  public void validateUsingCvsAsJsonReport(final Optional<HttpServletResponse> responseOpt,
+      final String noticeJson, final boolean debug) throws Exception {
+    Validate.notBlank(noticeJson, "noticeJson is blank");
+
+    final PhysicalModel physicalModel = buildPhysicalModel(noticeJson, debug);
+    final UUID noticeUuid = physicalModel.getNoticeId();
+    final SdkVersion sdkVersion = physicalModel.getSdkVersion();
+    final String noticeXmlText = physicalModel.toXmlText(true);
+
+    final ObjectNode report = noticeValidationService.validateNoticeXmlUsingCvsAsJsonReport(
+        noticeXmlText, Optional.empty(), Optional.empty(), Optional.empty());
+    report.put("noticeUuid", noticeUuid.toString());
+    report.put("sdkVersion", sdkVersion.toString());
+    new NoticeErrorLocator(physicalModel.getDomDocument()).putCvsReportLocations(report);
+
+    if (responseOpt.isPresent()) {
+      serveJson(responseOpt.get(), String.format("notice-%s-%s-cvs.json", sdkVersion, noticeUuid),
+          false, report.toString());
+    }
+  }
+
+  /**
+   * Validate the notice locally using the schematron of the SDK, this does not need the network.
+   * Responds with the SVRL like the CVS validation.
+   *
+   * @param responseOpt used to respond with a report
+   * @param noticeJson The notice as JSON as built by the front-end form.
+   * @param validationMode The validation mode (static or dynamic), static if empty
+   * @param debug Adds special debug info to the XML, useful for humans and unit tests. Not for
+   *        production
+   */
+  public void validateUsingSchematron(final Optional<HttpServletResponse> responseOpt,
+      final String noticeJson, final Optional<CsvValidationMode> validationMode,
+      final boolean debug) throws Exception {
+    Validate.notBlank(noticeJson, "noticeJson is blank");
+
+    final PhysicalModel physicalModel = buildPhysicalModel(noticeJson, debug);
+    final UUID noticeUuid = physicalModel.getNoticeId();
+    final SdkVersion sdkVersion = physicalModel.getSdkVersion();
+
+    // Transform physical model to XML.
+    final String noticeXmlText = physicalModel.toXmlText(true);
+
+    final Path sdkFolder =
+        sdkService.getSdkRootFolder().resolve(sdkVersion.toStringWithoutPatch());
+    final String svrlXml = noticeValidationService.validateNoticeXmlUsingSchematron(noticeXmlText,
+        sdkFolder, Optional.of(physicalModel.getNoticeSubType()), validationMode);
+
+    if (responseOpt.isPresent()) {
+      final String filenameForDownload = String.format("notice-%s-%s.svrl", sdkVersion, noticeUuid);
+      serveSdkXmlStringAsDownload(responseOpt.get(), svrlXml, filenameForDownload);
+    }
+  }
+
+  /**
+   * Asynchronous variant of {@link #validateUsingCvs}. The notice XML is built on the calling
+   * thread, the CVS call is done by a dedicated executor. Responds with the job as JSON, the job id
+   * can then be used to poll for the result.
+   *
+   * @param responseOpt used to respond with the job
+   * @param noticeJson The notice as JSON as built by the front-end form.
+   * @param debug Adds special debug info to the XML, useful for humans and unit tests. Not for
+   *        production
+   * @return The job, empty if the validation was rejected because too many are waiting
+   */
+  public Optional<CvsValidationJob> submitCvsValidation(
+      final Optional<HttpServletResponse> responseOpt, final String noticeJson,
+      final boolean debug) throws Exception {
+    Validate.notBlank(noticeJson, "noticeJson is blank");
+
+    final PhysicalModel physicalModel = buildPhysicalModel(noticeJson, debug);
+    final UUID noticeUuid = physicalModel.getNoticeId();
+    final SdkVersion sdkVersion = physicalModel.getSdkVersion();
+
+    // Transform physical model to XML.
+    final String noticeXmlText = physicalModel.toXmlText(true);
+
+    final CvsValidationJob job;
+    try {
+      job = cvsValidationJobService.submit(noticeUuid, sdkVersion.toString(), noticeXmlText,
+          Optional.empty(), Optional.empty(), Optional.empty());
+    } catch (final RejectedExecutionException e) {
+      logger.warn("CVS validation rejected for notice uuid={}: {}", noticeUuid, e.toString());
+      if (responseOpt.isPresent()) {
+        final HttpServletResponse response = responseOpt.get();
+        response.setHeader("Retry-After", String.valueOf(CVS_ASYNC_RETRY_AFTER_SECONDS));
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+            "Too many CVS validations are waiting, retry later.");
+      }
+      return Optional.empty();
+    }
+
+    if (responseOpt.isPresent()) {
+      final HttpServletResponse response = responseOpt.get();
+      response.setStatus(HttpServletResponse.SC_ACCEPTED);
+      serveJson(response, String.format("cvs-job-%s.json", job.getJobId()), false,
+          toJson(job).toPrettyString());
+    }
+    return Optional.of(job);
+  }
+
+  /**
+   * Responds with the state of an asynchronous CVS validation job as JSON.
+   *
+   * @param response Used to respond with the job
+   * @param jobIdStr The job id as given when the validation was submitted
+   */
+  public void serveCvsValidationJob(final HttpServletResponse response, final String jobIdStr)
+      throws IOException {
+    final Optional<CvsValidationJob> jobOpt = findCvsValidationJob(response, jobIdStr);
+    if (jobOpt.isPresent()) {
+      final CvsValidationJob job = jobOpt.get();
+      serveJson(response, String.format("cvs-job-%s.json", job.getJobId()), false,
+          toJson(job).toPrettyString());
+    }
+  }
+
+  /**
+   * Responds with the SVRL of an asynchronous CVS validation job once it is done. While the job is
+   * not completed this responds with 202 (accepted) and the job as JSON, if it failed this responds
+   * with 502 (bad gateway) and the job as JSON.
+   *
+   * @param response Used to respond with the SVRL
+   * @param jobIdStr The job id as given when the validation was submitted
+   */
+  public void serveCvsValidationJobSvrl(final HttpServletResponse response,
+      final String jobIdStr) throws IOException {
+    final Optional<CvsValidationJob> jobOpt = findCvsValidationJob(response, jobIdStr);
+    if (jobOpt.isEmpty()) {
+      return;
+    }
+    final CvsValidationJob job = jobOpt.get();
+    final Optional<String> svrlOpt = job.getSvrl();
+    if (svrlOpt.isPresent()) {
+      final String filenameForDownload =
+          String.format("notice-%s-%s.svrl", job.getSdkVersion(), job.getNoticeUuid());
+      serveSdkXmlStringAsDownload(response, svrlOpt.get(), filenameForDownload);
+      return;
+    }
+    response.setStatus(job.getStatus() == CvsValidationJob.Status.FAILED
+        ? HttpServletResponse.SC_BAD_GATEWAY
+        : HttpServletResponse.SC_ACCEPTED);
+    serveJson(response, String.format("cvs-job-%s.json", job.getJobId()), false,
+        toJson(job).toPrettyString());
+  }
+
+  /**
+   * Responds with an error if the job id is invalid or if the job is unknown (or expired).
+   */
+  private Optional<CvsValidationJob> findCvsValidationJob(final HttpServletResponse response,
+      final String jobIdStr) throws IOException {
+    final UUID jobId;
+    try {
+      jobId = UUID.fromString(jobIdStr);
+    } catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid job id");
+      return Optional.empty();
+    }
+    final Optional<CvsValidationJob> jobOpt = cvsValidationJobService.getJob(jobId);
+    if (jobOpt.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown or expired job id");
+    }
+    return jobOpt;
+  }
+
+  private static ObjectNode toJson(final CvsValidationJob job) {
+    final ObjectNode json = JsonUtils.createObjectNode();
+    json.put("jobId", job.getJobId().toString());
+    json.put("noticeUuid", job.getNoticeUuid().toString());
+    json.put("sdkVersion", job.getSdkVersion());
+    json.put("status", job.getStatus().toString());
+    json.put("createdAt", job.getCreatedAt().toString());
+    if (job.getCompletedAt().isPresent()) {
+      json.put("completedAt", job.getCompletedAt().get().toString());
+    }
+    if (job.getErrorMessage().isPresent()) {
+      json.put("errorMessage", job.getErrorMessage().get());
+    }
+    return json;
+  }
+
   /**
    * @param debug Adds special debug info to the XML, useful for humans and unit tests. Not for
    *        production
    * @return The physical model
    */
   private PhysicalModel buildPhysicalModel(final JsonNode visualRoot, final SdkVersion sdkVersion,
-      final UUID noticeUuid, final boolean debug)
-      throws ParserConfigurationException, SAXException, IOException {
+      final UUID noticeUuid, final boolean debug) throws Exception {
     Validate.notNull(visualRoot);
     Validate.notNull(noticeUuid);
 
@@ -191,36 +690,70 @@ public class XmlWriteService {
     }
 
     final JsonNode noticeTypesJson = sdkService.readNoticeTypesJson(sdkVersion);
-
-    final Map<String, JsonNode> noticeInfoBySubtype = new HashMap<>(512);
-    {
-      // TODO add noticeSubTypes to the SDK constants.
-      // SdkResource.NOTICE_SUB_TYPES
-      final JsonNode noticeSubTypes = noticeTypesJson.get("noticeSubTypes");
-      for (final JsonNode item : noticeSubTypes) {
-        // TODO add subTypeId to the SDK constants.
-        final String subTypeId = JsonUtils.getTextStrict(item, "subTypeId");
-        noticeInfoBySubtype.put(subTypeId, item);
-      }
-    }
-
+    final Map<String, JsonNode> noticeInfoBySubtype = parseNoticeSubTypes(noticeTypesJson);
     final Map<String, JsonNode> documentInfoByType = parseDocumentTypes(noticeTypesJson);
 
     // Go from visual model to conceptual model.
     final ConceptualModel conceptModel = visualModel.toConceptualModel(fieldsAndNodes);
 
-    // Build physical model.
+    // Build physical model, this is the CPU heavy part.
     final boolean buildFields = true;
     final Path sdkRootFolder = sdkService.getSdkRootFolder();
-    final PhysicalModel physicalModel = PhysicalModel.buildPhysicalModel(conceptModel,
-        fieldsAndNodes, noticeInfoBySubtype, documentInfoByType, debug, buildFields, sdkRootFolder);
-    return physicalModel;
+    return noticeBuildService.build(() -> PhysicalModel.buildPhysicalModel(conceptModel,
+        fieldsAndNodes, noticeInfoBySubtype, documentInfoByType, debug, buildFields, sdkRootFolder,
+        noticeBuildService.getParallelPoolOpt(), noticeBuildService.getBuildStrategy()));
+  }
+
+  /**
+   * Builds the whole notice and keeps its models, so that it can later be patched.
+   *
+   * @param noticeJson The notice as JSON as built by the front-end form.
+   * @param debug Adds special debug info to the XML, useful for humans and unit tests. Not for
+   *        production
+   */
+  private NoticeSession buildNoticeSession(final String noticeJson, final boolean debug)
+      throws Exception {
+    final JsonNode visualRoot = JsonUtils.getJsonReader().readTree(noticeJson);
+    Validate.isTrue(visualRoot.isObject(), "The notice JSON must be an object");
+    final SdkVersion sdkVersion = parseSdkVersion(visualRoot);
+    final UUID noticeUuid = parseNoticeUuid(visualRoot);
+    try {
+      final FieldsAndNodes fieldsAndNodes = readFieldsAndNodes(sdkVersion);
+      if (debug) {
+        new VisualModel(visualRoot).writeDotFile(fieldsAndNodes);
+      }
+      final JsonNode noticeTypesJson = sdkService.readNoticeTypesJson(sdkVersion);
+      return noticeBuildService.build(() -> new NoticeSession((ObjectNode) visualRoot,
+          fieldsAndNodes, parseNoticeSubTypes(noticeTypesJson),
+          parseDocumentTypes(noticeTypesJson), debug, sdkService.getSdkRootFolder(),
+          noticeBuildService.getBuildStrategy()));
+    } catch (final Exception e) {
+      // Catch any error, log some useful context and rethrow.
+      logger.error("Error for notice uuid={}, sdkVersion={}", noticeUuid,
+          sdkVersion.toNormalisedString(true));
+      throw e;
+    }
   }
 
   public FieldsAndNodes readFieldsAndNodes(final SdkVersion sdkVersion) {
-    final JsonNode fieldsJson = sdkService.readSdkFieldsJson(sdkVersion);
-    final FieldsAndNodes fieldsAndNodes = new FieldsAndNodes(fieldsJson, sdkVersion);
-    return fieldsAndNodes;
+    return fieldsAndNodesBySdkVersion.computeIfAbsent(
+        VersionHelper.buildSdkVersionWithoutPatch(sdkVersion), key -> {
+          final JsonNode fieldsJson = sdkService.readSdkFieldsJson(sdkVersion);
+          return new FieldsAndNodes(fieldsJson, sdkVersion);
+        });
+  }
+
+  private static Map<String, JsonNode> parseNoticeSubTypes(final JsonNode noticeTypesJson) {
+    final Map<String, JsonNode> noticeInfoBySubtype = new HashMap<>(512);
+    // TODO add noticeSubTypes to the SDK constants.
+    // SdkResource.NOTICE_SUB_TYPES
+    final JsonNode noticeSubTypes = noticeTypesJson.get("noticeSubTypes");
+    for (final JsonNode item : noticeSubTypes) {
+      // TODO add subTypeId to the SDK constants.
+      final String subTypeId = JsonUtils.getTextStrict(item, "subTypeId");
+      noticeInfoBySubtype.put(subTypeId, item);
+    }
+    return noticeInfoBySubtype;
   }
 
   public static Map<String, JsonNode> parseDocumentTypes(final JsonNode noticeTypesJson) {
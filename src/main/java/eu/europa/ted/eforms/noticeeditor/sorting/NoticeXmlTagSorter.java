@@ -6,14 +6,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.xml.xpath.XPath;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -23,6 +30,7 @@ import eu.europa.ted.eforms.noticeeditor.helper.VersionHelper;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.DocumentTypeInfo;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.FieldsAndNodes;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.PhysicalModel;
+import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
 import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
 import eu.europa.ted.eforms.noticeeditor.util.XmlUtils;
 import eu.europa.ted.eforms.noticeeditor.util.XpathUtils;
@@ -44,6 +52,24 @@ public class NoticeXmlTagSorter {
   private final XPath xpathInst;
   private final FieldsAndNodes fieldsAndNodes;
 
+  /**
+   * Fields and nodes grouped by parent node id, built once per instance.
+   */
+  private Map<String, List<JsonNode>> fieldOrNodeByParentNodeId;
+
+  /**
+   * Sorted order items by parent node id, built once per parent and shared like the fields and
+   * nodes.
+   */
+  private Map<String, List<OrderItem>> orderItemsByParentNodeId = new ConcurrentHashMap<>();
+
+  /**
+   * The element order of the XSDs, only loaded if the order of the fields and nodes is incomplete.
+   * Empty until loaded and if it cannot be loaded, see xsdElementOrderLoaded.
+   */
+  private Optional<XsdElementOrder> xsdElementOrderOpt = Optional.empty();
+  private boolean xsdElementOrderLoaded;
+
   /**
    * The instance is reusable but specific to a given SDK version.
    *
@@ -69,6 +95,21 @@ public class NoticeXmlTagSorter {
     this.fieldsAndNodes = fieldsAndNodes;
   }
 
+  /**
+   * A sorter for another XML document, an XPath instance cannot be used by two threads at the same
+   * time. The fields and nodes grouped by parent are built once and shared, they are only read.
+   *
+   * @param otherXpathInst The xpath instance of the other document
+   * @return A new sorter using the passed xpath instance
+   */
+  public NoticeXmlTagSorter withXpathInst(final XPath otherXpathInst) {
+    final NoticeXmlTagSorter sorter =
+        new NoticeXmlTagSorter(otherXpathInst, docTypeInfo, sdkFolder, fieldsAndNodes);
+    sorter.fieldOrNodeByParentNodeId = getFieldOrNodeByParentNodeId();
+    sorter.orderItemsByParentNodeId = orderItemsByParentNodeId;
+    return sorter;
+  }
+
   /**
    * Sorts the passed notice XML document starting from the root. This depends on the SDK version of
    * the notice.
@@ -91,8 +132,137 @@ public class NoticeXmlTagSorter {
    * @throws IOException If any IO error occurs.
    */
   public void sortXml(final Element xmlRoot) throws SAXException, IOException {
+    checkSdkVersion(xmlRoot);
+
+    logger.info("Attempting to sort tags in the XML, starting from root element={}",
+        xmlRoot.getTagName());
+    logger.info("XML uri={}", xmlRoot.getOwnerDocument().getBaseURI());
+
+    // Start from root node.
+    final JsonNode rootNode = this.fieldsAndNodes.getRootNode();
+
+    final Map<String, List<JsonNode>> fieldOrNodeByParentNodeId =
+        getFieldOrNodeByParentNodeId();
+
+    // Those can be of interest in case the sort order differs.
+    logSpecialCases(fieldOrNodeByParentNodeId);
+
+    sortRecursive(xmlRoot, rootNode, fieldOrNodeByParentNodeId);
+    // NOTE: we do not normalize the document, this can be done later if desired.
+  }
+
+  /**
+   * Sorts the passed notice XML elements and sub-elements like {@link #sortXml(Element)}, but the
+   * elements of the repeatable nodes closest to the root (lots, organisations, ...) are sorted in
+   * parallel. The DOM is not thread-safe, even for reading, so each of these elements is moved to
+   * its own XML document while it is sorted and then put back in place. The result is the same.
+   *
+   * @param xmlRoot The xml root element is the entry point
+   * @param pool The pool in which the elements of the repeatable nodes are sorted
+   * @param userDataKeys The keys of the DOM user data to keep on the moved elements
+   */
+  public void sortXml(final Element xmlRoot, final ForkJoinPool pool,
+      final List<String> userDataKeys) {
+    Validate.notNull(pool);
+    checkSdkVersion(xmlRoot);
+    logger.info("Attempting to sort tags in the XML in parallel, starting from root element={}",
+        xmlRoot.getTagName());
+
+    // The elements above the repeatable nodes are sorted first, they are few.
+    final Map<Element, List<String>> nodeIdsByPartition = new LinkedHashMap<>();
+    sortUntilRepeatable(xmlRoot, FieldsAndNodes.ND_ROOT, nodeIdsByPartition);
+    if (nodeIdsByPartition.size() < 2) {
+      sortPartitions(nodeIdsByPartition, this);
+      return;
+    }
+
+    // Move each partition to its own document, leaving a placeholder.
+    final Document doc = xmlRoot.getOwnerDocument();
+    final DOMImplementation domImpl = doc.getImplementation();
+    final List<Node> placeholders = new ArrayList<>(nodeIdsByPartition.size());
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>(nodeIdsByPartition.size());
+    try {
+      for (final Entry<Element, List<String>> entry : nodeIdsByPartition.entrySet()) {
+        final Element partitionElem = entry.getKey();
+        final Node placeholder = doc.createComment("");
+        partitionElem.getParentNode().replaceChild(placeholder, partitionElem);
+        placeholders.add(placeholder);
+
+        // The root is copied without children, it declares the namespaces.
+        final Document partitionDoc = domImpl.createDocument(null, null, null);
+        final Node partitionRoot = partitionDoc.importNode(xmlRoot, false);
+        partitionDoc.appendChild(partitionRoot);
+        partitionRoot
+            .appendChild(EditorXmlUtils.adoptNode(partitionDoc, partitionElem, userDataKeys));
+
+        final Map<Element, List<String>> partition =
+            Collections.singletonMap(partitionElem, entry.getValue());
+        tasks.add(pool.submit(() -> sortPartitions(partition,
+            withXpathInst(XpathUtils.setupXpathInst(docTypeInfo, Optional.empty())))));
+      }
+
+      // Put them back in place.
+      int index = 0;
+      for (final Element partitionElem : nodeIdsByPartition.keySet()) {
+        tasks.get(index).join();
+        final Node placeholder = placeholders.get(index);
+        placeholder.getParentNode().replaceChild(
+            EditorXmlUtils.adoptNode(doc, partitionElem, userDataKeys), placeholder);
+        index++;
+      }
+    } finally {
+      for (final ForkJoinTask<?> task : tasks) {
+        task.cancel(false);
+      }
+    }
+    logger.info("Sorted {} partitions in parallel", nodeIdsByPartition.size());
+  }
+
+  /**
+   * Sorts the children of the node element and continues with the nodes below it, the elements of
+   * repeatable nodes are collected instead, see {@link #sortNodeSubtree(Element, String)}.
+   */
+  private void sortUntilRepeatable(final Element nodeElem, final String nodeId,
+      final Map<Element, List<String>> nodeIdsByPartition) {
+    final Map<String, List<JsonNode>> itemsByParentNodeId = getFieldOrNodeByParentNodeId();
+    final List<JsonNode> childItems = itemsByParentNodeId.get(nodeId);
+    if (childItems == null) {
+      return; // Nothing to sort.
+    }
+    sortChildElements(nodeElem, getOrderItems(nodeId, childItems));
+
+    for (final JsonNode childItem : childItems) {
+      final String childId =
+          JsonUtils.getTextStrict(childItem, FieldsAndNodes.FIELD_OR_NODE_ID_KEY);
+      if (!itemsByParentNodeId.containsKey(childId)) {
+        continue; // A field or a node without children.
+      }
+      final boolean repeatable = FieldsAndNodes.isNodeRepeatableStatic(childItem);
+      final String xpathRel = JsonUtils.getTextStrict(childItem, FieldsAndNodes.XPATH_RELATIVE);
+      for (final Element childElem : XmlUtils.evaluateXpathAsElemList(xpathInst, nodeElem,
+          xpathRel, childId)) {
+        if (repeatable) {
+          nodeIdsByPartition.computeIfAbsent(childElem, k -> new ArrayList<>()).add(childId);
+        } else {
+          sortUntilRepeatable(childElem, childId, nodeIdsByPartition);
+        }
+      }
+    }
+  }
 
-    // Compare sdkVersion of the element to the SDK version of this instance.
+  private static void sortPartitions(final Map<Element, List<String>> nodeIdsByPartition,
+      final NoticeXmlTagSorter sorter) {
+    for (final Entry<Element, List<String>> entry : nodeIdsByPartition.entrySet()) {
+      for (final String nodeId : entry.getValue()) {
+        sorter.sortNodeSubtree(entry.getKey(), nodeId);
+      }
+    }
+  }
+
+  /**
+   * Compares the SDK version of the notice to the SDK version of this instance.
+   */
+  private void checkSdkVersion(final Element xmlRoot) {
     final String sdkVersionOfNoticeStr =
         XmlUtils.getDirectChild(xmlRoot, PhysicalModel.CBC_CUSTOMIZATION_ID).getTextContent();
 
@@ -104,14 +274,64 @@ public class NoticeXmlTagSorter {
           String.format("Incompatible version: sorterInstance=%s, noticeToSort=%s",
               sdkVersionOfSorter, sdkVersionOfNotice));
     }
+  }
 
-    logger.info("Attempting to sort tags in the XML, starting from root element={}",
-        xmlRoot.getTagName());
-    logger.info("XML uri={}", xmlRoot.getOwnerDocument().getBaseURI());
+  /**
+   * Sorts the direct children of the root element only. Used after some sections of the notice
+   * have been rebuilt, see {@link #sortNodeSubtree(Element, String)}.
+   *
+   * @param xmlRoot The xml root element
+   */
+  public void sortRootChildren(final Element xmlRoot) {
+    final String rootId = FieldsAndNodes.ND_ROOT;
+    final List<JsonNode> childItems = getFieldOrNodeByParentNodeId().get(rootId);
+    if (childItems != null) {
+      sortChildElements(xmlRoot, getOrderItems(rootId, childItems));
+    }
+  }
 
-    // Start from root node.
-    final JsonNode rootNode = this.fieldsAndNodes.getRootNode();
+  /**
+   * Sorts the sub-elements of the passed node element, like {@link #sortXml(Element)} does for the
+   * whole notice but only inside of this element. The elements are found relative to the node
+   * element, other parts of the notice are not visited.
+   *
+   * @param nodeElem The XML element of the node
+   * @param nodeId The SDK node id of the element
+   */
+  public void sortNodeSubtree(final Element nodeElem, final String nodeId) {
+    Validate.notNull(nodeElem);
+    final Map<String, List<JsonNode>> itemsByParentNodeId = getFieldOrNodeByParentNodeId();
+    final List<JsonNode> childItems = itemsByParentNodeId.get(nodeId);
+    if (childItems == null) {
+      return; // Nothing to sort.
+    }
+    sortChildElements(nodeElem, getOrderItems(nodeId, childItems));
+
+    for (final JsonNode childItem : childItems) {
+      final String childId =
+          JsonUtils.getTextStrict(childItem, FieldsAndNodes.FIELD_OR_NODE_ID_KEY);
+      if (!itemsByParentNodeId.containsKey(childId)) {
+        continue; // A field or a node without children.
+      }
+      final String xpathRel = JsonUtils.getTextStrict(childItem, FieldsAndNodes.XPATH_RELATIVE);
+      for (final Element childElem : XmlUtils.evaluateXpathAsElemList(xpathInst, nodeElem,
+          xpathRel, childId)) {
+        sortNodeSubtree(childElem, childId);
+      }
+    }
+  }
 
+  /**
+   * Synchronized as the sorters of other documents share it, see {@link #withXpathInst(XPath)}.
+   */
+  private synchronized Map<String, List<JsonNode>> getFieldOrNodeByParentNodeId() {
+    if (fieldOrNodeByParentNodeId == null) {
+      fieldOrNodeByParentNodeId = buildFieldOrNodeByParentNodeId();
+    }
+    return fieldOrNodeByParentNodeId;
+  }
+
+  private Map<String, List<JsonNode>> buildFieldOrNodeByParentNodeId() {
     final Map<String, List<JsonNode>> fieldOrNodeByParentNodeId =
         fieldsAndNodes.buildMapOfFieldOrNodeByParentNodeId();
 
@@ -142,12 +362,7 @@ public class NoticeXmlTagSorter {
         listSubcontractedContract.clear();
       }
     }
-
-    // Those can be of interest in case the sort order differs.
-    logSpecialCases(fieldOrNodeByParentNodeId);
-
-    sortRecursive(xmlRoot, rootNode, fieldOrNodeByParentNodeId);
-    // NOTE: we do not normalize the document, this can be done later if desired.
+    return fieldOrNodeByParentNodeId;
   }
 
   private void logSpecialCases(final Map<String, List<JsonNode>> fieldOrNodeByParentNodeId) {
@@ -226,8 +441,50 @@ public class NoticeXmlTagSorter {
       return; // Nothing to sort.
     }
 
+    final List<OrderItem> orderItemsForParent = getOrderItems(id, childItems);
+
+    //
+    // Find parent elements in the XML.
+    //
+    final List<Element> xmlParentElements =
+        XmlUtils.evaluateXpathAsElemList(xpathInst, xmlRootElem, xpathAbsolute, xpathAbsolute);
+
+    for (final Element xmlParentElement : xmlParentElements) {
+      sortChildElements(xmlParentElement, orderItemsForParent);
+    }
+
+    // Continue on child items in the field and node hierarchy.
+    for (final JsonNode childItem : childItems) {
+      sortRecursive(xmlRootElem, childItem, fieldOrNodeByParentNodeId);
+    }
+  }
+
+  /**
+   * @param id The id of the parent node
+   * @param childItems The fields and nodes of the parent node
+   * @return The order of the child items, sorted, built once per parent node
+   */
+  private List<OrderItem> getOrderItems(final String id, final List<JsonNode> childItems) {
+    final List<OrderItem> orderItems = orderItemsByParentNodeId.get(id);
+    if (orderItems != null) {
+      return orderItems;
+    }
+    // Not computed under a lock, the XSDs may have to be read.
+    final List<OrderItem> newOrderItems =
+        Collections.unmodifiableList(buildOrderItems(id, childItems));
+    final List<OrderItem> previous = orderItemsByParentNodeId.putIfAbsent(id, newOrderItems);
+    return previous != null ? previous : newOrderItems;
+  }
+
+  /**
+   * @param id The id of the parent node
+   * @param childItems The fields and nodes of the parent node
+   * @return The order of the child items, sorted
+   */
+  private List<OrderItem> buildOrderItems(final String id, final List<JsonNode> childItems) {
     // Get sort order of child items for the current node id.
     final List<OrderItem> orderItemsForParent = new ArrayList<>(childItems.size());
+    boolean orderMissing = false;
     for (final JsonNode childItem : childItems) {
 
       final String fieldOrNodeId =
@@ -238,19 +495,20 @@ public class NoticeXmlTagSorter {
       final List<String> xpathRelParts = XpathUtils.getXpathParts(xpathRel);
       Validate.notEmpty(xpathRelParts);
 
-      final List<JsonNode> list =
-          JsonUtils.getList(childItem.get(FieldsAndNodes.XSD_SEQUENCE_ORDER_KEY));
+      final Iterator<JsonNode> orderIt =
+          JsonUtils.getElements(childItem.get(FieldsAndNodes.XSD_SEQUENCE_ORDER_KEY)).iterator();
 
       // The sort order is always missing for the root node.
       // It can also be missing in SDK 1.7 but not in SDK 1.8.
-      if (!list.isEmpty()) {
-        final JsonNode firstItemInOrder = list.get(0);
+      if (orderIt.hasNext()) {
+        final JsonNode firstItemInOrder = orderIt.next();
         final String key = firstItemInOrder.fieldNames().next();
         // final String keyWithPredicate = xpathRelFirst;
         final int order = firstItemInOrder.get(key).asInt();
         final OrderItem orderItem = new OrderItem(fieldOrNodeId, key, order);
         orderItemsForParent.add(orderItem);
       } else {
+        orderMissing = true;
         logger.info("parentId={}, itemId={} has no {}", id, fieldOrNodeId,
             FieldsAndNodes.XSD_SEQUENCE_ORDER_KEY);
         // Ideally we want this to throw, but some tests are using dummy data that is missing the
@@ -260,67 +518,151 @@ public class NoticeXmlTagSorter {
         // FieldsAndNodes.XSD_SEQUENCE_ORDER_KEY, id));
       }
     }
+    if (orderMissing) {
+      // Mixing both orders would not work, the order of the XSDs is used for all the children.
+      final Optional<List<OrderItem>> xsdOrderItemsOpt = buildXsdOrderItems(id, childItems);
+      if (xsdOrderItemsOpt.isPresent()) {
+        return xsdOrderItemsOpt.get();
+      }
+    }
     // The order items are not ordered yet, they contain the order, and we naturally sort on it.
     Collections.sort(orderItemsForParent); // Relies on implementation of "Comparable".
     logger.debug("orderItemsForParent=" + orderItemsForParent);
+    return orderItemsForParent;
+  }
 
-    //
-    // Find parent elements in the XML.
-    //
-    final List<Element> xmlParentElements =
-        XmlUtils.evaluateXpathAsElemList(xpathInst, xmlRootElem, xpathAbsolute, xpathAbsolute);
-
-    for (final Element xmlParentElement : xmlParentElements) {
+  /**
+   * Builds the order items of the children of the parent node from the XSDs, see
+   * {@link XsdElementOrder}. A child is identified by the first element of its relative xpath.
+   *
+   * @param id The id of the parent node
+   * @param childItems The fields and nodes of the parent node
+   * @return The order of the child items, sorted, empty if the XSDs do not define it
+   */
+  private Optional<List<OrderItem>> buildXsdOrderItems(final String id,
+      final List<JsonNode> childItems) {
+    final Optional<XsdElementOrder> xsdOrderOpt = getXsdElementOrderOpt();
+    if (xsdOrderOpt.isEmpty()) {
+      return Optional.empty();
+    }
+    final XsdElementOrder xsdOrder = xsdOrderOpt.get();
+    final Map<String, String> namespaceUriByPrefix =
+        docTypeInfo.buildAdditionalNamespaceUriByPrefix();
+
+    final String parentTag;
+    if (FieldsAndNodes.ND_ROOT.equals(id)) {
+      parentTag = docTypeInfo.getRootElementTagName();
+    } else {
+      final String xpathAbs = JsonUtils.getTextStrict(fieldsAndNodes.getNodeById(id),
+          FieldsAndNodes.XPATH_ABSOLUTE);
+      final String[] parts = XpathUtils.getXpathPartsWithoutPredicates(xpathAbs.substring(1));
+      parentTag = parts[parts.length - 1];
+    }
+    final String parentName = toExpandedName(parentTag, namespaceUriByPrefix);
+    if (!xsdOrder.hasChildOrder(parentName)) {
+      return Optional.empty();
+    }
 
-      // Find child elements relative to the parent context.
-      final Element xpathContext = xmlParentElement;
-
-      for (final OrderItem orderItem : orderItemsForParent) {
-
-        // We still need to parse the relative xpath.
-        final String xpathExpr = orderItem.getXmlName();
-
-        // TODO split xpath relative of children "/abc[xyz]"
-        // order only provides "abc"
-        // map index to order
-
-        final List<Element> foundChildElements =
-            XmlUtils.evaluateXpathAsElemList(xpathInst, xpathContext, xpathExpr, xpathExpr);
-
-        // Reorder XML elements.
-        // Also note that XML attributes have no order.
-        for (final Element foundChildElement : foundChildElements) {
-
-          // PRESERVE POSITION OF COMMENTS OR XML TEXTS NODES (formatting...).
-          // Find comments or text nodes above the element.
-          final List<Node> commentsOrTextsAbove = new ArrayList<>();
-          Node previousSibling = foundChildElement.getPreviousSibling();
-          while (previousSibling != null) {
-            if (previousSibling.getNodeType() == Node.TEXT_NODE) {
-              commentsOrTextsAbove.add(previousSibling);
-            } else if (previousSibling.getNodeType() == Node.COMMENT_NODE) {
-              commentsOrTextsAbove.add(previousSibling);
-            } else {
-              break;
-            }
-            previousSibling = previousSibling.getPreviousSibling();
-          }
-          Collections.reverse(commentsOrTextsAbove); // To keep the original order.
+    final List<OrderItem> orderItemsForParent = new ArrayList<>(childItems.size());
+    for (final JsonNode childItem : childItems) {
+      final String fieldOrNodeId =
+          JsonUtils.getTextStrict(childItem, FieldsAndNodes.FIELD_OR_NODE_ID_KEY);
+      final String xpathRel = JsonUtils.getTextStrict(childItem, FieldsAndNodes.XPATH_RELATIVE);
+      final String childTag = XpathUtils.getXpathPartsWithoutPredicates(xpathRel)[0];
+      final OptionalInt rankOpt =
+          xsdOrder.getRank(parentName, toExpandedName(childTag, namespaceUriByPrefix));
+      if (rankOpt.isPresent()) {
+        orderItemsForParent.add(new OrderItem(fieldOrNodeId, childTag, rankOpt.getAsInt()));
+      } else {
+        // Attributes, ...
+        logger.debug("parentId={}, itemId={} not found in the XSDs", id, fieldOrNodeId);
+      }
+    }
+    Collections.sort(orderItemsForParent);
+    logger.debug("orderItemsForParent from XSDs=" + orderItemsForParent);
+    return Optional.of(orderItemsForParent);
+  }
 
-          // First add back the XML comments.
-          for (final Node commentOrTextAbove : commentsOrTextsAbove) {
-            removeAndAppend(xpathContext, commentOrTextAbove);
-          }
+  /**
+   * @param tag A tag like "cbc:ID", the namespace of the notice is used if there is no prefix
+   * @return The expanded name like "{urn:...}ID", as in {@link XsdElementOrder}
+   */
+  private String toExpandedName(final String tag, final Map<String, String> namespaceUriByPrefix) {
+    return XsdElementOrder.toExpandedName(tag, docTypeInfo.getNamespaceUri(),
+        namespaceUriByPrefix);
+  }
 
-          // This sorts the xml elements by removing them and appending them back.
-          removeAndAppend(xpathContext, foundChildElement);
+  /**
+   * Loads the element order of the XSDs once per instance. If it cannot be loaded the sort is done
+   * without it.
+   */
+  private synchronized Optional<XsdElementOrder> getXsdElementOrderOpt() {
+    if (!xsdElementOrderLoaded) {
+      xsdElementOrderLoaded = true;
+      final Optional<Path> mainXsdPathOpt = getMainXsdPathOpt();
+      if (mainXsdPathOpt.isPresent()) {
+        try {
+          xsdElementOrderOpt = Optional.of(XsdElementOrder.load(mainXsdPathOpt.get()));
+        } catch (final IOException | SAXException e) {
+          logger.warn("Cannot read the element order of {}: {}", mainXsdPathOpt.get(),
+              e.toString());
         }
       }
     }
+    return xsdElementOrderOpt;
+  }
 
-    // Continue on child items in the field and node hierarchy.
-    for (final JsonNode childItem : childItems) {
-      sortRecursive(xmlRootElem, childItem, fieldOrNodeByParentNodeId);
+  /**
+   * Reorders the child elements of the parent element.
+   *
+   * @param xmlParentElement The parent element, its children are reordered
+   * @param orderItemsForParent The sorted order items of the parent node
+   */
+  private void sortChildElements(final Element xmlParentElement,
+      final List<OrderItem> orderItemsForParent) {
+    // Find child elements relative to the parent context.
+    final Element xpathContext = xmlParentElement;
+
+    for (final OrderItem orderItem : orderItemsForParent) {
+
+      // We still need to parse the relative xpath.
+      final String xpathExpr = orderItem.getXmlName();
+
+      // TODO split xpath relative of children "/abc[xyz]"
+      // order only provides "abc"
+      // map index to order
+
+      final List<Element> foundChildElements =
+          XmlUtils.evaluateXpathAsElemList(xpathInst, xpathContext, xpathExpr, xpathExpr);
+
+      // Reorder XML elements.
+      // Also note that XML attributes have no order.
+      for (final Element foundChildElement : foundChildElements) {
+
+        // PRESERVE POSITION OF COMMENTS OR XML TEXTS NODES (formatting...).
+        // Find comments or text nodes above the element.
+        final List<Node> commentsOrTextsAbove = new ArrayList<>();
+        Node previousSibling = foundChildElement.getPreviousSibling();
+        while (previousSibling != null) {
+          if (previousSibling.getNodeType() == Node.TEXT_NODE) {
+            commentsOrTextsAbove.add(previousSibling);
+          } else if (previousSibling.getNodeType() == Node.COMMENT_NODE) {
+            commentsOrTextsAbove.add(previousSibling);
+          } else {
+            break;
+          }
+          previousSibling = previousSibling.getPreviousSibling();
+        }
+        Collections.reverse(commentsOrTextsAbove); // To keep the original order.
+
+        // First add back the XML comments.
+        for (final Node commentOrTextAbove : commentsOrTextsAbove) {
+          removeAndAppend(xpathContext, commentOrTextAbove);
+        }
+
+        // This sorts the xml elements by removing them and appending them back.
+        removeAndAppend(xpathContext, foundChildElement);
+      }
     }
   }
 
@@ -0,0 +1,334 @@
+package eu.europa.ted.eforms.noticeeditor.sorting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * The order of the child elements of the elements of a notice, as defined by the XSDs of the SDK.
+ * The rank of a child is its position in the content model of the type of the parent, see
+ * {@link XsdElementOrderCompiler}. Elements are identified by their expanded name
+ * "{namespace}localName".
+ *
+ * <p>
+ * Reading the XSDs is slow, the result is saved in a compact binary file next to the main XSD of
+ * the SDK and kept in memory. The binary file holds the size and last modified time of each XSD
+ * read (the main XSD and the XSDs it includes or imports), if one of them changed the XSDs are read
+ * again. The binary files can be put in another folder with the system property
+ * {@value #CACHE_FOLDER_PROPERTY}, the tests use it to not write in the sources.
+ * </p>
+ */
+public final class XsdElementOrder {
+
+  private static final Logger logger = LoggerFactory.getLogger(XsdElementOrder.class);
+
+  /**
+   * Suffix of the binary file, next to the main XSD.
+   */
+  public static final String CACHE_FILE_SUFFIX = ".element-order";
+
+  private static final int MAGIC = 0x58534452; // XSDR
+  private static final int FORMAT_VERSION = 3; // 2: ambiguous local elements, 3: XSD files.
+
+  /**
+   * System property: the folder of the binary files, next to the main XSD if it is not set.
+   */
+  public static final String CACHE_FOLDER_PROPERTY = "eforms.element-order.cache-folder";
+
+  private static final Map<Path, XsdElementOrder> orderByMainXsdPath = new ConcurrentHashMap<>();
+
+  /**
+   * The child elements in order, by complex type.
+   */
+  private final Map<String, List<String>> childrenByType;
+
+  /**
+   * The complex type of the elements which have child elements.
+   */
+  private final Map<String, String> typeByElement;
+
+  private final Map<String, Map<String, Integer>> rankByChildByType;
+
+  /**
+   * The XSD files the order was compiled from.
+   */
+  private final List<XsdFile> xsdFiles;
+
+  /**
+   * An XSD file read to compile the order: its path relative to the folder of the main XSD, its
+   * size and last modified time when it was read.
+   */
+  static final class XsdFile {
+    private final String relativePath;
+    private final long size;
+    private final long lastModified;
+
+    XsdFile(final String relativePath, final long size, final long lastModified) {
+      this.relativePath = relativePath;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    static XsdFile of(final Path mainXsdPath, final Path xsdPath) throws IOException {
+      final String relativePath =
+          mainXsdPath.getParent().relativize(xsdPath).toString().replace('\\', '/');
+      return new XsdFile(relativePath, Files.size(xsdPath),
+          Files.getLastModifiedTime(xsdPath).toMillis());
+    }
+
+    String getRelativePath() {
+      return relativePath;
+    }
+
+    /**
+     * @return True if the file is unchanged since it was read
+     */
+    boolean isUpToDate(final Path mainXsdPath) throws IOException {
+      final Path xsdPath = mainXsdPath.resolveSibling(relativePath);
+      return Files.exists(xsdPath) && Files.size(xsdPath) == size
+          && Files.getLastModifiedTime(xsdPath).toMillis() == lastModified;
+    }
+  }
+
+  XsdElementOrder(final Map<String, List<String>> childrenByType,
+      final Map<String, String> typeByElement, final List<XsdFile> xsdFiles) {
+    this.childrenByType = childrenByType;
+    this.typeByElement = typeByElement;
+    this.xsdFiles = xsdFiles;
+    this.rankByChildByType = new HashMap<>(childrenByType.size() * 2);
+    for (final Entry<String, List<String>> entry : childrenByType.entrySet()) {
+      final List<String> children = entry.getValue();
+      final Map<String, Integer> rankByChild = new HashMap<>(children.size() * 2);
+      for (int rank = 0; rank < children.size(); rank++) {
+        rankByChild.put(children.get(rank), rank);
+      }
+      rankByChildByType.put(entry.getKey(), rankByChild);
+    }
+  }
+
+  /**
+   * @param parentElement The expanded name of the parent element
+   * @return True if the order of the children of the element is known
+   */
+  public boolean hasChildOrder(final String parentElement) {
+    return typeByElement.containsKey(parentElement);
+  }
+
+  /**
+   * @param parentElement The expanded name of the parent element
+   * @param childElement The expanded name of the child element
+   * @return The rank of the child in the content of the parent, empty if unknown
+   */
+  public OptionalInt getRank(final String parentElement, final String childElement) {
+    final String type = typeByElement.get(parentElement);
+    if (type == null) {
+      return OptionalInt.empty();
+    }
+    final Integer rank = rankByChildByType.get(type).get(childElement);
+    return rank == null ? OptionalInt.empty() : OptionalInt.of(rank);
+  }
+
+  List<XsdFile> getXsdFiles() {
+    return xsdFiles;
+  }
+
+  /**
+   * @param tag A tag like "cbc:ID"
+   * @param defaultNamespaceUri The namespace of the tags without prefix, the one of the notice
+   * @param namespaceUriByPrefix The namespaces of the prefixes
+   * @return The expanded name like "{urn:...}ID"
+   */
+  public static String toExpandedName(final String tag, final String defaultNamespaceUri,
+      final Map<String, String> namespaceUriByPrefix) {
+    final int colonIndex = tag.indexOf(':');
+    final String namespaceUri = colonIndex < 0 ? defaultNamespaceUri
+        : namespaceUriByPrefix.getOrDefault(tag.substring(0, colonIndex), "");
+    return XsdElementOrderCompiler.expandedName(namespaceUri, tag.substring(colonIndex + 1));
+  }
+
+  /**
+   * @param mainXsdPath The path of the main XSD of the notice, inside of the SDK
+   * @return The element order, from memory, from the binary file next to the main XSD or compiled
+   *         from the XSDs (the binary file is then written)
+   */
+  public static XsdElementOrder load(final Path mainXsdPath) throws IOException, SAXException {
+    final Path key = mainXsdPath.toAbsolutePath().normalize();
+    final XsdElementOrder inMemory = orderByMainXsdPath.get(key);
+    if (inMemory != null) {
+      return inMemory;
+    }
+    final Path cachePath = getCachePath(key);
+    XsdElementOrder order = null;
+    if (Files.exists(cachePath)) {
+      try {
+        order = read(cachePath, key);
+        if (order == null) {
+          logger.info("{} is out of date", cachePath);
+        }
+      } catch (final IOException e) {
+        logger.warn("Cannot read {}, compiling the XSDs again: {}", cachePath, e.toString());
+      }
+    }
+    if (order == null) {
+      order = XsdElementOrderCompiler.compile(key);
+      try {
+        Files.createDirectories(cachePath.getParent());
+        write(order, cachePath);
+      } catch (final IOException e) {
+        // The SDK folder may be read-only, the order is still kept in memory.
+        logger.warn("Cannot write {}: {}", cachePath, e.toString());
+      }
+    }
+    final XsdElementOrder previous = orderByMainXsdPath.putIfAbsent(key, order);
+    return previous != null ? previous : order;
+  }
+
+  /**
+   * @param mainXsdPath The absolute and normalized path of the main XSD
+   */
+  static Path getCachePath(final Path mainXsdPath) {
+    final String cacheFolder = System.getProperty(CACHE_FOLDER_PROPERTY, "");
+    if (cacheFolder.isBlank()) {
+      return mainXsdPath.resolveSibling(mainXsdPath.getFileName() + CACHE_FILE_SUFFIX);
+    }
+    // The main XSDs of the SDK versions have the same names.
+    return Path.of(cacheFolder).resolve(String.format("%s-%08x%s", mainXsdPath.getFileName(),
+        mainXsdPath.toString().hashCode(), CACHE_FILE_SUFFIX));
+  }
+
+  /**
+   * Writes the binary file, through a temporary file so that a reader never sees half of it.
+   */
+  static void write(final XsdElementOrder order, final Path path) throws IOException {
+    // All the names once, then indexes.
+    final Map<String, Integer> indexByName = new LinkedHashMap<>();
+    for (final Entry<String, List<String>> entry : order.childrenByType.entrySet()) {
+      indexByName.putIfAbsent(entry.getKey(), indexByName.size());
+      for (final String child : entry.getValue()) {
+        indexByName.putIfAbsent(child, indexByName.size());
+      }
+    }
+    for (final String element : order.typeByElement.keySet()) {
+      indexByName.putIfAbsent(element, indexByName.size());
+    }
+
+    final Path tempPath = Files.createTempFile(path.toAbsolutePath().getParent(),
+        path.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tempPath);
+          DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(order.xsdFiles.size());
+        for (final XsdFile xsdFile : order.xsdFiles) {
+          data.writeUTF(xsdFile.relativePath);
+          data.writeLong(xsdFile.size);
+          data.writeLong(xsdFile.lastModified);
+        }
+        data.writeInt(indexByName.size());
+        for (final String name : indexByName.keySet()) {
+          data.writeUTF(name);
+        }
+        data.writeInt(order.childrenByType.size());
+        for (final Entry<String, List<String>> entry : order.childrenByType.entrySet()) {
+          data.writeInt(indexByName.get(entry.getKey()));
+          data.writeInt(entry.getValue().size());
+          for (final String child : entry.getValue()) {
+            data.writeInt(indexByName.get(child));
+          }
+        }
+        data.writeInt(order.typeByElement.size());
+        for (final Entry<String, String> entry : order.typeByElement.entrySet()) {
+          data.writeInt(indexByName.get(entry.getKey()));
+          data.writeInt(indexByName.get(entry.getValue()));
+        }
+      }
+      Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  /**
+   * @param mainXsdPath The main XSD the order was compiled from
+   * @return The element order, null if one of the XSD files changed since it was compiled
+   */
+  static XsdElementOrder read(final Path path, final Path mainXsdPath) throws IOException {
+    try (InputStream in = Files.newInputStream(path);
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+      if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+        throw new IOException("Not a supported element order file: " + path);
+      }
+      final int xsdFileCount = data.readInt();
+      final List<XsdFile> xsdFiles = new ArrayList<>(xsdFileCount);
+      for (int i = 0; i < xsdFileCount; i++) {
+        final XsdFile xsdFile = new XsdFile(data.readUTF(), data.readLong(), data.readLong());
+        if (!xsdFile.isUpToDate(mainXsdPath)) {
+          return null;
+        }
+        xsdFiles.add(xsdFile);
+      }
+      final String[] names = new String[data.readInt()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = data.readUTF();
+      }
+      final int typeCount = data.readInt();
+      final Map<String, List<String>> childrenByType = new LinkedHashMap<>(typeCount * 2);
+      for (int i = 0; i < typeCount; i++) {
+        final String type = names[data.readInt()];
+        final int childCount = data.readInt();
+        final List<String> children = new ArrayList<>(childCount);
+        for (int j = 0; j < childCount; j++) {
+          children.add(names[data.readInt()]);
+        }
+        childrenByType.put(type, Collections.unmodifiableList(children));
+      }
+      final int elementCount = data.readInt();
+      final Map<String, String> typeByElement = new LinkedHashMap<>(elementCount * 2);
+      for (int i = 0; i < elementCount; i++) {
+        typeByElement.put(names[data.readInt()], names[data.readInt()]);
+      }
+      return new XsdElementOrder(childrenByType, typeByElement,
+          Collections.unmodifiableList(xsdFiles));
+    }
+  }
+
+  /**
+   * Compiles the element order of the passed main XSD files offline and writes the binary files
+   * next to them (or in the folder of {@value #CACHE_FOLDER_PROPERTY}), for example when an SDK is
+   * installed.
+   *
+   * @param args The paths of the main XSD files
+   */
+  public static void main(final String[] args) throws IOException, SAXException {
+    Validate.isTrue(args.length > 0, "Expecting the paths of the main XSD files");
+    for (final String arg : args) {
+      final Path mainXsdPath = Path.of(arg).toAbsolutePath().normalize();
+      final Path cachePath = getCachePath(mainXsdPath);
+      Files.createDirectories(cachePath.getParent());
+      write(XsdElementOrderCompiler.compile(mainXsdPath), cachePath);
+      logger.info("Wrote {}", cachePath);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package eu.europa.ted.eforms.noticeeditor.sorting;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
+
+/**
+ * Reads the XSD files of a notice (the main XSD and the XSDs it includes or imports) and builds,
+ * for each complex type, the order of its child elements. The order is the order of the element
+ * declarations in the content model, the content of the base type first for an extension. The
+ * alternatives of a choice follow each other.
+ *
+ * <p>
+ * Only what is needed to sort is read: element declarations (global or local), complex types, model
+ * groups. Wildcards (xsd:any) have no order. Elements are identified by their expanded name
+ * "{namespace}localName".
+ * </p>
+ *
+ * <p>
+ * The order is looked up by the name of the parent element only, not by its own parent. A global
+ * declaration gives the type of the element. Local declarations are only used when they all have
+ * the same type: local declarations of the same name with different types (in different complex
+ * types) are ambiguous, the children of such an element have no order here.
+ * </p>
+ */
+final class XsdElementOrderCompiler {
+
+  private static final Logger logger = LoggerFactory.getLogger(XsdElementOrderCompiler.class);
+
+  private static final String XSD_NS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+
+  /**
+   * Prefix of the particles which refer to a model group, the others are element names.
+   */
+  private static final String GROUP_PREFIX = "#group#";
+
+  /**
+   * Type name by element name, of the global element declarations.
+   */
+  private final Map<String, String> typeByGlobalElement = new LinkedHashMap<>();
+
+  /**
+   * Type name by element name, of the local element declarations.
+   */
+  private final Map<String, String> typeByLocalElement = new LinkedHashMap<>();
+
+  /**
+   * The names of the local element declarations found with different types.
+   */
+  private final Set<String> ambiguousLocalElements = new HashSet<>();
+
+  /**
+   * Particles (element names or group references) by complex type name, in document order.
+   */
+  private final Map<String, List<String>> particlesByType = new LinkedHashMap<>();
+
+  /**
+   * The base type of the complex types defined by extension.
+   */
+  private final Map<String, String> baseTypeByType = new HashMap<>();
+
+  private final Map<String, List<String>> particlesByGroup = new HashMap<>();
+
+  private XsdElementOrderCompiler() {}
+
+  /**
+   * @param mainXsdPath The path of the main XSD of the notice
+   * @return The order of the child elements by complex type and the type of the elements
+   */
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  static XsdElementOrder compile(final Path mainXsdPath) throws SAXException, IOException {
+    final DocumentBuilder builder;
+    try {
+      builder = SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(true);
+    } catch (final ParserConfigurationException e) {
+      throw new RuntimeException(e);
+    }
+    final XsdElementOrderCompiler compiler = new XsdElementOrderCompiler();
+
+    // Follow the includes and imports, each XSD is read once.
+    final Path mainPath = mainXsdPath.toAbsolutePath().normalize();
+    final Set<Path> visited = new HashSet<>();
+    final List<XsdElementOrder.XsdFile> xsdFiles = new ArrayList<>();
+    final Deque<Path> toRead = new ArrayDeque<>();
+    toRead.add(mainPath);
+    while (!toRead.isEmpty()) {
+      final Path xsdPath = toRead.poll();
+      if (visited.add(xsdPath)) {
+        // Before it is read: if it changes meanwhile the order is compiled again on next load.
+        xsdFiles.add(XsdElementOrder.XsdFile.of(mainPath, xsdPath));
+        final Element schema = builder.parse(xsdPath.toFile()).getDocumentElement();
+        compiler.readSchema(schema, xsdPath, toRead);
+      }
+    }
+    logger.info("Compiled XSD element order of {}: {} files, {} types, {} elements", mainXsdPath,
+        visited.size(), compiler.particlesByType.size(),
+        compiler.typeByGlobalElement.size() + compiler.typeByLocalElement.size());
+    return compiler.build(xsdFiles);
+  }
+
+  private void readSchema(final Element schema, final Path xsdPath, final Deque<Path> toRead) {
+    final String targetNs = schema.getAttribute("targetNamespace");
+    final boolean qualified = "qualified".equals(schema.getAttribute("elementFormDefault"));
+    for (final Element child : getXsdChildren(schema)) {
+      final String name = child.getAttribute("name");
+      switch (child.getLocalName()) {
+        case "include":
+        case "import":
+        case "redefine":
+          final String schemaLocation = child.getAttribute("schemaLocation");
+          if (StringUtils.isNotBlank(schemaLocation)) {
+            toRead.add(xsdPath.resolveSibling(schemaLocation).normalize());
+          }
+          break;
+        case "element":
+          readElement(child, targetNs, qualified, Optional.empty());
+          break;
+        case "complexType":
+          readComplexType(child, expandedName(targetNs, name), targetNs, qualified);
+          break;
+        case "group":
+          final List<String> particles = new ArrayList<>();
+          final String groupName = expandedName(targetNs, name);
+          readParticles(child, groupName, targetNs, qualified, particles);
+          particlesByGroup.put(groupName, particles);
+          break;
+        default:
+          break; // Simple types, attributes, annotations, ...
+      }
+    }
+  }
+
+  /**
+   * @param scopeOpt The complex type or model group of a local declaration, empty if global
+   * @return The expanded name of the declared (or referenced) element
+   */
+  private String readElement(final Element elementDecl, final String targetNs,
+      final boolean qualified, final Optional<String> scopeOpt) {
+    final String ref = elementDecl.getAttribute("ref");
+    if (!ref.isEmpty()) {
+      return resolveQName(elementDecl, ref);
+    }
+    final boolean global = scopeOpt.isEmpty();
+    final String name = expandedName(global || qualified ? targetNs : "",
+        elementDecl.getAttribute("name"));
+    final String type = elementDecl.getAttribute("type");
+    if (!type.isEmpty()) {
+      putElementType(name, resolveQName(elementDecl, type), global);
+    } else {
+      for (final Element child : getXsdChildren(elementDecl)) {
+        if ("complexType".equals(child.getLocalName())) {
+          // Anonymous type, named after the element and the scope of a local declaration.
+          final String anonymousType =
+              global ? name + "#type" : scopeOpt.get() + "/" + name + "#type";
+          readComplexType(child, anonymousType, targetNs, qualified);
+          putElementType(name, anonymousType, global);
+        }
+      }
+    }
+    return name;
+  }
+
+  private void putElementType(final String name, final String type, final boolean global) {
+    if (global) {
+      typeByGlobalElement.put(name, type);
+      return;
+    }
+    final String otherType = typeByLocalElement.putIfAbsent(name, type);
+    if (otherType != null && !otherType.equals(type)) {
+      ambiguousLocalElements.add(name);
+    }
+  }
+
+  private void readComplexType(final Element complexType, final String typeName,
+      final String targetNs, final boolean qualified) {
+    final List<String> particles = new ArrayList<>();
+    for (final Element child : getXsdChildren(complexType)) {
+      if ("complexContent".equals(child.getLocalName())) {
+        for (final Element derivation : getXsdChildren(child)) {
+          if ("extension".equals(derivation.getLocalName())) {
+            baseTypeByType.put(typeName,
+                resolveQName(derivation, derivation.getAttribute("base")));
+          }
+          readParticles(derivation, typeName, targetNs, qualified, particles);
+        }
+      }
+    }
+    readParticles(complexType, typeName, targetNs, qualified, particles);
+    particlesByType.put(typeName, particles);
+  }
+
+  /**
+   * Reads the particles found in the passed XSD element (sequence, choice, all, group reference,
+   * element), recursively, in document order.
+   *
+   * @param scope The complex type or model group being read
+   */
+  private void readParticles(final Element parent, final String scope, final String targetNs,
+      final boolean qualified, final List<String> particles) {
+    for (final Element child : getXsdChildren(parent)) {
+      switch (child.getLocalName()) {
+        case "sequence":
+        case "choice":
+        case "all":
+          readParticles(child, scope, targetNs, qualified, particles);
+          break;
+        case "group":
+          particles.add(GROUP_PREFIX + resolveQName(child, child.getAttribute("ref")));
+          break;
+        case "element":
+          particles.add(readElement(child, targetNs, qualified, Optional.of(scope)));
+          break;
+        default:
+          break; // Wildcards, attributes, annotations, ...
+      }
+    }
+  }
+
+  private XsdElementOrder build(final List<XsdElementOrder.XsdFile> xsdFiles) {
+    final Map<String, List<String>> childrenByType = new LinkedHashMap<>();
+    for (final String typeName : particlesByType.keySet()) {
+      final Set<String> children = new LinkedHashSet<>();
+      flattenType(typeName, children, new HashSet<>());
+      if (!children.isEmpty()) {
+        childrenByType.put(typeName, new ArrayList<>(children));
+      }
+    }
+    // A global declaration wins over the local ones of the same name.
+    final Map<String, String> typeByElement = new LinkedHashMap<>(typeByGlobalElement);
+    for (final Map.Entry<String, String> entry : typeByLocalElement.entrySet()) {
+      if (!ambiguousLocalElements.contains(entry.getKey())) {
+        typeByElement.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+    }
+    final Map<String, String> typeByElementWithChildren = new LinkedHashMap<>();
+    for (final Map.Entry<String, String> entry : typeByElement.entrySet()) {
+      if (childrenByType.containsKey(entry.getValue())) {
+        typeByElementWithChildren.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return new XsdElementOrder(childrenByType, typeByElementWithChildren, xsdFiles);
+  }
+
+  private void flattenType(final String typeName, final Set<String> children,
+      final Set<String> visited) {
+    if (!visited.add(typeName)) {
+      return; // Cycle.
+    }
+    final String baseType = baseTypeByType.get(typeName);
+    if (baseType != null) {
+      flattenType(baseType, children, visited);
+    }
+    final List<String> particles = particlesByType.get(typeName);
+    if (particles != null) {
+      flattenParticles(particles, children, visited);
+    }
+  }
+
+  private void flattenParticles(final List<String> particles, final Set<String> children,
+      final Set<String> visited) {
+    for (final String particle : particles) {
+      if (particle.startsWith(GROUP_PREFIX)) {
+        final String groupName = particle.substring(GROUP_PREFIX.length());
+        final List<String> groupParticles = particlesByGroup.get(groupName);
+        if (groupParticles != null && visited.add(particle)) {
+          flattenParticles(groupParticles, children, visited);
+        }
+      } else {
+        children.add(particle); // The first declaration gives the rank.
+      }
+    }
+  }
+
+  private static List<Element> getXsdChildren(final Element parent) {
+    final List<Element> children = new ArrayList<>();
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE && XSD_NS.equals(child.getNamespaceURI())) {
+        children.add((Element) child);
+      }
+    }
+    return children;
+  }
+
+  /**
+   * @param context The XSD element in which the prefixed name appears
+   * @param prefixedName A name like "cbc:ID"
+   * @return The expanded name like "{urn:...}ID"
+   */
+  private static String resolveQName(final Element context, final String prefixedName) {
+    final int colonIndex = prefixedName.indexOf(':');
+    final String prefix = colonIndex < 0 ? null : prefixedName.substring(0, colonIndex);
+    final String namespaceUri = context.lookupNamespaceURI(prefix);
+    return expandedName(namespaceUri == null ? "" : namespaceUri,
+        prefixedName.substring(colonIndex + 1));
+  }
+
+  static String expandedName(final String namespaceUri, final String localName) {
+    return "{" + namespaceUri + "}" + localName;
+  }
+}
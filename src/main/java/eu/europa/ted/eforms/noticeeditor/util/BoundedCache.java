@@ -0,0 +1,204 @@
+package eu.europa.ted.eforms.noticeeditor.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A small thread safe in-memory cache, bounded by number of entries and optionally by total weight
+ * (least recently used entries are evicted first) and by time to live (expired entries are never
+ * returned).
+ *
+ * <p>
+ * This is intentionally simple, all access is synchronized on the cache. The values are expected to
+ * be cheap to put and get compared to what they save. The optional eviction listener is called
+ * while holding the lock, it should be quick.
+ * </p>
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public class BoundedCache<K, V> {
+
+  private final int maxEntries;
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final Optional<Duration> timeToLiveOpt;
+  private final Optional<BiConsumer<K, V>> evictionListenerOpt;
+  private final Clock clock;
+
+  /**
+   * Access order: a get moves the entry to the end, the first is the least recently used.
+   */
+  private final LinkedHashMap<K, Entry<V>> entryByKey = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalWeight;
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long weight;
+    private final Instant createdAt;
+
+    private Entry(final V value, final long weight, final Instant createdAt) {
+      this.value = value;
+      this.weight = weight;
+      this.createdAt = createdAt;
+    }
+  }
+
+  /**
+   * @param maxEntries The maximum number of entries, the least recently used are evicted first
+   * @param timeToLiveOpt Optional time to live of an entry, counted from the put
+   */
+  public BoundedCache(final int maxEntries, final Optional<Duration> timeToLiveOpt) {
+    this(maxEntries, Long.MAX_VALUE, v -> 0L, timeToLiveOpt, Optional.empty(),
+        Clock.systemUTC());
+  }
+
+  /**
+   * @param maxEntries The maximum number of entries, the least recently used are evicted first
+   * @param maxWeight The maximum total weight of the values, the least recently used are evicted
+   *        first. A single value heavier than this is not kept
+   * @param weigher Gives the weight of a value, for example the length of a text
+   * @param timeToLiveOpt Optional time to live of an entry, counted from the put
+   * @param evictionListenerOpt Optionally called when an entry is evicted, because of the bounds
+   *        or because it expired, not when it is removed or replaced explicitly
+   */
+  public BoundedCache(final int maxEntries, final long maxWeight, final ToLongFunction<V> weigher,
+      final Optional<Duration> timeToLiveOpt,
+      final Optional<BiConsumer<K, V>> evictionListenerOpt) {
+    this(maxEntries, maxWeight, weigher, timeToLiveOpt, evictionListenerOpt, Clock.systemUTC());
+  }
+
+  /**
+   * @param clock Allows to control time in tests
+   */
+  BoundedCache(final int maxEntries, final long maxWeight, final ToLongFunction<V> weigher,
+      final Optional<Duration> timeToLiveOpt,
+      final Optional<BiConsumer<K, V>> evictionListenerOpt, final Clock clock) {
+    Validate.isTrue(maxEntries > 0, "maxEntries must be positive, found %s", maxEntries);
+    Validate.isTrue(maxWeight > 0, "maxWeight must be positive, found %s", maxWeight);
+    Validate.notNull(weigher);
+    Validate.notNull(timeToLiveOpt);
+    Validate.notNull(evictionListenerOpt);
+    Validate.notNull(clock);
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.timeToLiveOpt = timeToLiveOpt;
+    this.evictionListenerOpt = evictionListenerOpt;
+    this.clock = clock;
+  }
+
+  /**
+   * @return The value if present and not expired
+   */
+  public synchronized Optional<V> get(final K key) {
+    final Entry<V> entry = entryByKey.get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (isExpired(entry, clock.instant())) {
+      entryByKey.remove(key);
+      totalWeight -= entry.weight;
+      notifyEviction(key, entry);
+      return Optional.empty();
+    }
+    return Optional.of(entry.value);
+  }
+
+  /**
+   * @return True if present and not expired, this does not count as an access
+   */
+  public synchronized boolean containsKey(final K key) {
+    final Entry<V> entry = entryByKey.get(key);
+    return entry != null && !isExpired(entry, clock.instant());
+  }
+
+  public synchronized void put(final K key, final V value) {
+    Validate.notNull(key);
+    Validate.notNull(value);
+    final Instant now = clock.instant();
+    removeExpired(now);
+
+    final long weight = weigher.applyAsLong(value);
+    Validate.isTrue(weight >= 0, "weight must not be negative, found %s", weight);
+    final Entry<V> previous = entryByKey.put(key, new Entry<>(value, weight, now));
+    if (previous != null) {
+      totalWeight -= previous.weight;
+    }
+    totalWeight += weight;
+
+    // Evict the least recently used entries, possibly the one just put if it is too heavy.
+    final Iterator<Map.Entry<K, Entry<V>>> it = entryByKey.entrySet().iterator();
+    while ((entryByKey.size() > maxEntries || totalWeight > maxWeight) && it.hasNext()) {
+      final Map.Entry<K, Entry<V>> eldest = it.next();
+      it.remove();
+      totalWeight -= eldest.getValue().weight;
+      notifyEviction(eldest.getKey(), eldest.getValue());
+    }
+  }
+
+  public synchronized Optional<V> remove(final K key) {
+    final Entry<V> entry = entryByKey.remove(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    totalWeight -= entry.weight;
+    return Optional.of(entry.value);
+  }
+
+  /**
+   * @return The number of entries, this may include expired entries not yet removed
+   */
+  public synchronized int size() {
+    return entryByKey.size();
+  }
+
+  /**
+   * @return The total weight of the entries, this may include expired entries not yet removed
+   */
+  public synchronized long getTotalWeight() {
+    return totalWeight;
+  }
+
+  public synchronized void clear() {
+    entryByKey.clear();
+    totalWeight = 0;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  private boolean isExpired(final Entry<V> entry, final Instant now) {
+    return timeToLiveOpt.isPresent() && entry.createdAt.plus(timeToLiveOpt.get()).isBefore(now);
+  }
+
+  private void removeExpired(final Instant now) {
+    if (timeToLiveOpt.isEmpty()) {
+      return;
+    }
+    final Iterator<Map.Entry<K, Entry<V>>> it = entryByKey.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<K, Entry<V>> mapEntry = it.next();
+      if (isExpired(mapEntry.getValue(), now)) {
+        it.remove();
+        totalWeight -= mapEntry.getValue().weight;
+        notifyEviction(mapEntry.getKey(), mapEntry.getValue());
+      }
+    }
+  }
+
+  private void notifyEviction(final K key, final Entry<V> entry) {
+    if (evictionListenerOpt.isPresent()) {
+      evictionListenerOpt.get().accept(key, entry.value);
+    }
+  }
+}
@@ -2,20 +2,74 @@ package eu.europa.ted.eforms.noticeeditor.util;
 
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import javax.xml.XMLConstants;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import org.apache.commons.lang3.Validate;
 import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 public class EditorXmlUtils {
 
+  /**
+   * The transformer factory lookup goes through the service loader, this is expensive and
+   * contended under concurrency. A factory is not guaranteed to be thread safe, and neither is a
+   * transformer, so both are kept per thread. The transformer is reset before being handed out.
+   */
+  private static final ThreadLocal<TransformerFactory> threadLocalTransformerFactory =
+      ThreadLocal.withInitial(EditorXmlUtils::buildSafeTransformerFactory);
+
+  private static final ThreadLocal<Transformer> threadLocalTransformer =
+      ThreadLocal.withInitial(EditorXmlUtils::buildSafeTransformer);
+
   private EditorXmlUtils() {
     throw new AssertionError("Utility class.");
   }
 
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  private static TransformerFactory buildSafeTransformerFactory() {
+    final TransformerFactory factory = TransformerFactory.newInstance();
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    } catch (TransformerConfigurationException ex) {
+      throw new RuntimeException("Cannot enable secure processing", ex);
+    }
+    return factory;
+  }
+
+  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
+      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
+      justification = "Checked to Runtime OK here")
+  private static Transformer buildSafeTransformer() {
+    try {
+      return threadLocalTransformerFactory.get().newTransformer();
+    } catch (TransformerConfigurationException ex) {
+      throw new RuntimeException("Cannot create transformer", ex);
+    }
+  }
+
+  /**
+   * @return A secure identity transformer reused for the current thread, reset to its initial
+   *         state (no output properties, no URI resolver). Do not share it with other threads.
+   */
+  public static Transformer getThreadLocalTransformer() {
+    final Transformer transformer = threadLocalTransformer.get();
+    transformer.reset();
+    transformer.setURIResolver(null); // Do not resolve URIs.
+    return transformer;
+  }
+
   /**
    * @param doc The document to transform to text
    * @param indented Indent if true
@@ -28,8 +82,7 @@ public class EditorXmlUtils {
   public static String asText(final Document doc, final boolean indented) {
     try {
       final StringWriter stringWriter = new StringWriter();
-      final TransformerFactory factory = TransformerFactory.newInstance();
-      final Transformer transformer = factory.newTransformer();
+      final Transformer transformer = getThreadLocalTransformer();
 
       transformer.setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.toString());
       transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
@@ -40,8 +93,6 @@ public class EditorXmlUtils {
         transformer.setOutputProperty(OutputKeys.INDENT, "yes");
       }
 
-      transformer.setURIResolver(null); // Do not resolve URIs.
-
       // final DOMSource domSource = new DOMSource(doc); // Also works but shows a warning.
       final DOMSource domSource = new DOMSource(doc.getDocumentElement());
 
@@ -53,6 +104,54 @@ public class EditorXmlUtils {
     }
   }
 
+  /**
+   * Moves the passed node and its descendants to the passed document, like
+   * {@link Document#adoptNode(Node)}. The DOM implementation only keeps the user data of the
+   * adopted node itself, the user data of the passed keys is also kept on the descendant elements
+   * and on the attributes.
+   *
+   * @param doc The document which adopts the node
+   * @param node The node to move, it is removed from its parent
+   * @param userDataKeys The keys of the DOM user data to keep
+   * @return The adopted node, without parent
+   */
+  public static Node adoptNode(final Document doc, final Node node,
+      final List<String> userDataKeys) {
+    final Map<Node, Object[]> userDataByNode = new IdentityHashMap<>();
+    if (!userDataKeys.isEmpty()) {
+      collectUserDataRec(node, userDataKeys, userDataByNode);
+    }
+    final Node adopted = doc.adoptNode(node);
+    Validate.notNull(adopted, "Cannot adopt node=%s", node.getNodeName());
+    for (final Entry<Node, Object[]> entry : userDataByNode.entrySet()) {
+      final Object[] userData = entry.getValue();
+      for (int i = 0; i < userData.length; i++) {
+        entry.getKey().setUserData(userDataKeys.get(i), userData[i], null);
+      }
+    }
+    return adopted;
+  }
+
+  private static void collectUserDataRec(final Node node, final List<String> userDataKeys,
+      final Map<Node, Object[]> userDataByNode) {
+    final Object[] userData = new Object[userDataKeys.size()];
+    for (int i = 0; i < userData.length; i++) {
+      userData[i] = node.getUserData(userDataKeys.get(i));
+    }
+    userDataByNode.put(node, userData);
+
+    final NamedNodeMap attributes = node.getAttributes();
+    if (attributes != null) {
+      for (int i = 0; i < attributes.getLength(); i++) {
+        collectUserDataRec(attributes.item(i), userDataKeys, userDataByNode);
+      }
+    }
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        collectUserDataRec(child, userDataKeys, userDataByNode);
+      }
+    }
+  }
 
   public static String getNodePath(final Node node) {
     if (node == null) {
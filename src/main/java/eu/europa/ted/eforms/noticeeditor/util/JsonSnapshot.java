@@ -0,0 +1,319 @@
+package eu.europa.ted.eforms.noticeeditor.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Compact binary snapshot of a JSON tree read from an SDK file (fields.json, notice-types.json,
+ * translations, ...), saved next to the file. Parsing the big SDK files is slow, reading the
+ * snapshot is not: the strings are stored once (field names and texts repeat a lot) and the tree
+ * is a sequence of tagged values.
+ *
+ * <p>
+ * The snapshot is made on first use of the file and read with a buffered stream, the file is closed
+ * once read. It holds the size and last modified time of the source file, if one of them changed
+ * the snapshot is made again.
+ * </p>
+ */
+public final class JsonSnapshot {
+
+  private static final Logger logger = LoggerFactory.getLogger(JsonSnapshot.class);
+
+  /**
+   * Suffix of the snapshot file, next to the source file.
+   */
+  public static final String SNAPSHOT_FILE_SUFFIX = ".json-snapshot";
+
+  private static final int MAGIC = 0x4A534E50; // JSNP
+  private static final int FORMAT_VERSION = 1;
+
+  private static final byte TAG_NULL = 0;
+  private static final byte TAG_TRUE = 1;
+  private static final byte TAG_FALSE = 2;
+  private static final byte TAG_INT = 3;
+  private static final byte TAG_LONG = 4;
+  private static final byte TAG_DOUBLE = 5;
+  private static final byte TAG_BIG_INTEGER = 6;
+  private static final byte TAG_BIG_DECIMAL = 7;
+  private static final byte TAG_TEXT = 8;
+  private static final byte TAG_ARRAY = 9;
+  private static final byte TAG_OBJECT = 10;
+
+  /**
+   * Parses the source file into a JSON tree.
+   */
+  @FunctionalInterface
+  public interface SourceParser {
+    JsonNode parse(Path sourcePath) throws IOException;
+  }
+
+  private JsonSnapshot() {
+    throw new AssertionError("Utility class.");
+  }
+
+  /**
+   * @param sourcePath The SDK file
+   * @param parser Parses the SDK file if there is no up to date snapshot
+   * @return A new JSON tree of the SDK file, from the snapshot next to the file or parsed (the
+   *         snapshot is then written)
+   */
+  public static JsonNode load(final Path sourcePath, final SourceParser parser)
+      throws IOException {
+    final Path snapshotPath = getSnapshotPath(sourcePath);
+    final long sourceSize = Files.size(sourcePath);
+    final long sourceLastModified = Files.getLastModifiedTime(sourcePath).toMillis();
+    if (Files.exists(snapshotPath)) {
+      try {
+        final JsonNode json = read(snapshotPath, sourceSize, sourceLastModified);
+        if (json != null) {
+          logger.debug("Read snapshot {}", snapshotPath);
+          return json;
+        }
+        logger.info("Snapshot {} is out of date", snapshotPath);
+      } catch (final IOException | RuntimeException e) {
+        logger.warn("Cannot read {}, parsing the source again: {}", snapshotPath, e.toString());
+      }
+    }
+    final JsonNode json = parser.parse(sourcePath);
+    try {
+      write(json, snapshotPath, sourceSize, sourceLastModified);
+      logger.info("Wrote snapshot {}", snapshotPath);
+    } catch (final IOException e) {
+      // The SDK folder may be read-only, the source is parsed every time.
+      logger.warn("Cannot write {}: {}", snapshotPath, e.toString());
+    }
+    return json;
+  }
+
+  /**
+   * @param jsonPath A JSON file
+   * @return A new JSON tree of the file, read from its snapshot if it is up to date
+   */
+  public static JsonNode loadJson(final Path jsonPath) throws IOException {
+    return load(jsonPath, JsonSnapshot::parseJson);
+  }
+
+  static Path getSnapshotPath(final Path sourcePath) {
+    return sourcePath.resolveSibling(sourcePath.getFileName() + SNAPSHOT_FILE_SUFFIX);
+  }
+
+  private static JsonNode parseJson(final Path jsonPath) throws IOException {
+    try (InputStream is = Files.newInputStream(jsonPath)) {
+      return JsonUtils.getJsonReader().readTree(is);
+    }
+  }
+
+  /**
+   * Writes the snapshot, through a temporary file so that a reader never sees half of it.
+   */
+  static void write(final JsonNode json, final Path path, final long sourceSize,
+      final long sourceLastModified) throws IOException {
+    // All the strings once, then indexes.
+    final Map<String, Integer> indexByString = new LinkedHashMap<>(1024);
+    collectStrings(json, indexByString);
+
+    final Path tempPath = Files.createTempFile(path.toAbsolutePath().getParent(),
+        path.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tempPath);
+          DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(sourceSize);
+        data.writeLong(sourceLastModified);
+        data.writeInt(indexByString.size());
+        for (final String str : indexByString.keySet()) {
+          // Not writeUTF, it is limited to 64K bytes.
+          final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+          data.writeInt(bytes.length);
+          data.write(bytes);
+        }
+        writeNode(json, indexByString, data);
+      }
+      Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  /**
+   * @return The JSON tree, null if the snapshot is not the one of the source file
+   */
+  static JsonNode read(final Path path, final long sourceSize, final long sourceLastModified)
+      throws IOException {
+    try (InputStream in = Files.newInputStream(path);
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024))) {
+      if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+        throw new IOException("Not a supported snapshot file: " + path);
+      }
+      if (data.readLong() != sourceSize || data.readLong() != sourceLastModified) {
+        return null;
+      }
+      final String[] strings = new String[data.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        final byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      return readNode(data, strings, JsonUtils.getNodeFactory());
+    }
+  }
+
+  private static void collectStrings(final JsonNode node,
+      final Map<String, Integer> indexByString) {
+    if (node.isTextual() || node.isBigInteger() || node.isBigDecimal()) {
+      indexByString.putIfAbsent(node.asText(), indexByString.size());
+    } else if (node.isObject()) {
+      for (final Iterator<Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+        final Entry<String, JsonNode> entry = it.next();
+        indexByString.putIfAbsent(entry.getKey(), indexByString.size());
+        collectStrings(entry.getValue(), indexByString);
+      }
+    } else if (node.isArray()) {
+      for (final JsonNode item : node) {
+        collectStrings(item, indexByString);
+      }
+    }
+  }
+
+  private static void writeNode(final JsonNode node, final Map<String, Integer> indexByString,
+      final DataOutputStream data) throws IOException {
+    switch (node.getNodeType()) {
+      case NULL:
+        data.writeByte(TAG_NULL);
+        break;
+      case BOOLEAN:
+        data.writeByte(node.booleanValue() ? TAG_TRUE : TAG_FALSE);
+        break;
+      case NUMBER:
+        if (node.isInt()) {
+          data.writeByte(TAG_INT);
+          data.writeInt(node.intValue());
+        } else if (node.isLong()) {
+          data.writeByte(TAG_LONG);
+          data.writeLong(node.longValue());
+        } else if (node.isBigInteger()) {
+          data.writeByte(TAG_BIG_INTEGER);
+          data.writeInt(indexByString.get(node.asText()));
+        } else if (node.isBigDecimal()) {
+          data.writeByte(TAG_BIG_DECIMAL);
+          data.writeInt(indexByString.get(node.asText()));
+        } else {
+          data.writeByte(TAG_DOUBLE);
+          data.writeDouble(node.doubleValue());
+        }
+        break;
+      case STRING:
+        data.writeByte(TAG_TEXT);
+        data.writeInt(indexByString.get(node.textValue()));
+        break;
+      case ARRAY:
+        data.writeByte(TAG_ARRAY);
+        data.writeInt(node.size());
+        for (final JsonNode item : node) {
+          writeNode(item, indexByString, data);
+        }
+        break;
+      case OBJECT:
+        data.writeByte(TAG_OBJECT);
+        data.writeInt(node.size());
+        for (final Iterator<Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+          final Entry<String, JsonNode> entry = it.next();
+          data.writeInt(indexByString.get(entry.getKey()));
+          writeNode(entry.getValue(), indexByString, data);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException(
+            String.format("Unsupported JSON node type=%s", node.getNodeType()));
+    }
+  }
+
+  private static JsonNode readNode(final DataInputStream data, final String[] strings,
+      final JsonNodeFactory factory) throws IOException {
+    final byte tag = data.readByte();
+    switch (tag) {
+      case TAG_NULL:
+        return factory.nullNode();
+      case TAG_TRUE:
+        return factory.booleanNode(true);
+      case TAG_FALSE:
+        return factory.booleanNode(false);
+      case TAG_INT:
+        return factory.numberNode(data.readInt());
+      case TAG_LONG:
+        return factory.numberNode(data.readLong());
+      case TAG_DOUBLE:
+        return factory.numberNode(data.readDouble());
+      case TAG_BIG_INTEGER:
+        return factory.numberNode(new BigInteger(strings[data.readInt()]));
+      case TAG_BIG_DECIMAL:
+        return factory.numberNode(new BigDecimal(strings[data.readInt()]));
+      case TAG_TEXT:
+        return factory.textNode(strings[data.readInt()]);
+      case TAG_ARRAY: {
+        final int size = data.readInt();
+        final ArrayNode array = factory.arrayNode(size);
+        for (int i = 0; i < size; i++) {
+          array.add(readNode(data, strings, factory));
+        }
+        return array;
+      }
+      case TAG_OBJECT: {
+        final int size = data.readInt();
+        final ObjectNode object = factory.objectNode();
+        for (int i = 0; i < size; i++) {
+          final String key = strings[data.readInt()];
+          object.set(key, readNode(data, strings, factory));
+        }
+        return object;
+      }
+      default:
+        throw new IOException(String.format("Unknown tag=%s", tag));
+    }
+  }
+
+  /**
+   * Makes the snapshots of the JSON files offline, for example when an SDK is installed. The
+   * translations get their snapshot on first use.
+   *
+   * @param args The paths of the JSON files or of folders, the JSON files of the folders are found
+   *        recursively
+   */
+  public static void main(final String[] args) throws IOException {
+    Validate.isTrue(args.length > 0, "Expecting the paths of JSON files or folders");
+    for (final String arg : args) {
+      try (Stream<Path> paths = Files.walk(Path.of(arg))) {
+        for (final Path path : (Iterable<Path>) paths::iterator) {
+          if (Files.isRegularFile(path) && path.getFileName().toString().endsWith(".json")) {
+            loadJson(path);
+          }
+        }
+      }
+    }
+  }
+}
@@ -5,25 +5,50 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import org.apache.commons.lang3.Validate;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.StringUtils;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Helper for Jackson JSON construction and reading (get).
+ *
+ * <p>
+ * The strict getters are called for almost every field and node of every notice: they allocate
+ * nothing on success, the error messages are only built on failure.
+ * </p>
  */
 public class JsonUtils {
 
+  /**
+   * The JSON shown in the error messages is abbreviated, a whole fields.json item is not needed.
+   */
+  private static final int MAX_JSON_LENGTH_IN_ERROR = 300;
+
+  /**
+   * Configured once: finding and registering the modules is slow. An object mapper is thread-safe
+   * once configured, it is never given out so that nobody can change its configuration.
+   */
+  private static final ObjectMapper STANDARD_MAPPER = buildStandardJacksonObjectMapper();
+
+  private static final ObjectReader JSON_READER = STANDARD_MAPPER.reader();
+  private static final ObjectWriter JSON_WRITER = STANDARD_MAPPER.writer();
+  private static final ObjectWriter JSON_PRETTY_WRITER =
+      STANDARD_MAPPER.writerWithDefaultPrettyPrinter();
+
   private JsonUtils() {
     throw new UnsupportedOperationException("The class is a utility class!");
   }
 
-  public static ObjectMapper getStandardJacksonObjectMapper() {
+  private static ObjectMapper buildStandardJacksonObjectMapper() {
     final ObjectMapper objectMapper = new ObjectMapper();
     objectMapper.findAndRegisterModules();
     objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
@@ -40,12 +65,50 @@ public class JsonUtils {
     return objectMapper;
   }
 
+  /**
+   * Prefer the shared {@link #getJsonReader()} and {@link #getJsonWriter()} to read and write JSON.
+   *
+   * @return A copy of the standard object mapper, it can be configured further by the caller
+   */
+  public static ObjectMapper getStandardJacksonObjectMapper() {
+    return STANDARD_MAPPER.copy();
+  }
+
+  /**
+   * @return The shared reader of the standard object mapper, immutable and thread-safe
+   */
+  public static ObjectReader getJsonReader() {
+    return JSON_READER;
+  }
+
+  /**
+   * @return The shared compact writer of the standard object mapper, immutable and thread-safe
+   */
+  public static ObjectWriter getJsonWriter() {
+    return JSON_WRITER;
+  }
+
+  /**
+   * @return The shared pretty printing writer of the standard object mapper, immutable and
+   *         thread-safe
+   */
+  public static ObjectWriter getJsonPrettyWriter() {
+    return JSON_PRETTY_WRITER;
+  }
+
+  /**
+   * @return The factory of the JSON nodes, the one of the standard object mapper
+   */
+  public static JsonNodeFactory getNodeFactory() {
+    return STANDARD_MAPPER.getNodeFactory();
+  }
+
   public static ObjectNode createObjectNode() {
-    return getStandardJacksonObjectMapper().createObjectNode();
+    return getNodeFactory().objectNode();
   }
 
   public static ArrayNode createArrayNode() {
-    return getStandardJacksonObjectMapper().createArrayNode();
+    return getNodeFactory().arrayNode();
   }
 
   public static ArrayNode createArrayNode(final ObjectNode objectNode, final String key) {
@@ -73,7 +136,10 @@ public class JsonUtils {
   public static String getTextStrict(final JsonNode json, final String key) {
     final JsonNode jsonElem = checkKeyAndElemNotNull(json, key);
     final String text = jsonElem.asText(null);
-    Validate.notBlank(text, "Text is blank for key=%s, json=%s", key, json);
+    if (StringUtils.isBlank(text)) {
+      throw blankTextException(text,
+          String.format("Text is blank for key=%s, json=%s", key, abbreviate(json)));
+    }
     return text;
   }
 
@@ -84,31 +150,66 @@ public class JsonUtils {
    */
   public static String getTextStrict(final JsonNode json, final String key,
       final String errorText) {
-    final JsonNode jsonElem = checkKeyAndElemNotNull(json, key, errorText);
-    final String text = jsonElem.asText(null);
-    Validate.notBlank(text, "Text is blank for key=%s, msg=%s", key, errorText);
-    return text;
+    return getTextStrict(json, key, errorText, null);
   }
 
-  private static JsonNode checkKeyAndElemNotNull(final JsonNode json, final String key,
-      final String errorText) {
-    Validate.notNull(json, "Elem is null for key=%s, msg=%s", key, errorText);
+  /**
+   * @param errorTextSupplier Gives the text shown in case of an error, only called on error so that
+   *        the text is not built for nothing
+   * @return The expected text, otherwise it fails with the key text and error text
+   */
+  public static String getTextStrict(final JsonNode json, final String key,
+      final Supplier<String> errorTextSupplier) {
+    return getTextStrict(json, key, null, errorTextSupplier);
+  }
 
+  private static String getTextStrict(final JsonNode json, final String key,
+      final String errorText, final Supplier<String> errorTextSupplier) {
+    if (json == null) {
+      throw new NullPointerException(String.format("Elem is null for key=%s, msg=%s", key,
+          errorTextSupplier != null ? errorTextSupplier.get() : errorText));
+    }
     final JsonNode jsonElem = json.get(key);
-    Validate.notNull(jsonElem, "Not found for key=%s, msg=%s", key, errorText);
-    return jsonElem;
+    if (jsonElem == null) {
+      throw new NullPointerException(String.format("Not found for key=%s, msg=%s", key,
+          errorTextSupplier != null ? errorTextSupplier.get() : errorText));
+    }
+    final String text = jsonElem.asText(null);
+    if (StringUtils.isBlank(text)) {
+      throw blankTextException(text, String.format("Text is blank for key=%s, msg=%s", key,
+          errorTextSupplier != null ? errorTextSupplier.get() : errorText));
+    }
+    return text;
   }
 
   private static JsonNode checkKeyAndElemNotNull(final JsonNode json, final String key) {
-    Validate.notNull(json, "Elem is null for key=%s, json=%s", key, json);
-
+    if (json == null) {
+      throw new NullPointerException(String.format("Elem is null for key=%s", key));
+    }
     final JsonNode jsonElem = json.get(key);
-    Validate.notNull(jsonElem, "Not found for key=%s, json=%s", key, json);
+    if (jsonElem == null) {
+      throw new NullPointerException(
+          String.format("Not found for key=%s, json=%s", key, abbreviate(json)));
+    }
     return jsonElem;
   }
 
+  /**
+   * Like Validate.notBlank: null pointer if the text is null, illegal argument if it is blank.
+   */
+  private static RuntimeException blankTextException(final String text, final String message) {
+    return text == null ? new NullPointerException(message)
+        : new IllegalArgumentException(message);
+  }
+
+  private static String abbreviate(final JsonNode json) {
+    return StringUtils.abbreviate(json.toString(), MAX_JSON_LENGTH_IN_ERROR);
+  }
+
   public static Optional<String> getTextOpt(final JsonNode json, final String key) {
-    Validate.notNull(json, "Elem is null for key=%s, json=%s", key, json);
+    if (json == null) {
+      throw new NullPointerException(String.format("Elem is null for key=%s", key));
+    }
     final JsonNode jsonElem = json.get(key);
     if (jsonElem == null) {
       return Optional.empty();
@@ -121,8 +222,7 @@ public class JsonUtils {
   }
 
   public static String marshall(final Object obj) throws JsonProcessingException {
-    final ObjectMapper objectMapper = getStandardJacksonObjectMapper();
-    return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+    return JSON_PRETTY_WRITER.writeValueAsString(obj);
   }
 
   public static List<String> getListOfStrings(final JsonNode jsonNode) {
@@ -137,6 +237,24 @@ public class JsonUtils {
     return Collections.emptyList();
   }
 
+  /**
+   * Iterates on the elements of a JSON array without copying them, prefer this to
+   * {@link #getList(JsonNode)} to only read the elements.
+   *
+   * @param jsonNode A JSON array, may be null
+   * @return The elements of the array, nothing if it is null or not an array
+   */
+  public static Iterable<JsonNode> getElements(final JsonNode jsonNode) {
+    if (jsonNode != null && jsonNode.isArray()) {
+      return jsonNode; // A JSON node iterates on its elements.
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @param jsonNode A JSON array, may be null
+   * @return A copy of the elements of the array, empty if it is null or not an array
+   */
   public static List<JsonNode> getList(final JsonNode jsonNode) {
     if (jsonNode != null && jsonNode.isArray()) {
       final ArrayNode arrayNode = (ArrayNode) jsonNode;
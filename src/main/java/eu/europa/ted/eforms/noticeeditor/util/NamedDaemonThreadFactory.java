@@ -0,0 +1,29 @@
+package eu.europa.ted.eforms.noticeeditor.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Creates daemon threads named after a prefix and a counter, this helps when reading logs and
+ * thread dumps.
+ */
+public class NamedDaemonThreadFactory implements ThreadFactory {
+  private final String prefix;
+  private final AtomicInteger counter = new AtomicInteger();
+
+  /**
+   * @param prefix The thread name prefix, for example "cvs-validation-"
+   */
+  public NamedDaemonThreadFactory(final String prefix) {
+    Validate.notBlank(prefix);
+    this.prefix = prefix;
+  }
+
+  @Override
+  public Thread newThread(final Runnable runnable) {
+    final Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
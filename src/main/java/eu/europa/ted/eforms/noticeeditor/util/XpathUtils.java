@@ -1,84 +1,108 @@
 package eu.europa.ted.eforms.noticeeditor.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathFactory;
-import javax.xml.xpath.XPathFactoryConfigurationException;
 import org.apache.commons.lang3.Validate;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.DocumentTypeInfo;
-import net.sf.saxon.lib.NamespaceConstant;
+import net.sf.saxon.xpath.XPathFactoryImpl;
 
 public class XpathUtils {
 
+  /**
+   * Namespace context by SDK version and document type, it is only read once built.
+   */
+  private static final ConcurrentMap<String, MapNamespaceContext> namespaceCtxByDocType =
+      new ConcurrentHashMap<>();
+
+  /**
+   * An XPath factory is not thread-safe, each thread has its own. Why Saxon HE lib: namespaces were
+   * not working with the JDK (Java 15). The Saxon factory is created directly, looking it up by
+   * object model would set a system property and scan the class path every time.
+   */
+  private static final ThreadLocal<XPathFactory> xpathFactoryByThread =
+      ThreadLocal.withInitial(XPathFactoryImpl::new);
+
   private XpathUtils() {
     throw new AssertionError("Utility class.");
   }
 
   /**
    * The xpath instance is namespace aware and reusable. It allows to evaluate xpath expression
-   * taking configured namespaces into account.
+   * taking configured namespaces into account. An XPath instance is not thread-safe, a new one is
+   * returned at each call but the namespaces of the document type are only set up once.
    *
    * @param docTypeInfo If the optional map is not present it will fallback on this to get the map
    * @param mapPreSdk16Opt Optional map of namespace URI by prefix
    */
   public static XPath setupXpathInst(final DocumentTypeInfo docTypeInfo,
       final Optional<Map<String, String>> mapPreSdk16Opt) {
+    final NamespaceContext namespaceCtx =
+        mapPreSdk16Opt.isPresent() ? new MapNamespaceContext(mapPreSdk16Opt.get())
+            : getNamespaceContext(docTypeInfo);
+    final XPath xpathInst = xpathFactoryByThread.get().newXPath();
+    xpathInst.setNamespaceContext(namespaceCtx);
+    return xpathInst;
+  }
 
-    final Map<String, String> namespaceUriByPrefix =
-        mapPreSdk16Opt.isPresent() ? mapPreSdk16Opt.get()
-            : docTypeInfo.buildAdditionalNamespaceUriByPrefix();
+  /**
+   * @param docTypeInfo SDK document type info
+   * @return The namespace URI by prefix of the document type (without the "xsd" prefix), the map is
+   *         shared and cannot be modified
+   */
+  public static Map<String, String> getNamespaceUriByPrefix(final DocumentTypeInfo docTypeInfo) {
+    return getNamespaceContext(docTypeInfo).documentNamespaceUriByPrefix;
+  }
 
-    return setupXpathInst(namespaceUriByPrefix);
+  private static MapNamespaceContext getNamespaceContext(final DocumentTypeInfo docTypeInfo) {
+    final String key = docTypeInfo.getSdkVersion() + " " + docTypeInfo.getNamespaceUri();
+    return namespaceCtxByDocType.computeIfAbsent(key,
+        k -> new MapNamespaceContext(docTypeInfo.buildAdditionalNamespaceUriByPrefix()));
   }
 
-  @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(
-      value = "EXS_EXCEPTION_SOFTENING_NO_CONSTRAINTS",
-      justification = "Checked to Runtime OK here")
-  private static XPath setupXpathInst(final Map<String, String> namespaceUriByPrefix) {
-    // Also allow reading XSD files using the same xpath instance.
-    namespaceUriByPrefix.put("xsd", XMLConstants.W3C_XML_SCHEMA_NS_URI);
-
-    //
-    // NAMESPACES FOR XPATH.
-    //
-    try {
-      // Why Saxon HE lib: namespaces were not working with the JDK (Java 15).
-      final String objectModelSaxon = NamespaceConstant.OBJECT_MODEL_SAXON;
-      System.setProperty("javax.xml.xpath.XPathFactory:" + objectModelSaxon,
-          "net.sf.saxon.xpath.XPathFactoryImpl");
-      final XPath xpathInst = XPathFactory.newInstance(objectModelSaxon).newXPath();
-
-      // Custom namespace context.
-      // https://stackoverflow.com/questions/13702637/xpath-with-namespace-in-java
-      final NamespaceContext namespaceCtx = new NamespaceContext() {
-        @Override
-        public String getNamespaceURI(final String prefix) {
-          final String namespaceUri = namespaceUriByPrefix.get(prefix);
-          Validate.notBlank(namespaceUri, "Namespace is blank for prefix=%s", prefix);
-          return namespaceUri;
-        }
+  /**
+   * Custom namespace context, immutable.
+   * https://stackoverflow.com/questions/13702637/xpath-with-namespace-in-java
+   */
+  private static final class MapNamespaceContext implements NamespaceContext {
+    private final Map<String, String> documentNamespaceUriByPrefix;
+    private final Map<String, String> namespaceUriByPrefix;
+
+    MapNamespaceContext(final Map<String, String> documentNamespaceUriByPrefix) {
+      this.documentNamespaceUriByPrefix =
+          Collections.unmodifiableMap(new LinkedHashMap<>(documentNamespaceUriByPrefix));
+      final Map<String, String> map = new HashMap<>(documentNamespaceUriByPrefix);
+      // Also allow reading XSD files using the same xpath instance.
+      map.put("xsd", XMLConstants.W3C_XML_SCHEMA_NS_URI);
+      this.namespaceUriByPrefix = map;
+    }
 
-        @Override
-        public String getPrefix(final String uri) {
-          return null;
-        }
+    @Override
+    public String getNamespaceURI(final String prefix) {
+      final String namespaceUri = namespaceUriByPrefix.get(prefix);
+      Validate.notBlank(namespaceUri, "Namespace is blank for prefix=%s", prefix);
+      return namespaceUri;
+    }
 
-        @Override
-        public Iterator<String> getPrefixes(final String namespaceURI) {
-          return null;
-        }
-      };
-      xpathInst.setNamespaceContext(namespaceCtx);
-      return xpathInst;
+    @Override
+    public String getPrefix(final String uri) {
+      return null;
+    }
 
-    } catch (final XPathFactoryConfigurationException ex) {
-      throw new RuntimeException(ex);
+    @Override
+    public Iterator<String> getPrefixes(final String namespaceURI) {
+      return null;
     }
   }
 
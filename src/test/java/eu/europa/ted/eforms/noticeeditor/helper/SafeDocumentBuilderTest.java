@@ -0,0 +1,89 @@
+package eu.europa.ted.eforms.noticeeditor.helper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.SAXParser;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
+
+/**
+ * Checks the thread local reuse does not lose the secure setup.
+ */
+public class SafeDocumentBuilderTest {
+
+  private static final String XML_WITH_DOCTYPE =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?><!DOCTYPE a [<!ENTITY x \"y\">]><a>&x;</a>";
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testThreadLocalDocumentBuilderReuse() throws Exception {
+    final DocumentBuilder db1 = SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderStrict(true);
+    final DocumentBuilder db2 = SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderStrict(true);
+    assertSame(db1, db2);
+    assertTrue(db1.isNamespaceAware());
+
+    // Different settings, different builder.
+    assertNotSame(db1, SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderStrict(false));
+    assertNotSame(db1, SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(true));
+
+    // Other thread, other builder.
+    final DocumentBuilder dbOtherThread = CompletableFuture.supplyAsync(() -> {
+      try {
+        return SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderStrict(true);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }).get();
+    assertNotSame(db1, dbOtherThread);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testThreadLocalDocumentBuilderStaysSecure() throws Exception {
+    // Use it twice, the second time after a reset.
+    for (int i = 0; i < 2; i++) {
+      final DocumentBuilder db =
+          SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderStrict(false);
+      assertThrows(SAXParseException.class, () -> db
+          .parse(new ByteArrayInputStream(XML_WITH_DOCTYPE.getBytes(StandardCharsets.UTF_8))));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testThreadLocalSaxParserStaysSecure() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      final SAXParser parser = SafeSaxParser.getThreadLocalSafeSaxParserStrict(true);
+      assertSame(parser, SafeSaxParser.getThreadLocalSafeSaxParserStrict(true));
+      assertThrows(SAXParseException.class,
+          () -> parser.parse(
+              new ByteArrayInputStream(XML_WITH_DOCTYPE.getBytes(StandardCharsets.UTF_8)),
+              new DefaultHandler()));
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testThreadLocalTransformerIsReset() throws Exception {
+    final Document doc =
+        SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderStrict(true).newDocument();
+    doc.appendChild(doc.createElement("a")).appendChild(doc.createElement("b"));
+
+    final String indented = EditorXmlUtils.asText(doc, true);
+    final String notIndented = EditorXmlUtils.asText(doc, false);
+    assertTrue(indented.contains("\n"), indented);
+    // The indentation of the previous call must not leak into this one.
+    assertTrue(notIndented.endsWith("<a><b/></a>"), notIndented);
+    assertEquals(notIndented, EditorXmlUtils.asText(doc, false));
+  }
+}
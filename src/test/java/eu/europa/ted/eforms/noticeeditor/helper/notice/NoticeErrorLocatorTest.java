@@ -0,0 +1,123 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.service.SdkService;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * The locations of validation errors are mapped back to the items of the visual model, based on
+ * the dummy X02 notice of {@link SaveNoticeX02DummyTest}.
+ */
+@SpringBootTest
+public class NoticeErrorLocatorTest {
+
+  private static final String VALUE_HEALTH = "health";
+
+  @Autowired
+  private SdkService sdkService;
+
+  private PhysicalModel setupPhysicalModel() throws Exception {
+    final ObjectMapper mapper = new ObjectMapper();
+    final SdkVersion sdkVersion = new SdkVersion("1.8.0");
+    final SaveNoticeX02DummyTest metadata = new SaveNoticeX02DummyTest();
+    final VisualModel visualModel = metadata.setupVisualModel(mapper, sdkVersion, "X02");
+    return metadata.setupPhysicalModel(mapper, "X02", "BRIN", visualModel,
+        sdkService.getSdkRootFolder(), sdkVersion);
+  }
+
+  @Test
+  public void testLocateNode() throws Exception {
+    final PhysicalModel physicalModel = setupPhysicalModel();
+    final NoticeErrorLocator errorLocator =
+        new NoticeErrorLocator(physicalModel.getDomDocument());
+
+    // By path, like an SVRL location.
+    final ObjectNode websiteLocation = errorLocator.locate(errorLocator.findNode(
+        "/*:BusinessRegistrationInformationNotice/cac:BusinessParty[1]/cbc:WebsiteURI[1]").get())
+        .get();
+    assertEquals("BT-505-Business", websiteLocation.get("fieldId").asText());
+    assertEquals("ND-BusinessParty", websiteLocation.get(VisualModel.VIS_NODE_ID).asText());
+    assertEquals(2, websiteLocation.get("contentPath").size());
+    assertTrue(
+        errorLocator.findNode("/BusinessRegistrationInformationNotice/cbc:Unknown").isEmpty());
+
+    // The closest item of an element or attribute.
+    final Node registrationDate = physicalModel.getDomDocument()
+        .getElementsByTagName("cbc:RegistrationDate").item(0);
+    final ObjectNode euLocation = errorLocator.locate(registrationDate).get();
+    assertEquals("OPP-113-Business-European", euLocation.get("fieldId").asText());
+    assertEquals("ND-EuEntity", euLocation.get(VisualModel.VIS_NODE_ID).asText());
+    final JsonNode euContentPath = euLocation.get("contentPath");
+    assertEquals(3, euContentPath.size());
+    assertEquals("the_business_party",
+        euContentPath.get(0).get(VisualModel.VIS_CONTENT_ID).asText());
+    assertEquals("the_eu_entity", euContentPath.get(1).get(VisualModel.VIS_CONTENT_ID).asText());
+    final Node schemeName = ((Element) registrationDate.getParentNode())
+        .getElementsByTagName("cbc:CompanyID").item(0).getAttributes().getNamedItem("schemeName");
+    assertEquals("BT-501-Business-European",
+        errorLocator.locate(schemeName).get().get("fieldId").asText());
+  }
+
+  @Test
+  public void testCvsReportLocations() throws Exception {
+    final PhysicalModel physicalModel = setupPhysicalModel();
+    final ObjectNode report = new ObjectMapper().createObjectNode();
+    final ArrayNode failedAsserts = report.putArray("failedAsserts");
+    final ObjectNode onField = failedAsserts.addObject();
+    onField.put("location",
+        "/*:BusinessRegistrationInformationNotice/cac:BusinessParty[1]/cbc:WebsiteURI[1]");
+    final ObjectNode onNode = failedAsserts.addObject();
+    onNode.put("location", "/*:BusinessRegistrationInformationNotice/cac:BusinessParty[1]");
+    final ObjectNode notFound = failedAsserts.addObject();
+    notFound.put("location", "/*:BusinessRegistrationInformationNotice/cbc:Unknown[1]");
+    new NoticeErrorLocator(physicalModel.getDomDocument()).putCvsReportLocations(report);
+
+    // The location id is the field, else the node, of the visual location.
+    assertEquals("BT-505-Business", onField.get("locationId").asText());
+    assertEquals("BT-505-Business", onField.get("visualLocation").get("fieldId").asText());
+    assertEquals("ND-BusinessParty", onNode.get("locationId").asText());
+    assertEquals("ND-BusinessParty",
+        onNode.get("visualLocation").get(VisualModel.VIS_NODE_ID).asText());
+    assertFalse(notFound.has("locationId"));
+    assertFalse(notFound.has("visualLocation"));
+  }
+
+  @Test
+  public void testXsdReportLocations() throws Exception {
+    final PhysicalModel physicalModel = setupPhysicalModel();
+    final NoticeErrorLocator errorLocator =
+        new NoticeErrorLocator(physicalModel.getDomDocument());
+
+    // By line and column, like the XSD errors of the XML text.
+    final String xmlText = physicalModel.toXmlText(true);
+    final int indexOfHealth = xmlText.indexOf(">" + VALUE_HEALTH + "<");
+    final int indexOfEndTag = xmlText.indexOf('>', indexOfHealth + 1) + 1;
+    final int lineNumber = StringUtils.countMatches(xmlText.substring(0, indexOfEndTag), '\n') + 1;
+    final int columnNumber = indexOfEndTag - xmlText.lastIndexOf('\n', indexOfEndTag - 1);
+    final ObjectNode xsdReport = new ObjectMapper().createObjectNode();
+    final ObjectNode xsdError = xsdReport.putArray("xsdErrors").addObject();
+    xsdError.put("lineNumber", lineNumber);
+    xsdError.put("columnNumber", columnNumber);
+    errorLocator.putXsdReportLocations(xsdReport, Optional.of(xmlText));
+
+    final JsonNode healthLocation = xsdError.get("visualLocation");
+    assertEquals(ConceptualModel.FIELD_SECTOR_OF_ACTIVITY,
+        healthLocation.get("fieldId").asText());
+    final JsonNode healthContentPath = healthLocation.get("contentPath");
+    assertEquals(2, healthContentPath.get(healthContentPath.size() - 1)
+        .get(VisualModel.VIS_CONTENT_COUNT).asInt());
+  }
+}
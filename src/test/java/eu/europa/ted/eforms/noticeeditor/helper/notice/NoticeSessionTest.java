@@ -0,0 +1,280 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static eu.europa.ted.eforms.noticeeditor.helper.notice.VisualModel.putFieldDef;
+import static eu.europa.ted.eforms.noticeeditor.helper.notice.VisualModel.putGroupDef;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.service.SdkService;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * A notice session rebuilds only the changed sections, the XML must be the same as the XML of a
+ * full build of the patched visual model.
+ */
+@SpringBootTest
+public class NoticeSessionTest extends SaveNoticeTest {
+
+  private static final String NOTICE_DOCUMENT_TYPE = "BRIN";
+  private static final String NOTICE_SUB_TYPE = "X02"; // A dummy X02.
+
+  private static final String ND_A = "ND_A";
+  private static final String BT_FIELD_DUMMY_X = "BT-field-x";
+
+  /**
+   * Index of the second A group in the children of the visual root, after the SDK version, the
+   * metadata, the root extension and the first A group.
+   */
+  private static final int VIS_INDEX_A2 = 4;
+  private static final String VALUE_OF_A2 = "/children/" + VIS_INDEX_A2 + "/children/0/value";
+
+  @Autowired
+  protected SdkService sdkService;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final SdkVersion sdkVersion = new SdkVersion("1.8.0"); // A dummy 1.8.0
+
+  private ObjectNode buildVisualGroupA(final String contentId, final int count,
+      final String value) {
+    final ObjectNode visGroup = mapper.createObjectNode();
+    putGroupDef(visGroup);
+    visGroup.put(VIS_CONTENT_ID, contentId);
+    visGroup.put(VIS_NODE_ID, ND_A);
+    visGroup.put(VIS_CONTENT_COUNT, count);
+    final ArrayNode children = visGroup.putArray(VIS_CHILDREN);
+
+    final ObjectNode visField = mapper.createObjectNode();
+    children.add(visField);
+    putFieldDef(visField, BT_FIELD_DUMMY_X);
+    visField.put(VIS_VALUE, value);
+    return visGroup;
+  }
+
+  @Override
+  protected VisualModel setupVisualModel(final ObjectMapper objectMapper,
+      final SdkVersion sdkVer, final String noticeSubTypeForTest) {
+    final VisualModel visualModel = super.setupVisualModel(objectMapper, sdkVer,
+        noticeSubTypeForTest);
+    final ArrayNode visRootChildren = visualModel.getVisRootChildren();
+    visRootChildren.add(buildVisualGroupA("GR-A1", 1, "x1"));
+    visRootChildren.add(buildVisualGroupA("GR-A2", 2, "x2"));
+    return new VisualModel(visualModel.getVisRoot());
+  }
+
+  @Override
+  protected Map<String, JsonNode> setupFieldsJsonXmlStructureNodes(
+      final ObjectMapper objectMapper) {
+    final Map<String, JsonNode> nodeById = super.setupFieldsJsonXmlStructureNodes(objectMapper);
+    final ObjectNode node = objectMapper.createObjectNode();
+    nodeById.put(ND_A, node);
+    node.put(KEY_NODE_ID, ND_A);
+    node.put(KEY_NODE_PARENT_ID, ND_ROOT);
+    node.put(KEY_XPATH_ABS, "/*/a");
+    node.put(KEY_XPATH_REL, "a");
+    SaveNoticeTest.nodePutRepeatable(node, true);
+    return Collections.unmodifiableMap(nodeById);
+  }
+
+  @Override
+  protected Map<String, JsonNode> setupFieldsJsonFields(final ObjectMapper objectMapper) {
+    final Map<String, JsonNode> fieldById = super.setupFieldsJsonFields(objectMapper);
+    final ObjectNode field = objectMapper.createObjectNode();
+    fieldById.put(BT_FIELD_DUMMY_X, field);
+    field.put(KEY_FIELD_ID, BT_FIELD_DUMMY_X);
+    field.put(KEY_PARENT_NODE_ID, ND_A);
+    field.put(KEY_XPATH_ABS, "/*/a/x");
+    field.put(KEY_XPATH_REL, "x");
+    field.put(KEY_TYPE, TYPE_TEXT);
+    SaveNoticeTest.fieldPutRepeatable(field, false);
+    return fieldById;
+  }
+
+  private FieldsAndNodes buildFieldsAndNodes() {
+    return new FieldsAndNodes(setupFieldsJsonFields(mapper),
+        setupFieldsJsonXmlStructureNodes(mapper), sdkVersion);
+  }
+
+  private Map<String, JsonNode> buildNoticeInfoBySubtype() {
+    final Map<String, JsonNode> noticeInfoBySubtype = new HashMap<>();
+    final ObjectNode info = mapper.createObjectNode();
+    info.put("documentType", NOTICE_DOCUMENT_TYPE);
+    noticeInfoBySubtype.put(NOTICE_SUB_TYPE, info);
+    return noticeInfoBySubtype;
+  }
+
+  private NoticeSession buildSession(final ObjectNode visRoot)
+      throws ParserConfigurationException, SAXException, IOException {
+    return new NoticeSession(visRoot, buildFieldsAndNodes(), buildNoticeInfoBySubtype(),
+        DummySdk.buildDocInfoByType(sdkVersion), true, sdkService.getSdkRootFolder());
+  }
+
+  /**
+   * @return The XML of a full build of the visual model, without session
+   */
+  private String buildFullXml(final ObjectNode visRoot)
+      throws ParserConfigurationException, SAXException, IOException {
+    final FieldsAndNodes fieldsAndNodes = buildFieldsAndNodes();
+    final ConceptualModel conceptModel =
+        new VisualModel(visRoot).toConceptualModel(fieldsAndNodes);
+    return PhysicalModel.buildPhysicalModel(conceptModel, fieldsAndNodes,
+        buildNoticeInfoBySubtype(), DummySdk.buildDocInfoByType(sdkVersion), true, true,
+        sdkService.getSdkRootFolder()).toXmlText(false);
+  }
+
+  private JsonNode patch(final ObjectNode... operations) {
+    final ArrayNode patch = mapper.createArrayNode();
+    for (final ObjectNode operation : operations) {
+      patch.add(operation);
+    }
+    return patch;
+  }
+
+  private ObjectNode operation(final String op, final String path, final JsonNode value) {
+    final ObjectNode operation = mapper.createObjectNode();
+    operation.put("op", op);
+    operation.put("path", path);
+    if (value != null) {
+      operation.set("value", value);
+    }
+    return operation;
+  }
+
+  @Test
+  public final void testPatchFieldValue()
+      throws ParserConfigurationException, SAXException, IOException {
+    final ObjectNode visRoot =
+        (ObjectNode) setupVisualModel(mapper, sdkVersion, NOTICE_SUB_TYPE).getVisRoot();
+    final NoticeSession session = buildSession(visRoot);
+    assertEquals(buildFullXml(visRoot), session.getPhysicalModel().toXmlText(false));
+    assertEquals(1, session.getFullBuildCount());
+
+    final JsonNode patch =
+        patch(operation("replace", VALUE_OF_A2, mapper.getNodeFactory().textNode("y2")));
+    final PhysicalModel physicalModel = session.applyPatch(patch);
+    VisualModelPatch.apply(visRoot, patch);
+
+    final String xml = physicalModel.toXmlText(false);
+    assertEquals(buildFullXml(visRoot), xml);
+    count(xml, 1, ">y2</x>");
+    count(xml, 1, ">x1</x>");
+    assertEquals(1, session.getFullBuildCount());
+    assertEquals(1, session.getIncrementalBuildCount());
+    assertEquals(1, session.getLastRebuiltSectionCount());
+    assertEquals(1, session.getRevision());
+  }
+
+  @Test
+  public final void testPatchReplaceGroup()
+      throws ParserConfigurationException, SAXException, IOException {
+    final ObjectNode visRoot =
+        (ObjectNode) setupVisualModel(mapper, sdkVersion, NOTICE_SUB_TYPE).getVisRoot();
+    final NoticeSession session = buildSession(visRoot);
+
+    final JsonNode patch = patch(operation("remove", "/children/" + VIS_INDEX_A2, null),
+        operation("add", "/children/-", buildVisualGroupA("GR-A2", 2, "z2")));
+    session.applyPatch(patch);
+    VisualModelPatch.apply(visRoot, patch);
+
+    final String xml = session.getPhysicalModel().toXmlText(false);
+    assertEquals(buildFullXml(visRoot), xml);
+    count(xml, 2, "editorNodeId=\"ND_A\"");
+    count(xml, 0, ">x2</x>");
+    count(xml, 1, ">z2</x>");
+    assertEquals(1, session.getIncrementalBuildCount());
+    assertEquals(1, session.getLastRebuiltSectionCount());
+
+    // Going back to the initial value only rebuilds the same section.
+    session.applyPatch(
+        patch(operation("replace", VALUE_OF_A2, mapper.getNodeFactory().textNode("x2"))));
+    count(session.getPhysicalModel().toXmlText(false), 1, ">x2</x>");
+    assertEquals(2, session.getIncrementalBuildCount());
+    assertEquals(1, session.getLastRebuiltSectionCount());
+  }
+
+  @Test
+  public final void testInvalidPatchKeepsSession()
+      throws ParserConfigurationException, SAXException, IOException {
+    final ObjectNode visRoot =
+        (ObjectNode) setupVisualModel(mapper, sdkVersion, NOTICE_SUB_TYPE).getVisRoot();
+    final NoticeSession session = buildSession(visRoot);
+    final String xml = session.getPhysicalModel().toXmlText(false);
+
+    assertThrows(InvalidNoticePatchException.class, () -> session.applyPatch(
+        patch(operation("replace", "/children/99/value", mapper.getNodeFactory().textNode("y")))));
+    assertThrows(InvalidNoticePatchException.class,
+        () -> session.applyPatch(patch(operation("replace", "/" + VisualModel.VIS_NOTICE_UUID,
+            mapper.getNodeFactory().textNode(UUID.randomUUID().toString())))));
+    // An operation without path.
+    final ObjectNode withoutPath = operation("remove", VALUE_OF_A2, null);
+    withoutPath.remove("path");
+    assertThrows(InvalidNoticePatchException.class, () -> session.applyPatch(patch(withoutPath)));
+    // An added item without contentId.
+    final ObjectNode itemWithoutContentId = buildVisualGroupA("GR-A3", 3, "x3");
+    itemWithoutContentId.remove(VIS_CONTENT_ID);
+    assertThrows(InvalidNoticePatchException.class, () -> session
+        .applyPatch(patch(operation("add", "/children/-", itemWithoutContentId))));
+    assertEquals(xml, session.getPhysicalModel().toXmlText(false));
+    assertEquals(0, session.getRevision());
+
+    // The session can still be patched.
+    session.applyPatch(
+        patch(operation("replace", VALUE_OF_A2, mapper.getNodeFactory().textNode("y2"))));
+    count(session.getPhysicalModel().toXmlText(false), 1, ">y2</x>");
+    assertEquals(1, session.getRevision());
+  }
+
+  @Test
+  public final void testParallelBuild()
+      throws ParserConfigurationException, SAXException, IOException {
+    final ObjectNode visRoot =
+        (ObjectNode) setupVisualModel(mapper, sdkVersion, NOTICE_SUB_TYPE).getVisRoot();
+    final ArrayNode visRootChildren = (ArrayNode) visRoot.get(VIS_CHILDREN);
+    visRootChildren.add(buildVisualGroupA("GR-A3", 3, "x3"));
+    visRootChildren.add(buildVisualGroupA("GR-A4", 4, "x4"));
+
+    final FieldsAndNodes fieldsAndNodes = buildFieldsAndNodes();
+    final ConceptualModel conceptModel =
+        new VisualModel(visRoot).toConceptualModel(fieldsAndNodes);
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final PhysicalModel physicalModel = PhysicalModel.buildPhysicalModel(conceptModel,
+          fieldsAndNodes, buildNoticeInfoBySubtype(), DummySdk.buildDocInfoByType(sdkVersion),
+          true, true, sdkService.getSdkRootFolder(), Optional.of(pool));
+      final String xml = physicalModel.toXmlText(false);
+      assertEquals(buildFullXml(visRoot), xml);
+      count(xml, 4, "editorNodeId=\"ND_A\"");
+
+      // The elements moved from the fragments still know their visual model item.
+      final NoticeErrorLocator errorLocator =
+          new NoticeErrorLocator(physicalModel.getDomDocument());
+      final NodeList fieldElems = physicalModel.getDomDocument().getElementsByTagName("x");
+      assertEquals(4, fieldElems.getLength());
+      for (int i = 0; i < fieldElems.getLength(); i++) {
+        final Node fieldElem = fieldElems.item(i);
+        final ObjectNode location = errorLocator.locate(fieldElem).get();
+        assertEquals(BT_FIELD_DUMMY_X, location.get("fieldId").asText());
+        assertEquals("GR-A" + fieldElem.getTextContent().substring(1),
+            location.get("contentPath").get(0).get(VIS_CONTENT_ID).asText());
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeStore.NoticeRevision;
+
+public class NoticeStoreTest {
+
+  private static final UUID NOTICE_1 = UUID.fromString("4d4dcfa6-2a3a-4a7b-8d3b-0b53e8e8b0a1");
+  private static final UUID NOTICE_2 = UUID.fromString("b0d4e1c2-7f3e-4d2a-9b6a-2f1e0c9d8e7f");
+
+  private static List<Path> listSegments(final Path folder) throws IOException {
+    try (Stream<Path> stream = Files.list(folder)) {
+      return stream.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testRevisionsAndDeduplication(@TempDir final Path folder) throws IOException {
+    final NoticeStore store = new NoticeStore(folder, 1024 * 1024);
+    final NoticeRevision r1 = store.save(NOTICE_1, "1.8.0", "{\"a\":1}", "<xml>1</xml>");
+    assertEquals(1, r1.getRevision());
+    assertEquals(2, store.getContentCount());
+
+    // Unchanged: no new revision.
+    assertEquals(r1, store.save(NOTICE_1, "1.8.0", "{\"a\":1}", "<xml>1</xml>"));
+
+    // Only the XML changed: the visual model content is shared.
+    final NoticeRevision r2 = store.save(NOTICE_1, "1.8.0", "{\"a\":1}", "<xml>2</xml>");
+    assertEquals(2, r2.getRevision());
+    assertEquals(r1.getVisualHash(), r2.getVisualHash());
+    assertEquals(3, store.getContentCount());
+
+    // Another notice with the same contents.
+    store.save(NOTICE_2, "1.8.0", "{\"a\":1}", "<xml>1</xml>");
+    assertEquals(3, store.getContentCount());
+
+    assertEquals("<xml>1</xml>", store.readXml(r1));
+    assertEquals("<xml>2</xml>", store.readXml(store.getRevision(NOTICE_1, Optional.empty()).get()));
+    assertEquals("{\"a\":1}", store.readVisualJson(r2));
+    assertTrue(store.getRevision(NOTICE_1, Optional.of(3)).isEmpty());
+    store.close();
+
+    // Reopen: the index is rebuilt from the segments.
+    final NoticeStore reopened = new NoticeStore(folder, 1024 * 1024);
+    assertEquals(2, reopened.listRevisions(NOTICE_1).size());
+    assertEquals(1, reopened.listRevisions(NOTICE_2).size());
+    assertEquals("<xml>2</xml>", reopened.readXml(reopened.listRevisions(NOTICE_1).get(1)));
+    final NoticeRevision r3 = reopened.save(NOTICE_1, "1.8.0", "{\"a\":3}", "<xml>3</xml>");
+    assertEquals(3, r3.getRevision());
+    reopened.close();
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSegmentsAndTruncatedRecord(@TempDir final Path folder) throws IOException {
+    // Small segments: a new segment for nearly each record.
+    final NoticeStore store = new NoticeStore(folder, 64);
+    for (int i = 1; i <= 5; i++) {
+      store.save(NOTICE_1, "1.8.0", "{\"i\":" + i + "}", "<xml>" + i + "</xml>");
+    }
+    store.close();
+    final List<Path> segments = listSegments(folder);
+    assertTrue(segments.size() > 1);
+
+    // Simulate a crash during a write: the last record is incomplete.
+    final Path last = segments.get(segments.size() - 1);
+    try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+    final NoticeStore reopened = new NoticeStore(folder, 64);
+    assertEquals(4, reopened.listRevisions(NOTICE_1).size());
+    assertEquals("<xml>4</xml>",
+        reopened.readXml(reopened.getRevision(NOTICE_1, Optional.empty()).get()));
+
+    // The next revision is written after the recovery.
+    final NoticeRevision r5 = reopened.save(NOTICE_1, "1.8.0", "{\"i\":5}", "<xml>5</xml>");
+    assertEquals(5, r5.getRevision());
+    assertEquals("<xml>5</xml>", reopened.readXml(r5));
+    reopened.close();
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testFailedWriteIsTruncated(@TempDir final Path folder) throws IOException {
+    final AtomicBoolean failNextWrite = new AtomicBoolean();
+    final NoticeStore store = new NoticeStore(folder, 1024 * 1024) {
+      @Override
+      void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        if (failNextWrite.getAndSet(false)) {
+          // Half of the record, then the disk is full.
+          buffer.limit(buffer.position() + buffer.remaining() / 2);
+          super.writeFully(channel, buffer);
+          throw new IOException("No space left on device");
+        }
+        super.writeFully(channel, buffer);
+      }
+    };
+    store.save(NOTICE_1, "1.8.0", "{\"i\":1}", "<xml>1</xml>");
+    failNextWrite.set(true);
+    assertThrows(IOException.class,
+        () -> store.save(NOTICE_1, "1.8.0", "{\"i\":2}", "<xml>2</xml>"));
+    assertEquals(1, store.listRevisions(NOTICE_1).size());
+
+    // The records written after the failure are found when the store is opened again.
+    store.save(NOTICE_2, "1.8.0", "{\"i\":3}", "<xml>3</xml>");
+    store.close();
+    final NoticeStore reopened = new NoticeStore(folder, 1024 * 1024);
+    assertEquals(1, reopened.listRevisions(NOTICE_1).size());
+    assertEquals("<xml>3</xml>",
+        reopened.readXml(reopened.getRevision(NOTICE_2, Optional.empty()).get()));
+    reopened.close();
+  }
+}
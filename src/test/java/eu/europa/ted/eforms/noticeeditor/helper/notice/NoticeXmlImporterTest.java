@@ -0,0 +1,155 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeXpathTrie.StepPredicate;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+public class NoticeXmlImporterTest {
+
+  private static final String NOTICE_UUID = "1c9a0c6e-0a3e-4b1b-9a43-28c6fd5d5bd6";
+
+  private static final String NOTICE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<BusinessRegistrationInformationNotice"
+      + " xmlns=\"http://data.europa.eu/p27/eforms-business-registration-information-notice/1\""
+      + " xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\""
+      + " xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\""
+      + " xmlns:ext=\"urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2\""
+      + " xmlns:efac=\"http://data.europa.eu/p27/eforms-ubl-extension-aggregate-components/1\""
+      + " xmlns:efext=\"http://data.europa.eu/p27/eforms-ubl-extensions/1\">"
+      + "<ext:UBLExtensions><ext:UBLExtension><ext:ExtensionContent><efext:EformsExtension>"
+      + "<efac:NoticeSubType><cbc:SubTypeCode listName=\"notice-subtype\">X02</cbc:SubTypeCode>"
+      + "</efac:NoticeSubType>"
+      + "</efext:EformsExtension></ext:ExtensionContent></ext:UBLExtension></ext:UBLExtensions>"
+      + "<cbc:CustomizationID>eforms-sdk-1.8</cbc:CustomizationID>"
+      + "<cbc:ID schemeName=\"notice-id\">" + NOTICE_UUID + "</cbc:ID>"
+      + "<cac:BusinessParty>"
+      + "<cbc:WebsiteURI>http://www.acme-solution.co.uk</cbc:WebsiteURI>"
+      + "<cac:PartyLegalEntity>"
+      + "<cbc:RegistrationName>ACME Solution</cbc:RegistrationName>"
+      + "<cbc:CompanyID schemeName=\"national\">The national number</cbc:CompanyID>"
+      + "</cac:PartyLegalEntity>"
+      + "<cac:PartyLegalEntity>"
+      + "<cbc:CompanyID schemeName=\"EU\">The EU number</cbc:CompanyID>"
+      + "<cbc:RegistrationDate>2020-11-14+01:00</cbc:RegistrationDate>"
+      + "</cac:PartyLegalEntity>"
+      + "</cac:BusinessParty>"
+      + "<cac:BusinessCapability>"
+      + "<cbc:CapabilityTypeCode listName=\"sector\">education</cbc:CapabilityTypeCode>"
+      + "</cac:BusinessCapability>"
+      + "<cac:BusinessCapability>"
+      + "<cbc:CapabilityTypeCode listName=\"sector\">health</cbc:CapabilityTypeCode>"
+      + "</cac:BusinessCapability>"
+      + "<efac:NoticePurpose><cbc:PurposeCode listName=\"notice-purpose\">reg</cbc:PurposeCode>"
+      + "</efac:NoticePurpose>"
+      + "<cbc:Unknown>Not in the SDK</cbc:Unknown>"
+      + "</BusinessRegistrationInformationNotice>";
+
+  /**
+   * The dummy X02 metadata of the save test.
+   */
+  private static FieldsAndNodes setupFieldsAndNodes() {
+    final ObjectMapper mapper = new ObjectMapper();
+    final SaveNoticeX02DummyTest metadata = new SaveNoticeX02DummyTest();
+    return new FieldsAndNodes(metadata.setupFieldsJsonFields(mapper),
+        metadata.setupFieldsJsonXmlStructureNodes(mapper), new SdkVersion("1.8.0"));
+  }
+
+  private static void findByContentId(final JsonNode item, final String contentId,
+      final List<JsonNode> found) {
+    if (contentId.equals(item.path(VisualModel.VIS_CONTENT_ID).asText())) {
+      found.add(item);
+    }
+    for (final JsonNode child : item.path(VisualModel.VIS_CHILDREN)) {
+      findByContentId(child, contentId, found);
+    }
+  }
+
+  private static List<JsonNode> findByContentId(final JsonNode item, final String contentId) {
+    final List<JsonNode> found = new ArrayList<>();
+    findByContentId(item, contentId, found);
+    return found;
+  }
+
+  private static String findValue(final JsonNode item, final String fieldId) {
+    final List<JsonNode> found = findByContentId(item, fieldId);
+    assertEquals(1, found.size(), fieldId);
+    return found.get(0).get(VisualModel.VIS_VALUE).asText();
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testImport() throws XMLStreamException {
+    final byte[] xml = NOTICE_XML.getBytes(StandardCharsets.UTF_8);
+    final SdkVersion sdkVersion = NoticeXmlImporter.readSdkVersion(new ByteArrayInputStream(xml));
+    assertEquals("1.8", sdkVersion.toStringWithoutPatch());
+
+    final FieldsAndNodes fieldsAndNodes = setupFieldsAndNodes();
+    final ObjectNode visRoot =
+        NoticeXmlImporter.importNotice(fieldsAndNodes, new ByteArrayInputStream(xml));
+
+    // Top level info.
+    assertEquals(ConceptualModel.ND_ROOT, visRoot.get(VisualModel.VIS_NODE_ID).asText());
+    assertEquals("eforms-sdk-1.8", visRoot.get(VisualModel.VIS_SDK_VERSION).asText());
+    assertEquals("X02", visRoot.get(VisualModel.VIS_NOTICE_SUB_TYPE).asText());
+    assertEquals(NOTICE_UUID, visRoot.get(VisualModel.VIS_NOTICE_UUID).asText());
+
+    // The two legal entities are told apart by the schemeName of their child.
+    final JsonNode localEntity = findByContentId(visRoot, "ND-LocalEntity").get(0);
+    assertEquals("ACME Solution", findValue(localEntity, "BT-500-Business"));
+    assertEquals("The national number", findValue(localEntity, "BT-501-Business-National"));
+    final JsonNode euEntity = findByContentId(visRoot, "ND-EuEntity").get(0);
+    assertEquals("The EU number", findValue(euEntity, "BT-501-Business-European"));
+    assertEquals("2020-11-14+01:00", findValue(euEntity, "OPP-113-Business-European"));
+    assertEquals("reg", findValue(visRoot, "OPP-100-Business"));
+
+    // Repeated field: counted among its siblings.
+    final List<JsonNode> sectors =
+        findByContentId(visRoot, ConceptualModel.FIELD_SECTOR_OF_ACTIVITY);
+    assertEquals(2, sectors.size());
+    assertEquals("health", sectors.get(1).get(VisualModel.VIS_VALUE).asText());
+    assertEquals(2, sectors.get(1).get(VisualModel.VIS_CONTENT_COUNT).asInt());
+
+    assertTrue(findByContentId(visRoot, "cbc:Unknown").isEmpty());
+
+    // The imported visual model can be saved again.
+    final ConceptualModel conceptualModel =
+        new VisualModel(visRoot).toConceptualModel(fieldsAndNodes);
+    assertEquals("X02", conceptualModel.getNoticeSubType());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testPredicates() {
+    final StepPredicate childAttribute =
+        StepPredicate.parse("not(cbc:CompanyID/@schemeName = 'EU')").get();
+    assertEquals(Optional.of("cbc:CompanyID"), childAttribute.getChildTagOpt());
+    assertEquals(Optional.of("schemeName"), childAttribute.getAttributeOpt());
+    assertTrue(childAttribute.test(List.of("national")));
+    assertFalse(childAttribute.test(List.of("EU")));
+
+    final StepPredicate ownAttribute = StepPredicate.parse("@listName=\"conditions\"").get();
+    assertTrue(ownAttribute.getChildTagOpt().isEmpty());
+    assertTrue(ownAttribute.test(List.of("conditions")));
+    assertFalse(ownAttribute.test(List.of()));
+
+    final StepPredicate childPresent = StepPredicate.parse("cbc:ID").get();
+    assertTrue(childPresent.getAttributeOpt().isEmpty());
+    assertTrue(childPresent.test(List.of("")));
+
+    assertTrue(StepPredicate.parse("cbc:A/cbc:B = 'x'").isEmpty());
+    assertTrue(StepPredicate.parse("@a = 'x' and @b = 'y'").isEmpty());
+    assertTrue(StepPredicate.parse("position() = 1").isEmpty());
+  }
+}
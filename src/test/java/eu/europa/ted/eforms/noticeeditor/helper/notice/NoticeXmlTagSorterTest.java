@@ -1,11 +1,17 @@
 package eu.europa.ted.eforms.noticeeditor.helper.notice;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
@@ -17,6 +23,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
@@ -155,12 +163,102 @@ public class NoticeXmlTagSorterTest {
     sortAndCompare(sdkVersion, xpathInst, docTypeInfo, docUnsorted1, docReference, false);
   }
 
+  @Test
+  public void testXmlParallelSortingSmallX02Xml()
+      throws IOException, ParserConfigurationException, SAXException {
+    final DocumentBuilder builder = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(true);
+    final SdkVersion sdkVersion = SDK_VERSION;
+    final DocumentTypeInfo docTypeInfo = DummySdk.getDummyBrinDocTypeInfo(sdkVersion);
+    final XPath xpathInst = XpathUtils.setupXpathInst(docTypeInfo, Optional.empty());
+
+    final Document docReference = DummySdk.getDummyX02NoticeReference(builder, sdkVersion);
+    final Document docUnsorted1 = DummySdk.getDummyX02NoticeUnsorted(builder, sdkVersion);
+
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      sortAndCompare(sdkVersion, xpathInst, docTypeInfo, docUnsorted1, docReference, true,
+          Optional.of(pool));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testXmlParallelSortingLargeXml()
+      throws IOException, ParserConfigurationException, SAXException {
+    final DocumentBuilder builder = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(true);
+    final SdkVersion sdkVersion = SDK_VERSION;
+    final DocumentTypeInfo docTypeInfo = DummySdk.getDummyBrinDocTypeInfo(sdkVersion);
+    final XPath xpathInst = XpathUtils.setupXpathInst(docTypeInfo, Optional.empty());
+
+    // Many lots, organisations, ... which are sorted in parallel.
+    final Document docReference = DummySdk.getDummyCan24MaximalReference(builder, sdkVersion);
+    XmlUtils.removeXmlComments(xpathInst, docReference);
+    final Document docUnsorted1 = DummySdk.getDummyCan24MaximalReference(builder, sdkVersion);
+    XmlUtils.removeXmlComments(xpathInst, docUnsorted1);
+    // The partitions must move elements, not only find them in order.
+    shuffleChildElements(docUnsorted1.getDocumentElement());
+    assertNotEquals(EditorXmlUtils.asText(docReference, true),
+        EditorXmlUtils.asText(docUnsorted1, true));
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      sortAndCompare(sdkVersion, xpathInst, docTypeInfo, docUnsorted1, docReference, false,
+          Optional.of(pool));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Puts the child elements of each element in the reverse order of their names, the elements of
+   * the same name keep their order. Like the sorter, an element moves with the texts above it.
+   * Sorting gives the original document back.
+   */
+  private static void shuffleChildElements(final Element parent) {
+    final Map<String, List<List<Node>>> unitsByName = new LinkedHashMap<>();
+    List<Node> unit = new ArrayList<>();
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      unit.add(child);
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        unitsByName.computeIfAbsent(((Element) child).getTagName(), k -> new ArrayList<>())
+            .add(unit);
+        shuffleChildElements((Element) child);
+        unit = new ArrayList<>();
+      }
+    }
+    final List<String> names = new ArrayList<>(unitsByName.keySet());
+    Collections.reverse(names);
+    for (final String name : names) {
+      for (final List<Node> nodes : unitsByName.get(name)) {
+        for (final Node node : nodes) {
+          parent.appendChild(node); // Moves it.
+        }
+      }
+    }
+    // The texts after the last element stay at the end.
+    for (final Node node : unit) {
+      parent.appendChild(node);
+    }
+  }
+
   private void sortAndCompare(final SdkVersion sdkVersion,
       final XPath xpathInst,
       final DocumentTypeInfo docTypeInfo,
       final Document docUnsorted,
       final Document docReference,
       final boolean validate) throws SAXException, IOException {
+    sortAndCompare(sdkVersion, xpathInst, docTypeInfo, docUnsorted, docReference, validate,
+        Optional.empty());
+  }
+
+  private void sortAndCompare(final SdkVersion sdkVersion,
+      final XPath xpathInst,
+      final DocumentTypeInfo docTypeInfo,
+      final Document docUnsorted,
+      final Document docReference,
+      final boolean validate,
+      final Optional<ForkJoinPool> poolOpt) throws SAXException, IOException {
 
     final FieldsAndNodes fieldsAndNodes = xmlWriteService.readFieldsAndNodes(sdkVersion);
     final Path pathToSpecificSdk = DummySdk.buildDummySdkPath(sdkVersion);
@@ -182,11 +280,14 @@ public class NoticeXmlTagSorterTest {
     final String textBeforeSorting = EditorXmlUtils.asText(docUnsorted, indentXml);
     validateXmlIsInvalid(validate, mainXsdPath, textBeforeSorting);
 
-    // Sort it.
-    sorter.sortXml(docUnsorted);
-
-    // Sort it again to ensure it is stable.
-    sorter.sortXml(docUnsorted);
+    // Sort it, then sort it again to ensure it is stable.
+    for (int i = 0; i < 2; i++) {
+      if (poolOpt.isPresent()) {
+        sorter.sortXml(docUnsorted.getDocumentElement(), poolOpt.get(), List.of());
+      } else {
+        sorter.sortXml(docUnsorted);
+      }
+    }
 
     final String textUnsortedAfterSort = EditorXmlUtils.asText(docUnsorted, indentXml);
 
@@ -0,0 +1,106 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Optional;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeXpathTrie.Target;
+import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+public class NoticeXpathTrieTest {
+
+  private static final String NOTICE_XML = "<BusinessRegistrationInformationNotice"
+      + " xmlns=\"http://data.europa.eu/p27/eforms-business-registration-information-notice/1\""
+      + " xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\""
+      + " xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\">"
+      + "<cac:BusinessParty>"
+      + "<cac:PartyLegalEntity>"
+      + "<cbc:CompanyID schemeName=\"national\">The national number</cbc:CompanyID>"
+      + "</cac:PartyLegalEntity>"
+      + "<cac:PartyLegalEntity>"
+      + "<cbc:CompanyID schemeName=\"EU\">The EU number</cbc:CompanyID>"
+      + "</cac:PartyLegalEntity>"
+      + "</cac:BusinessParty>"
+      + "<cac:BusinessCapability><cbc:CapabilityTypeCode>health</cbc:CapabilityTypeCode>"
+      + "</cac:BusinessCapability>"
+      + "</BusinessRegistrationInformationNotice>";
+
+  private static NoticeXpathTrie setupXpathTrie() {
+    final ObjectMapper mapper = new ObjectMapper();
+    final SaveNoticeX02DummyTest metadata = new SaveNoticeX02DummyTest();
+    return new FieldsAndNodes(metadata.setupFieldsJsonFields(mapper),
+        metadata.setupFieldsJsonXmlStructureNodes(mapper), new SdkVersion("1.8.0"))
+            .getXpathTrie();
+  }
+
+  private static Document parse(final String xml)
+      throws ParserConfigurationException, SAXException, IOException {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+  }
+
+  private static String getId(final Optional<Target> targetOpt) {
+    return targetOpt.map(Target::getId).orElse("");
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testResolveElement() throws Exception {
+    final NoticeXpathTrie xpathTrie = setupXpathTrie();
+    final Document doc = parse(NOTICE_XML);
+    assertEquals(ConceptualModel.ND_ROOT, getId(xpathTrie.resolve(doc.getDocumentElement())));
+
+    // The predicates are evaluated on the elements.
+    final NodeList entities = doc.getElementsByTagName("cac:PartyLegalEntity");
+    assertEquals("ND-LocalEntity", getId(xpathTrie.resolve((Element) entities.item(0))));
+    assertEquals("ND-EuEntity", getId(xpathTrie.resolve((Element) entities.item(1))));
+    final NodeList companyIds = doc.getElementsByTagName("cbc:CompanyID");
+    assertEquals("BT-501-Business-National",
+        getId(xpathTrie.resolve((Element) companyIds.item(0))));
+    assertEquals("BT-501-Business-European",
+        getId(xpathTrie.resolve((Element) companyIds.item(1))));
+
+    // Intermediary element of the xpath of a field, and its field.
+    final Element capability =
+        (Element) doc.getElementsByTagName("cac:BusinessCapability").item(0);
+    assertTrue(xpathTrie.resolve(capability).isEmpty());
+    final Element sector = (Element) capability.getFirstChild();
+    assertEquals(ConceptualModel.FIELD_SECTOR_OF_ACTIVITY, getId(xpathTrie.resolve(sector)));
+    assertEquals(ConceptualModel.FIELD_SECTOR_OF_ACTIVITY,
+        getId(xpathTrie.resolve(EditorXmlUtils.getNodePath(sector))));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testResolvePath() {
+    final NoticeXpathTrie xpathTrie = setupXpathTrie();
+    assertEquals(ConceptualModel.ND_ROOT, getId(xpathTrie.resolve("/ContractNotice")));
+    assertEquals("ND-BusinessParty", getId(xpathTrie.resolve("/X/cac:BusinessParty[1]")));
+
+    // Only the EU entity has a registration date.
+    assertEquals("OPP-113-Business-European", getId(xpathTrie
+        .resolve("/X/cac:BusinessParty/cac:PartyLegalEntity[2]/cbc:RegistrationDate")));
+    assertEquals("BT-500-Business", getId(xpathTrie.resolve(
+        "/*:X/*:BusinessParty[1]/*:PartyLegalEntity[namespace-uri()='urn:a/b'][1]"
+            + "/Q{urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2}"
+            + "RegistrationName")));
+    assertEquals("OPP-100-Business",
+        getId(xpathTrie.resolve("/X/efac:NoticePurpose/cbc:PurposeCode")));
+
+    assertTrue(xpathTrie.resolve("/X/cac:BusinessParty/cbc:Unknown").isEmpty());
+    assertTrue(xpathTrie.resolve("/X/cac:BusinessCapability").isEmpty());
+    assertTrue(xpathTrie.resolve("").isEmpty());
+  }
+}
@@ -0,0 +1,75 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * Checks the elements are inserted in the order of the dummy SDK XSDs.
+ */
+public class OrderedElementInserterTest {
+
+  private static final SdkVersion SDK_VERSION = new SdkVersion("1.8.0");
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testInsertInXsdOrder() throws Exception {
+    final DocumentTypeInfo docTypeInfo = DummySdk.getDummyBrinDocTypeInfo(SDK_VERSION);
+    final OrderedElementInserter inserter = OrderedElementInserter.create(docTypeInfo,
+        Optional.of(DummySdk.buildDummySdkPath(SDK_VERSION)
+            .resolve(docTypeInfo.getSdkXsdPathOpt().get())))
+        .get();
+
+    final Document doc =
+        SafeDocumentBuilder.getThreadLocalSafeDocumentBuilderAllowDoctype(true).newDocument();
+    final Element root = doc.createElementNS("", docTypeInfo.getRootElementTagName());
+    doc.appendChild(root);
+
+    // In the order of a conceptual model, not of the XSDs.
+    final Element businessParty = doc.createElementNS("", "cac:BusinessParty");
+    inserter.insert(root, businessParty);
+    inserter.insert(root, doc.createElementNS("", "efac:NoticeSubType"));
+    inserter.insert(root, doc.createElementNS("", "cbc:CustomizationID"));
+    inserter.insert(root, doc.createElementNS("", "ext:UBLExtensions"));
+
+    // Reused elements are moved to their position, not at the end.
+    inserter.insert(root, businessParty);
+    assertTrue(inserter.isComplete());
+    assertEquals(List.of("ext:UBLExtensions", "cbc:CustomizationID", "cac:BusinessParty",
+        "efac:NoticeSubType"), getChildTags(root));
+
+    // Elements of the same rank keep their build order.
+    final Element website1 = doc.createElementNS("", "cbc:WebsiteURI");
+    final Element website2 = doc.createElementNS("", "cbc:WebsiteURI");
+    final Element party = doc.createElementNS("", "cac:Party");
+    businessParty.appendChild(party);
+    inserter.insert(party, doc.createElementNS("", "cac:PartyLegalEntity"));
+    inserter.insert(party, website1);
+    inserter.insert(party, website2);
+    assertEquals(List.of("cbc:WebsiteURI", "cbc:WebsiteURI", "cac:PartyLegalEntity"),
+        getChildTags(party));
+    assertEquals(website1, party.getFirstChild());
+
+    // Unknown to the XSDs: appended, the notice must be sorted.
+    inserter.insert(root, doc.createElementNS("", "cbc:Unknown"));
+    assertFalse(inserter.isComplete());
+    assertEquals("cbc:Unknown", ((Element) root.getLastChild()).getTagName());
+  }
+
+  private static List<String> getChildTags(final Element parent) {
+    final List<String> tags = new ArrayList<>();
+    for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+      tags.add(((Element) child).getTagName());
+    }
+    return tags;
+  }
+}
@@ -0,0 +1,94 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.service.SdkService;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * Checks the ordered-insert strategy gives the same XML as append-then-sort on the dummy notices,
+ * with and without session.
+ */
+@SpringBootTest
+public class PhysicalBuildStrategyTest {
+
+  private static final SdkVersion SDK_VERSION = new SdkVersion("1.8.0");
+  private static final String NOTICE_SUB_TYPE = "X02";
+
+  /**
+   * Without the editor attributes, the XML is only made of notice elements.
+   */
+  private static final boolean DEBUG = false;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Autowired
+  private SdkService sdkService;
+
+  private Map<String, JsonNode> buildNoticeInfoBySubtype() {
+    final Map<String, JsonNode> noticeInfoBySubtype = new HashMap<>();
+    final ObjectNode info = mapper.createObjectNode();
+    info.put("documentType", "BRIN");
+    noticeInfoBySubtype.put(NOTICE_SUB_TYPE, info);
+    return noticeInfoBySubtype;
+  }
+
+  private String buildXml(final ObjectNode visRoot, final FieldsAndNodes fieldsAndNodes,
+      final PhysicalBuildStrategy strategy) throws Exception {
+    final ConceptualModel conceptModel =
+        new VisualModel(visRoot).toConceptualModel(fieldsAndNodes);
+    return PhysicalModel.buildPhysicalModel(conceptModel, fieldsAndNodes,
+        buildNoticeInfoBySubtype(), DummySdk.buildDocInfoByType(SDK_VERSION), DEBUG, true,
+        sdkService.getSdkRootFolder(), Optional.empty(), strategy).toXmlText(false);
+  }
+
+  @Test
+  public void testSameXmlOnDummyNotices() throws Exception {
+    for (final SaveNoticeTest dummy : List.of(new SaveNoticeX02DummyTest(),
+        new SaveNoticeRepeatableTest(), new SaveNoticeFillingTest())) {
+      final FieldsAndNodes fieldsAndNodes = new FieldsAndNodes(
+          dummy.setupFieldsJsonFields(mapper), dummy.setupFieldsJsonXmlStructureNodes(mapper),
+          SDK_VERSION);
+      final ObjectNode visRoot = (ObjectNode) dummy
+          .setupVisualModel(mapper, SDK_VERSION, NOTICE_SUB_TYPE).getVisRoot();
+      final String message = dummy.getClass().getSimpleName();
+
+      final String sortedXml =
+          buildXml(visRoot, fieldsAndNodes, PhysicalBuildStrategy.APPEND_THEN_SORT);
+      assertEquals(sortedXml,
+          buildXml(visRoot, fieldsAndNodes, PhysicalBuildStrategy.ORDERED_INSERT), message);
+
+      // By section, as for the saves with a session.
+      final NoticeSession session =
+          new NoticeSession(visRoot, fieldsAndNodes, buildNoticeInfoBySubtype(),
+              DummySdk.buildDocInfoByType(SDK_VERSION), DEBUG, sdkService.getSdkRootFolder(),
+              PhysicalBuildStrategy.ORDERED_INSERT);
+      assertEquals(sortedXml, session.getPhysicalModel().toXmlText(false), message);
+
+      // Then by patch: the first item of the root is added again at the end (a section is
+      // rebuilt), then removed.
+      final ArrayNode addPatch = mapper.createArrayNode();
+      addPatch.addObject().put("op", "add").put("path", "/" + VisualModel.VIS_CHILDREN + "/-")
+          .set("value", visRoot.get(VisualModel.VIS_CHILDREN).get(0).deepCopy());
+      final ArrayNode removePatch = mapper.createArrayNode();
+      removePatch.addObject().put("op", "remove").put("path",
+          "/" + VisualModel.VIS_CHILDREN + "/" + visRoot.get(VisualModel.VIS_CHILDREN).size());
+      for (final ArrayNode patch : List.of(addPatch, removePatch)) {
+        session.applyPatch(patch);
+        VisualModelPatch.apply(visRoot, patch);
+        assertEquals(buildXml(visRoot, fieldsAndNodes, PhysicalBuildStrategy.APPEND_THEN_SORT),
+            session.getPhysicalModel().toXmlText(false), message);
+      }
+    }
+  }
+}
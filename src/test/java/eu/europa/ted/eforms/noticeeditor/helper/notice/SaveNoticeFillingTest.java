@@ -1,6 +1,8 @@
 package eu.europa.ted.eforms.noticeeditor.helper.notice;
 
 import static eu.europa.ted.eforms.noticeeditor.helper.notice.VisualModel.putFieldDef;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
@@ -192,4 +194,18 @@ public class SaveNoticeFillingTest extends SaveNoticeTest {
     count(xml, 1, "editorCounterSelf=\"1\" editorFieldId=\"BT-field-z\">value-of-field-z</z>");
   }
 
+  @Test
+  public final void testNodeAncestorTables() {
+    final ObjectMapper mapper = new ObjectMapper();
+    final FieldsAndNodes fieldsAndNodes = new FieldsAndNodes(setupFieldsJsonFields(mapper),
+        setupFieldsJsonXmlStructureNodes(mapper), new SdkVersion("1.8.0"));
+
+    // The parent first, up to the root.
+    final int[] ancestors = fieldsAndNodes.getNodeAncestorIndexes(ND_Y);
+    assertEquals(2, ancestors.length);
+    assertEquals(ND_X, fieldsAndNodes.getNodeIdByIndex(ancestors[0]));
+    assertEquals(ND_ROOT, fieldsAndNodes.getNodeIdByIndex(ancestors[1]));
+    assertFalse(fieldsAndNodes.isNodeRepeatableByIndex(ancestors[0]));
+    assertEquals(0, fieldsAndNodes.getNodeAncestorIndexes(ND_ROOT).length);
+  }
 }
@@ -0,0 +1,62 @@
+package eu.europa.ted.eforms.noticeeditor.helper.notice;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class VisualModelPatchTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static ObjectNode read(final String json) throws Exception {
+    return (ObjectNode) MAPPER.readTree(json.replace('\'', '"'));
+  }
+
+  private static JsonNode readPatch(final String json) throws Exception {
+    return MAPPER.readTree(json.replace('\'', '"'));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testAddRemoveReplace() throws Exception {
+    final ObjectNode visRoot =
+        read("{'children':[{'value':'a'},{'value':'b'}],'noticeUuid':'u'}");
+    VisualModelPatch.apply(visRoot, readPatch("["
+        + "{'op':'replace','path':'/children/1/value','value':'B'},"
+        + "{'op':'add','path':'/children/0','value':{'value':'first'}},"
+        + "{'op':'add','path':'/children/-','value':{'value':'last'}},"
+        + "{'op':'remove','path':'/children/1'},"
+        + "{'op':'add','path':'/children/0/contentCount','value':2}]"));
+    assertEquals(read("{'children':[{'value':'first','contentCount':2},{'value':'B'},"
+        + "{'value':'last'}],'noticeUuid':'u'}"), visRoot);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testInvalidPatches() throws Exception {
+    final ObjectNode visRoot = read("{'children':[{'value':'a'}]}");
+    assertThrows(IllegalArgumentException.class, () -> VisualModelPatch.apply(visRoot,
+        readPatch("[{'op':'remove','path':'/children/3'}]")));
+    assertThrows(IllegalArgumentException.class, () -> VisualModelPatch.apply(visRoot,
+        readPatch("[{'op':'remove','path':'/missing/0'}]")));
+    assertThrows(IllegalArgumentException.class, () -> VisualModelPatch.apply(visRoot,
+        readPatch("[{'op':'move','path':'/children/0'}]")));
+    assertThrows(IllegalArgumentException.class, () -> VisualModelPatch.apply(visRoot,
+        readPatch("[{'op':'add','path':'/children/0'}]")));
+    assertThrows(IllegalArgumentException.class,
+        () -> VisualModelPatch.apply(visRoot, readPatch("[{'op':'replace','path':''}]")));
+    assertThrows(IllegalArgumentException.class,
+        () -> VisualModelPatch.apply(visRoot, readPatch("{'op':'remove'}")));
+    assertThrows(IllegalArgumentException.class,
+        () -> VisualModelPatch.apply(visRoot, readPatch("[{'op':'remove'}]")));
+    assertThrows(IllegalArgumentException.class,
+        () -> VisualModelPatch.apply(visRoot, readPatch("[{'path':'/children/0'}]")));
+    assertThrows(IllegalArgumentException.class,
+        () -> VisualModelPatch.apply(visRoot, readPatch("[{'op':'remove','path':0}]")));
+    assertThrows(IllegalArgumentException.class,
+        () -> VisualModelPatch.apply(visRoot, readPatch("['remove']")));
+  }
+}
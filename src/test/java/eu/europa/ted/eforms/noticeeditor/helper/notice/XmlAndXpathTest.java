@@ -1,7 +1,11 @@
 package eu.europa.ted.eforms.noticeeditor.helper.notice;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
@@ -13,6 +17,7 @@ import org.w3c.dom.Element;
 import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
 import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
 import eu.europa.ted.eforms.noticeeditor.util.XmlUtils;
+import eu.europa.ted.eforms.noticeeditor.util.XpathUtils;
 import eu.europa.ted.eforms.sdk.SdkVersion;
 
 /**
@@ -52,6 +57,33 @@ public class XmlAndXpathTest {
     assertEquals(1, evalLength(xPathInst, rootElement, "cbc:CustomizationID"));
   }
 
+  @SuppressWarnings("static-method")
+  @Test
+  public void xpathInstancesShareNamespacesTest() throws Exception {
+    final SdkVersion sdkVersion = new SdkVersion("1.8.0");
+    // Parsed again like for each notice, the namespaces are set up once.
+    assertSame(XpathUtils.getNamespaceUriByPrefix(DummySdk.getDummyBrinDocTypeInfo(sdkVersion)),
+        XpathUtils.getNamespaceUriByPrefix(DummySdk.getDummyBrinDocTypeInfo(sdkVersion)));
+
+    final DocumentTypeInfo docTypeInfo = DummySdk.getDummyBrinDocTypeInfo(sdkVersion);
+    final XPath xpathInst = XpathUtils.setupXpathInst(docTypeInfo, Optional.empty());
+    assertNotSame(xpathInst, XpathUtils.setupXpathInst(docTypeInfo, Optional.empty()));
+
+    final Document doc = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(true)
+        .newDocument();
+    final Element rootElement = doc.createElement("BusinessRegistrationInformationNotice");
+    doc.appendChild(rootElement);
+    // Declares the prefixes in the document, like for a notice.
+    PhysicalModel.setXmlNamespaces(docTypeInfo, rootElement);
+    rootElement.appendChild(doc.createElement("cbc:CustomizationID"));
+    assertEquals(1, evalLength(xpathInst, rootElement, "cbc:CustomizationID"));
+
+    // Another thread, another factory.
+    final XPath otherXpathInst = CompletableFuture
+        .supplyAsync(() -> XpathUtils.setupXpathInst(docTypeInfo, Optional.empty())).get();
+    assertEquals(1, evalLength(otherXpathInst, rootElement, "cbc:CustomizationID"));
+  }
+
   private static int evalLength(final XPath xPathInst, final Element elem, final String xpathExpr) {
     return XmlUtils.evaluateXpathAsNodeList(xPathInst, elem, xpathExpr, elem.getTagName())
         .getLength();
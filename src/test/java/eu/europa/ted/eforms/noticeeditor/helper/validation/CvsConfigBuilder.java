@@ -0,0 +1,144 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+/**
+ * Builds a {@link CvsConfig} for unit tests with named setters, instead of the long list of
+ * constructor arguments used by the Spring binding.
+ *
+ * <p>
+ * The defaults are those of the application, except that there is no retry, no circuit breaker
+ * and no result cache: a test enables what it checks.
+ * </p>
+ */
+public class CvsConfigBuilder {
+
+  private final String url;
+  private String apiKey = StubCvsServer.API_KEY;
+  private int timeoutSeconds = 8;
+  private int asyncThreads = 4;
+  private int asyncQueueSize = 100;
+  private int asyncMaxJobs = 1000;
+  private int asyncJobTtlSeconds = 600;
+  private int cacheMaxEntries = 0;
+  private int cacheMaxMegaChars = 64;
+  private String cacheFolder = "";
+  private int cacheMaxFiles = 2000;
+  private int poolMaxTotal = 10;
+  private int poolMaxPerRoute = 5;
+  private int retryMaxAttempts = 1;
+  private int retryBaseDelayMillis = 10;
+  private int retryMaxDelayMillis = 10;
+  private int breakerFailureThreshold = 0;
+  private int breakerOpenSeconds = 30;
+  private int maxConcurrentCalls = 5;
+  private int queueTimeoutSeconds = 30;
+
+  /**
+   * @param url The URL of the CVS, usually the one of a {@link StubCvsServer}
+   */
+  public CvsConfigBuilder(final String url) {
+    this.url = url;
+  }
+
+  public CvsConfigBuilder apiKey(final String value) {
+    this.apiKey = value;
+    return this;
+  }
+
+  public CvsConfigBuilder timeoutSeconds(final int value) {
+    this.timeoutSeconds = value;
+    return this;
+  }
+
+  public CvsConfigBuilder asyncThreads(final int value) {
+    this.asyncThreads = value;
+    return this;
+  }
+
+  public CvsConfigBuilder asyncQueueSize(final int value) {
+    this.asyncQueueSize = value;
+    return this;
+  }
+
+  public CvsConfigBuilder asyncMaxJobs(final int value) {
+    this.asyncMaxJobs = value;
+    return this;
+  }
+
+  public CvsConfigBuilder asyncJobTtlSeconds(final int value) {
+    this.asyncJobTtlSeconds = value;
+    return this;
+  }
+
+  public CvsConfigBuilder cacheMaxEntries(final int value) {
+    this.cacheMaxEntries = value;
+    return this;
+  }
+
+  public CvsConfigBuilder cacheMaxMegaChars(final int value) {
+    this.cacheMaxMegaChars = value;
+    return this;
+  }
+
+  public CvsConfigBuilder cacheFolder(final String value) {
+    this.cacheFolder = value;
+    return this;
+  }
+
+  public CvsConfigBuilder cacheMaxFiles(final int value) {
+    this.cacheMaxFiles = value;
+    return this;
+  }
+
+  public CvsConfigBuilder poolMaxTotal(final int value) {
+    this.poolMaxTotal = value;
+    return this;
+  }
+
+  public CvsConfigBuilder poolMaxPerRoute(final int value) {
+    this.poolMaxPerRoute = value;
+    return this;
+  }
+
+  public CvsConfigBuilder retryMaxAttempts(final int value) {
+    this.retryMaxAttempts = value;
+    return this;
+  }
+
+  public CvsConfigBuilder retryBaseDelayMillis(final int value) {
+    this.retryBaseDelayMillis = value;
+    return this;
+  }
+
+  public CvsConfigBuilder retryMaxDelayMillis(final int value) {
+    this.retryMaxDelayMillis = value;
+    return this;
+  }
+
+  public CvsConfigBuilder breakerFailureThreshold(final int value) {
+    this.breakerFailureThreshold = value;
+    return this;
+  }
+
+  public CvsConfigBuilder breakerOpenSeconds(final int value) {
+    this.breakerOpenSeconds = value;
+    return this;
+  }
+
+  public CvsConfigBuilder maxConcurrentCalls(final int value) {
+    this.maxConcurrentCalls = value;
+    return this;
+  }
+
+  public CvsConfigBuilder queueTimeoutSeconds(final int value) {
+    this.queueTimeoutSeconds = value;
+    return this;
+  }
+
+  public CvsConfig build() {
+    return new CvsConfig(apiKey, url, timeoutSeconds, asyncThreads, asyncQueueSize, asyncMaxJobs,
+        asyncJobTtlSeconds, cacheMaxEntries, cacheMaxMegaChars, cacheFolder, cacheMaxFiles,
+        poolMaxTotal, poolMaxPerRoute, retryMaxAttempts, retryBaseDelayMillis,
+        retryMaxDelayMillis, breakerFailureThreshold, breakerOpenSeconds, maxConcurrentCalls,
+        queueTimeoutSeconds);
+  }
+}
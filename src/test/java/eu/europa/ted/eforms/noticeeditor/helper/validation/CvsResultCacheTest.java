@@ -0,0 +1,93 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import eu.europa.ted.eforms.noticeeditor.service.NoticeValidationService;
+
+public class CvsResultCacheTest {
+
+  private static final String XML = "<ContractNotice><cbc:ID>x</cbc:ID></ContractNotice>";
+
+  private static String key(final String xml, final Optional<CsvValidationMode> mode) {
+    return CvsResultCache.buildKey(xml, Optional.of("1.8.0"), Optional.of("en"), mode);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testKey() {
+    final String key = key(XML, Optional.empty());
+    assertEquals(64, key.length());
+
+    // Line endings and surrounding whitespace do not matter.
+    assertEquals(key, key(" \n" + XML + "\r\n", Optional.empty()));
+
+    // Any change of the content or of the parameters matters.
+    assertNotEquals(key, key(XML.replace(">x<", ">y<"), Optional.empty()));
+    assertNotEquals(key, key(XML, Optional.of(CsvValidationMode.STATIC)));
+    assertNotEquals(key(XML, Optional.of(CsvValidationMode.STATIC)),
+        key(XML, Optional.of(CsvValidationMode.DYNAMIC)));
+    assertNotEquals(key, CvsResultCache.buildKey(XML, Optional.of("1.8.0"), Optional.empty(),
+        Optional.empty()));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    final CvsResultCache cache = new CvsResultCache(2, 1000, Optional.empty(), 1);
+    cache.put("a", "svrl-a");
+    cache.put("b", "svrl-b");
+    cache.get("a"); // Now b is the least recently used.
+    cache.put("c", "svrl-c");
+    assertEquals(Optional.of("svrl-a"), cache.get("a"));
+    assertTrue(cache.get("b").isEmpty());
+    assertEquals(Optional.of("svrl-c"), cache.get("c"));
+
+    // Bounded by size: this evicts everything else.
+    cache.put("d", "x".repeat(1000));
+    assertEquals(1, cache.size());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testPersistedFolder(@TempDir final Path folder) throws Exception {
+    final CvsResultCache cache = new CvsResultCache(10, 1000, Optional.of(folder), 2);
+    cache.put("a", "svrl-a");
+    cache.put("b", "svrl-b");
+    cache.put("c", "svrl-c"); // Too many files, a is deleted.
+    assertEquals(2, Files.list(folder).count());
+
+    // Like after a restart: memory is empty but the files are there.
+    final CvsResultCache reloaded = new CvsResultCache(10, 1000, Optional.of(folder), 2);
+    assertEquals(0, reloaded.size());
+    assertEquals(Optional.of("svrl-c"), reloaded.get("c"));
+    assertTrue(reloaded.get("a").isEmpty());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testRepeatedValidationDoesNotCallCvs() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      final CvsConfig cvsConfig =
+          new CvsConfigBuilder(stub.getUrl()).cacheMaxEntries(10).cacheMaxMegaChars(1).build();
+      final NoticeValidationService service = new NoticeValidationService(cvsConfig, "");
+
+      final String svrl1 = service.validateNoticeXmlUsingCvs(XML, Optional.empty(),
+          Optional.empty(), Optional.empty());
+      final String svrl2 = service.validateNoticeXmlUsingCvs(XML + "\n", Optional.empty(),
+          Optional.empty(), Optional.empty());
+      assertEquals(svrl1, svrl2);
+      assertEquals(1, stub.getRequestCount());
+
+      // Other parameters, other result.
+      service.validateNoticeXmlUsingCvs(XML, Optional.empty(), Optional.of("fr"),
+          Optional.empty());
+      assertEquals(2, stub.getRequestCount());
+    }
+  }
+}
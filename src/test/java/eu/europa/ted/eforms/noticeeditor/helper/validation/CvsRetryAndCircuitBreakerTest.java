@@ -0,0 +1,195 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+
+/**
+ * Retry with backoff and circuit breaker of the CVS client, using a local stub of the CVS API.
+ */
+public class CvsRetryAndCircuitBreakerTest {
+
+  private static final String NOTICE_XML = "<ContractNotice/>";
+
+  private static CvsApiClient buildClient(final StubCvsServer stub,
+      final CvsRetryPolicy retryPolicy, final Optional<CvsCircuitBreaker> breakerOpt) {
+    final CloseableHttpClient httpClient = CvsApiClient.createDefaultCloseableHttpClient(8, false,
+        "", new CvsPoolingConnectionManager(2, 2));
+    return new CvsApiClient(httpClient, JsonUtils.getStandardJacksonObjectMapper(), stub.getUrl(),
+        StubCvsServer.API_KEY, Optional.empty(), retryPolicy, breakerOpt);
+  }
+
+  private static String validate(final CvsApiClient client) throws Exception {
+    return client.validateNoticeXml(NOTICE_XML, Optional.empty(), Optional.empty(),
+        Optional.empty());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testRetryWhenOverloaded() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.enqueueResponse(503, "", null);
+      stub.enqueueResponse(429, "", "0");
+      final CvsRetryPolicy retryPolicy =
+          new CvsRetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(100));
+      final String svrl = validate(buildClient(stub, retryPolicy, Optional.empty()));
+      assertEquals(StubCvsServer.readExampleSvrl(), svrl);
+      assertEquals(3, stub.getRequestCount());
+      assertEquals(2, retryPolicy.getRetryCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testNoRetryWhenRetryAfterTooLong() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.enqueueResponse(503, "", "3600");
+      final CvsRetryPolicy retryPolicy =
+          new CvsRetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(100));
+      final CvsApiException ex = assertThrows(CvsApiException.class,
+          () -> validate(buildClient(stub, retryPolicy, Optional.empty())));
+      assertEquals(503, ex.getStatusCode());
+      assertEquals(Optional.of(3600L), ex.getRetryAfterSeconds());
+      assertEquals(1, stub.getRequestCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testNoRetryOnServerError() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setResponse(500, "");
+      final CvsRetryPolicy retryPolicy =
+          new CvsRetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(100));
+      assertThrows(CvsApiException.class,
+          () -> validate(buildClient(stub, retryPolicy, Optional.empty())));
+      assertEquals(1, stub.getRequestCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCircuitBreakerFailsFast() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setResponse(500, "");
+      final CvsCircuitBreaker breaker = new CvsCircuitBreaker(2, Duration.ofMinutes(10));
+      final CvsApiClient client =
+          buildClient(stub, CvsRetryPolicy.noRetry(), Optional.of(breaker));
+      assertThrows(CvsApiException.class, () -> validate(client));
+      assertThrows(CvsApiException.class, () -> validate(client));
+      assertEquals(CvsCircuitBreaker.State.OPEN, breaker.getState());
+
+      // The CVS is not called anymore.
+      final CvsApiException ex = assertThrows(CvsApiException.class, () -> validate(client));
+      assertEquals(503, ex.getStatusCode());
+      assertEquals(2, stub.getRequestCount());
+      assertEquals(1, breaker.getRejectedCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCircuitBreakerWithRetries() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setResponse(503, "");
+      final CvsRetryPolicy retryPolicy =
+          new CvsRetryPolicy(3, Duration.ofMillis(10), Duration.ofMillis(100));
+      final CvsCircuitBreaker breaker = new CvsCircuitBreaker(2, Duration.ofMinutes(10));
+      final CvsApiClient client = buildClient(stub, retryPolicy, Optional.of(breaker));
+
+      // A call with its retries counts as a single failure.
+      assertThrows(CvsApiException.class, () -> validate(client));
+      assertEquals(3, stub.getRequestCount());
+      assertEquals(CvsCircuitBreaker.State.CLOSED, breaker.getState());
+      assertThrows(CvsApiException.class, () -> validate(client));
+      assertEquals(6, stub.getRequestCount());
+      assertEquals(CvsCircuitBreaker.State.OPEN, breaker.getState());
+      assertEquals(4, retryPolicy.getRetryCount());
+
+      // Open: fails fast, without retry.
+      final CvsApiException ex =
+          assertThrows(CvsCircuitOpenException.class, () -> validate(client));
+      assertEquals(503, ex.getStatusCode());
+      assertEquals(6, stub.getRequestCount());
+      assertEquals(4, retryPolicy.getRetryCount());
+      assertEquals(1, breaker.getRejectedCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCircuitBreakerTrialCall() {
+    final MutableClock clock = new MutableClock();
+    final CvsCircuitBreaker breaker = new CvsCircuitBreaker(1, Duration.ofSeconds(30), clock);
+    assertTrue(breaker.tryAcquire());
+    breaker.onFailure();
+    assertEquals(CvsCircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+
+    // After the open duration, a single trial call.
+    clock.advance(Duration.ofSeconds(30));
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+    assertEquals(CvsCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+    // The trial fails: open again.
+    breaker.onFailure();
+    assertEquals(CvsCircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+
+    // The next trial succeeds: closed.
+    clock.advance(Duration.ofSeconds(30));
+    assertTrue(breaker.tryAcquire());
+    breaker.onSuccess();
+    assertEquals(CvsCircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testBackoffDelays() {
+    final CvsRetryPolicy policy =
+        new CvsRetryPolicy(4, Duration.ofMillis(100), Duration.ofMillis(300));
+    final long first = policy.computeDelay(1, Optional.empty()).orElseThrow().toMillis();
+    assertTrue(first >= 100 && first <= 120, "first=" + first);
+    final long second = policy.computeDelay(2, Optional.empty()).orElseThrow().toMillis();
+    assertTrue(second >= 200 && second <= 240, "second=" + second);
+    assertEquals(300, policy.computeDelay(3, Optional.empty()).orElseThrow().toMillis());
+    assertTrue(policy.computeDelay(4, Optional.empty()).isEmpty());
+    assertEquals(Duration.ofSeconds(0), policy.computeDelay(1, Optional.of(0L)).orElseThrow());
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant now = Instant.parse("2023-01-01T00:00:00Z");
+
+    void advance(final Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneOffset getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
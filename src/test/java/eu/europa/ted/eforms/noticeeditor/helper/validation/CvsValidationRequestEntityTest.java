@@ -0,0 +1,50 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
+
+public class CvsValidationRequestEntityTest {
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testPayloadSameAsBase64Encoder() throws IOException {
+    // Non ASCII characters to check the UTF-8 encoding, various lengths for the base64 padding.
+    final ObjectMapper mapper = JsonUtils.getStandardJacksonObjectMapper();
+    for (final String noticeXml : new String[] {"<a>é</a>", "<ab>€ 😀</ab>",
+        "<abc>x</abc>\n".repeat(5000)}) {
+      final Map<String, String> otherFields = new LinkedHashMap<>();
+      otherFields.put("language", "en");
+      otherFields.put("validationMode", "static");
+      final CvsValidationRequestEntity entity =
+          new CvsValidationRequestEntity(mapper.getFactory(), noticeXml, otherFields);
+      assertTrue(entity.isRepeatable());
+
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      entity.writeTo(baos);
+      final byte[] payload = baos.toByteArray();
+      assertEquals(payload.length, entity.getContentLength());
+
+      final JsonNode json = mapper.readTree(payload);
+      assertEquals(Base64.getEncoder().encodeToString(noticeXml.getBytes(StandardCharsets.UTF_8)),
+          json.get("notice").asText());
+      assertEquals("en", json.get("language").asText());
+      assertEquals("static", json.get("validationMode").asText());
+
+      // Written again, for example in case of retry.
+      final ByteArrayOutputStream again = new ByteArrayOutputStream();
+      entity.writeTo(again);
+      assertEquals(baos.toString(StandardCharsets.UTF_8),
+          again.toString(StandardCharsets.UTF_8));
+    }
+  }
+}
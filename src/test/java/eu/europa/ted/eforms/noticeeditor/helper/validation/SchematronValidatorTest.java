@@ -0,0 +1,152 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.DummySdk;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * Local schematron validation using the dummy SDK schematron.
+ */
+public class SchematronValidatorTest {
+
+  private static final String NOTICE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ContractNotice"
+      + " xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:ContractNotice-2\""
+      + " xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\""
+      + " xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\">\n"
+      + "  <cbc:ID>notice-1</cbc:ID>\n"
+      + "  <cac:ProcurementProjectLot><cbc:ID>LOT-0001</cbc:ID></cac:ProcurementProjectLot>\n"
+      + "  <cac:ProcurementProjectLot></cac:ProcurementProjectLot>\n"
+      + "</ContractNotice>\n";
+
+  private static final Path SDK_FOLDER = DummySdk.buildDummySdkPath(new SdkVersion("1.8.0"));
+
+  private static Map<String, JsonNode> validateToFailedAssertsById(
+      final SchematronValidator validator, final String noticeSubType)
+      throws SAXException, IOException, ParserConfigurationException {
+    final String svrl = validator.validateUsingSdk(NOTICE_XML, SDK_FOLDER, Optional.empty(),
+        Optional.of(noticeSubType));
+    final Document svrlDoc = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(false)
+        .parse(new InputSource(new StringReader(svrl)));
+    svrlDoc.normalize();
+    final ObjectNode report = CvsApiClient.createJsonReport(svrlDoc, Optional.empty());
+
+    final Map<String, JsonNode> failedAssertById = new HashMap<>();
+    for (final JsonNode failedAssert : report.get("failedAsserts")) {
+      failedAssertById.put(failedAssert.get("id").asText(), failedAssert);
+    }
+    return failedAssertById;
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSvrlLikeCvs() throws SAXException, IOException, ParserConfigurationException {
+    final SchematronValidator validator = new SchematronValidator();
+    final Map<String, JsonNode> failedAssertById = validateToFailedAssertsById(validator, "X02");
+    assertEquals(2, failedAssertById.size(), failedAssertById.toString());
+
+    // Assert coming from an abstract rule, only the second lot has no ID.
+    final JsonNode lotAssert = failedAssertById.get("BR-BT-00137-0050");
+    assertEquals("ERROR", lotAssert.get("role").asText());
+    assertEquals("rule|text|BR-BT-00137-0050", lotAssert.get("labelId").asText());
+    assertEquals("/ContractNotice/cac:ProcurementProjectLot[2]",
+        lotAssert.get("location").asText());
+    assertEquals("ND-Lot", lotAssert.get("nodeId").asText());
+    assertEquals("cbc:ID", lotAssert.get("diagnosticXpath").asText());
+
+    final JsonNode issueDateAssert = failedAssertById.get("BR-BT-00005-0100");
+    assertEquals("/ContractNotice", issueDateAssert.get("location").asText());
+    assertEquals("ND-Root", issueDateAssert.get("nodeId").asText());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testPhaseOfNoticeSubType()
+      throws SAXException, IOException, ParserConfigurationException {
+    final SchematronValidator validator = new SchematronValidator();
+
+    // The stage 2a pattern is not active for 16 and the phase variable has another value.
+    final Map<String, JsonNode> failedAssertById = validateToFailedAssertsById(validator, "16");
+    assertEquals(2, failedAssertById.size(), failedAssertById.toString());
+    assertTrue(failedAssertById.containsKey("BR-BT-00137-0050"));
+    assertTrue(failedAssertById.containsKey("BR-BT-00002-0100"));
+
+    // The compiled schematron is reused for another phase.
+    assertEquals(2, validateToFailedAssertsById(validator, "X02").size());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> validateToFailedAssertsById(validator, "unknown"));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCompileUsesIncludes() throws IOException, SAXException,
+      ParserConfigurationException {
+    final SchematronCompiler.CompiledSchematron compiled = SchematronCompiler
+        .compile(SchematronValidator.getSdkSchematronPath(SDK_FOLDER, Optional.empty()));
+    assertEquals(2, compiled.getPhaseIds().size());
+    assertTrue(compiled.getPhaseIds().contains("eforms-X02"));
+    assertEquals(SchematronCompiler.PHASE_ALL, compiled.getDefaultPhase());
+    assertTrue(compiled.getXslt().contains("BR-BT-00005-0100"));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testRulePrioritiesOfLargePattern(@TempDir final Path folder) throws Exception {
+    // More rules than the old fixed start priority of 1000.
+    final int ruleCount = 1500;
+    final StringBuilder sch = new StringBuilder(
+        "<schema xmlns=\"" + SchematronCompiler.NS_SCH + "\" queryBinding=\"xslt2\">"
+            + "<pattern id=\"large\">");
+    for (int i = 0; i < ruleCount; i++) {
+      sch.append("<rule context=\"rule").append(i).append("\">")
+          .append("<assert id=\"A").append(i).append("\" test=\"false()\">A</assert></rule>");
+    }
+    sch.append("</pattern></schema>");
+    final Path schPath = folder.resolve("large.sch");
+    Files.writeString(schPath, sch);
+
+    final Document xslt = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(false)
+        .parse(new InputSource(new StringReader(SchematronCompiler.compile(schPath).getXslt())));
+    final NodeList templates = xslt.getElementsByTagName("xsl:template");
+    double lowestRulePriority = Double.MAX_VALUE;
+    double highestOtherPriority = -Double.MAX_VALUE;
+    int rulesFound = 0;
+    for (int i = 0; i < templates.getLength(); i++) {
+      final Element template = (Element) templates.item(i);
+      if (template.getAttribute("priority").isEmpty()) {
+        continue;
+      }
+      final double priority = Double.parseDouble(template.getAttribute("priority"));
+      if (template.getAttribute("match").startsWith("rule")) {
+        rulesFound++;
+        lowestRulePriority = Math.min(lowestRulePriority, priority);
+      } else {
+        highestOtherPriority = Math.max(highestOtherPriority, priority);
+      }
+    }
+    assertEquals(ruleCount, rulesFound);
+    assertTrue(lowestRulePriority > highestOtherPriority,
+        lowestRulePriority + " <= " + highestOtherPriority);
+  }
+}
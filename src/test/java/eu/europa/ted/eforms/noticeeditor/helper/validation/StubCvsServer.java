@@ -0,0 +1,150 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpServer;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.DummySdk;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * A local stub of the CVS API for unit tests. It responds to the validation endpoint with a fixed
+ * status and body, after an optional delay, and counts the requests.
+ */
+public class StubCvsServer implements AutoCloseable {
+
+  public static final String API_KEY = "STUB_API_KEY";
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger requestCount = new AtomicInteger();
+  private final AtomicInteger concurrentCount = new AtomicInteger();
+  private final AtomicInteger maxConcurrentCount = new AtomicInteger();
+
+  private volatile int status = 200;
+  private volatile String body;
+  private volatile long delayMillis;
+  private volatile String lastRequestBody;
+  private final Queue<ScriptedResponse> scriptedResponses = new ConcurrentLinkedQueue<>();
+
+  private static final class ScriptedResponse {
+    private final int status;
+    private final String body;
+    private final String retryAfter;
+
+    private ScriptedResponse(final int status, final String body, final String retryAfter) {
+      this.status = status;
+      this.body = body;
+      this.retryAfter = retryAfter;
+    }
+  }
+
+  public StubCvsServer() throws IOException {
+    this.body = readExampleSvrl();
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.setExecutor(executor);
+    this.server.createContext("/v1/notices/validation", exchange -> {
+      requestCount.incrementAndGet();
+      final int concurrent = concurrentCount.incrementAndGet();
+      maxConcurrentCount.accumulateAndGet(concurrent, Math::max);
+      boolean counted = true;
+      try (InputStream is = exchange.getRequestBody()) {
+        lastRequestBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        if (!API_KEY.equals(exchange.getRequestHeaders().getFirst("X-API-Key"))) {
+          exchange.sendResponseHeaders(401, -1);
+          return;
+        }
+        if (delayMillis > 0) {
+          Thread.sleep(delayMillis);
+        }
+        // Not concurrent anymore once the response is sent: the client may then read it and make
+        // its next call before this handler returns.
+        concurrentCount.decrementAndGet();
+        counted = false;
+        // Scripted responses first, then the default response.
+        final ScriptedResponse scripted = scriptedResponses.poll();
+        final int responseStatus = scripted != null ? scripted.status : status;
+        final byte[] bytes =
+            (scripted != null ? scripted.body : body).getBytes(StandardCharsets.UTF_8);
+        if (scripted != null && scripted.retryAfter != null) {
+          exchange.getResponseHeaders().set("Retry-After", scripted.retryAfter);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(responseStatus, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        if (counted) {
+          concurrentCount.decrementAndGet();
+        }
+        exchange.close();
+      }
+    });
+    this.server.start();
+  }
+
+  /**
+   * @return The SVRL example of the dummy SDK, it has 23 failed asserts
+   */
+  public static String readExampleSvrl() throws IOException {
+    final Path svrlPath = DummySdk.buildDummySdkPath(new SdkVersion("1.6.0"))
+        .resolve("examples/reports/INVALID_cn_24_empty.svrl");
+    return Files.readString(svrlPath, StandardCharsets.UTF_8);
+  }
+
+  public String getUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+  }
+
+  public void setResponse(final int httpStatus, final String responseBody) {
+    this.status = httpStatus;
+    this.body = responseBody;
+  }
+
+  /**
+   * The next request gets this response (once), before the default response.
+   *
+   * @param retryAfter Optional Retry-After header value, can be null
+   */
+  public void enqueueResponse(final int httpStatus, final String responseBody,
+      final String retryAfter) {
+    scriptedResponses.add(new ScriptedResponse(httpStatus, responseBody, retryAfter));
+  }
+
+  public void setDelayMillis(final long delayMillis) {
+    this.delayMillis = delayMillis;
+  }
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  public int getMaxConcurrentCount() {
+    return maxConcurrentCount.get();
+  }
+
+  public String getLastRequestBody() {
+    return lastRequestBody;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -3,6 +3,7 @@ package eu.europa.ted.eforms.noticeeditor.helper.validation;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
@@ -15,6 +16,7 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
 import eu.europa.ted.eforms.noticeeditor.helper.notice.DummySdk;
+import eu.europa.ted.eforms.noticeeditor.util.JsonUtils;
 import eu.europa.ted.eforms.sdk.SdkVersion;
 
 public class SvrlParserTest {
@@ -36,4 +38,40 @@ public class SvrlParserTest {
     final ArrayNode failedAsserts = (ArrayNode) failedAssertsNode;
     assertEquals(23, failedAsserts.size());
   }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testParseStreamingSameAsDom()
+      throws SAXException, IOException, ParserConfigurationException {
+    final Path svrlPath = DummySdk.buildDummySdkPath(new SdkVersion("1.6.0"))
+        .resolve("examples/reports/INVALID_cn_24_empty.svrl");
+
+    final ObjectNode streamedReport;
+    try (InputStream is = Files.newInputStream(svrlPath)) {
+      streamedReport = CvsApiClient.createJsonReport(is, Optional.empty());
+    }
+    final ArrayNode streamedAsserts = (ArrayNode) streamedReport.get("failedAsserts");
+    assertEquals(23, streamedAsserts.size());
+
+    final Document svrlDoc = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(false)
+        .parse(Files.newInputStream(svrlPath));
+    svrlDoc.normalize();
+    final ObjectNode domReport = CvsApiClient.createJsonReport(svrlDoc, Optional.empty());
+    assertEquals(domReport.get("failedAsserts"), streamedAsserts);
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCvsJsonReportFromStub() throws IOException {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      final CvsApiClient client = new CvsApiClient(
+          CvsApiClient.createDefaultCloseableHttpClient(8, false, ""),
+          JsonUtils.getStandardJacksonObjectMapper(), stub.getUrl(), StubCvsServer.API_KEY,
+          Optional.empty());
+      final ObjectNode report = client.validateNoticeXmlAsJsonReport("<ContractNotice/>",
+          Optional.empty(), Optional.empty(), Optional.empty());
+      assertEquals(23, report.get("failedAsserts").size());
+      assertEquals(1, stub.getRequestCount());
+    }
+  }
 }
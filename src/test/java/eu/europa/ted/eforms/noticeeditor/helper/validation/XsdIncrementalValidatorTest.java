@@ -0,0 +1,93 @@
+package eu.europa.ted.eforms.noticeeditor.helper.validation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import eu.europa.ted.eforms.noticeeditor.helper.SafeDocumentBuilder;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.DummySdk;
+import eu.europa.ted.eforms.noticeeditor.util.EditorXmlUtils;
+import eu.europa.ted.eforms.sdk.SdkVersion;
+
+/**
+ * The incremental XSD validation must find the same errors as the validation of the whole XML.
+ */
+public class XsdIncrementalValidatorTest {
+
+  private static final String CAC_NS =
+      "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+
+  private static final String NOTICE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<ContractNotice"
+      + " xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:ContractNotice-2\""
+      + " xmlns:cac=\"" + CAC_NS + "\""
+      + " xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\">"
+      + "<cbc:ID>notice-1</cbc:ID>"
+      + "<cac:ProcurementProjectLot><cbc:ID>LOT-0001</cbc:ID></cac:ProcurementProjectLot>"
+      + "<cac:ProcurementProjectLot><cbc:ID>LOT-0002</cbc:ID></cac:ProcurementProjectLot>"
+      + "</ContractNotice>";
+
+  private static final Path MAIN_XSD_PATH = DummySdk.buildDummySdkPath(new SdkVersion("1.8.0"))
+      .resolve("schemas/maindoc/UBL-ContractNotice-2.3.xsd");
+
+  private static List<String> toSortedMessages(final List<SAXParseException> errors) {
+    return errors.stream().map(SAXParseException::getMessage).sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> validateWholeXml(final Document doc)
+      throws SAXException, IOException {
+    return toSortedMessages(
+        XsdValidator.validateXml(EditorXmlUtils.asText(doc, false), MAIN_XSD_PATH));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testOnlyChangedSubtreesAreValidated()
+      throws SAXException, IOException, ParserConfigurationException {
+    final Document doc = SafeDocumentBuilder.buildSafeDocumentBuilderAllowDoctype(false)
+        .parse(new InputSource(new StringReader(NOTICE_XML)));
+    final XsdIncrementalValidator validator =
+        new XsdIncrementalValidator(XsdValidator.getSchema(MAIN_XSD_PATH));
+
+    // First validation: everything.
+    final List<SAXParseException> errors = validator.validate(doc);
+    assertEquals(validateWholeXml(doc), toSortedMessages(errors));
+    assertEquals(3, validator.getLastValidatedSubtreeCount());
+
+    // Nothing changed.
+    assertEquals(toSortedMessages(errors), toSortedMessages(validator.validate(doc)));
+    assertEquals(0, validator.getLastValidatedSubtreeCount());
+
+    // Replace the second lot by an invalid lot.
+    final Element root = doc.getDocumentElement();
+    final Element oldLot = (Element) root.getLastChild();
+    final Element newLot = doc.createElementNS(CAC_NS, "cac:ProcurementProjectLot");
+    newLot.appendChild(doc.createElementNS(CAC_NS, "cac:Unknown"));
+    root.replaceChild(newLot, oldLot);
+
+    final List<SAXParseException> newErrors = validator.validate(doc);
+    assertEquals(1, validator.getLastValidatedSubtreeCount());
+    assertEquals(validateWholeXml(doc), toSortedMessages(newErrors));
+    final SAXParseException newError = newErrors.stream()
+        .filter(error -> error.getMessage().contains(":Unknown}")).findFirst().orElseThrow();
+    assertEquals("/ContractNotice/cac:ProcurementProjectLot[2]/cac:Unknown[1]",
+        newError.getSystemId());
+
+    // The root content changed: everything again.
+    root.removeChild(newLot);
+    assertEquals(validateWholeXml(doc), toSortedMessages(validator.validate(doc)));
+    assertEquals(2, validator.getLastValidatedSubtreeCount());
+    assertFalse(toSortedMessages(validator.validate(doc)).contains(newError.getMessage()));
+  }
+}
@@ -0,0 +1,119 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsConfig;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsConfigBuilder;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsValidationJob;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.StubCvsServer;
+
+/**
+ * Asynchronous CVS validation against a local stub of the CVS API.
+ */
+public class CvsValidationJobServiceTest {
+
+  private static final String NOTICE_XML = "<ContractNotice><cbc:ID>x</cbc:ID></ContractNotice>";
+
+  static CvsConfig buildCvsConfig(final String url, final int asyncThreads,
+      final int asyncQueueSize) {
+    return new CvsConfigBuilder(url).asyncThreads(asyncThreads).asyncQueueSize(asyncQueueSize)
+        .asyncMaxJobs(10).asyncJobTtlSeconds(60).build();
+  }
+
+  private static CvsValidationJob waitForCompletion(final CvsValidationJobService service,
+      final UUID jobId) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 10_000;
+    while (System.currentTimeMillis() < deadline) {
+      final CvsValidationJob job = service.getJob(jobId).orElseThrow();
+      if (job.isCompleted()) {
+        return job;
+      }
+      Thread.sleep(20);
+    }
+    throw new AssertionError("Job did not complete in time: " + jobId);
+  }
+
+  private static CvsValidationJob submit(final CvsValidationJobService service) {
+    return service.submit(UUID.randomUUID(), "1.8.0", NOTICE_XML, Optional.empty(),
+        Optional.empty(), Optional.empty());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSubmitReturnsBeforeCvsResponds() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setDelayMillis(500);
+      final CvsConfig cvsConfig = buildCvsConfig(stub.getUrl(), 2, 10);
+      final CvsValidationJobService service =
+          new CvsValidationJobService(cvsConfig, new NoticeValidationService(cvsConfig, ""));
+      try {
+        final CvsValidationJob job = submit(service);
+        assertFalse(job.isCompleted(), "The submit should not wait for the CVS");
+
+        final CvsValidationJob completed = waitForCompletion(service, job.getJobId());
+        assertEquals(CvsValidationJob.Status.DONE, completed.getStatus());
+        assertEquals(StubCvsServer.readExampleSvrl(), completed.getSvrl().orElseThrow());
+        assertEquals(1, stub.getRequestCount());
+      } finally {
+        service.destroy();
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCvsErrorEndsInFailedJob() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setResponse(500, "");
+      final CvsConfig cvsConfig = buildCvsConfig(stub.getUrl(), 1, 10);
+      final CvsValidationJobService service =
+          new CvsValidationJobService(cvsConfig, new NoticeValidationService(cvsConfig, ""));
+      try {
+        final CvsValidationJob job = waitForCompletion(service, submit(service).getJobId());
+        assertEquals(CvsValidationJob.Status.FAILED, job.getStatus());
+        assertTrue(job.getErrorMessage().orElseThrow().contains("500"));
+        assertTrue(job.getSvrl().isEmpty());
+      } finally {
+        service.destroy();
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSubmitRejectedWhenSaturated() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setDelayMillis(1000);
+      // One thread and one waiting job at most.
+      final CvsConfig cvsConfig = buildCvsConfig(stub.getUrl(), 1, 1);
+      final CvsValidationJobService service =
+          new CvsValidationJobService(cvsConfig, new NoticeValidationService(cvsConfig, ""));
+      try {
+        submit(service);
+        submit(service);
+        assertThrows(RejectedExecutionException.class, () -> submit(service));
+      } finally {
+        service.destroy();
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testUnknownJob() throws Exception {
+    final CvsConfig cvsConfig = buildCvsConfig("http://localhost:1", 1, 1);
+    final CvsValidationJobService service =
+        new CvsValidationJobService(cvsConfig, new NoticeValidationService(cvsConfig, ""));
+    try {
+      assertTrue(service.getJob(UUID.randomUUID()).isEmpty());
+    } finally {
+      service.destroy();
+    }
+  }
+}
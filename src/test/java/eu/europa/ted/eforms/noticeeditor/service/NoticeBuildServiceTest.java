@@ -0,0 +1,77 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class NoticeBuildServiceTest {
+
+  private static final String STRATEGY = "append-then-sort";
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testBuildResultAndErrors() throws Exception {
+    final NoticeBuildService service = new NoticeBuildService(2, 2, 3, 0, STRATEGY);
+    try {
+      assertEquals("built", service.build(() -> "built"));
+      assertEquals(2, service.getPoolSize());
+
+      // The exception of the build is thrown as is.
+      assertThrows(IOException.class, () -> service.build(() -> {
+        throw new IOException("test");
+      }));
+      assertEquals(2, service.getStartedCount());
+    } finally {
+      service.destroy();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSaturatedBuildsAreRejected() throws Exception {
+    // One thread and no queue.
+    final NoticeBuildService service = new NoticeBuildService(1, 0, 3, 0, STRATEGY);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Thread blocking = new Thread(() -> {
+      try {
+        service.build(() -> {
+          started.countDown();
+          return release.await(10, TimeUnit.SECONDS);
+        });
+      } catch (final Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    blocking.start();
+    try {
+      started.await(10, TimeUnit.SECONDS);
+      final NoticeBuildRejectedException e =
+          assertThrows(NoticeBuildRejectedException.class, () -> service.build(() -> "late"));
+      assertEquals(3, e.getRetryAfterSeconds());
+      assertEquals(1, service.getRejectedCount());
+    } finally {
+      release.countDown();
+      blocking.join();
+      service.destroy();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testInvalidSettings() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new NoticeBuildService(-1, 1, 1, 0, STRATEGY));
+    assertThrows(IllegalArgumentException.class,
+        () -> new NoticeBuildService(1, -1, 1, 0, STRATEGY));
+    assertThrows(IllegalArgumentException.class,
+        () -> new NoticeBuildService(1, 1, 0, 0, STRATEGY));
+    assertThrows(IllegalArgumentException.class,
+        () -> new NoticeBuildService(1, 1, 1, -1, STRATEGY));
+    assertThrows(IllegalArgumentException.class,
+        () -> new NoticeBuildService(1, 1, 1, 0, "unknown"));
+  }
+}
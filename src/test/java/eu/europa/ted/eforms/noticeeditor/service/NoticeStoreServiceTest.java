@@ -0,0 +1,36 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Path;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import eu.europa.ted.eforms.noticeeditor.helper.notice.NoticeStore.NoticeRevision;
+
+/**
+ * Checks the same visual model is stored once, whatever the formatting of its JSON.
+ */
+public class NoticeStoreServiceTest {
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testFullSaveAndPatchSaveMatch(@TempDir final Path folder) throws Exception {
+    final NoticeStoreService service = new NoticeStoreService(folder.toString(), 1);
+    final UUID noticeUuid = UUID.randomUUID();
+    try {
+      // As sent by the client for a full save.
+      final NoticeRevision full = service.save(noticeUuid, "1.8.0",
+          "{\n  \"contentId\" : \"notice-root\",\n  \"children\" : [ ]\n}", "<xml/>").get();
+      // As kept by the session for a patch save.
+      final NoticeRevision patch = service
+          .save(noticeUuid, "1.8.0", "{\"contentId\":\"notice-root\",\"children\":[]}", "<xml/>")
+          .get();
+      assertEquals(full, patch);
+      assertEquals(1, service.listRevisions(noticeUuid).size());
+    } finally {
+      service.destroy();
+    }
+    assertTrue(new NoticeStoreService("", 1).listRevisions(noticeUuid).isEmpty());
+  }
+}
@@ -0,0 +1,150 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsConfig;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.CvsConfigBuilder;
+import eu.europa.ted.eforms.noticeeditor.helper.validation.StubCvsServer;
+
+/**
+ * Coalescing of identical CVS validations and cap of the concurrent CVS calls, against a local
+ * stub of the CVS API. The result cache is disabled to only test the coalescing.
+ */
+public class NoticeValidationServiceCoalescingTest {
+
+  private static CvsConfig buildCvsConfig(final String url, final int maxConcurrentCalls) {
+    return new CvsConfigBuilder(url).poolMaxPerRoute(10).maxConcurrentCalls(maxConcurrentCalls)
+        .build();
+  }
+
+  private static List<String> validateConcurrently(final NoticeValidationService service,
+      final List<String> noticeXmls) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(noticeXmls.size());
+    try {
+      final List<Future<String>> futures = new ArrayList<>();
+      for (final String noticeXml : noticeXmls) {
+        final Callable<String> task = () -> service.validateNoticeXmlUsingCvs(noticeXml,
+            Optional.empty(), Optional.empty(), Optional.empty());
+        futures.add(executor.submit(task));
+      }
+      final List<String> results = new ArrayList<>();
+      for (final Future<String> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testIdenticalValidationsShareOneCvsCall() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setDelayMillis(500);
+      final NoticeValidationService service =
+          new NoticeValidationService(buildCvsConfig(stub.getUrl(), 5), "");
+
+      final List<String> noticeXmls = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        noticeXmls.add("<ContractNotice><cbc:ID>same</cbc:ID></ContractNotice>");
+      }
+      final List<String> results = validateConcurrently(service, noticeXmls);
+
+      final String expected = StubCvsServer.readExampleSvrl();
+      for (final String result : results) {
+        assertEquals(expected, result);
+      }
+      assertEquals(1, stub.getRequestCount());
+      assertEquals(5, service.getCoalescedCvsValidationCount());
+      assertEquals(0, service.getInFlightCvsValidationCount());
+
+      // Nothing in progress anymore and no cache: calls the CVS again.
+      validateConcurrently(service, noticeXmls.subList(0, 1));
+      assertEquals(2, stub.getRequestCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testJsonReportsShareOneCvsCall() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setDelayMillis(500);
+      final NoticeValidationService service =
+          new NoticeValidationService(buildCvsConfig(stub.getUrl(), 5), "");
+      final String noticeXml = "<ContractNotice><cbc:ID>same</cbc:ID></ContractNotice>";
+
+      final ExecutorService executor = Executors.newFixedThreadPool(3);
+      try {
+        final List<Future<ObjectNode>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+          futures.add(executor.submit(() -> service.validateNoticeXmlUsingCvsAsJsonReport(
+              noticeXml, Optional.empty(), Optional.empty(), Optional.empty())));
+        }
+        for (final Future<ObjectNode> future : futures) {
+          assertEquals(23, future.get().get("failedAsserts").size());
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      assertEquals(1, stub.getRequestCount());
+      assertEquals(2, service.getCoalescedCvsValidationCount());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testConcurrentCallsAreCapped() throws Exception {
+    try (StubCvsServer stub = new StubCvsServer()) {
+      stub.setDelayMillis(200);
+      final NoticeValidationService service =
+          new NoticeValidationService(buildCvsConfig(stub.getUrl(), 2), "");
+
+      final List<String> noticeXmls = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        noticeXmls.add("<ContractNotice><cbc:ID>" + i + "</cbc:ID></ContractNotice>");
+      }
+      final List<String> results = validateConcurrently(service, noticeXmls);
+
+      assertEquals(6, results.size());
+      assertEquals(6, stub.getRequestCount());
+      assertTrue(stub.getMaxConcurrentCount() <= 2,
+          "maxConcurrentCount=" + stub.getMaxConcurrentCount());
+      assertEquals(0, service.getCvsQueueLength());
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testWaitForInFlightIsBounded() throws Exception {
+    final CvsConfig cvsConfig = new CvsConfigBuilder("http://localhost").timeoutSeconds(1)
+        .queueTimeoutSeconds(2).retryMaxAttempts(2).retryMaxDelayMillis(500).build();
+    // 2 s for the permit, then 2 attempts of 3 s (connection request, connect, read) + 0.5 s.
+    assertEquals(9000, NoticeValidationService.computeInFlightWaitMillis(cvsConfig));
+
+    final NoticeValidationService service = new NoticeValidationService(
+        new CvsConfigBuilder("http://localhost").timeoutSeconds(0).queueTimeoutSeconds(0)
+            .retryMaxDelayMillis(200).build(),
+        "");
+    assertEquals("svrl", service.waitForInFlight(CompletableFuture.completedFuture("svrl")));
+
+    // A hung CVS call never completes, the waiting caller gives up.
+    final long start = System.nanoTime();
+    assertThrows(RejectedExecutionException.class,
+        () -> service.waitForInFlight(new CompletableFuture<>()));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+}
@@ -0,0 +1,281 @@
+package eu.europa.ted.eforms.noticeeditor.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.servlet.context.AnnotationConfigServletWebApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import eu.europa.ted.eforms.noticeeditor.controller.AsyncRequestConfig;
+import eu.europa.ted.eforms.noticeeditor.controller.RestExceptionHandler;
+import eu.europa.ted.eforms.noticeeditor.service.RequestExecutionService.ExecutionMode;
+import eu.europa.ted.eforms.noticeeditor.service.RequestExecutionService.RequestTask;
+
+/**
+ * Checks the execution modes through Spring MVC (mock servlet requests): the async requests run on
+ * the executor of the service, the errors reach the exception handlers, a saturated executor and
+ * a timeout are answered with 503.
+ */
+public class RequestExecutionServiceTest {
+
+  @Configuration
+  @EnableWebMvc
+  static class TestWebConfig {
+    // The Spring MVC defaults.
+  }
+
+  /**
+   * Runs the task of the test in the configured execution mode.
+   */
+  @RestController
+  public static class TestController {
+    private final RequestExecutionService service;
+    private volatile RequestTask task;
+
+    public TestController(final RequestExecutionService service) {
+      this.service = service;
+    }
+
+    void setTask(final RequestTask task) {
+      this.task = task;
+    }
+
+    @RequestMapping(value = "/test", method = RequestMethod.GET)
+    public WebAsyncTask<Void> test(final HttpServletResponse response) throws Exception {
+      return service.execute(response, task);
+    }
+  }
+
+  private static MockMvc buildMockMvc(final RequestExecutionService service,
+      final TestController controller) {
+    final AnnotationConfigServletWebApplicationContext context =
+        new AnnotationConfigServletWebApplicationContext();
+    context.setServletContext(new MockServletContext());
+    context.registerBean(RequestExecutionService.class, () -> service);
+    context.registerBean(TestController.class, () -> controller);
+    context.register(TestWebConfig.class, AsyncRequestConfig.class, RestExceptionHandler.class);
+    context.refresh();
+    return MockMvcBuilders.webAppContextSetup(context).build();
+  }
+
+  private static void writeThreadName(final HttpServletResponse response) throws Exception {
+    response.getOutputStream()
+        .write(Thread.currentThread().getName().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testExecutionModeFromText() {
+    assertEquals(ExecutionMode.SERVLET, ExecutionMode.fromText("servlet"));
+    assertEquals(ExecutionMode.ASYNC, ExecutionMode.fromText(" Async "));
+    assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.fromText("VIRTUAL"));
+    assertThrows(IllegalArgumentException.class, () -> ExecutionMode.fromText("reactive"));
+    assertThrows(IllegalArgumentException.class, () -> ExecutionMode.fromText(" "));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testServletModeRunsOnTheCallerThread() throws Exception {
+    final RequestExecutionService service = new RequestExecutionService("servlet", 1, 1, 1);
+    final Thread caller = Thread.currentThread();
+    final AtomicInteger runs = new AtomicInteger();
+    assertNull(service.execute(null, response -> {
+      assertEquals(caller, Thread.currentThread());
+      runs.incrementAndGet();
+    }));
+    assertEquals(1, runs.get());
+
+    // In servlet mode the exceptions are thrown as usual.
+    assertThrows(IllegalStateException.class, () -> service.execute(null, response -> {
+      throw new IllegalStateException("test");
+    }));
+
+    // Through Spring MVC the request is not async and the exception handlers apply.
+    final TestController controller = new TestController(service);
+    final MockMvc mvc = buildMockMvc(service, controller);
+    controller.setTask(RequestExecutionServiceTest::writeThreadName);
+    mvc.perform(get("/test")).andExpect(request().asyncNotStarted())
+        .andExpect(status().isOk()).andExpect(content().string(caller.getName()));
+
+    controller.setTask(response -> {
+      throw new NoticeBuildRejectedException(3, null);
+    });
+    mvc.perform(get("/test")).andExpect(status().isServiceUnavailable())
+        .andExpect(header().string("Retry-After", "3"));
+    service.destroy();
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testAsyncMode() throws Exception {
+    final RequestExecutionService service = new RequestExecutionService("async", 2, 0, 10);
+    final TestController controller = new TestController(service);
+    final MockMvc mvc = buildMockMvc(service, controller);
+    try {
+      controller.setTask(RequestExecutionServiceTest::writeThreadName);
+      final MvcResult result =
+          mvc.perform(get("/test")).andExpect(request().asyncStarted()).andReturn();
+      mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+      assertTrue(result.getResponse().getContentAsString().startsWith("request-"),
+          result.getResponse().getContentAsString());
+
+      // The exceptions of the async work reach the exception handlers.
+      controller.setTask(response -> {
+        throw new NoticeBuildRejectedException(3, null);
+      });
+      final MvcResult rejectedBuild =
+          mvc.perform(get("/test")).andExpect(request().asyncStarted()).andReturn();
+      mvc.perform(asyncDispatch(rejectedBuild)).andExpect(status().isServiceUnavailable())
+          .andExpect(header().string("Retry-After", "3"));
+    } finally {
+      service.destroy();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSaturatedExecutorRejects() throws Exception {
+    final RequestExecutionService service = new RequestExecutionService("async", 1, 0, 10);
+    final TestController controller = new TestController(service);
+    final MockMvc mvc = buildMockMvc(service, controller);
+    try {
+      final CountDownLatch release = new CountDownLatch(1);
+      controller.setTask(response -> {
+        release.await();
+        writeThreadName(response);
+      });
+      final MvcResult running =
+          mvc.perform(get("/test")).andExpect(request().asyncStarted()).andReturn();
+
+      // One thread and no queue.
+      mvc.perform(get("/test")).andExpect(request().asyncNotStarted())
+          .andExpect(status().isServiceUnavailable())
+          .andExpect(header().string("Retry-After", "2"));
+
+      release.countDown();
+      mvc.perform(asyncDispatch(running)).andExpect(status().isOk());
+
+      // The permit is back.
+      final MvcResult next =
+          mvc.perform(get("/test")).andExpect(request().asyncStarted()).andReturn();
+      mvc.perform(asyncDispatch(next)).andExpect(status().isOk());
+    } finally {
+      service.destroy();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testTimeout() throws Exception {
+    final RequestExecutionService service = new RequestExecutionService("async", 1, 0, 10);
+    final TestController controller = new TestController(service);
+    final MockMvc mvc = buildMockMvc(service, controller);
+    try {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      final CountDownLatch done = new CountDownLatch(1);
+      final AtomicReference<Exception> writeError = new AtomicReference<>();
+      controller.setTask(response -> {
+        started.countDown();
+        // The work does not stop when interrupted.
+        boolean released = false;
+        while (!released) {
+          try {
+            released = release.await(10, TimeUnit.SECONDS);
+          } catch (@SuppressWarnings("unused") final InterruptedException e) {
+            // Keeps waiting.
+          }
+        }
+        try {
+          writeThreadName(response);
+        } catch (final Exception e) {
+          writeError.set(e);
+        } finally {
+          done.countDown();
+        }
+      });
+      final MvcResult result =
+          mvc.perform(get("/test")).andExpect(request().asyncStarted()).andReturn();
+      // A task which has not started when the request times out is not run at all.
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+
+      // The mock async context does not time out by itself.
+      final MockAsyncContext asyncContext =
+          (MockAsyncContext) result.getRequest().getAsyncContext();
+      for (final AsyncListener listener : asyncContext.getListeners()) {
+        listener.onTimeout(null);
+      }
+      // Spring MVC answers it with 503 (MockMvc cannot dispatch a timeout).
+      assertTrue(WebAsyncUtils.getAsyncManager(result.getRequest())
+          .getConcurrentResult() instanceof AsyncRequestTimeoutException);
+
+      // The work finishes later, it cannot write the response answered by the timeout.
+      release.countDown();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertTrue(writeError.get() instanceof IllegalStateException, String.valueOf(writeError));
+      assertEquals("", result.getResponse().getContentAsString());
+    } finally {
+      service.destroy();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testVirtualMode() throws Exception {
+    if (Runtime.version().feature() < 21) {
+      // Fails at startup with a clear message.
+      final IllegalStateException e = assertThrows(IllegalStateException.class,
+          () -> new RequestExecutionService("virtual", 1, 1, 10));
+      assertTrue(e.getMessage().contains("Java 21"), e.getMessage());
+      return;
+    }
+    final RequestExecutionService service = new RequestExecutionService("virtual", 1, 1, 10);
+    final TestController controller = new TestController(service);
+    final MockMvc mvc = buildMockMvc(service, controller);
+    try {
+      final AtomicReference<Thread> worker = new AtomicReference<>();
+      controller.setTask(response -> worker.set(Thread.currentThread()));
+      final MvcResult result =
+          mvc.perform(get("/test")).andExpect(request().asyncStarted()).andReturn();
+      mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+      assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(worker.get()));
+    } finally {
+      service.destroy();
+    }
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testInvalidAsyncSettings() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new RequestExecutionService("async", 0, 1, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new RequestExecutionService("async", 1, 1, 0));
+  }
+}
@@ -0,0 +1,154 @@
+package eu.europa.ted.eforms.noticeeditor.sorting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the order of the child elements read from the dummy SDK XSDs.
+ */
+public class XsdElementOrderTest {
+
+  private static final Path DUMMY_SCHEMAS = Path.of("src/test/resources/dummy-sdk/1.8.0/schemas");
+  private static final String BRIN_XSD = "maindoc/EFORMS-BusinessRegistrationInformationNotice.xsd";
+
+  private static final String BRIN =
+      "{http://data.europa.eu/p27/eforms-business-registration-information-notice/1}";
+  private static final String CBC =
+      "{urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2}";
+  private static final String CAC =
+      "{urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2}";
+  private static final String EXT =
+      "{urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2}";
+  private static final String EFAC =
+      "{http://data.europa.eu/p27/eforms-ubl-extension-aggregate-components/1}";
+
+  private static final String ROOT = BRIN + "BusinessRegistrationInformationNotice";
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testCompileDummyXsd() throws Exception {
+    final XsdElementOrder order = XsdElementOrderCompiler.compile(DUMMY_SCHEMAS.resolve(BRIN_XSD));
+    assertOrder(order);
+
+    // Simple content has no child order.
+    assertFalse(order.hasChildOrder(CBC + "CustomizationID"));
+    assertEquals(OptionalInt.empty(), order.getRank(ROOT, CBC + "Unknown"));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testWriteAndRead(@TempDir final Path folder) throws Exception {
+    final Path mainXsdPath = DUMMY_SCHEMAS.resolve(BRIN_XSD);
+    final XsdElementOrder order = XsdElementOrderCompiler.compile(mainXsdPath);
+    final Path path = folder.resolve("brin" + XsdElementOrder.CACHE_FILE_SUFFIX);
+    XsdElementOrder.write(order, path);
+    assertOrder(XsdElementOrder.read(path, mainXsdPath));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testLoadWritesCacheFile(@TempDir final Path folder) throws Exception {
+    // Copy the schemas as the cache file is written next to the main XSD.
+    try (Stream<Path> paths = Files.walk(DUMMY_SCHEMAS)) {
+      for (final Path path : (Iterable<Path>) paths::iterator) {
+        final Path target = folder.resolve(DUMMY_SCHEMAS.relativize(path).toString());
+        if (Files.isDirectory(path)) {
+          Files.createDirectories(target);
+        } else {
+          Files.copy(path, target);
+        }
+      }
+    }
+    final Path mainXsdPath = folder.resolve(BRIN_XSD);
+    final XsdElementOrder order = XsdElementOrder.load(mainXsdPath);
+    assertOrder(order);
+    assertTrue(
+        Files.exists(XsdElementOrder.getCachePath(mainXsdPath.toAbsolutePath().normalize())));
+
+    // Kept in memory.
+    assertSame(order, XsdElementOrder.load(mainXsdPath));
+
+    // A change of an included or imported XSD is seen, not only of the main XSD.
+    final Path cachePath = XsdElementOrder.getCachePath(mainXsdPath.toAbsolutePath().normalize());
+    assertTrue(order.getXsdFiles().size() > 1);
+    assertOrder(XsdElementOrder.read(cachePath, mainXsdPath));
+    final Path includedXsdPath =
+        mainXsdPath.resolveSibling(order.getXsdFiles().get(1).getRelativePath());
+    Files.setLastModifiedTime(includedXsdPath, FileTime
+        .fromMillis(Files.getLastModifiedTime(includedXsdPath).toMillis() + 2000));
+    assertNull(XsdElementOrder.read(cachePath, mainXsdPath));
+  }
+
+  /**
+   * The order is looked up by the name of the parent element only: the local declarations of the
+   * same name with different types have no order, a global declaration wins.
+   */
+  @SuppressWarnings("static-method")
+  @Test
+  public void testLocalDeclarations(@TempDir final Path folder) throws Exception {
+    final Path xsdPath = folder.resolve("local.xsd");
+    Files.writeString(xsdPath, "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\""
+        + " xmlns=\"urn:test\" targetNamespace=\"urn:test\" elementFormDefault=\"qualified\">"
+        + "<xsd:element name=\"Root\"><xsd:complexType><xsd:sequence>"
+        + "<xsd:element name=\"Shop\" type=\"ShopType\"/>"
+        + "<xsd:element name=\"Bank\" type=\"BankType\"/>"
+        + "</xsd:sequence></xsd:complexType></xsd:element>"
+        // Address is declared locally in both types, with different contents.
+        + "<xsd:complexType name=\"ShopType\"><xsd:sequence>"
+        + "<xsd:element name=\"Address\"><xsd:complexType><xsd:sequence>"
+        + "<xsd:element name=\"Street\" type=\"xsd:string\"/>"
+        + "<xsd:element name=\"City\" type=\"xsd:string\"/>"
+        + "</xsd:sequence></xsd:complexType></xsd:element>"
+        + "<xsd:element name=\"Contact\" type=\"ContactType\"/>"
+        + "</xsd:sequence></xsd:complexType>"
+        + "<xsd:complexType name=\"BankType\"><xsd:sequence>"
+        + "<xsd:element name=\"Address\"><xsd:complexType><xsd:sequence>"
+        + "<xsd:element name=\"City\" type=\"xsd:string\"/>"
+        + "<xsd:element name=\"Street\" type=\"xsd:string\"/>"
+        + "</xsd:sequence></xsd:complexType></xsd:element>"
+        + "<xsd:element name=\"Contact\" type=\"ContactType\"/>"
+        + "</xsd:sequence></xsd:complexType>"
+        // Same type in both, the order is known.
+        + "<xsd:complexType name=\"ContactType\"><xsd:sequence>"
+        + "<xsd:element name=\"Name\" type=\"xsd:string\"/>"
+        + "<xsd:element name=\"Phone\" type=\"xsd:string\"/>"
+        + "</xsd:sequence></xsd:complexType>"
+        + "</xsd:schema>");
+    final XsdElementOrder order = XsdElementOrderCompiler.compile(xsdPath);
+    final String ns = "{urn:test}";
+    assertEquals(0, order.getRank(ns + "Root", ns + "Shop").getAsInt());
+    assertEquals(1, order.getRank(ns + "Bank", ns + "Contact").getAsInt());
+
+    assertFalse(order.hasChildOrder(ns + "Address"));
+    assertEquals(OptionalInt.empty(), order.getRank(ns + "Address", ns + "City"));
+
+    assertTrue(order.getRank(ns + "Contact", ns + "Name").getAsInt() < order
+        .getRank(ns + "Contact", ns + "Phone").getAsInt());
+  }
+
+  private static void assertOrder(final XsdElementOrder order) {
+    assertTrue(order.hasChildOrder(ROOT));
+    final int extensions = order.getRank(ROOT, EXT + "UBLExtensions").getAsInt();
+    final int customizationId = order.getRank(ROOT, CBC + "CustomizationID").getAsInt();
+    final int businessParty = order.getRank(ROOT, CAC + "BusinessParty").getAsInt();
+    final int noticeSubType = order.getRank(ROOT, EFAC + "NoticeSubType").getAsInt();
+    assertTrue(extensions < customizationId);
+    assertTrue(customizationId < businessParty);
+    assertTrue(businessParty < noticeSubType);
+
+    // Global element of a UBL type.
+    final String party = CAC + "Party";
+    assertTrue(order.getRank(party, CBC + "WebsiteURI").getAsInt() < order
+        .getRank(party, CAC + "PartyLegalEntity").getAsInt());
+  }
+}
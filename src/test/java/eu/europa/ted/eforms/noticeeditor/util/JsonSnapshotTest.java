@@ -0,0 +1,87 @@
+package eu.europa.ted.eforms.noticeeditor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Checks the JSON read from a snapshot is the parsed JSON and the snapshot is made again when the
+ * source file changes.
+ */
+public class JsonSnapshotTest {
+
+  private static final Path DUMMY_NOTICE_TYPES =
+      Path.of("src/test/resources/dummy-sdk/1.8.0/notice-types/dummy-notice-types.json");
+
+  private static final String JSON = "{\"id\":\"BT-01\",\"empty\":\"\",\"null\":null,"
+      + "\"repeatable\":true,\"int\":1,\"long\":12345678901,\"double\":1.5,"
+      + "\"big\":123456789012345678901234567890,"
+      + "\"array\":[\"BT-01\",{\"id\":\"BT-02\",\"false\":false},[]],\"object\":{}}";
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSdkFile(@TempDir final Path folder) throws Exception {
+    final Path jsonPath = folder.resolve("notice-types.json");
+    Files.copy(DUMMY_NOTICE_TYPES, jsonPath);
+
+    final JsonNode parsed = JsonSnapshot.loadJson(jsonPath);
+    assertTrue(Files.exists(JsonSnapshot.getSnapshotPath(jsonPath)));
+    assertEquals(JsonUtils.getJsonReader().readTree(Files.readString(DUMMY_NOTICE_TYPES)),
+        parsed);
+    assertEquals(parsed, JsonSnapshot.loadJson(jsonPath));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testNodeTypes(@TempDir final Path folder) throws Exception {
+    final JsonNode json = JsonUtils.getJsonReader().readTree(JSON);
+    final Path path = folder.resolve("test" + JsonSnapshot.SNAPSHOT_FILE_SUFFIX);
+    JsonSnapshot.write(json, path, 10, 20);
+
+    final JsonNode read = JsonSnapshot.read(path, 10, 20);
+    assertEquals(json, read);
+    assertTrue(read.get("int").isInt());
+    assertTrue(read.get("long").isLong());
+    assertTrue(read.get("big").isBigInteger());
+
+    // Another source file.
+    assertNull(JsonSnapshot.read(path, 11, 20));
+    assertNull(JsonSnapshot.read(path, 10, 21));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSourceChanged(@TempDir final Path folder) throws Exception {
+    final Path jsonPath = folder.resolve("fields.json");
+    Files.writeString(jsonPath, "{\"id\":\"BT-01\"}");
+    final AtomicInteger parseCount = new AtomicInteger();
+    final JsonSnapshot.SourceParser parser = path -> {
+      parseCount.incrementAndGet();
+      return JsonUtils.getJsonReader().readTree(Files.readString(path));
+    };
+
+    JsonSnapshot.load(jsonPath, parser);
+    assertEquals("BT-01", JsonSnapshot.load(jsonPath, parser).get("id").asText());
+    assertEquals(1, parseCount.get());
+
+    Files.writeString(jsonPath, "{\"id\":\"BT-02\"}");
+    Files.setLastModifiedTime(jsonPath, FileTime.fromMillis(
+        Files.getLastModifiedTime(jsonPath).toMillis() + 1000));
+    assertEquals("BT-02", JsonSnapshot.load(jsonPath, parser).get("id").asText());
+    assertEquals(2, parseCount.get());
+
+    // A broken snapshot is made again.
+    Files.writeString(JsonSnapshot.getSnapshotPath(jsonPath), "broken");
+    assertEquals("BT-02", JsonSnapshot.load(jsonPath, parser).get("id").asText());
+    assertEquals(3, parseCount.get());
+    assertEquals("BT-02", JsonSnapshot.load(jsonPath, parser).get("id").asText());
+    assertEquals(3, parseCount.get());
+  }
+}
@@ -0,0 +1,88 @@
+package eu.europa.ted.eforms.noticeeditor.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Checks the strict getters fail as before and only build the error messages on failure, and the
+ * shared readers and writers.
+ */
+public class JsonUtilsTest {
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testGetTextStrict() {
+    final ObjectNode json = JsonUtils.createObjectNode();
+    json.put("id", "BT-01");
+    json.put("blank", " ");
+    json.putNull("null");
+
+    assertEquals("BT-01", JsonUtils.getTextStrict(json, "id"));
+    assertThrows(NullPointerException.class, () -> JsonUtils.getTextStrict(json, "missing"));
+    assertThrows(NullPointerException.class, () -> JsonUtils.getTextStrict(json, "null"));
+    assertThrows(IllegalArgumentException.class, () -> JsonUtils.getTextStrict(json, "blank"));
+    assertThrows(NullPointerException.class, () -> JsonUtils.getTextStrict(null, "id"));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testGetTextStrictErrorTextSupplier() {
+    final ObjectNode json = JsonUtils.createObjectNode();
+    json.put("id", "BT-01");
+
+    // Not called on success.
+    assertEquals("BT-01", JsonUtils.getTextStrict(json, "id", () -> {
+      throw new AssertionError("The error text is built for nothing");
+    }));
+
+    final NullPointerException ex = assertThrows(NullPointerException.class,
+        () -> JsonUtils.getTextStrict(json, "missing", () -> "fieldId=BT-02"));
+    assertTrue(ex.getMessage().contains("fieldId=BT-02"));
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testGetElements() {
+    final ObjectNode json = JsonUtils.createObjectNode();
+    final ArrayNode array = JsonUtils.createArrayNode(json, "array");
+    array.add("a");
+    array.add("b");
+    json.put("text", "c");
+
+    final List<String> texts = new ArrayList<>();
+    for (final JsonNode elem : JsonUtils.getElements(json.get("array"))) {
+      texts.add(elem.asText());
+    }
+    assertEquals(List.of("a", "b"), texts);
+    assertFalse(JsonUtils.getElements(json.get("text")).iterator().hasNext());
+    assertFalse(JsonUtils.getElements(null).iterator().hasNext());
+  }
+
+  @SuppressWarnings("static-method")
+  @Test
+  public void testSharedReaderAndWriters() throws Exception {
+    final JsonNode json = JsonUtils.getJsonReader().readTree("{\"id\":\"BT-01\",\"empty\":\"\"}");
+    assertEquals("BT-01", JsonUtils.getTextStrict(json, "id"));
+
+    final ObjectNode obj = JsonUtils.createObjectNode();
+    obj.put("id", "BT-01");
+    assertEquals("{\"id\":\"BT-01\"}", JsonUtils.getJsonWriter().writeValueAsString(obj));
+    assertEquals(JsonUtils.getJsonPrettyWriter().writeValueAsString(obj), JsonUtils.marshall(obj));
+    assertTrue(JsonUtils.marshall(obj).contains("\n"));
+
+    // A copy, the caller can configure it without changing the shared writers.
+    final ObjectMapper mapper = JsonUtils.getStandardJacksonObjectMapper();
+    assertNotSame(mapper, JsonUtils.getStandardJacksonObjectMapper());
+    assertEquals("{\"id\":\"BT-01\"}", mapper.writeValueAsString(obj));
+  }
+}